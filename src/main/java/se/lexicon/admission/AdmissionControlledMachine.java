@@ -0,0 +1,124 @@
+package se.lexicon.admission;
+
+import se.lexicon.model.CatalogPage;
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.ProductView;
+
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A vending machine guarded by an {@link AdmissionController}.
+ * <p>
+ * Operations that change the machine (deposits, purchases, ending a session) must be admitted
+ * first and throw {@link AdmissionRejectedException} when the machine is at capacity. Read-only
+ * operations pass straight through. The latency of each purchase, including any time spent
+ * waiting for the machine itself, drives the controller's adaptive limit.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * AdmissionController admission = new AdmissionController(8, 1, 64, 16, 5, 2.0);
+ * IVendingMachine guarded = new AdmissionControlledMachine(vm, admission);
+ * try {
+ *     guarded.request(4);
+ * } catch (AdmissionRejectedException e) {
+ *     display.show("Busy, try again in " + e.getRetryAfterMillis() + " ms");
+ * }
+ * }</pre>
+ */
+public class AdmissionControlledMachine implements IVendingMachine {
+
+    private final IVendingMachine machine;
+    private final AdmissionController admission;
+
+    /**
+     * Wraps a machine.
+     *
+     * @param machine   the machine to guard
+     * @param admission the admission controller; may be shared by several wrappers of the same machine
+     */
+    public AdmissionControlledMachine(IVendingMachine machine, AdmissionController admission) {
+        if (machine == null) throw new IllegalArgumentException("machine must not be null");
+        if (admission == null) throw new IllegalArgumentException("admission must not be null");
+        this.machine = machine;
+        this.admission = admission;
+    }
+
+    @Override
+    public void addCurrency(int amount) {
+        admission.acquire();
+        try {
+            machine.addCurrency(amount);
+        } finally {
+            admission.release(-1);
+        }
+    }
+
+    @Override
+    public double getBalance() {
+        return machine.getBalance();
+    }
+
+    @Override
+    public Product request(int id) {
+        admission.acquire();
+        long start = System.nanoTime();
+        try {
+            return machine.request(id);
+        } finally {
+            admission.release(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Product request(long transactionId, int id) {
+        admission.acquire();
+        long start = System.nanoTime();
+        try {
+            return machine.request(transactionId, id);
+        } finally {
+            admission.release(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public double endSession() {
+        admission.acquire();
+        try {
+            return machine.endSession();
+        } finally {
+            admission.release(-1);
+        }
+    }
+
+    @Override
+    public String getDescription(int id) {
+        return machine.getDescription(id);
+    }
+
+    @Override
+    public String[] getProducts() {
+        return machine.getProducts();
+    }
+
+    @Override
+    public CatalogPage browseProducts(String pageToken, int pageSize, Predicate<? super Product> filter) {
+        return machine.browseProducts(pageToken, pageSize, filter);
+    }
+
+    @Override
+    public Stream<ProductView> streamProducts(Predicate<? super Product> filter) {
+        return machine.streamProducts(filter);
+    }
+
+    /**
+     * Returns the admission controller guarding this machine.
+     *
+     * @return the controller
+     */
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+}
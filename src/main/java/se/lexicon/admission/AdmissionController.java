@@ -0,0 +1,246 @@
+package se.lexicon.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many callers work on a machine at the same time.
+ * <p>
+ * Up to {@link #getLimit()} callers are admitted at once. Further callers wait in a bounded
+ * queue for at most a maximum wait; when the queue is full, or the wait runs out, they are
+ * rejected right away with an {@link AdmissionRejectedException} that carries a retry-after hint.
+ * Turning callers away early keeps the latency of admitted callers flat instead of letting
+ * everybody slow down together.
+ * </p>
+ *
+ * <h2>Adaptive limit</h2>
+ * <p>
+ * The limit follows observed latency (additive increase, multiplicative decrease): when a
+ * latency sample reported to {@link #release(long)} exceeds the target, the limit shrinks by a
+ * quarter, at most once per window of {@code limit} samples. A window without slow samples in
+ * which the limit was actually used grows it by one. The limit stays within the configured
+ * minimum and maximum.
+ * </p>
+ */
+public class AdmissionController {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+
+    // Fair, so queued callers are admitted in arrival order
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition capacityFreed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    // Adaptive limit state: samples seen in the current window and whether it saw a slow one
+    private int windowSamples;
+    private boolean windowSlow;
+    private boolean windowSaturated;
+    private double averageLatencyNanos;
+
+    private long admitted;
+    private long rejected;
+
+    /**
+     * Creates an admission controller.
+     *
+     * @param initialLimit        callers admitted at once at start
+     * @param minLimit            the limit never goes below this
+     * @param maxLimit            the limit never goes above this
+     * @param queueCapacity       callers that may wait for admission; 0 rejects as soon as the limit is reached
+     * @param maxWaitMillis       how long a queued caller waits before it is rejected
+     * @param targetLatencyMillis latency above which the limit is reduced
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit, int queueCapacity,
+                               long maxWaitMillis, double targetLatencyMillis) {
+        if (minLimit < 1) throw new IllegalArgumentException("Minimum limit must be at least 1");
+        if (maxLimit < minLimit) throw new IllegalArgumentException("Maximum limit must not be below the minimum");
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Initial limit must be between minimum and maximum");
+        }
+        if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity can not be negative");
+        if (maxWaitMillis < 0) throw new IllegalArgumentException("Maximum wait can not be negative");
+        if (targetLatencyMillis <= 0) throw new IllegalArgumentException("Target latency must be positive");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.targetLatencyNanos = (long) (targetLatencyMillis * 1_000_000);
+    }
+
+    /**
+     * Waits for admission. Every successful call must be paired with a {@link #release(long)}.
+     *
+     * @throws AdmissionRejectedException if the queue is full, the wait runs out or the thread is interrupted
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            // Only admit directly if nobody is queued, so new arrivals can not overtake waiting ones
+            if (inFlight < (int) limit && waiting == 0) {
+                admit();
+                return;
+            }
+            if (waiting >= queueCapacity) {
+                throw reject("Machine busy");
+            }
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject("Timed out waiting for the machine");
+                    }
+                    remaining = capacityFreed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("Interrupted while waiting for the machine");
+            } finally {
+                waiting--;
+            }
+            admit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an admitted call.
+     *
+     * @param latencyNanos how long the call took, or a negative value to not use it for the adaptive limit
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            if (inFlight == 0) throw new IllegalStateException("release() without acquire()");
+            if (latencyNanos >= 0) {
+                adapt(latencyNanos);
+            }
+            inFlight--;
+            // Usually one slot is free; if the limit just grew there may be more
+            if ((int) limit - inFlight > 1) capacityFreed.signalAll();
+            else capacityFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit() {
+        inFlight++;
+        admitted++;
+        if (inFlight >= (int) limit) windowSaturated = true;
+    }
+
+    private AdmissionRejectedException reject(String reason) {
+        rejected++;
+        return new AdmissionRejectedException(reason, retryAfterMillis());
+    }
+
+    private void adapt(long latencyNanos) {
+        averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos : averageLatencyNanos * 0.9 + latencyNanos * 0.1;
+
+        if (latencyNanos > targetLatencyNanos && !windowSlow) {
+            // Multiplicative decrease, once per window so one burst of slow samples does not collapse the limit
+            limit = Math.max(minLimit, limit * 0.75);
+            windowSlow = true;
+        }
+        if (++windowSamples >= (int) limit) {
+            // Additive increase, only if the current limit was actually reached
+            if (!windowSlow && windowSaturated) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            windowSamples = 0;
+            windowSlow = false;
+            windowSaturated = false;
+        }
+    }
+
+    /**
+     * Estimates how long until a rejected caller would likely be admitted: the time to work
+     * through everybody queued, at the current limit and average latency.
+     */
+    private long retryAfterMillis() {
+        double nanos = (waiting + 1) * averageLatencyNanos / limit;
+        return Math.max(1, (long) Math.ceil(nanos / 1_000_000));
+    }
+
+    /**
+     * Returns the number of callers admitted at once right now.
+     *
+     * @return the current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers currently admitted.
+     *
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers currently queued.
+     *
+     * @return the queue length
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many calls were admitted so far.
+     *
+     * @return the admitted count
+     */
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many calls were rejected so far.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
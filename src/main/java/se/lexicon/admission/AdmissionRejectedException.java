@@ -0,0 +1,26 @@
+package se.lexicon.admission;
+
+/**
+ * Thrown when a machine is at capacity and a call is turned away instead of queued.
+ * The caller should try again after {@link #getRetryAfterMillis()}.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public AdmissionRejectedException(String message, long retryAfterMillis) {
+        super(message + ", retry after " + retryAfterMillis + " ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns how long the caller should wait before trying again.
+     *
+     * @return the suggested wait in milliseconds (at least 1)
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,230 @@
+package se.lexicon.analytics;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachineListener;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live sales analytics fed by one or more vending machines.
+ * <p>
+ * Register the same instance on every machine whose sales should be aggregated:
+ * </p>
+ * <pre>{@code
+ * SalesAnalytics analytics = new SalesAnalytics(Clock.systemUTC());
+ * machineA.addListener(analytics);
+ * machineB.addListener(analytics);
+ *
+ * analytics.topSellers(10);          // best sellers of the last 15 minutes
+ * analytics.revenueByType(0);        // revenue per product type in the current hour
+ * }</pre>
+ *
+ * <h2>How it works</h2>
+ * <ul>
+ *   <li>The sliding window is split into buckets (one minute each by default). Every purchase
+ *   is added to the current bucket and to a running per-product window count. When a bucket
+ *   falls out of the window its counts are subtracted again, so history is never re-aggregated.</li>
+ *   <li>Window counts are kept in a tree ordered by units sold, so each purchase costs
+ *   O(log n) in the number of distinct products and a top-N query only walks N entries.</li>
+ *   <li>Revenue is summed per product type into tumbling one-hour windows kept in a ring.</li>
+ * </ul>
+ * <p>
+ * All methods are synchronized, but each critical section is short and bounded, so queries
+ * can run at any time without noticeably delaying purchases.
+ * </p>
+ */
+public class SalesAnalytics implements VendingMachineListener {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** Units sold of one product inside the sliding window. */
+    private static final class Counter {
+        final int productId;
+        String productName;
+        long count;
+
+        Counter(int productId, String productName) {
+            this.productId = productId;
+            this.productName = productName;
+        }
+    }
+
+    // Most units first; ties broken by ID so the ordering is total and stable
+    private static final Comparator<Counter> RANKING = (a, b) -> a.count != b.count
+            ? Long.compare(b.count, a.count)
+            : Integer.compare(a.productId, b.productId);
+
+    private final Clock clock;
+
+    // --- Sliding window for top sellers ---
+    private final long bucketMillis;
+    private final int windowBuckets;
+    private final List<Map<Integer, long[]>> buckets = new ArrayList<>();
+    private long currentBucket = Long.MIN_VALUE;
+    private final Map<Integer, Counter> windowCounts = new HashMap<>();
+    private final TreeSet<Counter> ranking = new TreeSet<>(RANKING);
+
+    // --- Tumbling hourly revenue per product type ---
+    private final int hoursRetained;
+    private final List<Map<String, double[]>> hours = new ArrayList<>();
+    private long currentHour = Long.MIN_VALUE;
+
+    /**
+     * Creates analytics with a 15 minute window of 1 minute buckets and 24 hours of revenue history.
+     *
+     * @param clock the clock used to timestamp purchases
+     */
+    public SalesAnalytics(Clock clock) {
+        this(clock, TimeUnit.MINUTES.toMillis(1), 15, 24);
+    }
+
+    /**
+     * Creates analytics with a custom window layout.
+     *
+     * @param clock         the clock used to timestamp purchases
+     * @param bucketMillis  the length of one window bucket in milliseconds
+     * @param windowBuckets how many buckets make up the sliding window
+     * @param hoursRetained how many hourly revenue windows to keep
+     */
+    public SalesAnalytics(Clock clock, long bucketMillis, int windowBuckets, int hoursRetained) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        if (bucketMillis <= 0 || windowBuckets <= 0 || hoursRetained <= 0) {
+            throw new IllegalArgumentException("Window sizes must be positive");
+        }
+        this.clock = clock;
+        this.bucketMillis = bucketMillis;
+        this.windowBuckets = windowBuckets;
+        this.hoursRetained = hoursRetained;
+        for (int i = 0; i < windowBuckets; i++) buckets.add(new HashMap<>());
+        for (int i = 0; i < hoursRetained; i++) hours.add(new HashMap<>());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Adds the sale to the sliding window and to the current hour's revenue.
+     */
+    @Override
+    public synchronized void onPurchase(long sessionId, Product product, double price) {
+        long now = clock.millis();
+        advanceWindow(now);
+        advanceHour(now);
+
+        // Sliding window: current bucket and running total
+        int id = product.getId();
+        buckets.get(slot(currentBucket, windowBuckets)).computeIfAbsent(id, k -> new long[1])[0]++;
+
+        Counter c = windowCounts.get(id);
+        if (c == null) {
+            c = new Counter(id, product.getProductName());
+            windowCounts.put(id, c);
+        } else {
+            ranking.remove(c);
+            c.productName = product.getProductName();
+        }
+        c.count++;
+        ranking.add(c);
+
+        // Hourly revenue per product type
+        String type = product.getClass().getSimpleName();
+        hours.get(slot(currentHour, hoursRetained)).computeIfAbsent(type, k -> new double[1])[0] += price;
+    }
+
+    /**
+     * Returns the best selling products inside the sliding window, most units first.
+     *
+     * @param n the maximum number of entries to return
+     * @return up to {@code n} top sellers
+     */
+    public synchronized List<TopSeller> topSellers(int n) {
+        if (n < 0) throw new IllegalArgumentException("n can not be negative");
+        advanceWindow(clock.millis());
+
+        List<TopSeller> result = new ArrayList<>(Math.min(n, ranking.size()));
+        Iterator<Counter> it = ranking.iterator();
+        while (it.hasNext() && result.size() < n) {
+            Counter c = it.next();
+            result.add(new TopSeller(c.productId, c.productName, c.count));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the revenue per product type (class simple name, e.g. "Snickers") for one hour.
+     *
+     * @param hoursAgo 0 for the current hour, 1 for the previous hour, and so on
+     * @return a copy of the revenue per product type in SEK; empty if nothing was sold
+     */
+    public synchronized Map<String, Double> revenueByType(int hoursAgo) {
+        if (hoursAgo < 0 || hoursAgo >= hoursRetained) {
+            throw new IllegalArgumentException("hoursAgo must be between 0 and " + (hoursRetained - 1));
+        }
+        advanceHour(clock.millis());
+
+        Map<String, Double> result = new HashMap<>();
+        for (Map.Entry<String, double[]> e : hours.get(slot(currentHour - hoursAgo, hoursRetained)).entrySet()) {
+            result.put(e.getKey(), e.getValue()[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Expires buckets that have slid out of the window and subtracts their counts.
+     */
+    private void advanceWindow(long now) {
+        long bucket = Math.floorDiv(now, bucketMillis);
+        if (currentBucket == Long.MIN_VALUE) {
+            currentBucket = bucket;
+            return;
+        }
+        // Each step reuses the oldest bucket for the new time; after a full lap everything has expired
+        long steps = Math.min(bucket - currentBucket, windowBuckets);
+        for (long i = 1; i <= steps; i++) {
+            Map<Integer, long[]> expired = buckets.get(slot(currentBucket + i, windowBuckets));
+            for (Map.Entry<Integer, long[]> e : expired.entrySet()) {
+                subtract(e.getKey(), e.getValue()[0]);
+            }
+            expired.clear();
+        }
+        if (bucket > currentBucket) currentBucket = bucket;
+    }
+
+    private void subtract(int productId, long units) {
+        Counter c = windowCounts.get(productId);
+        if (c == null) return;
+        ranking.remove(c);
+        c.count -= units;
+        if (c.count <= 0) {
+            windowCounts.remove(productId);
+        } else {
+            ranking.add(c);
+        }
+    }
+
+    /**
+     * Clears hourly revenue slots that are about to be reused for a new hour.
+     */
+    private void advanceHour(long now) {
+        long hour = Math.floorDiv(now, HOUR_MILLIS);
+        if (currentHour == Long.MIN_VALUE) {
+            currentHour = hour;
+            return;
+        }
+        long steps = Math.min(hour - currentHour, hoursRetained);
+        for (long i = 1; i <= steps; i++) {
+            hours.get(slot(currentHour + i, hoursRetained)).clear();
+        }
+        if (hour > currentHour) currentHour = hour;
+    }
+
+    private static int slot(long index, int size) {
+        return (int) Math.floorMod(index, (long) size);
+    }
+}
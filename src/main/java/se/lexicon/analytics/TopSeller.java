@@ -0,0 +1,35 @@
+package se.lexicon.analytics;
+
+/**
+ * One entry in a "top sellers" ranking: a product and how many units of it were sold
+ * inside the analytics window.
+ */
+public final class TopSeller {
+
+    private final int productId;
+    private final String productName;
+    private final long unitsSold;
+
+    public TopSeller(int productId, String productName, long unitsSold) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitsSold = unitsSold;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    @Override
+    public String toString() {
+        return "ID: " + productId + ", Name: \"" + productName + "\", Sold: " + unitsSold;
+    }
+}
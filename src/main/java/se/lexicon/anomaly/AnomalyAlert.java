@@ -0,0 +1,75 @@
+package se.lexicon.anomaly;
+
+/**
+ * A suspicious pattern of deposits detected by {@link CoinAnomalyDetector}.
+ */
+public final class AnomalyAlert {
+
+    /**
+     * What kind of pattern was detected.
+     */
+    public enum Reason {
+        /** Many rejected notes or coins in a short time: counterfeits or foreign coins being tried. */
+        REJECTED_BURST,
+        /** Repeated deposits returned as change without a purchase: coin fishing or note testing. */
+        CASH_CYCLING,
+        /** A session deposits denominations that are rare at this machine. */
+        UNUSUAL_NOTE_MIX
+    }
+
+    private final long machineId;
+    private final long sessionId;
+    private final Reason reason;
+    private final double score;
+    private final long timeMillis;
+    private final String detail;
+
+    AnomalyAlert(long machineId, long sessionId, Reason reason, double score, long timeMillis, String detail) {
+        this.machineId = machineId;
+        this.sessionId = sessionId;
+        this.reason = reason;
+        this.score = score;
+        this.timeMillis = timeMillis;
+        this.detail = detail;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns how far past its threshold the pattern is; 1.0 means exactly at the threshold.
+     *
+     * @return the score
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Returns a human-readable description of what was seen.
+     *
+     * @return the detail text
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AnomalyAlert{machine=%d, session=%d, %s, score=%.2f, %s}",
+                machineId, sessionId, reason, score, detail);
+    }
+}
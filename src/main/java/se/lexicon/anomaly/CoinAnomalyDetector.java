@@ -0,0 +1,303 @@
+package se.lexicon.anomaly;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+import se.lexicon.sketch.CountMinSketch;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Scores the deposits of one vending machine as they happen and raises an {@link AnomalyAlert}
+ * when they look like an attack.
+ * <p>
+ * Register an instance as a listener on the machine. Three patterns are scored:
+ * </p>
+ * <ul>
+ *   <li><b>Rejected bursts</b> – rejected notes or coins in the session, or decayed over the last
+ *   minute across sessions (attackers end the session between tries).</li>
+ *   <li><b>Cash cycling</b> – sessions that deposit money and take it all back as change without
+ *   buying anything, decayed over ten minutes. Short sessions weigh double.</li>
+ *   <li><b>Unusual note mix</b> – the average surprise ({@code -ln p}) of the session's
+ *   denominations under the machine's own denomination mix, learned with a one-day decay from
+ *   sessions that raised no alert. Scored once the baseline has seen {@value #MIN_BASELINE_INSERTS}
+ *   deposits and the session has made {@value #MIN_MIX_INSERTS}.</li>
+ * </ul>
+ * <p>
+ * Memory is constant: a few decayed counters, one counter per denomination and a small
+ * {@link CountMinSketch} of the amounts that were rejected. Each event costs a handful of
+ * arithmetic operations; the clock is read only when a session starts or ends or a coin is
+ * rejected, and logarithms are cached between baseline updates, so the coin path stays fast.
+ * Alerts are handed to the consumer on the machine's thread, as soon as the event that crossed
+ * a threshold is seen, at most once per reason and session. The consumer must be quick;
+ * hand the alert off to another thread if it needs I/O.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * CoinAnomalyDetector detector = new CoinAnomalyDetector(machineId, Clock.systemUTC(), alerts::offer);
+ * vm.addListener(detector);
+ * }</pre>
+ */
+public class CoinAnomalyDetector implements VendingMachineListener {
+
+    /** Rejected notes or coins that raise an alert, per session or within about a minute. */
+    public static final int DEFAULT_REJECTED_BURST = 3;
+
+    /** Deposit-and-return sessions (short ones count double) within about ten minutes that raise an alert. */
+    public static final double DEFAULT_CYCLING_THRESHOLD = 4;
+
+    /** Average surprise per deposit that raises an alert; 4.0 means denominations seen in under 2% of deposits. */
+    public static final double DEFAULT_MIX_SURPRISE = 4.0;
+
+    static final int MIN_BASELINE_INSERTS = 50;
+    static final int MIN_MIX_INSERTS = 3;
+
+    private static final long BURST_TAU_MILLIS = 60_000;
+    private static final long CYCLING_TAU_MILLIS = 10 * 60_000;
+    private static final long BASELINE_TAU_MILLIS = 24 * 60 * 60_000L;
+    private static final long SHORT_SESSION_MILLIS = 30_000;
+
+    private static final int[] DENOMINATIONS = VendingMachine.DENOMINATIONS;
+
+    private final long machineId;
+    private final Clock clock;
+    private final Consumer<AnomalyAlert> alerts;
+    private int rejectedBurst = DEFAULT_REJECTED_BURST;
+    private double cyclingThreshold = DEFAULT_CYCLING_THRESHOLD;
+    private double mixSurprise = DEFAULT_MIX_SURPRISE;
+
+    // Machine-wide state
+    private final DecayingCounter recentRejections = new DecayingCounter(BURST_TAU_MILLIS);
+    private final DecayingCounter cashCycles = new DecayingCounter(CYCLING_TAU_MILLIS);
+    private final double[] baseline = new double[DENOMINATIONS.length];
+    private double baselineTotal;
+    private long baselineInserts;
+    private long baselineUpdatedAt;
+    private final double[] surprise = new double[DENOMINATIONS.length];
+    private int surpriseKnown;
+    private final CountMinSketch rejectedAmounts = new CountMinSketch(4, 256, 8);
+    private long alertCount;
+
+    // State of the session that is currently open
+    private long sessionId = -1;
+    private long sessionStart;
+    private int sessionInserts;
+    private int sessionRejected;
+    private int sessionPurchases;
+    private int sessionScored;
+    private double sessionSurprise;
+    private double sessionScore;
+    private int sessionAlerts;
+    private final int[] sessionDenominations = new int[DENOMINATIONS.length];
+
+    /**
+     * Creates a detector with the default thresholds.
+     *
+     * @param machineId the ID of the machine, copied into alerts
+     * @param clock     the clock used to time events
+     * @param alerts    receives alerts on the machine's thread
+     */
+    public CoinAnomalyDetector(long machineId, Clock clock, Consumer<AnomalyAlert> alerts) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        if (alerts == null) throw new IllegalArgumentException("alerts must not be null");
+        this.machineId = machineId;
+        this.clock = clock;
+        this.alerts = alerts;
+        this.baselineUpdatedAt = clock.millis();
+    }
+
+    @Override
+    public synchronized void onCurrencyRejected(long sessionId, int amount) {
+        long now = clock.millis();
+        enterSession(sessionId);
+        sessionRejected++;
+        recentRejections.add(now, 1);
+        rejectedAmounts.add(amount, 1);
+
+        double recent = recentRejections.valueAt(now);
+        double score = Math.max(sessionRejected, recent) / rejectedBurst;
+        if (score >= 1) {
+            raise(AnomalyAlert.Reason.REJECTED_BURST, score, now, String.format(
+                    "%d rejected in this session, %.1f in the last minute, most tried amount %d",
+                    sessionRejected, recent, mostRejectedAmount()));
+        }
+        sessionScore = Math.max(sessionScore, score);
+    }
+
+    @Override
+    public synchronized void onCurrencyAdded(long sessionId, int amount, double balance) {
+        enterSession(sessionId);
+        int d = denominationIndex(amount);
+        if (d < 0) return;
+        sessionInserts++;
+        sessionDenominations[d]++;
+
+        if (baselineInserts >= MIN_BASELINE_INSERTS) {
+            sessionSurprise += surprise(d);
+            sessionScored++;
+            if (sessionScored >= MIN_MIX_INSERTS) {
+                double score = sessionSurprise / sessionScored / mixSurprise;
+                if (score >= 1) {
+                    raise(AnomalyAlert.Reason.UNUSUAL_NOTE_MIX, score, clock.millis(), String.format(
+                            "%d deposits averaging %.1f surprise, last %d SEK seen in %.1f%% of deposits",
+                            sessionScored, sessionSurprise / sessionScored, amount, 100 * Math.exp(-surprise(d))));
+                }
+                sessionScore = Math.max(sessionScore, score);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onPurchase(long sessionId, Product product, double price) {
+        enterSession(sessionId);
+        sessionPurchases++;
+    }
+
+    @Override
+    public synchronized void onSessionEnded(long sessionId, double change) {
+        long now = clock.millis();
+        enterSession(sessionId);
+        if (sessionInserts > 0 && sessionPurchases == 0 && change > 0) {
+            cashCycles.add(now, now - sessionStart < SHORT_SESSION_MILLIS ? 1.0 : 0.5);
+            double cycles = cashCycles.valueAt(now);
+            double score = cycles / cyclingThreshold;
+            if (score >= 1) {
+                raise(AnomalyAlert.Reason.CASH_CYCLING, score, now, String.format(
+                        "%.1f sessions returned their deposit unspent in the last ten minutes", cycles));
+            }
+            sessionScore = Math.max(sessionScore, score);
+        }
+        if (sessionAlerts == 0) {
+            learnBaseline(now);
+        }
+        this.sessionId = -1;
+    }
+
+    /**
+     * Returns the score of the current session: the highest of its pattern scores, where 1.0 is
+     * the alert threshold.
+     *
+     * @return the score, 0 if no session is open
+     */
+    public synchronized double getSessionScore() {
+        return sessionId < 0 ? 0 : sessionScore;
+    }
+
+    /**
+     * Returns how many alerts were raised.
+     *
+     * @return the alert count
+     */
+    public synchronized long getAlertCount() {
+        return alertCount;
+    }
+
+    /**
+     * Returns the approximate number of rejected notes or coins read as the given amount.
+     *
+     * @param amount the amount
+     * @return the estimated count (never less than the true count)
+     */
+    public synchronized long estimateRejected(int amount) {
+        return rejectedAmounts.estimate(amount);
+    }
+
+    /**
+     * Sets how many rejected notes or coins raise an alert.
+     *
+     * @param rejectedBurst the threshold, at least 1
+     */
+    public synchronized void setRejectedBurst(int rejectedBurst) {
+        if (rejectedBurst < 1) throw new IllegalArgumentException("Threshold must be at least 1");
+        this.rejectedBurst = rejectedBurst;
+    }
+
+    /**
+     * Sets how many decayed deposit-and-return sessions raise an alert.
+     *
+     * @param cyclingThreshold the threshold, positive
+     */
+    public synchronized void setCyclingThreshold(double cyclingThreshold) {
+        if (!(cyclingThreshold > 0)) throw new IllegalArgumentException("Threshold must be positive");
+        this.cyclingThreshold = cyclingThreshold;
+    }
+
+    /**
+     * Sets the average surprise per deposit that raises an alert.
+     *
+     * @param mixSurprise the threshold, positive
+     */
+    public synchronized void setMixSurprise(double mixSurprise) {
+        if (!(mixSurprise > 0)) throw new IllegalArgumentException("Threshold must be positive");
+        this.mixSurprise = mixSurprise;
+    }
+
+    /**
+     * Resets the session state when the first event of a new session arrives.
+     */
+    private void enterSession(long sessionId) {
+        if (this.sessionId == sessionId) return;
+        this.sessionId = sessionId;
+        sessionStart = clock.millis();
+        sessionInserts = 0;
+        sessionRejected = 0;
+        sessionPurchases = 0;
+        sessionScored = 0;
+        sessionSurprise = 0;
+        sessionScore = 0;
+        sessionAlerts = 0;
+        for (int i = 0; i < sessionDenominations.length; i++) {
+            sessionDenominations[i] = 0;
+        }
+    }
+
+    private void learnBaseline(long now) {
+        if (sessionInserts == 0) return;
+        double decay = Math.exp(-Math.max(0, now - baselineUpdatedAt) / (double) BASELINE_TAU_MILLIS);
+        baselineTotal = 0;
+        for (int i = 0; i < baseline.length; i++) {
+            baseline[i] = baseline[i] * decay + sessionDenominations[i];
+            baselineTotal += baseline[i];
+        }
+        baselineInserts += sessionInserts;
+        baselineUpdatedAt = now;
+        surpriseKnown = 0;
+    }
+
+    /**
+     * Returns {@code -ln p} of a denomination under the baseline. Computed when first needed
+     * after each baseline update, so a session usually costs one or two logarithms.
+     */
+    private double surprise(int d) {
+        if ((surpriseKnown & (1 << d)) == 0) {
+            // Decay scales every denomination alike, so the shares need no decay here;
+            // add-half smoothing keeps never-seen denominations finite
+            surprise[d] = -Math.log((baseline[d] + 0.5) / (baselineTotal + 0.5 * DENOMINATIONS.length));
+            surpriseKnown |= 1 << d;
+        }
+        return surprise[d];
+    }
+
+    private void raise(AnomalyAlert.Reason reason, double score, long now, String detail) {
+        int bit = 1 << reason.ordinal();
+        if ((sessionAlerts & bit) != 0) return;
+        sessionAlerts |= bit;
+        alertCount++;
+        alerts.accept(new AnomalyAlert(machineId, sessionId, reason, score, now, detail));
+    }
+
+    private long mostRejectedAmount() {
+        List<long[]> top = rejectedAmounts.heavyHitters();
+        return top.isEmpty() ? 0 : top.get(0)[0];
+    }
+
+    private static int denominationIndex(int amount) {
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            if (DENOMINATIONS[i] == amount) return i;
+        }
+        return -1;
+    }
+}
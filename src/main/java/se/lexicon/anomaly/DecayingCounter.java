@@ -0,0 +1,28 @@
+package se.lexicon.anomaly;
+
+/**
+ * An exponentially decayed event counter: each event adds its weight, and the total decays with
+ * time constant {@code tau}. A burst of {@code n} events within a small fraction of {@code tau}
+ * reads as about {@code n}; a steady rate {@code r} settles at {@code r * tau}.
+ * Not thread-safe.
+ */
+final class DecayingCounter {
+
+    private final double tauMillis;
+    private double value;
+    private long updatedAt;
+
+    DecayingCounter(long tauMillis) {
+        this.tauMillis = tauMillis;
+    }
+
+    void add(long now, double weight) {
+        value = valueAt(now) + weight;
+        updatedAt = Math.max(updatedAt, now);
+    }
+
+    double valueAt(long now) {
+        long elapsed = now - updatedAt;
+        return elapsed <= 0 ? value : value * Math.exp(-elapsed / tauMillis);
+    }
+}
@@ -0,0 +1,475 @@
+package se.lexicon.console;
+
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.CoolingLevel;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Interprets the text commands technicians type on a machine's service console or run from batch files.
+ *
+ * <h2>Commands</h2>
+ * <pre>
+ * ADD amount              insert a note or coin
+ * BUY id                  purchase a product
+ * END                     end the session
+ * SET id SIZE size        Snickers: small, medium, large, xl or extra large
+ * SET id COOLING level    mint drops: 1–5, or mild, smooth, strong, intense or extreme
+ * SET id SPICY yes|no     taco
+ * </pre>
+ * <p>
+ * One command per line. Keywords and values are case-insensitive; a line starting with {@code #}
+ * is a comment.
+ * </p>
+ * <p>
+ * Commands are parsed straight from the bytes of a {@link ByteBuffer}: keywords, sizes and cooling
+ * levels are matched against tables built once from the enums, and numbers are read digit by digit.
+ * Parsing allocates nothing and throws nothing. A bad command is reported as a {@link CommandResult}
+ * and counted; amounts and product IDs are checked first, so a bad command never reaches the machine.
+ * </p>
+ * <p>
+ * An interpreter keeps counters and a read buffer, so only one thread may use it at a time.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * CommandInterpreter console = new CommandInterpreter(vm);
+ * console.runBatch(Paths.get("service.txt"));
+ * if (console.getFailed() > 0) {
+ *     System.out.println(console.getLastFailure() + " on line " + console.getLastFailureLine());
+ * }
+ * }</pre>
+ */
+public class CommandInterpreter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Commands, by index in COMMANDS
+    private static final int ADD = 0;
+    private static final int BUY = 1;
+    private static final int END = 2;
+    private static final int SET = 3;
+    private static final byte[][] COMMANDS = keys("add", "buy", "end", "set");
+
+    // Attributes of SET, by index in ATTRIBUTES
+    private static final int SIZE = 0;
+    private static final int COOLING = 1;
+    private static final int SPICY = 2;
+    private static final byte[][] ATTRIBUTES = keys("size", "cooling", "spicy");
+
+    // Sizes by enum name and by label; SIZE_VALUES[i] is the size of SIZE_KEYS[i]
+    private static final byte[][] SIZE_KEYS;
+    private static final Size[] SIZE_VALUES;
+
+    // Cooling level labels; the level is the index + 1
+    private static final byte[][] COOLING_KEYS;
+
+    // Spicy flags; odd indexes mean spicy
+    private static final byte[][] SPICY_KEYS = keys("no", "yes", "false", "true", "off", "on");
+
+    // Accepted denominations, indexed by amount
+    private static final boolean[] DENOMINATIONS;
+
+    // ASCII lower case of every byte value
+    private static final byte[] LOWER = new byte[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            LOWER[b] = (byte) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+        }
+
+        Size[] sizes = Size.values();
+        SIZE_KEYS = new byte[sizes.length * 2][];
+        SIZE_VALUES = new Size[sizes.length * 2];
+        for (int i = 0; i < sizes.length; i++) {
+            SIZE_KEYS[2 * i] = key(sizes[i].name());
+            SIZE_KEYS[2 * i + 1] = key(sizes[i].getLabel());
+            SIZE_VALUES[2 * i] = sizes[i];
+            SIZE_VALUES[2 * i + 1] = sizes[i];
+        }
+
+        CoolingLevel[] levels = CoolingLevel.values();
+        COOLING_KEYS = new byte[levels.length][];
+        for (int i = 0; i < levels.length; i++) {
+            COOLING_KEYS[i] = key(levels[i].getLabel());
+        }
+
+        int largest = 0;
+        for (int d : VendingMachine.DENOMINATIONS) largest = Math.max(largest, d);
+        DENOMINATIONS = new boolean[largest + 1];
+        for (int d : VendingMachine.DENOMINATIONS) DENOMINATIONS[d] = true;
+    }
+
+    private final IVendingMachine machine;
+    private final IntFunction<? extends Product> products;
+
+    // Carries out SET, so the change is recorded and listeners hear of it; null to change products directly
+    private final VendingMachine catalog;
+
+    // Read buffer of runBatch, allocated on first use
+    private ByteBuffer buffer;
+
+    // The value of the last number parsed
+    private int number;
+
+    private long line;
+    private long executed;
+    private long failed;
+    private CommandResult lastFailure;
+    private long lastFailureLine;
+
+    /**
+     * Creates an interpreter for a machine.
+     *
+     * @param machine the machine that runs the commands
+     */
+    public CommandInterpreter(VendingMachine machine) {
+        this(machine, machine);
+    }
+
+    /**
+     * Creates an interpreter for a wrapped machine, e.g. one wrapped for tracing or admission control.
+     * {@code ADD}, {@code BUY} and {@code END} go to the wrapper; {@code SET} goes to the machine
+     * underneath, which records the catalog change and tells its listeners.
+     *
+     * @param machine the machine that runs the session commands
+     * @param catalog the machine whose products {@code SET} changes
+     */
+    public CommandInterpreter(IVendingMachine machine, VendingMachine catalog) {
+        this(machine, productsOf(catalog), catalog);
+    }
+
+    /**
+     * Creates an interpreter for any machine. {@code SET} changes the returned product directly, so
+     * no catalog change is recorded; prefer the other constructors when there is a {@link VendingMachine}.
+     *
+     * @param machine  the machine that runs the commands
+     * @param products returns the product with an ID, or null; {@code SET} changes the product it returns
+     */
+    public CommandInterpreter(IVendingMachine machine, IntFunction<? extends Product> products) {
+        this(machine, products, null);
+    }
+
+    private CommandInterpreter(IVendingMachine machine, IntFunction<? extends Product> products, VendingMachine catalog) {
+        if (machine == null || products == null) throw new IllegalArgumentException("machine and products must not be null");
+        this.machine = machine;
+        this.products = products;
+        this.catalog = catalog;
+    }
+
+    private static IntFunction<Product> productsOf(VendingMachine catalog) {
+        if (catalog == null) throw new IllegalArgumentException("catalog must not be null");
+        return catalog::getProduct;
+    }
+
+    /**
+     * Runs one command: the bytes from the buffer's position to its limit, optionally ending in a
+     * newline. The buffer's position is not changed.
+     *
+     * @param command the command
+     * @return the outcome
+     */
+    public CommandResult execute(ByteBuffer command) {
+        int end = command.limit();
+        if (end > command.position() && command.get(end - 1) == '\n') end--;
+        return executeLine(command, command.position(), end);
+    }
+
+    /**
+     * Runs every complete line in the buffer and moves its position past the last newline.
+     * An incomplete last line is left in the buffer, to be completed by the next read.
+     *
+     * @param commands the commands, one per line
+     * @return the number of lines read, including blank lines and comments
+     */
+    public int executeAll(ByteBuffer commands) {
+        int start = commands.position();
+        int limit = commands.limit();
+        int lines = 0;
+        for (int i = start; i < limit; i++) {
+            if (commands.get(i) == '\n') {
+                executeLine(commands, start, i);
+                start = i + 1;
+                lines++;
+            }
+        }
+        commands.position(start);
+        return lines;
+    }
+
+    /**
+     * Runs a batch file, one command per line. Failed commands are counted and the batch goes on.
+     * Lines longer than 64 KB are skipped and counted as {@link CommandResult#LINE_TOO_LONG}.
+     *
+     * @param file the batch file
+     * @return the number of commands run, including failed ones
+     * @throws IOException if the file can not be read
+     */
+    public long runBatch(Path file) throws IOException {
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long before = executed + failed;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = buffer;
+            in.clear();
+            boolean skipping = false;
+            while (true) {
+                boolean endOfFile = channel.read(in) < 0;
+                in.flip();
+                if (skipping) skipping = !skipLine(in);
+                if (!skipping) executeAll(in);
+                if (endOfFile) {
+                    // The last line may have no newline
+                    if (!skipping && in.hasRemaining()) executeLine(in, in.position(), in.limit());
+                    break;
+                }
+                if (!skipping && in.remaining() == in.capacity()) {
+                    // A full buffer without a newline
+                    line++;
+                    fail(CommandResult.LINE_TOO_LONG);
+                    in.position(in.limit());
+                    skipping = true;
+                }
+                in.compact();
+            }
+        }
+        return executed + failed - before;
+    }
+
+    /**
+     * Returns the number of commands carried out.
+     *
+     * @return the count
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the number of commands that failed.
+     *
+     * @return the count
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the outcome of the last failed command.
+     *
+     * @return the outcome, or null if no command has failed
+     */
+    public CommandResult getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the line number of the last failed command, counting every line this interpreter has
+     * read, including blank lines and comments.
+     *
+     * @return the line number, counted from 1, or 0 if no command has failed
+     */
+    public long getLastFailureLine() {
+        return lastFailureLine;
+    }
+
+    private CommandResult executeLine(ByteBuffer in, int start, int end) {
+        line++;
+        CommandResult result = interpret(in, start, end);
+        if (result == CommandResult.OK) executed++;
+        else if (result != CommandResult.BLANK) fail(result);
+        return result;
+    }
+
+    private void fail(CommandResult result) {
+        failed++;
+        lastFailure = result;
+        lastFailureLine = line;
+    }
+
+    private CommandResult interpret(ByteBuffer in, int start, int end) {
+        int i = skipSpaces(in, start, end);
+        if (i == end || in.get(i) == '#') return CommandResult.BLANK;
+
+        int wordEnd = wordEnd(in, i, end);
+        int command = lookup(COMMANDS, in, i, wordEnd);
+        i = skipSpaces(in, wordEnd, end);
+        switch (command) {
+            case ADD:
+                i = number(in, i, end);
+                if (i != end) return CommandResult.MALFORMED;
+                if (number <= 0 || number >= DENOMINATIONS.length || !DENOMINATIONS[number]) {
+                    return CommandResult.INVALID_AMOUNT;
+                }
+                machine.addCurrency(number);
+                return CommandResult.OK;
+            case BUY:
+                i = number(in, i, end);
+                if (i != end) return CommandResult.MALFORMED;
+                if (products.apply(number) == null) return CommandResult.UNKNOWN_PRODUCT;
+                return machine.request(number) != null ? CommandResult.OK : CommandResult.REJECTED;
+            case END:
+                if (i != end) return CommandResult.MALFORMED;
+                machine.endSession();
+                return CommandResult.OK;
+            case SET:
+                return set(in, i, end);
+            default:
+                return CommandResult.UNKNOWN_COMMAND;
+        }
+    }
+
+    private CommandResult set(ByteBuffer in, int i, int end) {
+        i = number(in, i, end);
+        if (i < 0) return CommandResult.MALFORMED;
+        int id = number;
+        int wordEnd = wordEnd(in, i, end);
+        int attribute = lookup(ATTRIBUTES, in, i, wordEnd);
+
+        // The value is the rest of the line, since labels may contain spaces ("extra large")
+        int from = skipSpaces(in, wordEnd, end);
+        int to = trimEnd(in, from, end);
+        if (wordEnd == i || from == to) return CommandResult.MALFORMED;
+
+        Product p = products.apply(id);
+        if (p == null) return CommandResult.UNKNOWN_PRODUCT;
+        switch (attribute) {
+            case SIZE: {
+                if (!(p instanceof Snickers)) return CommandResult.NOT_APPLICABLE;
+                int size = lookup(SIZE_KEYS, in, from, to);
+                if (size < 0) return CommandResult.INVALID_VALUE;
+                if (catalog != null) catalog.setSize(id, SIZE_VALUES[size]);
+                else ((Snickers) p).setSize(SIZE_VALUES[size]);
+                return CommandResult.OK;
+            }
+            case COOLING: {
+                if (!(p instanceof MintDrops)) return CommandResult.NOT_APPLICABLE;
+                int level = coolingLevel(in, from, to);
+                if (level < 0) return CommandResult.INVALID_VALUE;
+                if (catalog != null) catalog.setCoolingLevel(id, level);
+                else ((MintDrops) p).setCoolingLevel(level);
+                return CommandResult.OK;
+            }
+            case SPICY: {
+                if (!(p instanceof Taco)) return CommandResult.NOT_APPLICABLE;
+                int flag = lookup(SPICY_KEYS, in, from, to);
+                if (flag < 0) return CommandResult.INVALID_VALUE;
+                if (catalog != null) catalog.setSpicy(id, (flag & 1) != 0);
+                else ((Taco) p).setSpicy((flag & 1) != 0);
+                return CommandResult.OK;
+            }
+            default:
+                return CommandResult.NOT_APPLICABLE;
+        }
+    }
+
+    /**
+     * Returns the cooling level given as a number or a label, or -1 if it is neither.
+     */
+    private int coolingLevel(ByteBuffer in, int from, int to) {
+        if (parseInt(in, from, to)) {
+            return number >= 1 && number <= COOLING_KEYS.length ? number : -1;
+        }
+        int index = lookup(COOLING_KEYS, in, from, to);
+        return index < 0 ? -1 : index + 1;
+    }
+
+    /**
+     * Parses the number that starts at {@code i} into {@link #number}.
+     *
+     * @return the start of the next word, or -1 if there is no number
+     */
+    private int number(ByteBuffer in, int i, int end) {
+        int wordEnd = wordEnd(in, i, end);
+        if (!parseInt(in, i, wordEnd)) return -1;
+        return skipSpaces(in, wordEnd, end);
+    }
+
+    private boolean parseInt(ByteBuffer in, int from, int to) {
+        boolean negative = from < to && in.get(from) == '-';
+        if (negative) from++;
+        if (from == to || to - from > 10) return false;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = in.get(i) - '0';
+            if (digit < 0 || digit > 9) return false;
+            value = value * 10 + digit;
+        }
+        if (negative) value = -value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return false;
+        number = (int) value;
+        return true;
+    }
+
+    /**
+     * Returns the index of the key that the bytes spell, ignoring case, or -1.
+     */
+    private static int lookup(byte[][] keys, ByteBuffer in, int from, int to) {
+        int length = to - from;
+        for (int k = 0; k < keys.length; k++) {
+            byte[] key = keys[k];
+            if (key.length != length) continue;
+            int j = 0;
+            while (j < length && LOWER[in.get(from + j) & 0xFF] == key[j]) j++;
+            if (j == length) return k;
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static int skipSpaces(ByteBuffer in, int i, int end) {
+        while (i < end && isSpace(in.get(i))) i++;
+        return i;
+    }
+
+    private static int wordEnd(ByteBuffer in, int i, int end) {
+        while (i < end && !isSpace(in.get(i))) i++;
+        return i;
+    }
+
+    private static int trimEnd(ByteBuffer in, int start, int end) {
+        while (end > start && isSpace(in.get(end - 1))) end--;
+        return end;
+    }
+
+    /**
+     * Advances past the next newline.
+     *
+     * @return true if a newline was found
+     */
+    private static boolean skipLine(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                in.position(i + 1);
+                return true;
+            }
+        }
+        in.position(in.limit());
+        return false;
+    }
+
+    private static byte[][] keys(String... words) {
+        byte[][] keys = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) keys[i] = key(words[i]);
+        return keys;
+    }
+
+    private static byte[] key(String word) {
+        return word.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+    }
+}
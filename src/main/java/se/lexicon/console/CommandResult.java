@@ -0,0 +1,37 @@
+package se.lexicon.console;
+
+/**
+ * Outcome of one service console command, see {@link CommandInterpreter}.
+ */
+public enum CommandResult {
+
+    /** The command was carried out. */
+    OK,
+
+    /** A blank line or a {@code #} comment; nothing was done. */
+    BLANK,
+
+    /** The first word is not a known command. */
+    UNKNOWN_COMMAND,
+
+    /** Arguments are missing, extra or not numbers where numbers are expected. */
+    MALFORMED,
+
+    /** No product has the given ID. */
+    UNKNOWN_PRODUCT,
+
+    /** The attribute does not exist or does not apply to the product, e.g. a size for a taco. */
+    NOT_APPLICABLE,
+
+    /** The attribute value is not valid, e.g. an unknown size or a cooling level outside 1–5. */
+    INVALID_VALUE,
+
+    /** The amount is not an accepted denomination. */
+    INVALID_AMOUNT,
+
+    /** The machine refused the purchase: sold out or insufficient funds. */
+    REJECTED,
+
+    /** The line does not fit in the interpreter's buffer and was skipped. */
+    LINE_TOO_LONG
+}
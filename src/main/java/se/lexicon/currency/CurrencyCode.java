@@ -0,0 +1,59 @@
+package se.lexicon.currency;
+
+/**
+ * The currencies a vending machine can accept, each with the notes and coins it takes.
+ * <p>
+ * Denominations are given in minor units (öre, cent, øre), so amounts such as a 50 cent coin
+ * stay integers. All currencies here have 100 minor units per major unit.
+ * </p>
+ */
+public enum CurrencyCode {
+
+    /** Swedish krona, the pricing base: 1 kr coin up to the 1000 kr note. */
+    SEK(100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000),
+
+    /** Euro: 10 cent coin up to the 50 euro note. */
+    EUR(10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000),
+
+    /** Norwegian krone: 1 kr coin up to the 500 kr note. */
+    NOK(100, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000);
+
+    /** Minor units per major unit. */
+    public static final int MINOR_UNITS = 100;
+
+    private final int[] denominations;
+
+    CurrencyCode(int... denominations) {
+        this.denominations = denominations;
+    }
+
+    /**
+     * Returns the accepted notes and coins, smallest first.
+     *
+     * @return the denominations in minor units (a copy)
+     */
+    public int[] getDenominations() {
+        return denominations.clone();
+    }
+
+    /**
+     * Returns the position of a denomination in {@link #getDenominations()}.
+     *
+     * @param minorUnits the inserted amount in minor units
+     * @return the position, or -1 if the note or coin is not accepted
+     */
+    public int indexOf(int minorUnits) {
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] == minorUnits) return i;
+        }
+        return -1;
+    }
+
+    int denominationAt(int index) {
+        return denominations[index];
+    }
+
+    int denominationCount() {
+        return denominations.length;
+    }
+}
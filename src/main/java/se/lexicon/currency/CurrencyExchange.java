@@ -0,0 +1,93 @@
+package se.lexicon.currency;
+
+import se.lexicon.model.Product;
+
+import java.util.List;
+
+/**
+ * The exchange tables of one vending machine's catalog, replaced as a whole when rates change.
+ * <p>
+ * The current {@link ExchangeTable} is published through a single volatile reference, so a
+ * deposit or a rendered price always uses one consistent set of rates: either the old one or the
+ * new one, never a mix. {@link #updateRates(ExchangeRates)} builds the new tables before the swap,
+ * so readers never wait for it.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ExchangeRates rates = new ExchangeRates();
+ * rates.setRate(CurrencyCode.EUR, 11.48);
+ * CurrencyExchange exchange = new CurrencyExchange(products, rates);
+ * vendingMachine.setCurrencyExchange(exchange);
+ * vendingMachine.addCurrency(CurrencyCode.EUR, 200); // a 2 euro coin
+ * ...
+ * exchange.updateRates(todaysRates);
+ * }</pre>
+ */
+public class CurrencyExchange {
+
+    private final Product[] products;
+    private volatile ExchangeRates rates;
+    private volatile ExchangeTable table;
+
+    /**
+     * Builds the tables for a catalog.
+     *
+     * @param catalog the products, in the same order the vending machine holds them
+     * @param rates   the exchange rates
+     */
+    public CurrencyExchange(List<Product> catalog, ExchangeRates rates) {
+        if (catalog == null) throw new IllegalArgumentException("catalog must not be null");
+        if (rates == null) throw new IllegalArgumentException("rates must not be null");
+        this.products = catalog.toArray(new Product[0]);
+        this.table = new ExchangeTable(rates, products);
+        this.rates = rates;
+    }
+
+    /**
+     * Rebuilds the tables from new rates and swaps them in atomically.
+     * Also call this after product prices have changed, so the price labels are precomputed again.
+     *
+     * @param rates the new exchange rates
+     */
+    public synchronized void updateRates(ExchangeRates rates) {
+        if (rates == null) throw new IllegalArgumentException("rates must not be null");
+        this.table = new ExchangeTable(rates, products);
+        this.rates = rates;
+    }
+
+    /**
+     * Builds tables for another catalog with the rates last set here, e.g. after products were
+     * added or removed.
+     *
+     * @param catalog the products, in the same order the vending machine holds them
+     * @return the new tables
+     */
+    public synchronized CurrencyExchange forCatalog(List<Product> catalog) {
+        return new CurrencyExchange(catalog, rates);
+    }
+
+    /**
+     * Returns the tables currently in use. Read it once per operation and use that instance
+     * throughout, so the operation sees one set of rates.
+     *
+     * @return the current tables
+     */
+    public ExchangeTable current() {
+        return table;
+    }
+
+    /**
+     * Checks that the given catalog has the same products in the same order as the tables.
+     *
+     * @param catalog the catalog to compare against
+     * @return true if every position holds the same product
+     */
+    public boolean matches(List<Product> catalog) {
+        if (catalog.size() != products.length) return false;
+        for (int i = 0; i < products.length; i++) {
+            if (catalog.get(i).getId() != products[i].getId()) return false;
+        }
+        return true;
+    }
+}
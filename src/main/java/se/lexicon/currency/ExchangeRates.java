@@ -0,0 +1,66 @@
+package se.lexicon.currency;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Exchange rates to the SEK pricing base, as published by the operator.
+ * <p>
+ * A rate is the number of SEK one major unit of the currency is worth. SEK itself always has rate
+ * 1. A currency without a rate is not accepted. Pass the rates to {@link CurrencyExchange}, which
+ * turns them into fixed-point tables.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ExchangeRates rates = new ExchangeRates();
+ * rates.setRate(CurrencyCode.EUR, 11.48);
+ * rates.setRate(CurrencyCode.NOK, 0.98);
+ * }</pre>
+ */
+public class ExchangeRates {
+
+    private final Map<CurrencyCode, Double> rates = new EnumMap<>(CurrencyCode.class);
+
+    /**
+     * Creates rates that accept SEK only.
+     */
+    public ExchangeRates() {
+        rates.put(CurrencyCode.SEK, 1.0);
+    }
+
+    /**
+     * Sets the rate of a currency.
+     *
+     * @param currency   the currency
+     * @param sekPerUnit how many SEK one major unit is worth
+     * @throws IllegalArgumentException if the rate is not positive, or the currency is SEK and the rate is not 1
+     */
+    public void setRate(CurrencyCode currency, double sekPerUnit) {
+        if (currency == null) throw new IllegalArgumentException("currency must not be null");
+        if (!(sekPerUnit > 0) || Double.isInfinite(sekPerUnit)) throw new IllegalArgumentException("Rate must be positive");
+        if (currency == CurrencyCode.SEK && sekPerUnit != 1.0) throw new IllegalArgumentException("SEK is the pricing base; its rate is 1");
+        rates.put(currency, sekPerUnit);
+    }
+
+    /**
+     * Stops accepting a currency.
+     *
+     * @param currency the currency; SEK can not be removed
+     */
+    public void removeRate(CurrencyCode currency) {
+        if (currency == CurrencyCode.SEK) throw new IllegalArgumentException("SEK is always accepted");
+        rates.remove(currency);
+    }
+
+    /**
+     * Returns the rate of a currency.
+     *
+     * @param currency the currency
+     * @return SEK per major unit, or 0 if the currency is not accepted
+     */
+    public double getRate(CurrencyCode currency) {
+        Double rate = rates.get(currency);
+        return rate == null ? 0 : rate;
+    }
+}
@@ -0,0 +1,152 @@
+package se.lexicon.currency;
+
+import se.lexicon.model.Product;
+
+/**
+ * Immutable, precomputed conversion tables for one set of exchange rates and one catalog.
+ * <p>
+ * Rates are stored in fixed point as micro-öre per minor unit, so conversions are integer
+ * multiplications with no rounding drift. What a customer's note or coin is worth in öre is
+ * computed for every denomination up front, and so is the price label of every product in every
+ * accepted foreign currency. Inserting money and rendering a price are then table reads.
+ * </p>
+ * <p>
+ * Deposits are credited rounded down and prices are shown rounded up, in whole minor units, so
+ * a customer who inserts the shown price always has enough credit to buy the product.
+ * </p>
+ */
+public final class ExchangeTable {
+
+    /** Fixed-point scale of the rates: one öre is this many rate units. */
+    public static final long RATE_SCALE = 1_000_000;
+
+    private static final int CURRENCIES = CurrencyCode.values().length;
+
+    // Per currency: micro-öre per minor unit, or 0 if not accepted
+    private final long[] toSek = new long[CURRENCIES];
+    // Per currency and denomination index: the credit in öre
+    private final long[][] credits = new long[CURRENCIES][];
+    // Per currency and catalog position: the price label; null for SEK, which products render themselves
+    private final String[][] labels = new String[CURRENCIES][];
+    private final double[] basePrices;
+
+    ExchangeTable(ExchangeRates rates, Product[] products) {
+        this.basePrices = new double[products.length];
+        for (int i = 0; i < products.length; i++) {
+            basePrices[i] = products[i].getPrice();
+        }
+        for (CurrencyCode currency : CurrencyCode.values()) {
+            double rate = rates.getRate(currency);
+            if (rate == 0) continue;
+            int c = currency.ordinal();
+            // SEK per major unit = öre per minor unit
+            toSek[c] = Math.round(rate * RATE_SCALE);
+            credits[c] = new long[currency.denominationCount()];
+            for (int d = 0; d < credits[c].length; d++) {
+                credits[c][d] = currency.denominationAt(d) * toSek[c] / RATE_SCALE;
+            }
+            if (currency != CurrencyCode.SEK) {
+                labels[c] = new String[products.length];
+                for (int i = 0; i < products.length; i++) {
+                    labels[c][i] = format(priceIn(currency, basePrices[i]), currency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the currency has a rate.
+     *
+     * @param currency the currency
+     * @return true if notes and coins of the currency are accepted
+     */
+    public boolean accepts(CurrencyCode currency) {
+        return toSek[currency.ordinal()] != 0;
+    }
+
+    /**
+     * Returns what an inserted note or coin is worth, rounded down to whole öre.
+     *
+     * @param currency   the currency
+     * @param minorUnits the denomination in minor units
+     * @return the credit in öre, or -1 if the note or coin is not accepted
+     */
+    public long creditOre(CurrencyCode currency, int minorUnits) {
+        long[] table = credits[currency.ordinal()];
+        int d = table == null ? -1 : currency.indexOf(minorUnits);
+        return d < 0 ? -1 : table[d];
+    }
+
+    /**
+     * Converts a SEK price to the smallest amount of the currency whose credit covers it.
+     *
+     * @param currency the currency
+     * @param priceSek the price in SEK
+     * @return the price in minor units
+     * @throws IllegalArgumentException if the currency is not accepted
+     */
+    public long priceIn(CurrencyCode currency, double priceSek) {
+        long rate = rate(currency);
+        long ore = Math.round(priceSek * 100);
+        // Smallest m with floor(m * rate / scale) >= ore
+        return (ore * RATE_SCALE + rate - 1) / rate;
+    }
+
+    /**
+     * Converts SEK to the currency, rounded down, e.g. to pay out change.
+     *
+     * @param currency the currency
+     * @param amountSek the amount in SEK
+     * @return the amount in minor units
+     * @throws IllegalArgumentException if the currency is not accepted
+     */
+    public long fromSek(CurrencyCode currency, double amountSek) {
+        return Math.round(amountSek * 100) * RATE_SCALE / rate(currency);
+    }
+
+    /**
+     * Returns the price of a catalog entry in the currency, e.g. "1.75 EUR".
+     * When the price is the one the tables were built with, this is an array read; otherwise
+     * (e.g., a time-slotted price) the label is formatted on the spot.
+     *
+     * @param currency     a foreign currency
+     * @param catalogIndex the product's position in the catalog
+     * @param priceSek     the price being charged in SEK
+     * @return the price label
+     * @throws IllegalArgumentException if the currency is SEK or not accepted
+     */
+    public String priceLabel(CurrencyCode currency, int catalogIndex, double priceSek) {
+        String[] table = labels[currency.ordinal()];
+        if (table == null) throw new IllegalArgumentException("No price labels for " + currency);
+        return basePrices[catalogIndex] == priceSek ? table[catalogIndex] : format(priceIn(currency, priceSek), currency);
+    }
+
+    /**
+     * Formats an amount as major units with two decimals and the currency code, e.g. "1.75 EUR".
+     *
+     * @param minorUnits the amount in minor units
+     * @param currency   the currency
+     * @return the formatted amount
+     */
+    public static String format(long minorUnits, CurrencyCode currency) {
+        StringBuilder sb = new StringBuilder(12);
+        if (minorUnits < 0) {
+            sb.append('-');
+            minorUnits = -minorUnits;
+        }
+        long fraction = minorUnits % CurrencyCode.MINOR_UNITS;
+        sb.append(minorUnits / CurrencyCode.MINOR_UNITS).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction).append(' ').append(currency.name()).toString();
+    }
+
+    int size() {
+        return basePrices.length;
+    }
+
+    private long rate(CurrencyCode currency) {
+        long rate = toSek[currency.ordinal()];
+        if (rate == 0) throw new IllegalArgumentException(currency + " is not accepted");
+        return rate;
+    }
+}
@@ -0,0 +1,157 @@
+package se.lexicon.feed;
+
+/**
+ * One change published by a {@link ChangeFeed}: a new balance, a new price, a product that sold
+ * out or was restocked, or a product that was added to, changed in or removed from the catalog.
+ * Events are small deltas; a display applies them to the menu it already shows.
+ * <p>
+ * Events for the same {@linkplain #getKey() key} replace each other: a subscriber that falls
+ * behind receives only the latest balance, the latest price of a product, the latest stock
+ * state of a product and the latest menu entry of a product, not every step in between.
+ * </p>
+ */
+public final class ChangeEvent {
+
+    /**
+     * What changed.
+     */
+    public enum Kind {
+        /** The balance of the deposit pool; {@link #getValue()} is the new balance. */
+        BALANCE,
+        /** The price of a product; {@link #getValue()} is the new price. */
+        PRICE,
+        /** The last unit of a product was sold. */
+        SOLD_OUT,
+        /** Units of a product were loaded; {@link #getStock()} is the new stock level. */
+        RESTOCK,
+        /**
+         * A product was added, renamed or changed; {@link #getDescription()} is its menu entry and
+         * {@link #getValue()} its price. {@link #getStock()} is the stock level of an added product.
+         */
+        PRODUCT,
+        /** A product was removed from the catalog; it replaces every earlier event of the product. */
+        REMOVED
+    }
+
+    private static final long BALANCE_KEY = -1L;
+
+    private final long sequence;
+    private final Kind kind;
+    private final int productId;
+    private final double value;
+    private final int stock;
+    private final String description;
+
+    // Set by the feed when a newer event with the same key is published
+    volatile boolean superseded;
+
+    ChangeEvent(long sequence, Kind kind, int productId, double value, int stock, String description) {
+        this.sequence = sequence;
+        this.kind = kind;
+        this.productId = productId;
+        this.value = value;
+        this.stock = stock;
+        this.description = description;
+    }
+
+    /**
+     * Returns the position of this event in the feed; later events have higher numbers.
+     * Numbers are skipped where events were coalesced.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the product the change is about.
+     *
+     * @return the product ID, or -1 for {@link Kind#BALANCE}
+     */
+    public int getProductId() {
+        return productId;
+    }
+
+    /**
+     * Returns the new balance or price in SEK.
+     *
+     * @return the value, or 0 for stock and removal events
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the stock level after a restock, or of an added product.
+     *
+     * @return the units in the machine, 0 for {@link Kind#SOLD_OUT}, -1 for other events and changed products
+     */
+    public int getStock() {
+        return stock;
+    }
+
+    /**
+     * Returns the menu entry of an added or changed product.
+     *
+     * @return the description, or null for other events
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the coalescing key: one key for the balance, one per product for its price, one
+     * per product for its stock state (sold out and restock replace each other), and one per
+     * product for its menu entry (added, changed and removed replace each other).
+     *
+     * @return the key
+     */
+    public long getKey() {
+        switch (kind) {
+            case BALANCE:
+                return BALANCE_KEY;
+            case PRICE:
+                return priceKey(productId);
+            case SOLD_OUT:
+            case RESTOCK:
+                return stockKey(productId);
+            default:
+                return entryKey(productId);
+        }
+    }
+
+    static long priceKey(int productId) {
+        return (long) productId << 2;
+    }
+
+    static long stockKey(int productId) {
+        return ((long) productId << 2) | 1;
+    }
+
+    static long entryKey(int productId) {
+        return ((long) productId << 2) | 2;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case BALANCE:
+                return "#" + sequence + " BALANCE " + value;
+            case PRICE:
+                return "#" + sequence + " PRICE " + productId + " " + value;
+            case RESTOCK:
+                return "#" + sequence + " RESTOCK " + productId + " " + stock;
+            case PRODUCT:
+                return "#" + sequence + " PRODUCT " + productId + " " + description;
+            case REMOVED:
+                return "#" + sequence + " REMOVED " + productId;
+            default:
+                return "#" + sequence + " SOLD_OUT " + productId;
+        }
+    }
+}
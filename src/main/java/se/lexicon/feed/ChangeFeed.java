@@ -0,0 +1,348 @@
+package se.lexicon.feed;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes balance, price, sold-out and restock changes, and added, changed and removed products, of a
+ * {@link VendingMachine} to any number of subscribers, e.g. kiosk displays, so they do not have to
+ * poll {@code getBalance()} or {@code getProducts()}.
+ * <p>
+ * The feed is a {@link Flow.Publisher} and follows the Reactive Streams contract: nothing is
+ * delivered beyond what a subscriber has requested, and calls to one subscriber never overlap.
+ * Demand adds up, {@link Long#MAX_VALUE} means unbounded, and requesting a non-positive amount
+ * cancels the subscription with an {@link IllegalArgumentException} through {@code onError}. A subscriber that is slower than the machine
+ * is not sent a backlog of stale values. Of several changes to the same thing, e.g. the balance or
+ * the price of one product, it receives only the latest (see {@link ChangeEvent#getKey()}).
+ * </p>
+ *
+ * <h2>How it works</h2>
+ * <p>
+ * Every change is appended to one shared ring of recent events; the machine's thread does nothing
+ * per subscriber. Each subscriber has its own read position in the ring and skips events that a
+ * newer event with the same key has replaced. A subscriber that falls more than a ring's length
+ * behind catches up from the table of latest events instead, so it still receives each key's
+ * current value once. Deliveries run on the given executor, one task per subscriber at a time;
+ * {@code onSubscribe} is the first call of that task, so a {@code request} made inside it is only
+ * served after it has returned.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ChangeFeed feed = new ChangeFeed(executor);
+ * vm.addListener(feed);
+ * feed.subscribe(display);
+ * }</pre>
+ */
+public class ChangeFeed implements Flow.Publisher<ChangeEvent>, VendingMachineListener, AutoCloseable {
+
+    /** Number of recent events kept for subscribers that are behind. */
+    public static final int DEFAULT_BACKLOG = 1024;
+
+    private final Executor executor;
+
+    // Recent events by sequence number; event n is at index n & mask
+    private final AtomicReferenceArray<ChangeEvent> ring;
+    private final int mask;
+
+    // The latest event of every key, for subscribers that have fallen out of the ring
+    private final Map<Long, ChangeEvent> latest = new ConcurrentHashMap<>();
+
+    // Sequence number of the newest event; written under the feed's lock
+    private volatile long head;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // Set while a task that wakes up subscribers is queued
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a feed with a backlog of {@link #DEFAULT_BACKLOG} events.
+     *
+     * @param executor runs the deliveries to subscribers
+     */
+    public ChangeFeed(Executor executor) {
+        this(executor, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * Creates a feed.
+     *
+     * @param executor runs the deliveries to subscribers
+     * @param backlog  the number of recent events kept, rounded up to a power of two
+     */
+    public ChangeFeed(Executor executor, int backlog) {
+        if (executor == null) throw new IllegalArgumentException("executor must not be null");
+        if (backlog <= 0 || backlog > 1 << 30) throw new IllegalArgumentException("Backlog must be between 1 and 2^30");
+        int size = backlog == 1 ? 1 : Integer.highestOneBit(backlog - 1) << 1;
+        this.executor = executor;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds a subscriber. It receives the changes made after this call, as far as it requests them.
+     * {@code onSubscribe} is called on the executor; subscribing to a closed feed completes the
+     * subscriber right after it.
+     *
+     * @param subscriber the subscriber
+     * @throws NullPointerException if the subscriber is null (Reactive Streams rule 1.9)
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber must not be null");
+        Subscription subscription = new Subscription(subscriber, head);
+        subscriptions.add(subscription);
+        subscription.signal();
+    }
+
+    /**
+     * Returns the number of subscribers that have not cancelled.
+     *
+     * @return the subscriber count
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the sequence number of the newest event.
+     *
+     * @return the sequence number, 0 before the first event
+     */
+    public long getSequence() {
+        return head;
+    }
+
+    /**
+     * Closes the feed. Subscribers receive the events already published, as far as they request
+     * them, and then {@link Flow.Subscriber#onComplete()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatch();
+    }
+
+    @Override
+    public void onBalanceChanged(long sessionId, double balance) {
+        publish(ChangeEvent.Kind.BALANCE, -1, balance, -1, null);
+    }
+
+    @Override
+    public void onPriceChanged(int productId, double price) {
+        publish(ChangeEvent.Kind.PRICE, productId, price, -1, null);
+    }
+
+    @Override
+    public void onSoldOut(int productId) {
+        publish(ChangeEvent.Kind.SOLD_OUT, productId, 0, 0, null);
+    }
+
+    @Override
+    public void onRestocked(int productId, int stock) {
+        publish(ChangeEvent.Kind.RESTOCK, productId, 0, stock, null);
+    }
+
+    @Override
+    public void onProductAdded(Product product, double price, int stock) {
+        publish(ChangeEvent.Kind.PRODUCT, product.getId(), price, stock, product.examine(product.priceLabel(price)));
+    }
+
+    @Override
+    public void onProductChanged(Product product, double price) {
+        publish(ChangeEvent.Kind.PRODUCT, product.getId(), price, -1, product.examine(product.priceLabel(price)));
+    }
+
+    @Override
+    public void onProductRemoved(int productId) {
+        publish(ChangeEvent.Kind.REMOVED, productId, 0, -1, null);
+    }
+
+    private void publish(ChangeEvent.Kind kind, int productId, double value, int stock, String description) {
+        if (closed) return;
+        synchronized (this) {
+            long sequence = head + 1;
+            ChangeEvent event = new ChangeEvent(sequence, kind, productId, value, stock, description);
+            ChangeEvent previous = latest.put(event.getKey(), event);
+            if (previous != null) previous.superseded = true;
+            if (kind == ChangeEvent.Kind.REMOVED) {
+                // Price and stock of a removed product are of no use to anyone
+                supersede(ChangeEvent.priceKey(productId));
+                supersede(ChangeEvent.stockKey(productId));
+            }
+            ring.set((int) (sequence & mask), event);
+            head = sequence;
+        }
+        dispatch();
+    }
+
+    private void supersede(long key) {
+        ChangeEvent previous = latest.remove(key);
+        if (previous != null) previous.superseded = true;
+    }
+
+    /**
+     * Wakes up the subscribers on the executor, so the publishing thread (which holds the
+     * machine's lock) does not loop over them.
+     */
+    private void dispatch() {
+        if (dispatchPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                dispatchPending.set(false);
+                for (Subscription subscription : subscriptions) {
+                    subscription.signalIfReady();
+                }
+            });
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ChangeEvent> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        // Sequence number of the last event looked at; only written by the delivery task
+        private volatile long cursor;
+
+        // While catching up from the latest table: the events still to check, and the head at the start
+        private Iterator<ChangeEvent> catchUp;
+        private long catchUpEnd;
+
+        // Set once onSubscribe has been called; only used by the delivery task
+        private boolean subscribed;
+        private boolean done;
+
+        Subscription(Flow.Subscriber<? super ChangeEvent> subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " events; must be positive");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signalIfReady() {
+            if ((requested.get() > 0 && cursor != head) || closed) signal();
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Calls onSubscribe the first time, then delivers events until the demand is used up or
+         * nothing is left. Only one drain runs at a time; signals that arrive meanwhile, e.g. a
+         * request from inside onSubscribe, make it loop once more.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                try {
+                    if (!subscribed) {
+                        subscribed = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    deliver();
+                } catch (RuntimeException e) {
+                    // A subscriber must not throw; treat it as cancelled (Reactive Streams rule 2.13)
+                    cancel();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            if (done || cancelled) return;
+            if (error != null) {
+                done = true;
+                cancel();
+                subscriber.onError(error);
+                return;
+            }
+            long r = requested.get();
+            long emitted = 0;
+            while (emitted != r && !cancelled) {
+                ChangeEvent event = next();
+                if (event == null) break;
+                subscriber.onNext(event);
+                emitted++;
+            }
+            if (emitted != 0 && r != Long.MAX_VALUE) requested.addAndGet(-emitted);
+            if (closed && !cancelled && catchUp == null && cursor == head) {
+                done = true;
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * Returns the next event to deliver, skipping replaced ones, or null if there is none yet.
+         */
+        private ChangeEvent next() {
+            while (true) {
+                if (catchUp != null) {
+                    while (catchUp.hasNext()) {
+                        ChangeEvent event = catchUp.next();
+                        // Later events are still in the ring and will be read from there
+                        if (event.getSequence() > cursor && event.getSequence() <= catchUpEnd) return event;
+                    }
+                    cursor = catchUpEnd;
+                    catchUp = null;
+                }
+                if (cursor == head) return null;
+                long sequence = cursor + 1;
+                ChangeEvent event = ring.get((int) (sequence & mask));
+                if (event == null || event.getSequence() != sequence) {
+                    // Overwritten: this subscriber is more than a ring behind
+                    catchUpEnd = head;
+                    // In publishing order, so e.g. a new price is not followed by an older menu entry
+                    catchUp = latest.values().stream()
+                            .sorted(Comparator.comparingLong(ChangeEvent::getSequence))
+                            .iterator();
+                    continue;
+                }
+                cursor = sequence;
+                if (!event.superseded) return event;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package se.lexicon.fleet;
+
+import java.util.Locale;
+
+/**
+ * Forecast for one product in one machine: how fast it sells, when it runs out,
+ * and how many units a technician should bring on the next visit.
+ */
+public final class DepletionForecast {
+
+    private final long machineId;
+    private final String route;
+    private final int productId;
+    private final int stock;
+    private final double unitsPerHour;
+    private final int restockQuantity;
+
+    public DepletionForecast(long machineId, String route, int productId, int stock,
+                             double unitsPerHour, int restockQuantity) {
+        this.machineId = machineId;
+        this.route = route;
+        this.productId = productId;
+        this.stock = stock;
+        this.unitsPerHour = unitsPerHour;
+        this.restockQuantity = restockQuantity;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public double getUnitsPerHour() {
+        return unitsPerHour;
+    }
+
+    /**
+     * Returns the forecast number of hours until the product is sold out.
+     *
+     * @return hours until empty; {@code Double.POSITIVE_INFINITY} if it is not selling
+     */
+    public double getHoursUntilEmpty() {
+        return unitsPerHour > 0 ? stock / unitsPerHour : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of units needed to fill the slot at the planned visit.
+     *
+     * @return units to bring, 0 if no restock is needed
+     */
+    public int getRestockQuantity() {
+        return restockQuantity;
+    }
+
+    @Override
+    public String toString() {
+        return "Machine: " + machineId
+                + ", Route: " + route
+                + ", Product ID: " + productId
+                + ", Stock: " + stock
+                + ", Rate: " + String.format(Locale.US, "%.2f", unitsPerHour) + "/h"
+                + ", Restock: " + restockQuantity;
+    }
+}
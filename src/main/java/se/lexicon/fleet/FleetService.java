@@ -0,0 +1,193 @@
+package se.lexicon.fleet;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Holds a fleet of vending machines and plans restocking for them.
+ * <p>
+ * Each registered machine gets a {@link SalesRateTracker}, so the service always knows how
+ * fast every product is selling. {@link #planRestock(double)} turns those rates and the
+ * current stock levels into per-route {@link PickList}s. The work is split per machine
+ * with a parallel stream, so it scales across all cores of the planning host.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * FleetService fleet = new FleetService(Clock.systemUTC(), 6);
+ * fleet.register(1001, "Central", vm, 12);
+ * ...
+ * Map<String, PickList> plan = fleet.planRestock(24); // what to bring on tomorrow's visits
+ * }</pre>
+ */
+public class FleetService {
+
+    /** One machine in the fleet and what the planner needs to know about it. */
+    private static final class FleetMachine {
+        final long machineId;
+        final String route;
+        final VendingMachine machine;
+        final SalesRateTracker rates;
+        final int slotCapacity;
+
+        FleetMachine(long machineId, String route, VendingMachine machine, SalesRateTracker rates, int slotCapacity) {
+            this.machineId = machineId;
+            this.route = route;
+            this.machine = machine;
+            this.rates = rates;
+            this.slotCapacity = slotCapacity;
+        }
+    }
+
+    // A slot is only topped up when less than this share of it is expected to be left at the visit
+    private static final double REORDER_FRACTION = 0.5;
+
+    private static final Comparator<DepletionForecast> PICK_ORDER = Comparator
+            .comparingLong(DepletionForecast::getMachineId)
+            .thenComparingInt(DepletionForecast::getProductId);
+
+    private final Clock clock;
+    private final double rateTauHours;
+    private final ConcurrentMap<Long, FleetMachine> machines = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty fleet.
+     *
+     * @param clock        the clock used by the sales rate trackers
+     * @param rateTauHours how many hours of recent sales the rate estimate mostly reflects
+     */
+    public FleetService(Clock clock, double rateTauHours) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        if (!(rateTauHours > 0)) throw new IllegalArgumentException("rateTauHours must be positive");
+        this.clock = clock;
+        this.rateTauHours = rateTauHours;
+    }
+
+    /**
+     * Adds a machine to the fleet and starts tracking its sales.
+     *
+     * @param machineId    a fleet-wide unique machine ID
+     * @param route        the service route the machine belongs to
+     * @param machine      the machine
+     * @param slotCapacity how many units fit in one product slot
+     * @return the sales rate tracker attached to the machine
+     * @throws IllegalArgumentException if the ID is already registered
+     */
+    public SalesRateTracker register(long machineId, String route, VendingMachine machine, int slotCapacity) {
+        if (route == null || route.trim().isEmpty()) throw new IllegalArgumentException("Route can not be null or blank");
+        if (machine == null) throw new IllegalArgumentException("machine must not be null");
+        if (slotCapacity <= 0) throw new IllegalArgumentException("Slot capacity must be positive");
+
+        SalesRateTracker rates = new SalesRateTracker(clock, rateTauHours);
+        if (machines.putIfAbsent(machineId, new FleetMachine(machineId, route, machine, rates, slotCapacity)) != null) {
+            throw new IllegalArgumentException("Machine already registered: " + machineId);
+        }
+        machine.addListener(rates);
+        return rates;
+    }
+
+    /**
+     * Removes a machine from the fleet.
+     *
+     * @param machineId the machine ID
+     */
+    public void unregister(long machineId) {
+        FleetMachine m = machines.remove(machineId);
+        if (m != null) {
+            m.machine.removeListener(m.rates);
+        }
+    }
+
+    public int size() {
+        return machines.size();
+    }
+
+    /**
+     * Forecasts every product with limited stock in one machine.
+     *
+     * @param machineId    the machine ID
+     * @param horizonHours hours until the next visit
+     * @return one forecast per product; empty if the machine is unknown
+     */
+    public List<DepletionForecast> forecast(long machineId, double horizonHours) {
+        FleetMachine m = machines.get(machineId);
+        return m == null ? new ArrayList<>() : forecast(m, horizonHours);
+    }
+
+    /**
+     * Plans the next visit of every route using the common fork/join pool.
+     *
+     * @param horizonHours hours until the next visit
+     * @return pick lists keyed by route, sorted by route name
+     */
+    public Map<String, PickList> planRestock(double horizonHours) {
+        return planRestock(horizonHours, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plans the next visit of every route using the given fork/join pool.
+     * Useful to cap the number of cores used, or to measure scaling.
+     *
+     * @param horizonHours hours until the next visit
+     * @param pool         the pool that runs the parallel stream
+     * @return pick lists keyed by route, sorted by route name
+     */
+    public Map<String, PickList> planRestock(double horizonHours, ForkJoinPool pool) {
+        if (horizonHours < 0) throw new IllegalArgumentException("Horizon can not be negative");
+        // A parallel stream started from inside a pool task runs on that pool
+        return pool.submit(() -> buildPlan(horizonHours)).join();
+    }
+
+    private Map<String, PickList> buildPlan(double horizonHours) {
+        // Forecast every machine in parallel and keep only what needs units, grouped per route
+        ConcurrentMap<String, List<DepletionForecast>> byRoute = machines.values().parallelStream()
+                .flatMap(m -> forecast(m, horizonHours).stream())
+                .filter(f -> f.getRestockQuantity() > 0)
+                .collect(Collectors.groupingByConcurrent(DepletionForecast::getRoute));
+
+        // Sort and total each route in parallel as well; routes are independent
+        Map<String, PickList> plan = byRoute.entrySet().parallelStream()
+                .map(e -> toPickList(e.getKey(), e.getValue()))
+                .collect(Collectors.toMap(PickList::getRoute, p -> p));
+        return new TreeMap<>(plan);
+    }
+
+    private static PickList toPickList(String route, List<DepletionForecast> lines) {
+        List<DepletionForecast> sorted = new ArrayList<>(lines);
+        sorted.sort(PICK_ORDER);
+        Map<Integer, Integer> totals = new TreeMap<>();
+        for (DepletionForecast f : sorted) {
+            totals.merge(f.getProductId(), f.getRestockQuantity(), Integer::sum);
+        }
+        return new PickList(route, sorted, totals);
+    }
+
+    private static List<DepletionForecast> forecast(FleetMachine m, double horizonHours) {
+        List<Product> catalog = m.machine.getCatalog();
+        List<DepletionForecast> result = new ArrayList<>(catalog.size());
+        for (Product p : catalog) {
+            int stock = m.machine.getStock(p.getId());
+            if (stock == VendingMachine.UNLIMITED_STOCK) continue;
+
+            double rate = m.rates.unitsPerHour(p.getId());
+            // Expected units left when the technician arrives; if that is low, fill the slot up again
+            double projected = Math.max(0, stock - rate * horizonHours);
+            int quantity = projected < m.slotCapacity * REORDER_FRACTION
+                    ? (int) Math.ceil(m.slotCapacity - projected)
+                    : 0;
+            result.add(new DepletionForecast(m.machineId, m.route, p.getId(), stock, rate, quantity));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package se.lexicon.fleet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one route's technician has to load and where to put it.
+ * <p>
+ * {@link #getLines()} lists every machine/product that needs units, sorted by machine
+ * and product; {@link #getTotalsByProduct()} sums them per product for loading the van.
+ * </p>
+ */
+public final class PickList {
+
+    private final String route;
+    private final List<DepletionForecast> lines;
+    private final Map<Integer, Integer> totalsByProduct;
+
+    public PickList(String route, List<DepletionForecast> lines, Map<Integer, Integer> totalsByProduct) {
+        this.route = route;
+        this.lines = Collections.unmodifiableList(lines);
+        this.totalsByProduct = Collections.unmodifiableMap(totalsByProduct);
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public List<DepletionForecast> getLines() {
+        return lines;
+    }
+
+    public Map<Integer, Integer> getTotalsByProduct() {
+        return totalsByProduct;
+    }
+
+    @Override
+    public String toString() {
+        return "Route: " + route + ", Stops: " + lines.size() + ", Totals: " + totalsByProduct;
+    }
+}
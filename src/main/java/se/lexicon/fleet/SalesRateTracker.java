@@ -0,0 +1,75 @@
+package se.lexicon.fleet;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachineListener;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the recent sales rate (units per hour) of each product in one machine.
+ * <p>
+ * Every product has an exponentially decayed sale counter: each sale adds one, and the
+ * value decays with time constant {@code tau}. For a steady rate {@code r} the counter
+ * settles at {@code r * tau}, so dividing by {@code tau} gives the rate. Recent sales
+ * therefore weigh more than old ones, and only two numbers are kept per product.
+ * </p>
+ */
+public class SalesRateTracker implements VendingMachineListener {
+
+    private final Clock clock;
+    private final double tauMillis;
+
+    // productId -> {decayed count, time of last update}
+    private final Map<Integer, double[]> counters = new HashMap<>();
+
+    /**
+     * Creates a tracker.
+     *
+     * @param clock    the clock used to timestamp sales
+     * @param tauHours the decay time constant in hours (how far back "recent" reaches)
+     */
+    public SalesRateTracker(Clock clock, double tauHours) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        if (!(tauHours > 0)) throw new IllegalArgumentException("tauHours must be positive");
+        this.clock = clock;
+        this.tauMillis = tauHours * TimeUnit.HOURS.toMillis(1);
+    }
+
+    @Override
+    public void onPurchase(long sessionId, Product product, double price) {
+        recordSale(product.getId(), 1);
+    }
+
+    /**
+     * Records sold units of a product at the current time.
+     *
+     * @param productId the product ID
+     * @param units     the number of units sold
+     */
+    public synchronized void recordSale(int productId, int units) {
+        long now = clock.millis();
+        double[] c = counters.computeIfAbsent(productId, k -> new double[]{0, now});
+        c[0] = decayed(c, now) + units;
+        c[1] = now;
+    }
+
+    /**
+     * Returns the estimated current sales rate of a product.
+     *
+     * @param productId the product ID
+     * @return units per hour, 0 if the product has not sold recently
+     */
+    public synchronized double unitsPerHour(int productId) {
+        double[] c = counters.get(productId);
+        if (c == null) return 0;
+        return decayed(c, clock.millis()) * TimeUnit.HOURS.toMillis(1) / tauMillis;
+    }
+
+    private double decayed(double[] counter, long now) {
+        double elapsed = Math.max(0, now - counter[1]);
+        return counter[0] * Math.exp(-elapsed / tauMillis);
+    }
+}
@@ -0,0 +1,58 @@
+package se.lexicon.input;
+
+/**
+ * One input from a hardware device: a coin, a key press, the change button.
+ * <p>
+ * Events are preallocated in an {@link InputRing} and reused; they are filled in by the device
+ * thread and read by the pipeline's consumer thread, and must not be kept after handling.
+ * </p>
+ */
+public final class InputEvent {
+
+    /**
+     * What the customer did.
+     */
+    public enum Type {
+        /** A coin or note was accepted; the value is the denomination in SEK. */
+        CURRENCY,
+        /** A product was selected on the keypad; the value is the product ID. */
+        SELECT,
+        /** The change button was pressed; the value is unused. */
+        RETURN_CHANGE
+    }
+
+    private Type type;
+    private int value;
+    private long timestampNanos;
+
+    InputEvent() {
+    }
+
+    void set(Type type, int value, long timestampNanos) {
+        this.type = type;
+        this.value = value;
+        this.timestampNanos = timestampNanos;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Returns when the device published the event, as a {@link System#nanoTime()} value.
+     *
+     * @return the publish time
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Type: " + type + ", Value: " + value;
+    }
+}
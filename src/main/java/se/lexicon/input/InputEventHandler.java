@@ -0,0 +1,16 @@
+package se.lexicon.input;
+
+/**
+ * Receives events on the pipeline's consumer thread.
+ */
+@FunctionalInterface
+public interface InputEventHandler {
+
+    /**
+     * Handles one event. The event object is reused after this method returns.
+     *
+     * @param source the ring (device) the event came from
+     * @param event  the event
+     */
+    void onEvent(InputRing source, InputEvent event);
+}
@@ -0,0 +1,188 @@
+package se.lexicon.input;
+
+import se.lexicon.model.VendingMachine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds events from hardware devices into a vending machine on a single thread.
+ * <p>
+ * Every device (coin acceptor, keypad, ...) publishes to its own {@link InputRing} from its own
+ * thread. One consumer thread visits the rings in turn, takes up to a batch of events from each,
+ * and applies them to the machine in order. Devices therefore never call the machine directly
+ * and never race each other, and events from one device are applied in the order they happened.
+ * </p>
+ * <p>
+ * Nothing on the input path allocates: events are preallocated per ring and reused. When all
+ * rings are empty the consumer spins briefly, then yields, then parks for a short time.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * InputPipeline pipeline = new InputPipeline(vm, 64);
+ * InputRing coins = pipeline.register("coin-acceptor", 256);
+ * InputRing keypad = pipeline.register("keypad", 64);
+ * pipeline.start();
+ *
+ * // on the coin acceptor's thread
+ * coins.publish(InputEvent.Type.CURRENCY, 20);
+ * // on the keypad's thread
+ * keypad.publish(InputEvent.Type.SELECT, 4);
+ * }</pre>
+ */
+public class InputPipeline implements AutoCloseable {
+
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int YIELDS_BEFORE_PARK = 10;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final VendingMachine machine;
+    private final int maxBatch;
+    private final InputEventHandler applier = this::apply;
+
+    // Copied on registration so the consumer can iterate without locking
+    private volatile InputRing[] rings = new InputRing[0];
+
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running;
+    private Thread consumer;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param machine  the machine the events are applied to
+     * @param maxBatch the maximum number of events taken from one ring before moving to the next
+     */
+    public InputPipeline(VendingMachine machine, int maxBatch) {
+        if (machine == null) throw new IllegalArgumentException("machine must not be null");
+        if (maxBatch <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.machine = machine;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Adds a device. Each device gets its own ring, to be published to from one thread only.
+     *
+     * @param name     a name for the device, for diagnostics
+     * @param capacity the number of events the ring holds (a power of two)
+     * @return the ring the device publishes to
+     */
+    public synchronized InputRing register(String name, int capacity) {
+        InputRing ring = new InputRing(name, capacity);
+        InputRing[] current = rings;
+        InputRing[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = ring;
+        rings = grown;
+        return ring;
+    }
+
+    /**
+     * Starts the consumer thread.
+     *
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start() {
+        if (consumer != null) throw new IllegalStateException("Pipeline already started");
+        running = true;
+        consumer = new Thread(this::run, "input-pipeline");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    private void run() {
+        int idle = 0;
+        while (running) {
+            if (drainAll() > 0) {
+                idle = 0;
+            } else {
+                idle++;
+                if (idle > SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (idle > SPINS_BEFORE_YIELD) {
+                    Thread.yield();
+                }
+            }
+        }
+        // Apply what was published before close()
+        while (drainAll() > 0) {
+            // keep draining
+        }
+    }
+
+    /**
+     * Takes one batch from every ring.
+     *
+     * @return the number of events applied
+     */
+    int drainAll() {
+        int total = 0;
+        for (InputRing ring : rings) {
+            total += ring.drain(applier, maxBatch);
+        }
+        return total;
+    }
+
+    private void apply(InputRing source, InputEvent event) {
+        try {
+            switch (event.getType()) {
+                case CURRENCY:
+                    machine.addCurrency(event.getValue());
+                    break;
+                case SELECT:
+                    machine.request(event.getValue());
+                    break;
+                case RETURN_CHANGE:
+                    machine.endSession();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type: " + event.getType());
+            }
+            applied.incrementAndGet();
+        } catch (RuntimeException e) {
+            // One bad event must not stop the machine from taking input
+            failed.incrementAndGet();
+            System.out.println("Input event failed from " + source.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns how many events were applied to the machine.
+     *
+     * @return the applied count
+     */
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * Returns how many events failed with an exception.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Stops the consumer after it has applied every event already published.
+     * If the calling thread is interrupted while waiting, it stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = consumer;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
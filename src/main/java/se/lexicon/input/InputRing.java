@@ -0,0 +1,130 @@
+package se.lexicon.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer, single-consumer queue of {@link InputEvent}s, one per device.
+ * <p>
+ * All events are created up front and reused, so publishing does not allocate. The producer
+ * and the consumer each own a sequence counter; neither takes a lock, and each only reads the
+ * other's counter to see how far it may go. The counters are padded so they do not share a
+ * cache line.
+ * </p>
+ * <p>
+ * Only one thread may publish to a ring: give every device its own ring through
+ * {@link InputPipeline#register(String, int)}.
+ * </p>
+ */
+public final class InputRing {
+
+    private final String name;
+    private final InputEvent[] events;
+    private final int mask;
+
+    // Next sequence the producer writes, and next sequence the consumer reads
+    private final PaddedSequence published = new PaddedSequence();
+    private final PaddedSequence consumed = new PaddedSequence();
+
+    // Producer-local copy of the consumer sequence, refreshed only when the ring looks full
+    private long cachedConsumed;
+
+    InputRing(String name, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, at least 2: " + capacity);
+        }
+        this.name = name;
+        this.events = new InputEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new InputEvent();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Publishes an event if there is room.
+     *
+     * @param type  the event type
+     * @param value the denomination or product ID
+     * @return true if published, false if the ring is full
+     */
+    public boolean tryPublish(InputEvent.Type type, int value) {
+        long sequence = published.get();
+        if (sequence - cachedConsumed >= events.length) {
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed >= events.length) {
+                return false;
+            }
+        }
+        events[(int) sequence & mask].set(type, value, System.nanoTime());
+        // Ordered store: the event fields become visible before the new sequence does
+        published.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Publishes an event, waiting for room if the consumer has fallen behind.
+     *
+     * @param type  the event type
+     * @param value the denomination or product ID
+     */
+    public void publish(InputEvent.Type type, int value) {
+        while (!tryPublish(type, value)) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    /**
+     * Hands up to {@code maxBatch} waiting events to the handler and then releases their slots
+     * in one step. Called by the consumer thread only; the handler must not throw.
+     *
+     * @return the number of events handled
+     */
+    int drain(InputEventHandler handler, int maxBatch) {
+        long next = consumed.get();
+        long available = published.get() - next;
+        if (available == 0) return 0;
+        int batch = (int) Math.min(available, maxBatch);
+        for (int i = 0; i < batch; i++) {
+            handler.onEvent(this, events[(int) (next + i) & mask]);
+        }
+        consumed.lazySet(next + batch);
+        return batch;
+    }
+
+    /**
+     * Returns the device name given at registration.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns how many slots the ring has.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Returns how many events are waiting to be handled.
+     *
+     * @return the backlog
+     */
+    public int getBacklog() {
+        return (int) (published.get() - consumed.get());
+    }
+
+    /**
+     * Sequence counter surrounded by unused fields so it sits alone on its cache line.
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedSequence extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
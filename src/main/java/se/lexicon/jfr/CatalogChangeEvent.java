@@ -0,0 +1,45 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a change to a machine's catalog: restocking, a new price, new price tables,
+ * or an added or removed product.
+ */
+@Name(CatalogChangeEvent.NAME)
+@Label("Catalog Change")
+@Category("Vending Machine")
+@Description("Stock was loaded, a price was changed, price tables were replaced or a product was added, changed or removed")
+public class CatalogChangeEvent extends VendingEvent {
+
+    public static final String NAME = "se.lexicon.CatalogChange";
+
+    /** Units were loaded into the machine. */
+    public static final String RESTOCK = "RESTOCK";
+    /** Price tables were attached or removed. */
+    public static final String PRICING = "PRICING";
+    /** The price of one product was changed. */
+    public static final String PRICE = "PRICE";
+    /** A product was added to the catalog. */
+    public static final String ADD = "ADD";
+    /** A product was removed from the catalog. */
+    public static final String REMOVE = "REMOVE";
+    /** A product was renamed. */
+    public static final String RENAME = "RENAME";
+    /** The size, cooling level, spiciness or flavor of a product was changed. */
+    public static final String ATTRIBUTE = "ATTRIBUTE";
+
+    @Label("Change")
+    public String change;
+
+    @Label("Product ID")
+    @Description("The product that was restocked, repriced, added or removed, or -1 for changes that affect the whole catalog")
+    public int productId;
+
+    @Label("Quantity")
+    @Description("The units loaded, or 0 for changes that affect the whole catalog")
+    public int quantity;
+}
@@ -0,0 +1,42 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a note or coin inserted into a vending machine.
+ */
+@Name(CurrencyEvent.NAME)
+@Label("Currency Inserted")
+@Category("Vending Machine")
+@Description("A note or coin was inserted, with whether the machine accepted it")
+@StackTrace(false)
+public class CurrencyEvent extends VendingEvent {
+
+    public static final String NAME = "se.lexicon.Currency";
+
+    @Label("Session")
+    public long sessionId;
+
+    @Label("Currency")
+    @Description("The currency of the note or coin")
+    public String currency;
+
+    @Label("Amount")
+    @Description("The inserted denomination: whole kronor for SEK, minor units for other currencies")
+    public int amount;
+
+    @Label("Credit")
+    @Description("The SEK credited to the balance, or 0 if the note or coin was rejected")
+    public double credit;
+
+    @Label("Accepted")
+    public boolean accepted;
+
+    @Label("Balance")
+    @Description("The balance in SEK after the insertion")
+    public double balance;
+}
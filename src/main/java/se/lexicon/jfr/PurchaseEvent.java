@@ -0,0 +1,50 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a purchase attempt, successful or not.
+ */
+@Name(PurchaseEvent.NAME)
+@Label("Purchase")
+@Category("Vending Machine")
+@Description("A product was requested; the outcome says whether it was dispensed")
+@StackTrace(false)
+public class PurchaseEvent extends VendingEvent {
+
+    public static final String NAME = "se.lexicon.Purchase";
+
+    /** The product was dispensed and paid for. */
+    public static final String DISPENSED = "DISPENSED";
+    /** No product has the requested ID. */
+    public static final String NOT_FOUND = "NOT_FOUND";
+    /** The product is out of stock. */
+    public static final String SOLD_OUT = "SOLD_OUT";
+    /** The balance did not cover the price. */
+    public static final String INSUFFICIENT_FUNDS = "INSUFFICIENT_FUNDS";
+    /** A retried transaction was answered from the transaction cache. */
+    public static final String REPEATED = "REPEATED";
+    /** The transaction ID could not be remembered, or was already used for another product. */
+    public static final String REFUSED = "REFUSED";
+
+    @Label("Session")
+    public long sessionId;
+
+    @Label("Product ID")
+    public int productId;
+
+    @Label("Price")
+    @Description("The price in SEK charged or asked for, or -1 if it was not looked up")
+    public double price;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Balance")
+    @Description("The balance in SEK after the attempt")
+    public double balance;
+}
@@ -0,0 +1,278 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes a flight recording of vending machines: deposits, purchase outcomes and latency,
+ * sessions, catalog changes, and how purchases line up with garbage collection pauses and
+ * contention on the machine's lock.
+ * <p>
+ * The recording is read twice, first for the pauses and then for everything else, so the
+ * summary needs memory for the pauses only, however many purchases were recorded.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * java -cp <classpath> se.lexicon.jfr.RecordingSummary vending.jfr
+ * }</pre>
+ */
+public final class RecordingSummary {
+
+    private static final String GC_PAUSE = "jdk.GCPhasePause";
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+
+    private long currencyAccepted;
+    private long currencyRejected;
+    private double amountAccepted;
+    private final Map<String, Long> purchaseOutcomes = new TreeMap<>();
+    private double revenue;
+    private long sessions;
+    private double changeReturned;
+    private long catalogChanges;
+    private final QuantileSketch purchaseMicros = new QuantileSketch(0.01, 0.01, 60_000_000);
+    private final QuantileSketch purchaseDuringGcMicros = new QuantileSketch(0.01, 0.01, 60_000_000);
+    private long gcPauses;
+    private double gcPauseMillis;
+    private double maxGcPauseMillis;
+    private long machineLockContentions;
+    private double machineLockWaitMillis;
+
+    private RecordingSummary() {
+    }
+
+    /**
+     * Reads and summarizes a recording.
+     *
+     * @param recording the {@code .jfr} file
+     * @return the summary
+     * @throws IOException if the file can not be read or is not a recording
+     */
+    public static RecordingSummary read(Path recording) throws IOException {
+        RecordingSummary summary = new RecordingSummary();
+
+        // Pass 1: stop-the-world pauses, as sorted [start, end] intervals in epoch nanoseconds
+        long[] pauseStarts = new long[64];
+        long[] pauseEnds = new long[64];
+        int pauseCount = 0;
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                if (!GC_PAUSE.equals(event.getEventType().getName())) continue;
+                if (pauseCount == pauseStarts.length) {
+                    pauseStarts = Arrays.copyOf(pauseStarts, pauseCount * 2);
+                    pauseEnds = Arrays.copyOf(pauseEnds, pauseCount * 2);
+                }
+                pauseStarts[pauseCount] = epochNanos(event.getStartTime());
+                pauseEnds[pauseCount] = epochNanos(event.getEndTime());
+                pauseCount++;
+                double millis = event.getDuration().toNanos() / 1e6;
+                summary.gcPauses++;
+                summary.gcPauseMillis += millis;
+                summary.maxGcPauseMillis = Math.max(summary.maxGcPauseMillis, millis);
+            }
+        }
+        sortIntervals(pauseStarts, pauseEnds, pauseCount);
+
+        // Pass 2: vending events and lock contention
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case CurrencyEvent.NAME:
+                        if (event.getBoolean("accepted")) {
+                            summary.currencyAccepted++;
+                            summary.amountAccepted += event.getDouble("credit");
+                        } else {
+                            summary.currencyRejected++;
+                        }
+                        break;
+                    case PurchaseEvent.NAME:
+                        String outcome = event.getString("outcome");
+                        summary.purchaseOutcomes.merge(outcome, 1L, Long::sum);
+                        if (PurchaseEvent.DISPENSED.equals(outcome)) {
+                            summary.revenue += event.getDouble("price");
+                        }
+                        double micros = event.getDuration().toNanos() / 1e3;
+                        summary.purchaseMicros.add(micros);
+                        if (overlaps(pauseStarts, pauseEnds, pauseCount,
+                                epochNanos(event.getStartTime()), epochNanos(event.getEndTime()))) {
+                            summary.purchaseDuringGcMicros.add(micros);
+                        }
+                        break;
+                    case SessionEndEvent.NAME:
+                        summary.sessions++;
+                        summary.changeReturned += event.getDouble("change");
+                        break;
+                    case CatalogChangeEvent.NAME:
+                        summary.catalogChanges++;
+                        break;
+                    case MONITOR_ENTER:
+                        RecordedClass monitor = event.getClass("monitorClass");
+                        if (monitor != null && isMachineClass(monitor)) {
+                            summary.machineLockContentions++;
+                            summary.machineLockWaitMillis += event.getDuration().toNanos() / 1e6;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static boolean isMachineClass(RecordedClass monitor) {
+        return monitor.getName().equals(VendingMachine.class.getName());
+    }
+
+    private static long epochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * Sorts intervals by start time. Pauses are recorded in nearly sorted order per chunk, so an
+     * insertion sort is quick.
+     */
+    private static void sortIntervals(long[] starts, long[] ends, int count) {
+        for (int i = 1; i < count; i++) {
+            long start = starts[i];
+            long end = ends[i];
+            int j = i - 1;
+            while (j >= 0 && starts[j] > start) {
+                starts[j + 1] = starts[j];
+                ends[j + 1] = ends[j];
+                j--;
+            }
+            starts[j + 1] = start;
+            ends[j + 1] = end;
+        }
+    }
+
+    /**
+     * Returns true if [start, end] overlaps one of the sorted, non-overlapping pause intervals.
+     */
+    static boolean overlaps(long[] pauseStarts, long[] pauseEnds, int count, long start, long end) {
+        // Last pause that started no later than the end of the operation
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pauseStarts[mid] <= end) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo > 0 && pauseEnds[lo - 1] >= start;
+    }
+
+    public long getCurrencyAccepted() {
+        return currencyAccepted;
+    }
+
+    public long getCurrencyRejected() {
+        return currencyRejected;
+    }
+
+    /**
+     * Returns the number of purchase attempts per outcome (see the constants in {@link PurchaseEvent}).
+     *
+     * @return outcome counts, sorted by outcome
+     */
+    public Map<String, Long> getPurchaseOutcomes() {
+        return purchaseOutcomes;
+    }
+
+    /**
+     * Returns the number of purchase attempts with the given outcome.
+     *
+     * @param outcome one of the outcome constants in {@link PurchaseEvent}
+     * @return the count
+     */
+    public long getPurchases(String outcome) {
+        return purchaseOutcomes.getOrDefault(outcome, 0L);
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public long getSessions() {
+        return sessions;
+    }
+
+    public long getCatalogChanges() {
+        return catalogChanges;
+    }
+
+    public long getGcPauses() {
+        return gcPauses;
+    }
+
+    /**
+     * Returns how many purchase attempts were running while the JVM was paused for garbage collection.
+     *
+     * @return the number of affected purchases
+     */
+    public long getPurchasesDuringGc() {
+        return purchaseDuringGcMicros.getCount();
+    }
+
+    /**
+     * Returns how often a thread had to wait for a vending machine's lock longer than the
+     * recording's threshold for {@code jdk.JavaMonitorEnter}.
+     *
+     * @return the number of contended lock acquisitions
+     */
+    public long getMachineLockContentions() {
+        return machineLockContentions;
+    }
+
+    /**
+     * Returns the purchase latency at a quantile.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the latency in microseconds, or {@code Double.NaN} without purchases
+     */
+    public double getPurchaseLatencyMicros(double q) {
+        return purchaseMicros.quantile(q);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Deposits:        %d accepted (%.2f SEK), %d rejected%n",
+                currencyAccepted, amountAccepted, currencyRejected));
+        sb.append(String.format("Purchases:       %s, revenue %.2f SEK%n", purchaseOutcomes, revenue));
+        sb.append(String.format("Purchase time:   p50 %.1f µs, p99 %.1f µs, p99.9 %.1f µs, max %.1f µs%n",
+                purchaseMicros.quantile(0.5), purchaseMicros.quantile(0.99), purchaseMicros.quantile(0.999),
+                purchaseMicros.getCount() == 0 ? Double.NaN : purchaseMicros.getMax()));
+        sb.append(String.format("Sessions:        %d ended, %.2f SEK returned as change%n", sessions, changeReturned));
+        sb.append(String.format("Catalog changes: %d%n", catalogChanges));
+        sb.append(String.format("GC pauses:       %d, total %.1f ms, longest %.1f ms%n",
+                gcPauses, gcPauseMillis, maxGcPauseMillis));
+        sb.append(String.format("During GC:       %d purchases, p50 %.1f µs, max %.1f µs%n",
+                purchaseDuringGcMicros.getCount(), purchaseDuringGcMicros.quantile(0.5),
+                purchaseDuringGcMicros.getCount() == 0 ? Double.NaN : purchaseDuringGcMicros.getMax()));
+        sb.append(String.format("Lock contention: %d waits for a machine lock, total %.1f ms",
+                machineLockContentions, machineLockWaitMillis));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: RecordingSummary <recording.jfr>");
+            return;
+        }
+        System.out.println(read(Paths.get(args[0])));
+    }
+}
@@ -0,0 +1,27 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for an ended customer session.
+ */
+@Name(SessionEndEvent.NAME)
+@Label("Session Ended")
+@Category("Vending Machine")
+@Description("A customer session ended and the remaining balance was returned as change")
+@StackTrace(false)
+public class SessionEndEvent extends VendingEvent {
+
+    public static final String NAME = "se.lexicon.SessionEnd";
+
+    @Label("Session")
+    public long sessionId;
+
+    @Label("Change")
+    @Description("The change returned in SEK")
+    public double change;
+}
@@ -0,0 +1,48 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Event;
+
+/**
+ * Base class of the vending flight recorder events.
+ * <p>
+ * Once flight recorder has been initialized in the JVM, {@link #begin()} and {@link #end()} read
+ * the clock even while no recording enables the event. {@link #start()} and {@link #finish()}
+ * check {@link #isEnabled()} first, so a machine that is not being recorded pays only for one
+ * flag test per event; the JIT removes the event object itself.
+ * </p>
+ * <pre>{@code
+ * PurchaseEvent event = new PurchaseEvent();
+ * event.start();
+ * ...
+ * if (event.finish()) {
+ *     event.productId = id;
+ *     event.commit();
+ * }
+ * }</pre>
+ */
+public abstract class VendingEvent extends Event {
+
+    // Not recorded; remembers whether begin() ran, in case a recording starts during the operation
+    private transient boolean started;
+
+    /**
+     * Starts timing the operation if a recording enables this event.
+     */
+    public final void start() {
+        if (isEnabled()) {
+            begin();
+            started = true;
+        }
+    }
+
+    /**
+     * Stops timing the operation.
+     *
+     * @return {@code true} if the event should be filled in and committed
+     */
+    public final boolean finish() {
+        if (!started) return false;
+        end();
+        return shouldCommit();
+    }
+}
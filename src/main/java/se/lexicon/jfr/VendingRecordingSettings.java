@@ -0,0 +1,50 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * Access to the bundled flight recorder settings, {@code vending.jfc}.
+ * <p>
+ * The settings enable every vending event plus garbage collection pauses, contended locks and CPU
+ * samples. From the command line, extract the file from the jar and pass it to
+ * {@code -XX:StartFlightRecording=settings=vending.jfc}; in code:
+ * </p>
+ * <pre>{@code
+ * try (Recording recording = new Recording(VendingRecordingSettings.load())) {
+ *     recording.start();
+ *     ...
+ *     recording.dump(Paths.get("vending.jfr"));
+ * }
+ * }</pre>
+ */
+public final class VendingRecordingSettings {
+
+    /** Class path location of the settings file. */
+    public static final String RESOURCE = "/se/lexicon/jfr/vending.jfc";
+
+    private VendingRecordingSettings() {
+    }
+
+    /**
+     * Loads the bundled settings.
+     *
+     * @return the configuration
+     * @throws IOException if the settings can not be read
+     */
+    public static Configuration load() throws IOException {
+        InputStream in = VendingRecordingSettings.class.getResourceAsStream(RESOURCE);
+        if (in == null) throw new IOException("Missing " + RESOURCE + " on the class path");
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        } catch (ParseException e) {
+            throw new IOException("Malformed " + RESOURCE + ": " + e.getMessage(), e);
+        }
+    }
+}
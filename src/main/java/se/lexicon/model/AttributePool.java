@@ -0,0 +1,74 @@
+package se.lexicon.model;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical copies of attribute texts that many products share.
+ * <p>
+ * A large catalog repeats the same few hundred product names and flavors; without interning,
+ * every product read from a file or a database holds its own copy of each text. Products keep
+ * the canonical copy returned by {@link #intern(String)} instead, so each distinct text in use is
+ * stored once per pool, and reading it back is a plain field read.
+ * </p>
+ * <p>
+ * The pool holds its texts weakly: once no product refers to a text any more, e.g. after a rename,
+ * a flavor change or a replaced catalog, the garbage collector removes it from the pool. Memory
+ * therefore follows the texts in use, not every text ever seen. Interning is thread-safe.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * this.flavor = AttributePool.FLAVORS.intern(flavor);
+ * }</pre>
+ */
+public final class AttributePool {
+
+    /** Product names. */
+    public static final AttributePool NAMES = new AttributePool();
+
+    /** Cotton candy flavors. */
+    public static final AttributePool FLAVORS = new AttributePool();
+
+    /** Display labels built from several attributes, e.g. the fixed part of a listing line. */
+    public static final AttributePool LABELS = new AttributePool();
+
+    // Keys are weak so unused texts are dropped; the value must be weak too, as it is the key itself
+    private final WeakHashMap<String, WeakReference<String>> canonical = new WeakHashMap<>();
+
+    /**
+     * Returns the canonical copy of a text, adding it to the pool if it is new.
+     *
+     * @param value the text, or {@code null}
+     * @return an equal text shared by everyone who interned it, or {@code null} for {@code null}
+     */
+    public synchronized String intern(String value) {
+        if (value == null) return null;
+        WeakReference<String> ref = canonical.get(value);
+        String existing = ref == null ? null : ref.get();
+        if (existing != null) return existing;
+        canonical.put(value, new WeakReference<>(value));
+        return value;
+    }
+
+    /**
+     * Tells whether a text is in the pool, without adding it.
+     *
+     * @param value the text
+     * @return {@code true} if something still refers to the interned text
+     */
+    public synchronized boolean contains(String value) {
+        WeakReference<String> ref = value == null ? null : canonical.get(value);
+        return ref != null && ref.get() != null;
+    }
+
+    /**
+     * Returns the number of distinct texts in the pool. Texts nobody refers to any more may be
+     * counted until the garbage collector has cleared them.
+     *
+     * @return the pool size
+     */
+    public synchronized int size() {
+        return canonical.size();
+    }
+}
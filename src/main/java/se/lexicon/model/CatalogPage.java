@@ -0,0 +1,50 @@
+package se.lexicon.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the product catalog, ordered by product ID.
+ * <p>
+ * Pass {@link #getNextPageToken()} to the next
+ * {@link IVendingMachine#browseProducts(String, int, java.util.function.Predicate)} call
+ * (with the same filter) to continue where this page ended.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * String token = null;
+ * do {
+ *     CatalogPage page = vm.browseProducts(token, 20, p -> p instanceof Snickers);
+ *     page.getItems().forEach(System.out::println);
+ *     token = page.getNextPageToken();
+ * } while (token != null);
+ * }</pre>
+ */
+public final class CatalogPage {
+
+    private final List<ProductView> items;
+    private final String nextPageToken;
+
+    public CatalogPage(List<ProductView> items, String nextPageToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<ProductView> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the token for the following page.
+     *
+     * @return the token, or {@code null} if this is the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -1,5 +1,8 @@
 package se.lexicon.model;
 
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
 /**
  * Interface representing the core functionality of a vending machine.
  * Defines operations for handling currency, purchasing products, and retrieving product information.
@@ -37,6 +40,18 @@ public interface IVendingMachine {
      */
     Product request(int id);
 
+    /**
+     * Purchases a product at most once per transaction ID.
+     * Remote clients that retry after a timeout pass the same ID again; if the purchase with that
+     * ID already happened, its original outcome is returned and nothing is charged or dispensed.
+     * Failed purchases are remembered too, so a new attempt needs a new ID.
+     *
+     * @param transactionId an ID chosen by the client, unique per purchase attempt
+     * @param id            the ID of the product to purchase
+     * @return the purchased {@link Product}, or {@code null} if the purchase failed
+     */
+    Product request(long transactionId, int id);
+
     /**
      * Ends the session and returns the remaining balance as change.
      * Resets the deposit pool to zero.
@@ -59,9 +74,35 @@ public interface IVendingMachine {
      * Each string contains the product's ID, name, and price.
      *
      * @return an array of product descriptions
+     * @see #browseProducts(String, int, Predicate)
      */
     String[] getProducts();
 
+    /**
+     * Returns one page of the catalog, ordered by product ID.
+     * Without a filter, only the products on the requested page are looked at and wrapped, so the
+     * cost of a call depends on the page size rather than the catalog size. With a filter, products
+     * are tested from the page token on until the page is full: a selective filter may test a large
+     * part of the catalog for one page, and up to all of it for the last one.
+     *
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the maximum number of products on the page (must be positive)
+     * @param filter    only products matching this filter are returned; {@code null} for all.
+     *                  Use the same filter for every page of one listing.
+     * @return the page and the token for the next one
+     * @throws IllegalArgumentException if the page size is not positive or the token is malformed
+     */
+    CatalogPage browseProducts(String pageToken, int pageSize, Predicate<? super Product> filter);
+
+    /**
+     * Returns a lazy stream over the catalog, ordered by product ID.
+     * Views are created one at a time as the stream is consumed.
+     *
+     * @param filter only products matching this filter are included; {@code null} for all
+     * @return a stream of product views
+     */
+    Stream<ProductView> streamProducts(Predicate<? super Product> filter);
+
     enum Size {
     }
 }
\ No newline at end of file
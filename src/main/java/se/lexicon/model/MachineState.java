@@ -0,0 +1,143 @@
+package se.lexicon.model;
+
+import se.lexicon.currency.CurrencyCode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A consistent copy of everything a {@link VendingMachine} needs to continue where it left off:
+ * the catalog with its prices, the stock, the current session with the currency it pays with, and
+ * the cash box with its SEK and foreign notes and coins.
+ * <p>
+ * Captured with {@link VendingMachine#captureState()} and turned back into a machine with
+ * {@link VendingMachine#VendingMachine(MachineState)}. Prices are copied at capture time, so
+ * later price changes on the product objects do not alter a captured state.
+ * </p>
+ */
+public final class MachineState {
+
+    private final List<Product> products;
+    private final double[] prices;
+    private final int[] stock;
+    private final double balance;
+    private final long sessionId;
+    private final int[] cashCounts;
+    private final CurrencyCode sessionCurrency;
+    private final int[][] foreignCashCounts;
+
+    /**
+     * Creates a state. Arrays are copied.
+     *
+     * @param products          the catalog, in machine order
+     * @param prices            the price of each product, by position
+     * @param stock             units left of each product, by position
+     * @param balance           the deposit pool of the current session
+     * @param sessionId         the current session ID
+     * @param cashCounts        notes and coins in the cash box, per accepted denomination
+     * @param sessionCurrency   the foreign currency the current session pays with, or {@code null}
+     * @param foreignCashCounts foreign notes and coins in the cash box, per {@link CurrencyCode} ordinal
+     *                          and denomination index; a {@code null} row means none of that currency
+     * @throws IllegalArgumentException if the array lengths do not match the catalog or the currencies
+     */
+    public MachineState(List<Product> products, double[] prices, int[] stock, double balance, long sessionId,
+                        int[] cashCounts, CurrencyCode sessionCurrency, int[][] foreignCashCounts) {
+        if (products == null) throw new IllegalArgumentException("products must not be null");
+        if (prices.length != products.size() || stock.length != products.size()) {
+            throw new IllegalArgumentException("Prices and stock must have one entry per product");
+        }
+        if (cashCounts.length != VendingMachine.DENOMINATIONS.length) {
+            throw new IllegalArgumentException("Cash counts must have one entry per denomination");
+        }
+        if (foreignCashCounts.length != CurrencyCode.values().length) {
+            throw new IllegalArgumentException("Foreign cash counts must have one entry per currency");
+        }
+        for (CurrencyCode currency : CurrencyCode.values()) {
+            int[] counts = foreignCashCounts[currency.ordinal()];
+            if (counts != null && counts.length != currency.getDenominations().length) {
+                throw new IllegalArgumentException("Cash counts for " + currency + " must have one entry per denomination");
+            }
+        }
+        if (balance < 0) throw new IllegalArgumentException("Balance can not be negative");
+        this.products = Collections.unmodifiableList(new ArrayList<>(products));
+        this.prices = prices.clone();
+        this.stock = stock.clone();
+        this.balance = balance;
+        this.sessionId = sessionId;
+        this.cashCounts = cashCounts.clone();
+        this.sessionCurrency = sessionCurrency == CurrencyCode.SEK ? null : sessionCurrency;
+        this.foreignCashCounts = copy(foreignCashCounts);
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Returns the price of each product at capture time, by position.
+     *
+     * @return a copy of the prices
+     */
+    public double[] getPrices() {
+        return prices.clone();
+    }
+
+    /**
+     * Returns the units left of each product, by position.
+     *
+     * @return a copy of the stock levels
+     */
+    public int[] getStock() {
+        return stock.clone();
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Returns the number of notes and coins in the cash box, per entry of {@link VendingMachine#DENOMINATIONS}.
+     *
+     * @return a copy of the counts
+     */
+    public int[] getCashCounts() {
+        return cashCounts.clone();
+    }
+
+    /**
+     * Returns the foreign currency the current session pays with.
+     *
+     * @return the currency, or {@code null} if the session has no foreign deposit
+     */
+    public CurrencyCode getSessionCurrency() {
+        return sessionCurrency;
+    }
+
+    /**
+     * Returns the foreign notes and coins in the cash box, per {@link CurrencyCode} ordinal and
+     * index in {@link CurrencyCode#getDenominations()}. A {@code null} row means none of that currency.
+     *
+     * @return a copy of the counts
+     */
+    public int[][] getForeignCashCounts() {
+        return copy(foreignCashCounts);
+    }
+
+    private static int[][] copy(int[][] counts) {
+        int[][] copy = new int[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            copy[i] = counts[i] == null ? null : counts[i].clone();
+        }
+        return copy;
+    }
+
+    // Direct access for the snapshot writer, which only reads
+    double priceAt(int index) {
+        return prices[index];
+    }
+}
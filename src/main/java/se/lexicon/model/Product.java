@@ -4,16 +4,35 @@ package se.lexicon.model;
  * <h2>Product</h2>
  * <h3>Abstract Class</h3>
  * responsibility for children which are products, this is the parent for the abstraction
+ * <p>
+ * The product name is interned in {@link AttributePool#NAMES}, so products with the
+ * same name share one copy of it.
+ * </p>
  */
 public abstract class   Product {
+
+    /** A SEK price label and the price it shows; immutable, so it can be shared without locking. */
+    private static final class PriceLabel {
+        final double price;
+        final String text;
+
+        PriceLabel(double price, String text) {
+            this.price = price;
+            this.text = text;
+        }
+    }
+
     private int id;
     private double price;
     private String productName;
 
+    // The last SEK label built by priceLabel(double)
+    private PriceLabel priceLabel;
+
     public Product(int id, double price, String productName){
         this.id = id;
         this. price = price;
-        this.productName = productName;
+        this.productName = AttributePool.NAMES.intern(productName);
     }
     public double getPrice() {
         return price;
@@ -33,7 +52,7 @@ public abstract class   Product {
         if(productName == null || productName.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name can not be null or blank");
         }
-        this.productName = productName;
+        this.productName = AttributePool.NAMES.intern(productName);
     }
 
     public int getId() {
@@ -50,6 +69,58 @@ public abstract class   Product {
      *
      */
     public abstract String examine();
+
+    /**
+     * Returns a price in SEK formatted the way this product shows its own price, e.g. "60.00 SEK"
+     * for a taco. Use it with {@link #examine(String)} and {@link #toString(String)} to show a price
+     * other than the stored one, such as a time-slotted price. The last label is kept, so asking
+     * again for the same price builds no new string.
+     *
+     * @param price the price in SEK
+     * @return the price label
+     */
+    public final String priceLabel(double price) {
+        PriceLabel label = priceLabel;
+        if (label == null || label.price != price) {
+            label = new PriceLabel(price, formatPrice(price));
+            priceLabel = label;
+        }
+        return label.text;
+    }
+
+    /**
+     * Formats a price in SEK for {@link #priceLabel(double)}.
+     * Products that show their price differently override this.
+     *
+     * @param price the price in SEK
+     * @return the price text, e.g. "60.0 SEK"
+     */
+    protected String formatPrice(double price) {
+        return price + " SEK";
+    }
+
+    /**
+     * Returns the description with the price shown as the given text instead of the SEK price,
+     * e.g. for a customer paying in another currency.
+     * Products that do not override this show their SEK price.
+     *
+     * @param priceLabel the price text, e.g. "1.75 EUR"
+     * @return the description
+     */
+    public String examine(String priceLabel) {
+        return examine();
+    }
+
+    /**
+     * Returns the listing line with the price shown as the given text instead of the SEK price.
+     * Products that do not override this show their SEK price.
+     *
+     * @param priceLabel the price text, e.g. "1.75 EUR"
+     * @return the listing line
+     */
+    public String toString(String priceLabel) {
+        return toString();
+    }
 }
 
 
@@ -0,0 +1,67 @@
+package se.lexicon.model;
+
+/**
+ * Lightweight, read-only view of one catalog entry as returned by
+ * {@link IVendingMachine#browseProducts(String, int, java.util.function.Predicate)}.
+ * <p>
+ * A view only holds a reference to the product and the price that was current when the
+ * page was built. Nothing is rendered until {@link #toString()} or {@link #getDescription()}
+ * is called, so building a page is cheap even for long product descriptions.
+ * </p>
+ */
+public final class ProductView {
+
+    private final Product product;
+    private final double price;
+
+    public ProductView(Product product, double price) {
+        this.product = product;
+        this.price = price;
+    }
+
+    public int getId() {
+        return product.getId();
+    }
+
+    public String getName() {
+        return product.getProductName();
+    }
+
+    /**
+     * Returns the kind of product, e.g. "Snickers" or "Taco".
+     *
+     * @return the simple class name of the product
+     */
+    public String getType() {
+        return product.getClass().getSimpleName();
+    }
+
+    /**
+     * Returns the price the machine charged for this product when the page was built.
+     *
+     * @return the price in SEK
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Renders the product's description (see {@link Product#examine()}) with the price of this view.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return product.examine(product.priceLabel(price));
+    }
+
+    /**
+     * Renders the product's listing line, as {@link IVendingMachine#getProducts()} would,
+     * with the price of this view.
+     *
+     * @return the listing line
+     */
+    @Override
+    public String toString() {
+        return product.toString(product.priceLabel(price));
+    }
+}
@@ -0,0 +1,233 @@
+package se.lexicon.model;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers the outcome of recent purchases by client-supplied transaction ID, so a retried
+ * purchase returns the original result instead of charging and dispensing twice.
+ * <p>
+ * The cache is a fixed array of slots, so memory never grows. A transaction ID hashes to a home
+ * slot and may be stored in any of the {@link #NEIGHBOURHOOD} slots that follow it, so a lookup
+ * reads at most that many array elements. Slots are updated with compare-and-set, so the cache
+ * needs no lock. Entries expire after a time-to-live and only then may their slot be reused: a live
+ * entry is never pushed out, because a retry of the forgotten transaction would be charged again.
+ * A new transaction whose neighbourhood is full of live entries is refused instead, which is
+ * counted in {@link #getRejections()}. Size the cache well above the number of purchases expected
+ * within one time-to-live to keep that rare.
+ * </p>
+ * <p>
+ * A purchase first {@linkplain #reserve(long, int) reserves} its entry and then
+ * {@linkplain #complete(Entry, Product) completes} it with the outcome, so a transaction that
+ * cannot be remembered is refused before anything is charged. A cache belongs to one machine,
+ * which runs both steps under its lock.
+ * </p>
+ */
+public final class RecentTransactions {
+
+    /**
+     * How many slots, starting at its home slot, a transaction ID may be stored in.
+     */
+    public static final int NEIGHBOURHOOD = 8;
+
+    /**
+     * The remembered outcome of one transaction.
+     */
+    public static final class Entry {
+        private final long transactionId;
+        private final int productId;
+        private final long expiresAt;
+        private final Product product;
+        private final boolean pending;
+
+        private Entry(long transactionId, int productId, long expiresAt, Product product, boolean pending) {
+            this.transactionId = transactionId;
+            this.productId = productId;
+            this.expiresAt = expiresAt;
+            this.product = product;
+            this.pending = pending;
+        }
+
+        public long getTransactionId() {
+            return transactionId;
+        }
+
+        /**
+         * Returns the ID of the product the transaction asked for.
+         *
+         * @return the requested product ID
+         */
+        public int getProductId() {
+            return productId;
+        }
+
+        /**
+         * Returns the product that was dispensed.
+         *
+         * @return the product, or {@code null} if the purchase failed or is still pending
+         */
+        public Product getProduct() {
+            return product;
+        }
+
+        /**
+         * Tells whether the entry was reserved and its outcome is not known yet.
+         *
+         * @return {@code true} until {@link RecentTransactions#complete(Entry, Product)} is called
+         */
+        public boolean isPending() {
+            return pending;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int shift;
+    private final int mask;
+    private final int neighbourhood;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity  the number of slots, rounded up to a power of two
+     * @param ttlMillis how long an outcome is remembered
+     * @param clock     the clock used for expiry
+     */
+    public RecentTransactions(int capacity, long ttlMillis, Clock clock) {
+        if (capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        if (ttlMillis <= 0) throw new IllegalArgumentException("Time-to-live must be positive");
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.shift = 64 - Integer.numberOfTrailingZeros(size);
+        this.mask = size - 1;
+        this.neighbourhood = Math.min(NEIGHBOURHOOD, size);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Looks up a transaction.
+     *
+     * @param transactionId the client's transaction ID
+     * @return the remembered outcome, or {@code null} if the transaction is unknown or expired
+     */
+    public Entry find(long transactionId) {
+        long now = clock.millis();
+        int home = slotOf(transactionId);
+        for (int i = 0; i < neighbourhood; i++) {
+            Entry e = slots.get((home + i) & mask);
+            if (e == null) {
+                // Slots are never cleared, so nothing was stored past the first empty one
+                return null;
+            }
+            if (e.transactionId == transactionId && e.expiresAt > now) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserves an entry for a new transaction before the purchase is made. If the transaction is
+     * already known, its entry is returned instead; it is not pending unless another purchase with
+     * the same ID is in progress.
+     *
+     * @param transactionId the client's transaction ID
+     * @param productId     the ID of the requested product
+     * @return a new pending entry, the entry already stored for the transaction, or {@code null}
+     *         if every slot in the neighbourhood holds another live transaction
+     */
+    public Entry reserve(long transactionId, int productId) {
+        int home = slotOf(transactionId);
+        long now = clock.millis();
+        Entry fresh = new Entry(transactionId, productId, now + ttlMillis, null, true);
+        while (true) {
+            int free = -1;
+            Entry replaced = null;
+            for (int i = 0; i < neighbourhood; i++) {
+                int slot = (home + i) & mask;
+                Entry current = slots.get(slot);
+                boolean live = current != null && current.expiresAt > now;
+                if (live && current.transactionId == transactionId) {
+                    return current;
+                }
+                if (!live && free < 0) {
+                    free = slot;
+                    replaced = current;
+                }
+                if (current == null) {
+                    break;
+                }
+            }
+            if (free < 0) {
+                rejections.incrementAndGet();
+                return null;
+            }
+            if (slots.compareAndSet(free, replaced, fresh)) {
+                return fresh;
+            }
+            // Lost a race for the slot; look again, the winner may be the same transaction
+        }
+    }
+
+    /**
+     * Stores the outcome of a reserved transaction.
+     *
+     * @param reserved the pending entry returned by {@link #reserve(long, int)}
+     * @param product  the dispensed product, or {@code null} if the purchase failed
+     * @return the completed entry
+     */
+    public Entry complete(Entry reserved, Product product) {
+        if (reserved == null || !reserved.pending) throw new IllegalArgumentException("reserved must be a pending entry");
+        Entry done = new Entry(reserved.transactionId, reserved.productId, clock.millis() + ttlMillis, product, false);
+        int home = slotOf(reserved.transactionId);
+        for (int i = 0; i < neighbourhood; i++) {
+            if (slots.compareAndSet((home + i) & mask, reserved, done)) {
+                return done;
+            }
+        }
+        // Only a pending entry that outlived its time-to-live can have been replaced
+        return done;
+    }
+
+    /**
+     * Remembers the outcome of a transaction in one step, see {@link #reserve(long, int)}.
+     *
+     * @param transactionId the client's transaction ID
+     * @param productId     the ID of the requested product
+     * @param product       the dispensed product, or {@code null} if the purchase failed
+     * @return the entry now stored for the transaction, or {@code null} if it was refused
+     */
+    public Entry record(long transactionId, int productId, Product product) {
+        Entry entry = reserve(transactionId, productId);
+        return entry != null && entry.pending ? complete(entry, product) : entry;
+    }
+
+    /**
+     * Returns how many new transactions were refused because their neighbourhood was full of
+     * live entries. A growing count means the cache is too small for the purchase rate.
+     *
+     * @return the number of refused transactions
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    private int slotOf(long transactionId) {
+        // Fibonacci hashing: sequential IDs from one client spread over the whole table
+        return shift == 64 ? 0 : (int) ((transactionId * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
@@ -0,0 +1,239 @@
+package se.lexicon.model;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the most recent purchases of a machine, so a purchase that was paid for but not
+ * received (e.g. a jammed spiral) can be voided or refunded.
+ * <p>
+ * Records are kept in parallel primitive arrays used as a ring: the log holds the last
+ * {@link #getCapacity()} purchases and older ones are overwritten, so memory stays the same no
+ * matter how long a session or the machine runs. Recording a purchase writes a few array slots
+ * and allocates nothing; {@link Transaction} objects are only created by queries.
+ * </p>
+ * <p>
+ * The log is not thread-safe on its own; {@link VendingMachine} only uses it while locked.
+ * </p>
+ */
+public final class TransactionLog {
+
+    /**
+     * What happened to a purchase after it was made.
+     */
+    public enum Status {
+        /** The product was paid for. */
+        SOLD,
+        /** The purchase was cancelled within its session and the price went back to the balance. */
+        VOIDED,
+        /** The price was paid back in cash, usually after the session had ended. */
+        REFUNDED
+    }
+
+    private static final Status[] STATUSES = Status.values();
+
+    /**
+     * A copy of one purchase record.
+     */
+    public static final class Transaction {
+        private final long number;
+        private final long sessionId;
+        private final int productId;
+        private final double price;
+        private final long timeMillis;
+        private final Status status;
+
+        private Transaction(long number, long sessionId, int productId, double price, long timeMillis, Status status) {
+            this.number = number;
+            this.sessionId = sessionId;
+            this.productId = productId;
+            this.price = price;
+            this.timeMillis = timeMillis;
+            this.status = status;
+        }
+
+        /**
+         * Returns the number of this purchase; purchases on a machine are numbered 1, 2, 3, ...
+         *
+         * @return the transaction number
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        /**
+         * Returns the price that was charged.
+         *
+         * @return the price in SEK
+         */
+        public double getPrice() {
+            return price;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + number + " session " + sessionId + ", product " + productId + ", " + price + " SEK, " + status;
+        }
+    }
+
+    private final long[] sessionIds;
+    private final int[] productIds;
+    private final double[] prices;
+    private final long[] times;
+    private final byte[] statuses;
+    private final int mask;
+    private final Clock clock;
+
+    // Number of the last recorded purchase; 0 while the log is empty
+    private long last;
+
+    /**
+     * Creates a log.
+     *
+     * @param capacity the number of purchases kept, rounded up to a power of two
+     * @param clock    the clock used to time purchases
+     */
+    public TransactionLog(int capacity, Clock clock) {
+        if (capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.sessionIds = new long[size];
+        this.productIds = new int[size];
+        this.prices = new double[size];
+        this.times = new long[size];
+        this.statuses = new byte[size];
+        this.mask = size - 1;
+        this.clock = clock;
+    }
+
+    /**
+     * Records a purchase, overwriting the oldest one if the log is full.
+     *
+     * @param sessionId the session the purchase was made in
+     * @param productId the product that was paid for
+     * @param price     the price charged
+     * @return the number of the new transaction
+     */
+    public long record(long sessionId, int productId, double price) {
+        long number = ++last;
+        int slot = (int) (number & mask);
+        sessionIds[slot] = sessionId;
+        productIds[slot] = productId;
+        prices[slot] = price;
+        times[slot] = clock.millis();
+        statuses[slot] = (byte) Status.SOLD.ordinal();
+        return number;
+    }
+
+    /**
+     * Looks up a purchase.
+     *
+     * @param number the transaction number
+     * @return the purchase, or {@code null} if it is unknown or has been overwritten
+     */
+    public Transaction get(long number) {
+        return slotOf(number) < 0 ? null : copy(number);
+    }
+
+    /**
+     * Returns the most recent purchases, newest first.
+     *
+     * @param max the maximum number of purchases returned
+     * @return the purchases
+     */
+    public List<Transaction> recent(int max) {
+        if (max < 0) throw new IllegalArgumentException("max can not be negative");
+        long oldest = oldest();
+        int n = (int) Math.min(max, last - oldest + 1);
+        List<Transaction> result = new ArrayList<>(n);
+        for (long number = last; result.size() < n; number--) {
+            result.add(copy(number));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the purchases of a session that are still in the log, oldest first.
+     *
+     * @param sessionId the session
+     * @return the purchases
+     */
+    public List<Transaction> ofSession(long sessionId) {
+        List<Transaction> result = new ArrayList<>();
+        // Sessions are consecutive, so scan back from the newest purchase until the session is passed
+        long number = last;
+        long oldest = oldest();
+        while (number >= oldest && sessionIds[(int) (number & mask)] > sessionId) number--;
+        long end = number;
+        while (number >= oldest && sessionIds[(int) (number & mask)] == sessionId) number--;
+        for (long n = number + 1; n <= end; n++) {
+            result.add(copy(n));
+        }
+        return result;
+    }
+
+    /**
+     * Changes the status of a purchase that is still {@link Status#SOLD}.
+     *
+     * @param number the transaction number
+     * @param status the new status
+     * @return true if the status was changed; false if the purchase is unknown, overwritten or
+     *         already voided or refunded
+     */
+    boolean reverse(long number, Status status) {
+        int slot = slotOf(number);
+        if (slot < 0 || statuses[slot] != Status.SOLD.ordinal()) return false;
+        statuses[slot] = (byte) status.ordinal();
+        return true;
+    }
+
+    /**
+     * Returns the number of the last recorded purchase.
+     *
+     * @return the transaction number, or 0 if nothing was recorded yet
+     */
+    public long getLastNumber() {
+        return last;
+    }
+
+    /**
+     * Returns the number of purchases the log keeps.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    private long oldest() {
+        return Math.max(1, last - mask);
+    }
+
+    private int slotOf(long number) {
+        if (number < oldest() || number > last) return -1;
+        return (int) (number & mask);
+    }
+
+    private Transaction copy(long number) {
+        int slot = (int) (number & mask);
+        return new Transaction(number, sessionIds[slot], productIds[slot], prices[slot], times[slot],
+                STATUSES[statuses[slot]]);
+    }
+}
@@ -1,46 +1,171 @@
 package se.lexicon.model;
 
-import java.util.HashSet;
+import se.lexicon.currency.CurrencyCode;
+import se.lexicon.currency.CurrencyExchange;
+import se.lexicon.currency.ExchangeTable;
+import se.lexicon.jfr.CatalogChangeEvent;
+import se.lexicon.jfr.CurrencyEvent;
+import se.lexicon.jfr.PurchaseEvent;
+import se.lexicon.jfr.SessionEndEvent;
+import se.lexicon.pricing.DynamicPricing;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+import se.lexicon.validation.CatalogValidator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the Vendiong Machine interface interface.
  * Represents a vending machine that can accept currency, dispense products, and return change.
  *
  * <p>This class manages a list of available products and a deposit pool for user transactions.</p>
+ *
+ * <p>Methods that read or change the balance, the session, the stock or the catalog are synchronized, so
+ * deposits, purchases, asynchronous card payments and catalog updates from different threads see a
+ * consistent machine.
+ * Listeners are called while the machine is locked and must not block.</p>
+ *
+ * <p>Deposits, purchases, ended sessions and catalog changes are reported to Java Flight Recorder as
+ * the events in {@code se.lexicon.jfr}. While no recording has them enabled, the events are neither
+ * timed nor filled in, and the JIT removes the event objects.</p>
  */
 public class VendingMachine implements IVendingMachine {
 
+    /** Stock level meaning "never runs out"; used when no initial stock is given. */
+    public static final int UNLIMITED_STOCK = Integer.MAX_VALUE;
+
+    /** Number of purchase outcomes remembered for retried transactions. */
+    public static final int DEFAULT_TRANSACTION_CACHE_SIZE = 1024;
+
+    /** How long a purchase outcome is remembered for retried transactions. */
+    public static final long DEFAULT_TRANSACTION_TTL_MILLIS = 10 * 60 * 1000L;
+
+    /** Number of recent purchases kept for voids and refunds. */
+    public static final int DEFAULT_TRANSACTION_LOG_SIZE = 256;
+
     // A list of all products that this vending machine offers.
+    // Replaced, never modified, when products are added or removed.
     private List<Product> products;
 
+    // Lookup index: product IDs in ascending order, and the list position of each of them.
+    // Used for ID lookups (binary search) and for paging through the catalog in a stable order.
+    private int[] sortedIds;
+    private int[] sortedPositions;
+
+    // Units left of each product, by position in the product list.
+    // UNLIMITED_STOCK means the machine never runs out of that product.
+    private int[] stock;
+
     // The current balance (money) that the user has inserted into the machine.
     private double balance;
 
+    /** The notes and coins the machine accepts, in SEK: {@link CurrencyCode#SEK} in whole kronor. */
+    public static final int[] DENOMINATIONS = Arrays.stream(CurrencyCode.SEK.getDenominations())
+            .map(ore -> ore / CurrencyCode.MINOR_UNITS).toArray();
+
     // An array of valid currency denominations that the machine accepts.
     // If a user tries to insert a value not in this list, it will be rejected.
-    private final double[] validDenominations = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+    private final double[] validDenominations = Arrays.stream(DENOMINATIONS).asDoubleStream().toArray();
+
+    // Notes and coins collected in the cash box, per entry in validDenominations.
+    private final int[] cashCounts = new int[validDenominations.length];
+
+    // Optional time-slotted price tables. When null, the price stored on each product is used.
+    private volatile DynamicPricing pricing;
+
+    // Optional exchange tables for foreign notes and coins. When null, only SEK is accepted.
+    private volatile CurrencyExchange exchange;
+
+    // The currency the current session pays with; null until the first foreign deposit.
+    private volatile CurrencyCode sessionCurrency;
+
+    // Foreign notes and coins in the cash box, per currency and denomination index.
+    private final int[][] foreignCashCounts = new int[CurrencyCode.values().length][];
+
+    // Identifies the current customer session. Incremented every time a session ends.
+    private long sessionId = 1;
+
+    // Outcomes of recent purchases by transaction ID; created on the first transactional request.
+    private RecentTransactions recentTransactions;
+
+    // The most recent purchases, for voids and refunds; fixed size
+    private TransactionLog transactionLog = new TransactionLog(DEFAULT_TRANSACTION_LOG_SIZE, Clock.systemUTC());
+
+    // Observers that are notified about deposits, purchases and ended sessions.
+    private final List<VendingMachineListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructor that initializes the vending machine with a list of products.
-     * It also checks for duplicate product IDs and sets the starting balance to 0.
+     * It also validates the catalog and sets the starting balance to 0.
+     *
+     * Every product has unlimited stock.
      *
      * @param products the list of products to be available in the vending machine
      */
     public VendingMachine(List<Product> products) {
-        // Check if any products have the same ID, which would cause problems when selecting them
-        if (hasDuplicateIds(products)) {
-            System.out.println("Warning: Duplicate product IDs detected. Vending machine may not function correctly.");
-        }
+        this(products, UNLIMITED_STOCK);
+    }
+
+    /**
+     * Constructor that initializes the vending machine with a list of products
+     * and the same number of units loaded for each of them.
+     *
+     * @param products     the list of products to be available in the vending machine
+     * @param initialStock units loaded per product, or {@link #UNLIMITED_STOCK}
+     * @throws IllegalArgumentException if the catalog is invalid (see {@link CatalogValidator})
+     */
+    public VendingMachine(List<Product> products, int initialStock) {
+        // Refuse a broken catalog (duplicate IDs, bad prices, missing attributes) before it is used
+        CatalogValidator.validate(products).throwIfInvalid();
 
-        // Store the product list
+        // Store the product list and index it by ID
         this.products = products;
+        rebuildIndex();
+
+        // Load the same number of units for every product
+        if (initialStock < 0) throw new IllegalArgumentException("Initial stock can not be negative");
+        this.stock = new int[products.size()];
+        Arrays.fill(stock, initialStock);
 
         // Set the initial balance to 0
         setBalance(0);
     }
 
+    /**
+     * Constructor that brings a machine back to a previously captured state,
+     * e.g., after a restart. Product prices are set to the captured prices.
+     *
+     * @param state the state from {@link #captureState()} or a snapshot
+     * @throws IllegalArgumentException if the catalog is invalid (see {@link CatalogValidator})
+     */
+    public VendingMachine(MachineState state) {
+        this(new ArrayList<>(state.getProducts()), 0);
+        for (int i = 0; i < products.size(); i++) {
+            Product p = products.get(i);
+            if (p.getPrice() != state.priceAt(i)) {
+                p.setPrice(state.priceAt(i));
+            }
+        }
+        this.stock = state.getStock();
+        int[] cash = state.getCashCounts();
+        System.arraycopy(cash, 0, cashCounts, 0, cashCounts.length);
+        int[][] foreignCash = state.getForeignCashCounts();
+        System.arraycopy(foreignCash, 0, foreignCashCounts, 0, foreignCashCounts.length);
+        this.sessionCurrency = state.getSessionCurrency();
+        this.sessionId = state.getSessionId();
+        setBalance(state.getBalance());
+    }
+
     /**
      * Adds currency to the machine if the amount is valid.
      * Only accepts values listed in validDenominations.
@@ -48,19 +173,127 @@ public class VendingMachine implements IVendingMachine {
      * @param amount the amount of money the user inserts
      */
     @Override
-    public void addCurrency(int amount) {
+    public synchronized void addCurrency(int amount) {
+        CurrencyEvent event = new CurrencyEvent();
+        event.start();
+
         // Loop through the list of valid denominations
-        for (double valid : validDenominations) {
+        for (int i = 0; i < validDenominations.length; i++) {
             // If the inserted amount matches a valid denomination
-            if (valid == amount) {
-                // Add the amount to the current balance
+            if (validDenominations[i] == amount) {
+                // Add the amount to the current balance and the note or coin to the cash box
                 setBalance(getBalance() + amount);
+                cashCounts[i]++;
+
+                for (VendingMachineListener listener : listeners) {
+                    listener.onCurrencyAdded(sessionId, amount, getBalance());
+                }
+                commitCurrencyEvent(event, CurrencyCode.SEK, amount, amount, true);
                 return;
             }
         }
 
         // If the amount is not valid, notify the user
-        System.out.println("Invalid denomination: " + amount);
+        rejectCurrency(amount, "Invalid denomination: " + amount);
+        commitCurrencyEvent(event, CurrencyCode.SEK, amount, 0, false);
+    }
+
+    /**
+     * Adds a note or coin of any accepted currency to the deposit pool.
+     * The balance stays in SEK: the note or coin is credited at the current exchange rate,
+     * rounded down to whole öre. A session pays with one foreign currency; SEK may always be added.
+     * Prices are then shown in that currency by {@link #getDescription(int)} and {@link #getProducts()}.
+     * Change is paid out in SEK.
+     *
+     * @param currency   the currency of the note or coin
+     * @param minorUnits the denomination in minor units, e.g. 200 for a 2 euro coin
+     */
+    public synchronized void addCurrency(CurrencyCode currency, int minorUnits) {
+        if (currency == null) throw new IllegalArgumentException("currency must not be null");
+        if (currency == CurrencyCode.SEK) {
+            if (minorUnits % CurrencyCode.MINOR_UNITS == 0) {
+                addCurrency(minorUnits / CurrencyCode.MINOR_UNITS);
+            } else {
+                CurrencyEvent event = new CurrencyEvent();
+                event.start();
+                rejectCurrency(minorUnits, "Invalid denomination: " + minorUnits + " öre");
+                commitCurrencyEvent(event, currency, minorUnits, 0, false);
+            }
+            return;
+        }
+
+        CurrencyEvent event = new CurrencyEvent();
+        event.start();
+
+        // Read the tables once, so the whole deposit uses one set of rates
+        CurrencyExchange current = exchange;
+        ExchangeTable table = current == null ? null : current.current();
+        long credit = table == null ? -1 : table.creditOre(currency, minorUnits);
+        if (credit < 0) {
+            rejectCurrency(minorUnits, "Invalid denomination: " + ExchangeTable.format(minorUnits, currency));
+            commitCurrencyEvent(event, currency, minorUnits, 0, false);
+            return;
+        }
+        if (sessionCurrency != null && sessionCurrency != currency) {
+            rejectCurrency(minorUnits, "This session already pays with " + sessionCurrency);
+            commitCurrencyEvent(event, currency, minorUnits, 0, false);
+            return;
+        }
+
+        sessionCurrency = currency;
+        setBalance(getBalance() + credit / 100.0);
+        int c = currency.ordinal();
+        if (foreignCashCounts[c] == null) foreignCashCounts[c] = new int[currency.getDenominations().length];
+        foreignCashCounts[c][currency.indexOf(minorUnits)]++;
+
+        for (VendingMachineListener listener : listeners) {
+            listener.onForeignCurrencyAdded(sessionId, currency, minorUnits, credit / 100.0, getBalance());
+        }
+        commitCurrencyEvent(event, currency, minorUnits, credit / 100.0, true);
+    }
+
+    private void rejectCurrency(int amount, String message) {
+        System.out.println(message);
+        for (VendingMachineListener listener : listeners) {
+            listener.onCurrencyRejected(sessionId, amount);
+        }
+    }
+
+    /**
+     * Returns the currency the current session pays with.
+     *
+     * @return the foreign currency of the first foreign deposit, otherwise SEK
+     */
+    public CurrencyCode getSessionCurrency() {
+        CurrencyCode currency = sessionCurrency;
+        return currency == null ? CurrencyCode.SEK : currency;
+    }
+
+    /**
+     * Attaches exchange tables so the machine accepts foreign notes and coins.
+     * Pass {@code null} to accept SEK only.
+     *
+     * @param exchange the exchange tables, built from the same product list in the same order
+     * @throws IllegalArgumentException if the tables were built for a different catalog
+     */
+    public synchronized void setCurrencyExchange(CurrencyExchange exchange) {
+        if (exchange != null && !exchange.matches(products)) {
+            throw new IllegalArgumentException("Exchange tables do not match the products in this vending machine");
+        }
+        this.exchange = exchange;
+    }
+
+    private void commitCurrencyEvent(CurrencyEvent event, CurrencyCode currency, int amount, double credit,
+                                     boolean accepted) {
+        if (event.finish()) {
+            event.sessionId = sessionId;
+            event.currency = currency.name();
+            event.amount = amount;
+            event.credit = credit;
+            event.accepted = accepted;
+            event.balance = balance;
+            event.commit();
+        }
     }
 
     /**
@@ -68,7 +301,7 @@ public class VendingMachine implements IVendingMachine {
      *
      * @return the current balance
      */
-    public double getBalance() {
+    public synchronized double getBalance() {
         return balance;
     }
 
@@ -78,13 +311,477 @@ public class VendingMachine implements IVendingMachine {
      *
      * @param balance the new balance value
      */
-    public void setBalance(double balance) {
+    public synchronized void setBalance(double balance) {
         // Prevent the balance from being set to a negative number
         if (balance < 0) {
             System.out.println("Warning: Balance cannot be negative.");
-        } else {
+        } else if (balance != this.balance) {
             this.balance = balance;
+            for (VendingMachineListener listener : listeners) {
+                listener.onBalanceChanged(sessionId, balance);
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of the current customer session.
+     * A new session starts every time {@link #endSession()} is called.
+     *
+     * @return the current session ID
+     */
+    public synchronized long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Associates the current session with a customer (e.g., from a loyalty card or payment token).
+     * The machine itself does not store the key; it is only passed on to listeners.
+     *
+     * @param customerKey an opaque, stable key for the customer
+     */
+    public synchronized void identifyCustomer(long customerKey) {
+        for (VendingMachineListener listener : listeners) {
+            listener.onCustomerIdentified(sessionId, customerKey);
+        }
+    }
+
+    /**
+     * Registers a listener that is notified about deposits, purchases and ended sessions.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(VendingMachineListener listener) {
+        if (listener == null) throw new IllegalArgumentException("listener must not be null");
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(VendingMachineListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Attaches precomputed time-slotted price tables to this machine.
+     * From now on purchases are charged the table price instead of {@link Product#getPrice()}.
+     * Pass {@code null} to go back to the prices stored on the products.
+     *
+     * @param pricing the price tables, built from the same product list in the same order
+     * @throws IllegalArgumentException if the tables were built for a different catalog
+     */
+    public synchronized void setPricing(DynamicPricing pricing) {
+        if (pricing != null && !pricing.matches(products)) {
+            throw new IllegalArgumentException("Pricing tables do not match the products in this vending machine");
+        }
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+
+        // Remember the prices charged so far, so listeners hear only about the ones that changed
+        double[] before = listeners.isEmpty() ? null : new double[products.size()];
+        if (before != null) {
+            for (int i = 0; i < before.length; i++) before[i] = priceAt(i);
+        }
+        this.pricing = pricing;
+        if (before != null) {
+            for (int i = 0; i < before.length; i++) {
+                double price = priceAt(i);
+                if (price != before[i]) notifyPriceChanged(products.get(i).getId(), price);
+            }
+        }
+        commitCatalogChangeEvent(event, CatalogChangeEvent.PRICING, -1, 0);
+    }
+
+    /**
+     * Changes the price of a product.
+     * While price tables are attached (see {@link #setPricing(DynamicPricing)}) they decide what is
+     * charged, so the new price only takes effect once the tables are rebuilt or removed.
+     *
+     * @param id    the ID of the product
+     * @param price the new price in SEK (must be positive)
+     * @throws IllegalArgumentException if the product does not exist or the price is not positive
+     */
+    public synchronized void setPrice(int id, double price) {
+        int index = indexOf(id);
+        if (index < 0) throw new IllegalArgumentException("Product not found for ID: " + id);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        double before = priceAt(index);
+        products.get(index).setPrice(price);
+        double after = priceAt(index);
+        if (after != before) notifyPriceChanged(id, after);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.PRICE, id, 0);
+    }
+
+    private void notifyPriceChanged(int id, double price) {
+        for (VendingMachineListener listener : listeners) {
+            listener.onPriceChanged(id, price);
+        }
+    }
+
+    /**
+     * Credits an approved card payment to the deposit pool of a session.
+     * The credit is refused if that session has already ended, because the money would
+     * otherwise end up with the next customer; the caller should then void the authorization.
+     *
+     * @param sessionId the session the payment was started in
+     * @param amount    the authorized amount in SEK (must be positive)
+     * @return true if the balance was credited, false if the session is no longer current
+     */
+    public synchronized boolean creditCardPayment(long sessionId, double amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (sessionId != this.sessionId) {
+            return false;
+        }
+        setBalance(getBalance() + amount);
+
+        for (VendingMachineListener listener : listeners) {
+            listener.onCardPayment(sessionId, amount, getBalance());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the price a customer would be charged right now for the given product.
+     *
+     * @param id the ID of the product
+     * @return the current price, or -1 if no product has that ID
+     */
+    public synchronized double getCurrentPrice(int id) {
+        int index = indexOf(id);
+        return index < 0 ? -1 : priceAt(index);
+    }
+
+    /**
+     * Returns the product with the given ID.
+     *
+     * @param id the ID of the product
+     * @return the product, or null if no product has that ID
+     */
+    public synchronized Product getProduct(int id) {
+        int index = indexOf(id);
+        return index < 0 ? null : products.get(index);
+    }
+
+    /**
+     * Returns how many units of a product are left.
+     *
+     * @param id the ID of the product
+     * @return the units left, {@link #UNLIMITED_STOCK}, or -1 if no product has that ID
+     */
+    public synchronized int getStock(int id) {
+        int index = indexOf(id);
+        return index < 0 ? -1 : stock[index];
+    }
+
+    /**
+     * Loads more units of a product into the machine.
+     *
+     * @param id       the ID of the product
+     * @param quantity the number of units added (must be positive)
+     * @throws IllegalArgumentException if the product does not exist or the quantity is not positive
+     */
+    public synchronized void restock(int id, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive");
+        int index = indexOf(id);
+        if (index < 0) throw new IllegalArgumentException("Product not found for ID: " + id);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        if (stock[index] != UNLIMITED_STOCK) {
+            // Saturate instead of overflowing into a negative stock level
+            stock[index] = (int) Math.min((long) stock[index] + quantity, UNLIMITED_STOCK - 1);
+        }
+        for (VendingMachineListener listener : listeners) {
+            listener.onRestocked(id, stock[index]);
         }
+        commitCatalogChangeEvent(event, CatalogChangeEvent.RESTOCK, id, quantity);
+    }
+
+    /**
+     * Adds a product to the catalog, e.g. when a catalog update arrives from another machine.
+     * Attached price and exchange tables are rebuilt for the new catalog with the same rules and
+     * rates; products already in the catalog keep their prices.
+     *
+     * @param product the product
+     * @param stock   the units loaded, or {@link #UNLIMITED_STOCK}
+     * @throws IllegalArgumentException if the ID is already in use, the product is invalid
+     *                                  or the stock is negative
+     */
+    public void addProduct(Product product, int stock) {
+        addProducts(Collections.singletonList(product), stock);
+    }
+
+    /**
+     * Adds several products at once, re-indexing the catalog only once.
+     * See {@link #addProduct(Product, int)}.
+     *
+     * @param added the products
+     * @param stock the units loaded of each of them, or {@link #UNLIMITED_STOCK}
+     * @throws IllegalArgumentException if an ID is already in use, a product is invalid
+     *                                  or the stock is negative
+     */
+    public synchronized void addProducts(List<? extends Product> added, int stock) {
+        if (added == null) throw new IllegalArgumentException("products must not be null");
+        if (stock < 0) throw new IllegalArgumentException("Stock can not be negative");
+        // Checks the new products and duplicates among them; the loop below checks against the catalog
+        CatalogValidator.validate(added).throwIfInvalid();
+        for (Product p : added) {
+            if (indexOf(p.getId()) >= 0) throw new IllegalArgumentException("Duplicate product ID: " + p.getId());
+        }
+        if (added.isEmpty()) return;
+
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        int first = products.size();
+        List<Product> catalog = new ArrayList<>(products.size() + added.size());
+        catalog.addAll(products);
+        catalog.addAll(added);
+        int[] grown = Arrays.copyOf(this.stock, catalog.size());
+        Arrays.fill(grown, products.size(), grown.length, stock);
+        replaceCatalog(catalog, grown);
+        for (int i = first; i < catalog.size(); i++) {
+            for (VendingMachineListener listener : listeners) {
+                listener.onProductAdded(catalog.get(i), priceAt(i), stock);
+            }
+        }
+        commitCatalogChangeEvent(event, CatalogChangeEvent.ADD, added.size() == 1 ? added.get(0).getId() : -1, stock);
+    }
+
+    /**
+     * Removes a product from the catalog. Like {@link #addProduct(Product, int)}, this rebuilds
+     * attached price and exchange tables.
+     *
+     * @param id the ID of the product
+     * @return the removed product, or null if no product has that ID
+     */
+    public synchronized Product removeProduct(int id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            System.out.println("Product not found for ID: " + id);
+            return null;
+        }
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        List<Product> catalog = new ArrayList<>(products);
+        Product removed = catalog.remove(index);
+        int[] shrunk = new int[catalog.size()];
+        System.arraycopy(stock, 0, shrunk, 0, index);
+        System.arraycopy(stock, index + 1, shrunk, index, shrunk.length - index);
+        replaceCatalog(catalog, shrunk);
+        for (VendingMachineListener listener : listeners) {
+            listener.onProductRemoved(id);
+        }
+        commitCatalogChangeEvent(event, CatalogChangeEvent.REMOVE, id, 0);
+        return removed;
+    }
+
+    /**
+     * Swaps in a changed catalog. Price and exchange tables are indexed by position, so attached
+     * ones are rebuilt for the new catalog before anything reads a price from it.
+     */
+    private void replaceCatalog(List<Product> catalog, int[] stock) {
+        DynamicPricing oldPricing = pricing;
+        CurrencyExchange oldExchange = exchange;
+        DynamicPricing newPricing = oldPricing == null ? null : oldPricing.forCatalog(catalog);
+        CurrencyExchange newExchange = oldExchange == null ? null : oldExchange.forCatalog(catalog);
+        this.products = catalog;
+        this.stock = stock;
+        this.pricing = newPricing;
+        this.exchange = newExchange;
+        rebuildIndex();
+    }
+
+    /**
+     * Renames a product, e.g. when a catalog update arrives from another machine.
+     *
+     * @param id   the ID of the product
+     * @param name the new name
+     * @throws IllegalArgumentException if the product does not exist or the name is blank
+     */
+    public synchronized void setProductName(int id, String name) {
+        int index = productIndex(id, Product.class);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        products.get(index).setProductName(name);
+        productChanged(index, priceAt(index), false);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.RENAME, id, 0);
+    }
+
+    /**
+     * Changes the size of a Snickers. Attached price tables are recomputed, since the size factor
+     * may change the price.
+     *
+     * @param id   the ID of the product
+     * @param size the new size
+     * @throws IllegalArgumentException if the product does not exist, is not a Snickers or the size is null
+     */
+    public synchronized void setSize(int id, se.lexicon.products.Size size) {
+        if (size == null) throw new IllegalArgumentException("size must not be null");
+        int index = productIndex(id, Snickers.class);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        double before = priceAt(index);
+        ((Snickers) products.get(index)).setSize(size);
+        productChanged(index, before, true);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.ATTRIBUTE, id, 0);
+    }
+
+    /**
+     * Changes the cooling level of mint drops. Like {@link #setSize}, this recomputes
+     * attached price tables.
+     *
+     * @param id    the ID of the product
+     * @param level the cooling level (1–5)
+     * @throws IllegalArgumentException if the product does not exist, is not mint drops or the level is outside 1–5
+     */
+    public synchronized void setCoolingLevel(int id, int level) {
+        int index = productIndex(id, MintDrops.class);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        double before = priceAt(index);
+        ((MintDrops) products.get(index)).setCoolingLevel(level);
+        productChanged(index, before, true);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.ATTRIBUTE, id, 0);
+    }
+
+    /**
+     * Makes a taco spicy or mild. Like {@link #setSize}, this recomputes attached price tables.
+     *
+     * @param id    the ID of the product
+     * @param spicy whether the taco is spicy
+     * @throws IllegalArgumentException if the product does not exist or is not a taco
+     */
+    public synchronized void setSpicy(int id, boolean spicy) {
+        int index = productIndex(id, Taco.class);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        double before = priceAt(index);
+        ((Taco) products.get(index)).setSpicy(spicy);
+        productChanged(index, before, true);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.ATTRIBUTE, id, 0);
+    }
+
+    /**
+     * Changes the flavor of a cotton candy.
+     *
+     * @param id     the ID of the product
+     * @param flavor the new flavor
+     * @throws IllegalArgumentException if the product does not exist, is not a cotton candy or the flavor is blank
+     */
+    public synchronized void setFlavor(int id, String flavor) {
+        int index = productIndex(id, CottonCandy.class);
+        CatalogChangeEvent event = new CatalogChangeEvent();
+        event.start();
+        ((CottonCandy) products.get(index)).setFlavor(flavor);
+        productChanged(index, priceAt(index), false);
+        commitCatalogChangeEvent(event, CatalogChangeEvent.ATTRIBUTE, id, 0);
+    }
+
+    private int productIndex(int id, Class<? extends Product> type) {
+        int index = indexOf(id);
+        if (index < 0) throw new IllegalArgumentException("Product not found for ID: " + id);
+        if (!type.isInstance(products.get(index))) {
+            throw new IllegalArgumentException("Product " + id + " is not a " + type.getSimpleName());
+        }
+        return index;
+    }
+
+    /**
+     * Tells listeners about a renamed or changed product, after recomputing attached price tables
+     * if the change affects the price.
+     */
+    private void productChanged(int index, double before, boolean repriced) {
+        DynamicPricing pricing = this.pricing;
+        if (repriced && pricing != null) pricing.refresh();
+        Product product = products.get(index);
+        double after = priceAt(index);
+        if (after != before) notifyPriceChanged(product.getId(), after);
+        for (VendingMachineListener listener : listeners) {
+            listener.onProductChanged(product, after);
+        }
+    }
+
+    /**
+     * Returns the attached price tables. They are replaced when products are added or removed.
+     *
+     * @return the price tables, or null if the prices stored on the products are used
+     */
+    public DynamicPricing getPricing() {
+        return pricing;
+    }
+
+    /**
+     * Returns the attached exchange tables. They are replaced when products are added or removed.
+     *
+     * @return the exchange tables, or null if only SEK is accepted
+     */
+    public CurrencyExchange getCurrencyExchange() {
+        return exchange;
+    }
+
+    private static void commitCatalogChangeEvent(CatalogChangeEvent event, String change, int productId, int quantity) {
+        if (event.finish()) {
+            event.change = change;
+            event.productId = productId;
+            event.quantity = quantity;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns how many notes or coins of a denomination are in the cash box.
+     *
+     * @param denomination the denomination in SEK
+     * @return the count, or -1 if the machine does not accept that denomination
+     */
+    public synchronized int getCashCount(int denomination) {
+        for (int i = 0; i < validDenominations.length; i++) {
+            if (validDenominations[i] == denomination) return cashCounts[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns how many notes or coins of a currency's denomination are in the cash box.
+     *
+     * @param currency   the currency
+     * @param minorUnits the denomination in minor units
+     * @return the count, or -1 if the currency does not have that denomination
+     */
+    public synchronized int getCashCount(CurrencyCode currency, int minorUnits) {
+        if (currency == CurrencyCode.SEK) {
+            return minorUnits % CurrencyCode.MINOR_UNITS == 0 ? getCashCount(minorUnits / CurrencyCode.MINOR_UNITS) : -1;
+        }
+        int d = currency.indexOf(minorUnits);
+        if (d < 0) return -1;
+        int[] counts = foreignCashCounts[currency.ordinal()];
+        return counts == null ? 0 : counts[d];
+    }
+
+    /**
+     * Copies the machine's state: catalog, prices, stock, session and cash box, including the
+     * session's currency and foreign notes and coins.
+     * The copy is taken under the machine's lock, so it is consistent.
+     *
+     * @return the captured state
+     */
+    public synchronized MachineState captureState() {
+        double[] prices = new double[products.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = products.get(i).getPrice();
+        }
+        return new MachineState(products, prices, stock, balance, sessionId, cashCounts, sessionCurrency, foreignCashCounts);
+    }
+
+    /**
+     * Returns a read-only view of the products in this machine, in catalog order.
+     *
+     * @return the products
+     */
+    public synchronized List<Product> getCatalog() {
+        return Collections.unmodifiableList(products);
     }
 
     /**
@@ -92,31 +789,267 @@ public class VendingMachine implements IVendingMachine {
      * If the product exists and the user has enough money, the product is returned and the price is deducted.
      *
      * @param id the ID of the product the user wants to buy
-     * @return the product if successful, or null if not found or insufficient funds
+     * @return the product if successful, or null if not found, sold out or insufficient funds
      */
     @Override
-    public Product request(int id) {
-        // Loop through all products to find the one with the matching ID
-        for (Product p : products) {
-            if (p.getId() == id) {
-                // Check if the user has enough money to buy the product
-                if (getBalance() >= p.getPrice()) {
-                    // Deduct the product's price from the balance
-                    setBalance(getBalance() - p.getPrice());
-
-                    // Return the product to the user
-                    return p;
-                } else {
-                    // Not enough money
-                    System.out.println("Insufficient funds for product ID: " + id);
-                    return null;
-                }
+    public synchronized Product request(int id) {
+        return request(id, null);
+    }
+
+    /**
+     * Attempts to purchase a product by its ID, like {@link #request(int)}, and returns the record of
+     * the sale. Use its number to void or refund the purchase: with several clients buying at once,
+     * {@link #getLastTransactionNumber()} may already belong to someone else's purchase.
+     *
+     * @param id the ID of the product the user wants to buy
+     * @return the sale, or null if the product was not found, is sold out or funds are insufficient
+     */
+    public synchronized TransactionLog.Transaction purchase(int id) {
+        long[] number = new long[1];
+        if (request(id, number) == null) return null;
+        return transactionLog.get(number[0]);
+    }
+
+    /**
+     * Attempts to purchase a product by its ID; on success the transaction number is stored in
+     * {@code number[0]}, unless {@code number} is null.
+     */
+    private Product request(int id, long[] number) {
+        PurchaseEvent event = new PurchaseEvent();
+        event.start();
+
+        // Find the product with the matching ID
+        int i = indexOf(id);
+        if (i < 0) {
+            // No product found with the given ID
+            System.out.println("Product not found for ID: " + id);
+            return commitPurchaseEvent(event, id, -1, PurchaseEvent.NOT_FOUND, null);
+        }
+        Product p = products.get(i);
+
+        // Read the price once so the check and the deduction use the same value
+        double price = priceAt(i);
+
+        // Nothing to dispense if the spiral is empty
+        if (stock[i] == 0) {
+            System.out.println("Sold out: product ID " + id);
+            return commitPurchaseEvent(event, id, price, PurchaseEvent.SOLD_OUT, null);
+        }
+
+        // Check if the user has enough money to buy the product
+        if (getBalance() < price) {
+            // Not enough money
+            System.out.println("Insufficient funds for product ID: " + id);
+            return commitPurchaseEvent(event, id, price, PurchaseEvent.INSUFFICIENT_FUNDS, null);
+        }
+
+        // Deduct the product's price from the balance
+        setBalance(getBalance() - price);
+        if (stock[i] != UNLIMITED_STOCK) {
+            stock[i]--;
+        }
+        long transactionNumber = transactionLog.record(sessionId, id, price);
+        if (number != null) number[0] = transactionNumber;
+
+        for (VendingMachineListener listener : listeners) {
+            listener.onPurchase(sessionId, p, price);
+            if (stock[i] == 0) listener.onSoldOut(id);
+        }
+
+        // Return the product to the user
+        return commitPurchaseEvent(event, id, price, PurchaseEvent.DISPENSED, p);
+    }
+
+    /**
+     * Completes the flight recorder event of a purchase attempt and returns its result.
+     */
+    private Product commitPurchaseEvent(PurchaseEvent event, int id, double price, String outcome, Product result) {
+        if (event.finish()) {
+            event.sessionId = sessionId;
+            event.productId = id;
+            event.price = price;
+            event.outcome = outcome;
+            event.balance = balance;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The outcome is remembered for {@link #DEFAULT_TRANSACTION_TTL_MILLIS} in a fixed-size cache
+     * (see {@link RecentTransactions}); a repeated ID costs a few cache probes and changes nothing.
+     * A repeated ID that asks for another product is refused, as is a new ID when the cache has no
+     * room to remember it; neither charges anything.
+     * </p>
+     */
+    @Override
+    public synchronized Product request(long transactionId, int id) {
+        if (recentTransactions == null) {
+            recentTransactions = new RecentTransactions(DEFAULT_TRANSACTION_CACHE_SIZE,
+                    DEFAULT_TRANSACTION_TTL_MILLIS, Clock.systemUTC());
+        }
+
+        RecentTransactions.Entry entry = recentTransactions.reserve(transactionId, id);
+        if (entry == null) {
+            System.out.println("Too many recent transactions; transaction " + transactionId + " was refused");
+            return refuse(id);
+        }
+        if (!entry.isPending()) {
+            // A retry of a purchase that already happened: answer with the original outcome
+            if (entry.getProductId() != id) {
+                System.out.println("Transaction " + transactionId + " was used for product " + entry.getProductId());
+                return refuse(id);
             }
+            PurchaseEvent event = new PurchaseEvent();
+            event.start();
+            return commitPurchaseEvent(event, id, -1, PurchaseEvent.REPEATED, entry.getProduct());
         }
 
-        // No product found with the given ID
-        System.out.println("Product not found for ID: " + id);
-        return null;
+        Product p = null;
+        try {
+            p = request(id);
+        } finally {
+            recentTransactions.complete(entry, p);
+        }
+        return p;
+    }
+
+    private Product refuse(int id) {
+        PurchaseEvent event = new PurchaseEvent();
+        event.start();
+        return commitPurchaseEvent(event, id, -1, PurchaseEvent.REFUSED, null);
+    }
+
+    /**
+     * Replaces the cache of recent transaction outcomes, e.g., to change its size or clock.
+     * Outcomes remembered so far are forgotten.
+     *
+     * @param recentTransactions the new cache
+     */
+    public synchronized void setRecentTransactions(RecentTransactions recentTransactions) {
+        if (recentTransactions == null) throw new IllegalArgumentException("recentTransactions must not be null");
+        this.recentTransactions = recentTransactions;
+    }
+
+    /**
+     * Cancels a purchase of the current session, e.g. because the spiral jammed and nothing was
+     * dispensed. The price goes back to the balance and the unit back into stock.
+     *
+     * @param transactionNumber the purchase, see {@link #purchase(int)}
+     * @return true if the purchase was voided; false if it is unknown, too old, from an ended
+     *         session, or already voided or refunded
+     */
+    public synchronized boolean voidPurchase(long transactionNumber) {
+        TransactionLog.Transaction t = transactionLog.get(transactionNumber);
+        if (t == null || t.getStatus() != TransactionLog.Status.SOLD) {
+            System.out.println("No purchase to void with transaction number: " + transactionNumber);
+            return false;
+        }
+        if (t.getSessionId() != sessionId) {
+            System.out.println("Transaction " + transactionNumber + " belongs to an ended session; refund it instead");
+            return false;
+        }
+        transactionLog.reverse(transactionNumber, TransactionLog.Status.VOIDED);
+        setBalance(getBalance() + t.getPrice());
+        returnUnit(t.getProductId());
+        notifyReversed(transactionNumber);
+        return true;
+    }
+
+    /**
+     * Pays back a purchase in cash, e.g. when a customer reports a jammed spiral after taking
+     * their change. The unit goes back into stock; the balance of the current session is not touched.
+     *
+     * @param transactionNumber the purchase
+     * @return the amount to pay back in SEK, or 0 if the purchase is unknown, too old,
+     *         or already voided or refunded
+     */
+    public synchronized double refund(long transactionNumber) {
+        TransactionLog.Transaction t = transactionLog.get(transactionNumber);
+        if (t == null || !transactionLog.reverse(transactionNumber, TransactionLog.Status.REFUNDED)) {
+            System.out.println("No purchase to refund with transaction number: " + transactionNumber);
+            return 0;
+        }
+        returnUnit(t.getProductId());
+        notifyReversed(transactionNumber);
+        return t.getPrice();
+    }
+
+    /**
+     * Puts a unit of a product back into stock, if the product is still in the catalog.
+     */
+    private void returnUnit(int productId) {
+        int index = indexOf(productId);
+        if (index < 0 || stock[index] >= UNLIMITED_STOCK - 1) return;
+        stock[index]++;
+        for (VendingMachineListener listener : listeners) {
+            listener.onRestocked(productId, stock[index]);
+        }
+    }
+
+    private void notifyReversed(long transactionNumber) {
+        TransactionLog.Transaction t = transactionLog.get(transactionNumber);
+        for (VendingMachineListener listener : listeners) {
+            listener.onPurchaseReversed(sessionId, t);
+        }
+    }
+
+    /**
+     * Returns the number of the last purchase, to void or refund it.
+     * <p>
+     * The last purchase is the machine's, not the caller's: when several clients buy at once
+     * (e.g. over {@code VendingServer} or by card) it may belong to someone else. Such callers get
+     * the number with the purchase from {@link #purchase(int)}, or look it up in
+     * {@link #getSessionTransactions(long)}.
+     * </p>
+     *
+     * @return the transaction number, or 0 if nothing has been sold yet
+     */
+    public synchronized long getLastTransactionNumber() {
+        return transactionLog.getLastNumber();
+    }
+
+    /**
+     * Looks up a recent purchase.
+     *
+     * @param transactionNumber the transaction number
+     * @return the purchase, or {@code null} if it is unknown or no longer in the log
+     */
+    public synchronized TransactionLog.Transaction getTransaction(long transactionNumber) {
+        return transactionLog.get(transactionNumber);
+    }
+
+    /**
+     * Returns the most recent purchases, newest first.
+     *
+     * @param max the maximum number of purchases returned
+     * @return the purchases, at most {@link TransactionLog#getCapacity()} of them
+     */
+    public synchronized List<TransactionLog.Transaction> getRecentTransactions(int max) {
+        return transactionLog.recent(max);
+    }
+
+    /**
+     * Returns the purchases of a session that are still in the log, oldest first.
+     *
+     * @param sessionId the session, e.g. {@link #getSessionId()}
+     * @return the purchases
+     */
+    public synchronized List<TransactionLog.Transaction> getSessionTransactions(long sessionId) {
+        return transactionLog.ofSession(sessionId);
+    }
+
+    /**
+     * Replaces the log of recent purchases, e.g. to change its size or clock.
+     * Purchases recorded so far can no longer be voided or refunded.
+     *
+     * @param transactionLog the new log
+     */
+    public synchronized void setTransactionLog(TransactionLog transactionLog) {
+        if (transactionLog == null) throw new IllegalArgumentException("transactionLog must not be null");
+        this.transactionLog = transactionLog;
     }
 
     /**
@@ -126,13 +1059,28 @@ public class VendingMachine implements IVendingMachine {
      * @return the amount of change returned to the user
      */
     @Override
-    public double endSession() {
+    public synchronized double endSession() {
+        SessionEndEvent event = new SessionEndEvent();
+        event.start();
+
         // Store the current balance to return as change
         double change = getBalance();
 
         // Reset the balance to 0
         setBalance(0);
 
+        // Notify observers, then start a new session for the next customer
+        for (VendingMachineListener listener : listeners) {
+            listener.onSessionEnded(sessionId, change);
+        }
+        if (event.finish()) {
+            event.sessionId = sessionId;
+            event.change = change;
+            event.commit();
+        }
+        sessionId++;
+        sessionCurrency = null;
+
         // Return the change
         return change;
     }
@@ -140,18 +1088,19 @@ public class VendingMachine implements IVendingMachine {
     /**
      * Returns a description of a product by its ID.
      * This is useful for showing details before the user decides to buy.
+     * The price is shown in the session's currency, from the precomputed exchange tables.
      *
      * @param id the ID of the product
      * @return a description of the product, or a message if not found
      */
     @Override
-    public String getDescription(int id) {
-        // Loop through the product list to find the matching ID
-        for (Product p : products) {
-            if (p.getId() == id) {
-                // Return the product's description
-                return p.examine();
-            }
+    public synchronized String getDescription(int id) {
+        // Look up the product by its ID
+        int index = indexOf(id);
+        if (index >= 0) {
+            // Return the product's description with the price charged, in the session's currency
+            CurrencyCode currency = sessionCurrency;
+            return products.get(index).examine(priceLabel(foreignTable(currency), currency, index));
         }
 
         // No product found with the given ID
@@ -160,45 +1109,166 @@ public class VendingMachine implements IVendingMachine {
 
     /**
      * Returns a list of all products in the vending machine.
-     * Each product is represented as a string using its toString() method.
+     * Each product is represented as a string using its toString() method,
+     * with the price that is charged, in the session's currency.
      *
      * @return an array of product descriptions
      */
     @Override
-    public String[] getProducts() {
+    public synchronized String[] getProducts() {
         // Create an array to hold the product descriptions
         String[] list = new String[products.size()];
+        CurrencyCode currency = sessionCurrency;
+        ExchangeTable table = foreignTable(currency);
 
         // Fill the array with each product's string representation
         for (int i = 0; i < products.size(); i++) {
-            list[i] = products.get(i).toString();
+            list[i] = products.get(i).toString(priceLabel(table, currency, i));
         }
 
         return list;
     }
 
     /**
-     * Checks the product list for duplicate IDs.
-     * Each product must have a unique ID to avoid confusion when selecting them.
-     *
-     * @param products the list of products to check
-     * @return true if duplicates are found, false otherwise
+     * Renders the price charged for the product at a position: from the price tables when attached,
+     * in the session's currency when exchange tables are given.
+     */
+    private String priceLabel(ExchangeTable table, CurrencyCode currency, int index) {
+        double price = priceAt(index);
+        return table == null ? products.get(index).priceLabel(price) : table.priceLabel(currency, index, price);
+    }
+
+    /**
+     * Returns the exchange tables if prices can be shown in the given session currency, otherwise null.
+     */
+    private ExchangeTable foreignTable(CurrencyCode currency) {
+        CurrencyExchange current = exchange;
+        if (current == null || currency == null) return null;
+        ExchangeTable table = current.current();
+        return table.accepts(currency) ? table : null;
+    }
+
+    /**
+     * Returns the position of the product with the given ID in the product list, or -1.
+     */
+    private int indexOf(int id) {
+        // Ties are sorted by position, so this finds the first product with the ID, like a linear scan would
+        int i = lowerBound(id);
+        return i < sortedIds.length && sortedIds[i] == id ? sortedPositions[i] : -1;
+    }
+
+    /**
+     * Returns the price of the product at the given position in the product list.
+     * Uses the dynamic price tables when attached, otherwise the product's own price.
+     */
+    private double priceAt(int index) {
+        DynamicPricing current = pricing;
+        return current != null ? current.priceAt(index) : products.get(index).getPrice();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The page token is the last product ID of the previous page (base 36), so the next page
+     * starts with a binary search instead of a scan from the beginning.
+     * </p>
      */
-    private boolean hasDuplicateIds(List<Product> products) {
-        // A set to keep track of IDs we've already seen
-        Set<Integer> seenIds = new HashSet<>();
+    @Override
+    public synchronized CatalogPage browseProducts(String pageToken, int pageSize, Predicate<? super Product> filter) {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive");
+
+        // Continue right after the last ID the previous page looked at
+        int i = pageToken == null ? 0 : firstIndexAfter(decodePageToken(pageToken));
 
-        // Loop through each product
-        for (Product p : products) {
-            // Try to add the ID to the set
-            // If it already exists, it's a duplicate
-            if (!seenIds.add(p.getId())) {
-                System.out.println("Duplicate ID found: " + p.getId() + " for product '" + p.getProductName() + "'");
-                return true;
+        List<ProductView> items = new ArrayList<>(Math.min(pageSize, sortedIds.length));
+        while (i < sortedIds.length && items.size() < pageSize) {
+            int position = sortedPositions[i++];
+            Product p = products.get(position);
+            if (filter == null || filter.test(p)) {
+                items.add(new ProductView(p, priceAt(position)));
             }
         }
 
-        // No duplicates found
-        return false;
+        // No token on the last page; otherwise resume after the last examined ID
+        String next = i < sortedIds.length ? encodePageToken(sortedIds[i - 1]) : null;
+        return new CatalogPage(items, next);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Stream<ProductView> streamProducts(Predicate<? super Product> filter) {
+        // Capture the current catalog and index so the stream stays consistent if the catalog changes
+        List<Product> catalog = products;
+        int[] positions = sortedPositions;
+        DynamicPricing tables = pricing;
+        return IntStream.range(0, positions.length)
+                .map(i -> positions[i])
+                .filter(position -> filter == null || filter.test(catalog.get(position)))
+                .mapToObj(position -> new ProductView(catalog.get(position),
+                        tables != null ? tables.priceAt(position) : catalog.get(position).getPrice()));
+    }
+
+    private static String encodePageToken(int lastId) {
+        return "p" + Integer.toString(lastId, 36);
+    }
+
+    private static int decodePageToken(String token) {
+        if (token.length() < 2 || token.charAt(0) != 'p') {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        try {
+            return Integer.parseInt(token.substring(1), 36);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+    }
+
+    /**
+     * Rebuilds the ID index after the product list has changed.
+     * Sorts (ID, position) pairs packed into longs, so no boxing is needed.
+     */
+    private void rebuildIndex() {
+        int n = products.size();
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Flip the sign bit so negative IDs sort before positive ones as unsigned values
+            long key = (products.get(i).getId() ^ 0x80000000) & 0xFFFFFFFFL;
+            packed[i] = (key << 32) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] ids = new int[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = (int) (packed[i] >>> 32) ^ 0x80000000;
+            positions[i] = (int) packed[i];
+        }
+        this.sortedIds = ids;
+        this.sortedPositions = positions;
+    }
+
+    /**
+     * Returns the first index in {@code sortedIds} whose ID is greater than or equal to {@code id}.
+     */
+    private int lowerBound(int id) {
+        int lo = 0;
+        int hi = sortedIds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedIds[mid] < id) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first index in {@code sortedIds} whose ID is greater than {@code id}.
+     */
+    private int firstIndexAfter(int id) {
+        int i = lowerBound(id);
+        while (i < sortedIds.length && sortedIds[i] == id) i++;
+        return i;
     }
 }
\ No newline at end of file
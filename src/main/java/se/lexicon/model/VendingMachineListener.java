@@ -0,0 +1,174 @@
+package se.lexicon.model;
+
+import se.lexicon.currency.CurrencyCode;
+
+/**
+ * Callback interface for observing what happens inside a {@link VendingMachine}.
+ * <p>
+ * Listeners are called synchronously on the thread that performs the operation,
+ * so implementations should be quick and must not call back into the machine.
+ * All methods have empty default implementations; override only what you need.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * vm.addListener(new VendingMachineListener() {
+ *     @Override
+ *     public void onPurchase(long sessionId, Product product, double price) {
+ *         System.out.println("Sold " + product.getProductName() + " for " + price + " SEK");
+ *     }
+ * });
+ * }</pre>
+ */
+public interface VendingMachineListener {
+
+    /**
+     * Called after a valid denomination has been added to the deposit pool.
+     *
+     * @param sessionId the current session
+     * @param amount    the inserted amount in SEK
+     * @param balance   the balance after the insert
+     */
+    default void onCurrencyAdded(long sessionId, int amount, double balance) {
+    }
+
+    /**
+     * Called after a foreign note or coin has been credited to the deposit pool,
+     * see {@link VendingMachine#addCurrency(CurrencyCode, int)}.
+     *
+     * @param sessionId  the current session
+     * @param currency   the currency of the note or coin
+     * @param minorUnits the denomination in minor units
+     * @param credited   the credit in SEK at the current exchange rate
+     * @param balance    the balance after the insert
+     */
+    default void onForeignCurrencyAdded(long sessionId, CurrencyCode currency, int minorUnits,
+                                        double credited, double balance) {
+    }
+
+    /**
+     * Called after an inserted note or coin was rejected because the machine does not accept
+     * that denomination (e.g., a foreign or counterfeit coin).
+     *
+     * @param sessionId the current session
+     * @param amount    the amount the note or coin was read as, in SEK or, for foreign
+     *                  currencies, in minor units
+     */
+    default void onCurrencyRejected(long sessionId, int amount) {
+    }
+
+    /**
+     * Called after the balance of the deposit pool has changed, for whatever reason:
+     * a deposit, a card payment, a purchase or an ended session.
+     *
+     * @param sessionId the current session
+     * @param balance   the new balance
+     */
+    default void onBalanceChanged(long sessionId, double balance) {
+    }
+
+    /**
+     * Called after an approved card payment has been credited to the deposit pool.
+     *
+     * @param sessionId the current session
+     * @param amount    the credited amount in SEK
+     * @param balance   the balance after the credit
+     */
+    default void onCardPayment(long sessionId, double amount, double balance) {
+    }
+
+    /**
+     * Called after a product has been sold.
+     *
+     * @param sessionId the current session
+     * @param product   the product that was sold
+     * @param price     the price actually charged
+     */
+    default void onPurchase(long sessionId, Product product, double price) {
+    }
+
+    /**
+     * Called after the price a customer is charged for a product has changed, either by
+     * {@link VendingMachine#setPrice(int, double)} or by new price tables.
+     *
+     * @param productId the product
+     * @param price     the new price in SEK
+     */
+    default void onPriceChanged(int productId, double price) {
+    }
+
+    /**
+     * Called after the last unit of a product has been sold.
+     *
+     * @param productId the product
+     */
+    default void onSoldOut(int productId) {
+    }
+
+    /**
+     * Called after units of a product have been loaded (see {@link VendingMachine#restock(int, int)})
+     * or a unit was put back by a voided or refunded purchase.
+     *
+     * @param productId the product
+     * @param stock     the units now in the machine, or {@link VendingMachine#UNLIMITED_STOCK}
+     */
+    default void onRestocked(int productId, int stock) {
+    }
+
+    /**
+     * Called after a product was added to the catalog, see {@link VendingMachine#addProducts(java.util.List, int)}.
+     *
+     * @param product the new product
+     * @param price   the price a customer is charged for it
+     * @param stock   the units loaded, or {@link VendingMachine#UNLIMITED_STOCK}
+     */
+    default void onProductAdded(Product product, double price, int stock) {
+    }
+
+    /**
+     * Called after the name or an attribute (size, cooling level, spiciness, flavor) of a product
+     * has changed, e.g. by {@link VendingMachine#setProductName(int, String)}.
+     *
+     * @param product the product, with its new name and attributes
+     * @param price   the price a customer is charged for it now
+     */
+    default void onProductChanged(Product product, double price) {
+    }
+
+    /**
+     * Called after a product was removed from the catalog, see {@link VendingMachine#removeProduct(int)}.
+     *
+     * @param productId the product
+     */
+    default void onProductRemoved(int productId) {
+    }
+
+    /**
+     * Called after a purchase was voided or refunded, see {@link VendingMachine#voidPurchase(long)}
+     * and {@link VendingMachine#refund(long)}.
+     *
+     * @param sessionId   the current session
+     * @param transaction the purchase, with its new status
+     */
+    default void onPurchaseReversed(long sessionId, TransactionLog.Transaction transaction) {
+    }
+
+    /**
+     * Called when the customer of the current session identifies themselves
+     * (e.g., by tapping a loyalty card), see {@link VendingMachine#identifyCustomer(long)}.
+     *
+     * @param sessionId   the current session
+     * @param customerKey an opaque, stable key for the customer
+     */
+    default void onCustomerIdentified(long sessionId, long customerKey) {
+    }
+
+    /**
+     * Called after a session has ended and change was returned.
+     *
+     * @param sessionId the session that ended
+     * @param change    the amount returned to the customer
+     */
+    default void onSessionEnded(long sessionId, double change) {
+    }
+}
@@ -0,0 +1,282 @@
+package se.lexicon.net;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static se.lexicon.net.VendingProtocol.*;
+
+/**
+ * Blocking client for a {@link VendingServer}.
+ * <p>
+ * The simple methods ({@link #addCurrency(int)}, {@link #request(int)}, ...) send one request
+ * and wait for its response. For pipelining, queue several requests with {@link #send(byte, int)},
+ * push them out with {@link #flush()}, then collect the responses in order with {@link #receive()}.
+ * </p>
+ * <p>
+ * A client is not thread-safe; use one client per thread.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * try (VendingClient client = new VendingClient(new InetSocketAddress("localhost", 7070))) {
+ *     client.addCurrency(100);
+ *     int dispensed = client.request(4);
+ *     double change = client.endSession();
+ * }
+ * }</pre>
+ */
+public class VendingClient implements Closeable {
+
+    /** A decoded response frame. */
+    public static final class Response {
+        private final int requestId;
+        private final byte status;
+        private final ByteBuffer payload;
+
+        Response(int requestId, byte status, ByteBuffer payload) {
+            this.requestId = requestId;
+            this.status = status;
+            this.payload = payload;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public boolean isOk() {
+            return status == STATUS_OK;
+        }
+
+        /**
+         * Returns the payload, positioned at its start. Read it according to the request's opcode.
+         */
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+
+        /**
+         * Returns the error message of a failed request.
+         *
+         * @return the message, or {@code null} if the request succeeded
+         */
+        public String getErrorMessage() {
+            return isOk() ? null : getString(payload.duplicate());
+        }
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+    private ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+    private int nextRequestId = 1;
+
+    /**
+     * Connects to a server.
+     *
+     * @param address the server address
+     * @throws IOException if the connection fails
+     */
+    public VendingClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip(); // start empty, in "drain" mode
+    }
+
+    /**
+     * Queues a request without sending it. Requests with no argument ignore {@code argument}.
+     *
+     * @param opcode   one of the {@code OP_*} constants in {@link VendingProtocol}
+     * @param argument the amount or product ID
+     * @return the request ID that the matching response will carry
+     * @throws IOException if the queue is full and has to be flushed first but the write fails
+     */
+    public int send(byte opcode, int argument) throws IOException {
+        boolean hasArgument = opcode == OP_ADD_CURRENCY || opcode == OP_REQUEST || opcode == OP_GET_DESCRIPTION;
+        int frameSize = FRAME_HEADER_SIZE + (hasArgument ? 4 : 0);
+        if (out.remaining() < LENGTH_SIZE + frameSize) {
+            flush();
+        }
+        int requestId = nextRequestId++;
+        out.putInt(frameSize).putInt(requestId).put(opcode);
+        if (hasArgument) out.putInt(argument);
+        return requestId;
+    }
+
+    /**
+     * Queues a purchase that the server executes at most once per transaction ID
+     * ({@link VendingProtocol#OP_REQUEST_ONCE}). After a timeout, queue it again with the same ID.
+     *
+     * @param transactionId an ID unique per purchase attempt
+     * @param productId     the product ID
+     * @return the request ID that the matching response will carry
+     * @throws IOException if the queue is full and has to be flushed first but the write fails
+     */
+    public int sendRequestOnce(long transactionId, int productId) throws IOException {
+        int frameSize = FRAME_HEADER_SIZE + 12;
+        if (out.remaining() < LENGTH_SIZE + frameSize) {
+            flush();
+        }
+        int requestId = nextRequestId++;
+        out.putInt(frameSize).putInt(requestId).put(OP_REQUEST_ONCE).putLong(transactionId).putInt(productId);
+        return requestId;
+    }
+
+    /**
+     * Sends all queued requests.
+     *
+     * @throws IOException if the write fails
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Blocks until the next response arrives.
+     *
+     * @return the response; responses arrive in the order the requests were sent
+     * @throws IOException if the connection fails or the server closes it
+     */
+    public Response receive() throws IOException {
+        fill(LENGTH_SIZE);
+        int length = in.getInt(in.position());
+        if (length < FRAME_HEADER_SIZE || length > MAX_FRAME_SIZE) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        fill(LENGTH_SIZE + length);
+        in.getInt();
+        int requestId = in.getInt();
+        byte status = in.get();
+
+        // Copy the payload out so the receive buffer can be reused for the next frame
+        byte[] payload = new byte[length - FRAME_HEADER_SIZE];
+        in.get(payload);
+        return new Response(requestId, status, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Inserts money into the remote machine.
+     *
+     * @param amount the denomination
+     * @return the balance afterwards
+     */
+    public double addCurrency(int amount) throws IOException {
+        return call(OP_ADD_CURRENCY, amount).getDouble();
+    }
+
+    /**
+     * Buys a product on the remote machine.
+     *
+     * @param productId the product ID
+     * @return the ID of the dispensed product, or -1 if nothing was dispensed
+     */
+    public int request(int productId) throws IOException {
+        return call(OP_REQUEST, productId).getInt();
+    }
+
+    /**
+     * Buys a product on the remote machine at most once per transaction ID.
+     *
+     * @param transactionId an ID unique per purchase attempt; reuse it when retrying
+     * @param productId     the product ID
+     * @return the ID of the dispensed product, or -1 if nothing was dispensed
+     */
+    public int request(long transactionId, int productId) throws IOException {
+        return await(sendRequestOnce(transactionId, productId)).getInt();
+    }
+
+    /**
+     * Ends the session on the remote machine.
+     *
+     * @return the change returned
+     */
+    public double endSession() throws IOException {
+        return call(OP_END_SESSION, 0).getDouble();
+    }
+
+    /**
+     * Returns the remote machine's description of a product.
+     *
+     * @param productId the product ID
+     * @return the description
+     */
+    public String getDescription(int productId) throws IOException {
+        return getString(call(OP_GET_DESCRIPTION, productId));
+    }
+
+    /**
+     * Returns the remote machine's product listing.
+     *
+     * @return one line per product
+     */
+    public String[] getProducts() throws IOException {
+        ByteBuffer payload = call(OP_GET_PRODUCTS, 0);
+        String[] products = new String[payload.getInt()];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = getString(payload);
+        }
+        return products;
+    }
+
+    /**
+     * Returns the remote machine's balance.
+     *
+     * @return the balance
+     */
+    public double getBalance() throws IOException {
+        return call(OP_GET_BALANCE, 0).getDouble();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer call(byte opcode, int argument) throws IOException {
+        return await(send(opcode, argument));
+    }
+
+    /**
+     * Sends the queued requests and returns the payload of the response to {@code requestId},
+     * which must be the only request outstanding.
+     */
+    private ByteBuffer await(int requestId) throws IOException {
+        flush();
+        Response response = receive();
+        if (response.getRequestId() != requestId) {
+            throw new IOException("Out of order response " + response.getRequestId() + ", expected " + requestId);
+        }
+        if (!response.isOk()) {
+            throw new IllegalStateException(response.getErrorMessage());
+        }
+        return response.getPayload();
+    }
+
+    /**
+     * Reads from the socket until at least {@code bytes} bytes are buffered.
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) return;
+        if (in.capacity() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(bytes, in.capacity() * 2));
+            bigger.put(in);
+            bigger.flip();
+            in = bigger;
+        }
+        in.compact();
+        try {
+            while (in.position() < bytes) {
+                if (channel.read(in) < 0) throw new EOFException("Server closed the connection");
+            }
+        } finally {
+            in.flip();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package se.lexicon.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary wire format shared by {@link VendingServer} and {@link VendingClient}.
+ *
+ * <h2>Frames</h2>
+ * <p>Every frame starts with a 4-byte big-endian length that counts the bytes after it.</p>
+ * <pre>
+ * request:  [int length][int requestId][byte opcode][payload]
+ * response: [int length][int requestId][byte status][payload]
+ * </pre>
+ * <p>
+ * The request ID is chosen by the client and echoed by the server, and responses are sent
+ * in request order. A client may therefore send many requests before reading any response
+ * (pipelining).
+ * </p>
+ *
+ * <h2>Payloads</h2>
+ * <table summary="Opcodes">
+ *   <tr><th>Opcode</th><th>Request payload</th><th>Response payload</th></tr>
+ *   <tr><td>{@link #OP_ADD_CURRENCY}</td><td>int amount</td><td>double balance</td></tr>
+ *   <tr><td>{@link #OP_REQUEST}</td><td>int productId</td><td>int dispensedId (-1 if none), double balance</td></tr>
+ *   <tr><td>{@link #OP_END_SESSION}</td><td>-</td><td>double change</td></tr>
+ *   <tr><td>{@link #OP_GET_DESCRIPTION}</td><td>int productId</td><td>string</td></tr>
+ *   <tr><td>{@link #OP_GET_PRODUCTS}</td><td>-</td><td>int count, count x string</td></tr>
+ *   <tr><td>{@link #OP_GET_BALANCE}</td><td>-</td><td>double balance</td></tr>
+ *   <tr><td>{@link #OP_REQUEST_ONCE}</td><td>long transactionId, int productId</td><td>as {@link #OP_REQUEST}</td></tr>
+ * </table>
+ * <p>
+ * Strings are an int byte count followed by UTF-8 bytes. An error response
+ * ({@link #STATUS_ERROR}) carries a string message instead of the normal payload.
+ * </p>
+ */
+public final class VendingProtocol {
+
+    public static final byte OP_ADD_CURRENCY = 1;
+    public static final byte OP_REQUEST = 2;
+    public static final byte OP_END_SESSION = 3;
+    public static final byte OP_GET_DESCRIPTION = 4;
+    public static final byte OP_GET_PRODUCTS = 5;
+    public static final byte OP_GET_BALANCE = 6;
+    /** Like {@link #OP_REQUEST}, but a retry with the same transaction ID is not executed twice. */
+    public static final byte OP_REQUEST_ONCE = 7;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    /** Size of the length prefix. */
+    public static final int LENGTH_SIZE = 4;
+
+    /** Bytes after the length prefix that every frame has: request ID and opcode/status. */
+    public static final int FRAME_HEADER_SIZE = 4 + 1;
+
+    /** Frames larger than this are treated as a protocol error. */
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private VendingProtocol() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #putString(ByteBuffer, byte[])} writes for the given string bytes.
+     */
+    static int stringSize(byte[] utf8) {
+        return 4 + utf8.length;
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] utf8) {
+        buffer.putInt(utf8.length);
+        buffer.put(utf8);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Malformed string of length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,310 @@
+package se.lexicon.net;
+
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import static se.lexicon.net.VendingProtocol.*;
+
+/**
+ * Non-blocking network front-end for one vending machine.
+ * <p>
+ * A single selector thread accepts kiosk and terminal connections, decodes
+ * {@link VendingProtocol} frames and calls the machine. Network clients are served one
+ * request at a time on that thread, but the machine is usually shared with other callers too,
+ * such as the service console, card payments and catalog replication. The server relies on the
+ * machine being thread-safe, as {@link se.lexicon.model.VendingMachine}'s synchronized methods are;
+ * a sequence of calls from one client is not atomic with respect to those other callers.
+ * </p>
+ *
+ * <h2>How it works</h2>
+ * <ul>
+ *   <li>Each connection has a direct input and a direct output buffer. Every complete frame
+ *   in the input buffer is handled in one go, so pipelined requests are answered in a batch
+ *   with a single write.</li>
+ *   <li>If a client does not read its responses and the output buffer passes a high-water
+ *   mark, the server stops reading from that client until the backlog is written.</li>
+ *   <li>Malformed frames close the connection; exceptions thrown by the machine are
+ *   returned as {@link VendingProtocol#STATUS_ERROR} responses.</li>
+ * </ul>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * VendingServer server = new VendingServer(vm, new InetSocketAddress("0.0.0.0", 7070));
+ * server.start();
+ * ...
+ * server.close();
+ * }</pre>
+ */
+public class VendingServer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HIGH_WATER_MARK = 256 * 1024;
+
+    /** Per-connection buffers. Both are kept in "fill" mode between events. */
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private final IVendingMachine machine;
+    private final InetSocketAddress address;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Creates a server; nothing is bound until {@link #start()} is called.
+     *
+     * @param machine the machine to expose
+     * @param address the address to listen on; use port 0 for any free port
+     */
+    public VendingServer(IVendingMachine machine, InetSocketAddress address) {
+        if (machine == null || address == null) throw new IllegalArgumentException("machine and address must not be null");
+        this.machine = machine;
+        this.address = address;
+    }
+
+    /**
+     * Binds the listening socket and starts the selector thread.
+     *
+     * @throws IOException if the address can not be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running) throw new IllegalStateException("Server already started");
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(this::run, "vending-server-" + getLocalPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the port the server is listening on (useful when started on port 0).
+     *
+     * @return the local port
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the selector thread and closes all connections.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException | CancelledKeyException e) {
+                        // The peer went away or misbehaved; drop only this connection
+                        closeQuietly(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.out.println("Vending server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) closeQuietly(key);
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException ignored) {
+                // nothing left to clean up
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection c = (Connection) key.attachment();
+
+        if (channel.read(c.in) < 0) {
+            closeQuietly(key);
+            return;
+        }
+
+        // Handle every complete frame that has arrived
+        c.in.flip();
+        while (c.in.remaining() >= LENGTH_SIZE) {
+            int length = c.in.getInt(c.in.position());
+            if (length < FRAME_HEADER_SIZE || length > MAX_FRAME_SIZE) {
+                throw new IOException("Bad frame length: " + length);
+            }
+            if (c.in.remaining() < LENGTH_SIZE + length) {
+                break;
+            }
+            int frameEnd = c.in.position() + LENGTH_SIZE + length;
+            c.in.position(c.in.position() + LENGTH_SIZE);
+            int requestId = c.in.getInt();
+            byte opcode = c.in.get();
+
+            // Limit the payload view so a handler can not read into the next frame
+            int oldLimit = c.in.limit();
+            c.in.limit(frameEnd);
+            handle(c, requestId, opcode);
+            c.in.limit(oldLimit);
+            c.in.position(frameEnd);
+        }
+        c.in.compact();
+
+        // A frame larger than the buffer: grow it so the rest can arrive
+        if (!c.in.hasRemaining()) {
+            c.in = grow(c.in, c.in.capacity() * 2);
+        }
+
+        flush(key, channel, c);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        flush(key, (SocketChannel) key.channel(), (Connection) key.attachment());
+    }
+
+    private void flush(SelectionKey key, SocketChannel channel, Connection c) throws IOException {
+        c.out.flip();
+        channel.write(c.out);
+        c.out.compact();
+
+        boolean backlog = c.out.position() > 0;
+        int ops = backlog ? SelectionKey.OP_WRITE : 0;
+        // Stop reading from clients that do not keep up with their responses
+        if (c.out.position() < HIGH_WATER_MARK) ops |= SelectionKey.OP_READ;
+        key.interestOps(ops);
+    }
+
+    /**
+     * Executes one request and appends its response to the connection's output buffer.
+     */
+    private void handle(Connection c, int requestId, byte opcode) {
+        ByteBuffer in = c.in;
+        try {
+            switch (opcode) {
+                case OP_ADD_CURRENCY: {
+                    machine.addCurrency(in.getInt());
+                    begin(c, requestId, STATUS_OK, 8).putDouble(machine.getBalance());
+                    break;
+                }
+                case OP_REQUEST: {
+                    Product p = machine.request(in.getInt());
+                    begin(c, requestId, STATUS_OK, 12).putInt(p != null ? p.getId() : -1).putDouble(machine.getBalance());
+                    break;
+                }
+                case OP_END_SESSION: {
+                    begin(c, requestId, STATUS_OK, 8).putDouble(machine.endSession());
+                    break;
+                }
+                case OP_GET_DESCRIPTION: {
+                    byte[] description = utf8(machine.getDescription(in.getInt()));
+                    putString(begin(c, requestId, STATUS_OK, stringSize(description)), description);
+                    break;
+                }
+                case OP_GET_PRODUCTS: {
+                    String[] products = machine.getProducts();
+                    byte[][] encoded = new byte[products.length][];
+                    int size = 4;
+                    for (int i = 0; i < products.length; i++) {
+                        encoded[i] = utf8(products[i]);
+                        size += stringSize(encoded[i]);
+                    }
+                    ByteBuffer out = begin(c, requestId, STATUS_OK, size).putInt(encoded.length);
+                    for (byte[] e : encoded) putString(out, e);
+                    break;
+                }
+                case OP_GET_BALANCE: {
+                    begin(c, requestId, STATUS_OK, 8).putDouble(machine.getBalance());
+                    break;
+                }
+                case OP_REQUEST_ONCE: {
+                    long transactionId = in.getLong();
+                    Product p = machine.request(transactionId, in.getInt());
+                    begin(c, requestId, STATUS_OK, 12).putInt(p != null ? p.getId() : -1).putDouble(machine.getBalance());
+                    break;
+                }
+                default:
+                    error(c, requestId, "Unknown opcode: " + opcode);
+            }
+        } catch (RuntimeException e) {
+            error(c, requestId, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void error(Connection c, int requestId, String message) {
+        byte[] bytes = utf8(message);
+        putString(begin(c, requestId, STATUS_ERROR, stringSize(bytes)), bytes);
+    }
+
+    /**
+     * Writes a response header sized for the given payload and returns the output buffer,
+     * positioned where the payload goes. Grows the buffer if needed.
+     */
+    private ByteBuffer begin(Connection c, int requestId, byte status, int payloadSize) {
+        int frameSize = FRAME_HEADER_SIZE + payloadSize;
+        if (c.out.remaining() < LENGTH_SIZE + frameSize) {
+            c.out = grow(c.out, Math.max(c.out.capacity() * 2, c.out.position() + LENGTH_SIZE + frameSize));
+        }
+        return c.out.putInt(frameSize).putInt(requestId).put(status);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+}
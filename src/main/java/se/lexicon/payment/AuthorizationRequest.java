@@ -0,0 +1,47 @@
+package se.lexicon.payment;
+
+/**
+ * A request to reserve money on a card.
+ * <p>
+ * The idempotency key identifies the payment, not the attempt: every retry of the same
+ * payment carries the same key, so the processor charges the card at most once.
+ * </p>
+ */
+public final class AuthorizationRequest {
+
+    private final String idempotencyKey;
+    private final String cardToken;
+    private final double amount;
+
+    /**
+     * Creates a request.
+     *
+     * @param idempotencyKey unique key of the payment, reused on retries
+     * @param cardToken      tokenized card or contactless credential (never the card number)
+     * @param amount         the amount in SEK (must be positive)
+     */
+    public AuthorizationRequest(String idempotencyKey, String cardToken, double amount) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("Idempotency key can not be null or empty");
+        }
+        if (cardToken == null || cardToken.isEmpty()) {
+            throw new IllegalArgumentException("Card token can not be null or empty");
+        }
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
+        this.idempotencyKey = idempotencyKey;
+        this.cardToken = cardToken;
+        this.amount = amount;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getCardToken() {
+        return cardToken;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,64 @@
+package se.lexicon.payment;
+
+/**
+ * The processor's answer to an {@link AuthorizationRequest}.
+ */
+public final class AuthorizationResult {
+
+    /**
+     * Outcome of one authorization attempt.
+     */
+    public enum Status {
+        /** The money is reserved. */
+        APPROVED,
+        /** The card issuer said no (insufficient funds, blocked card, ...). Retrying will not help. */
+        DECLINED,
+        /** Something went wrong on the way (network, processor overload). The attempt may be retried. */
+        TRANSIENT_ERROR
+    }
+
+    private final Status status;
+    private final String authorizationCode;
+    private final String message;
+
+    public AuthorizationResult(Status status, String authorizationCode, String message) {
+        if (status == null) throw new IllegalArgumentException("status must not be null");
+        this.status = status;
+        this.authorizationCode = authorizationCode;
+        this.message = message;
+    }
+
+    public static AuthorizationResult approved(String authorizationCode) {
+        return new AuthorizationResult(Status.APPROVED, authorizationCode, "Approved");
+    }
+
+    public static AuthorizationResult declined(String message) {
+        return new AuthorizationResult(Status.DECLINED, null, message);
+    }
+
+    public static AuthorizationResult transientError(String message) {
+        return new AuthorizationResult(Status.TRANSIENT_ERROR, null, message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the code needed to void the authorization later.
+     *
+     * @return the code, or {@code null} if not approved
+     */
+    public String getAuthorizationCode() {
+        return authorizationCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Status: " + status + ", Code: " + authorizationCode + ", Message: " + message;
+    }
+}
@@ -0,0 +1,68 @@
+package se.lexicon.payment;
+
+/**
+ * Final outcome of a card payment started with {@link CardPaymentService#pay}.
+ */
+public final class CardPaymentResult {
+
+    /**
+     * What happened to the payment.
+     */
+    public enum Status {
+        /** The card was charged and the amount credited to the session. */
+        APPROVED,
+        /** The card was declined; nothing was credited. */
+        DECLINED,
+        /** No answer after all retries; the payment was reversed, so nothing was charged or credited. */
+        FAILED,
+        /**
+         * No answer after all retries, and the reversal was not confirmed either: the card may have been
+         * charged although nothing was credited. Reconcile with the processor by the idempotency key.
+         */
+        UNKNOWN,
+        /** Approved, but the session had ended in the meantime, so the authorization was voided. */
+        SESSION_ENDED
+    }
+
+    private final Status status;
+    private final String idempotencyKey;
+    private final String authorizationCode;
+    private final int attempts;
+    private final String message;
+
+    public CardPaymentResult(Status status, String idempotencyKey, String authorizationCode, int attempts, String message) {
+        this.status = status;
+        this.idempotencyKey = idempotencyKey;
+        this.authorizationCode = authorizationCode;
+        this.attempts = attempts;
+        this.message = message;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getAuthorizationCode() {
+        return authorizationCode;
+    }
+
+    /**
+     * Returns how many authorization attempts were made (1 if the first one succeeded).
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Status: " + status + ", Key: " + idempotencyKey + ", Attempts: " + attempts + ", Message: " + message;
+    }
+}
@@ -0,0 +1,215 @@
+package se.lexicon.payment;
+
+import se.lexicon.model.VendingMachine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Funds vending machine sessions from card or contactless payments.
+ * <p>
+ * {@link #pay(VendingMachine, String, double)} returns immediately; the authorization runs in
+ * the background and the session's balance is credited when the processor approves. Nothing
+ * holds the machine while waiting, so a slow authorization never delays coin deposits,
+ * purchases or other payments on the same machine.
+ * </p>
+ *
+ * <h2>Reliability</h2>
+ * <ul>
+ *   <li>Each attempt has a timeout; a timed-out or transiently failed attempt is retried with
+ *   exponential backoff, up to a maximum number of attempts.</li>
+ *   <li>All attempts of one payment share one idempotency key, so a retry after a lost response
+ *   gets the original answer instead of charging the card twice.</li>
+ *   <li>If the session ended before the approval arrived, the money is not credited to the next
+ *   customer; the authorization is voided instead.</li>
+ *   <li>If no attempt got an answer, an earlier one may still have been approved. The payment is
+ *   then reversed by its idempotency key before it is reported as {@link CardPaymentResult.Status#FAILED};
+ *   if the reversal is not confirmed either, it is reported as {@link CardPaymentResult.Status#UNKNOWN}.</li>
+ * </ul>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * CardPaymentService cards = new CardPaymentService(processor, 2_000, 3, 100);
+ * cards.pay(vm, cardToken, 60.0).thenAccept(result -> display.show(result.getStatus()));
+ * }</pre>
+ */
+public class CardPaymentService implements AutoCloseable {
+
+    /** Number of settled payments whose idempotency keys are remembered, besides those in flight. */
+    public static final int REMEMBERED_PAYMENTS = 4096;
+
+    private final PaymentProcessor processor;
+    private final long attemptTimeoutMillis;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Payments by idempotency key, oldest first; a repeated key gets the original outcome.
+    // Only settled payments are evicted, so a payment in flight can never be started twice.
+    private final Map<String, CompletableFuture<CardPaymentResult>> payments =
+            new LinkedHashMap<String, CompletableFuture<CardPaymentResult>>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<CardPaymentResult>> eldest) {
+                    return size() > REMEMBERED_PAYMENTS && eldest.getValue().isDone();
+                }
+            };
+
+    /**
+     * Creates a payment service.
+     *
+     * @param processor            the payment processor
+     * @param attemptTimeoutMillis how long to wait for one authorization attempt
+     * @param maxAttempts          how many attempts to make in total (at least 1)
+     * @param initialBackoffMillis wait before the first retry; doubled for each further retry
+     */
+    public CardPaymentService(PaymentProcessor processor, long attemptTimeoutMillis, int maxAttempts,
+                              long initialBackoffMillis) {
+        if (processor == null) throw new IllegalArgumentException("processor must not be null");
+        if (attemptTimeoutMillis <= 0) throw new IllegalArgumentException("Timeout must be positive");
+        if (maxAttempts < 1) throw new IllegalArgumentException("At least one attempt is needed");
+        if (initialBackoffMillis < 0) throw new IllegalArgumentException("Backoff can not be negative");
+        this.processor = processor;
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "card-payment-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts a card payment for the machine's current session.
+     *
+     * @param machine   the machine whose session is funded
+     * @param cardToken the tokenized card credential
+     * @param amount    the amount in SEK
+     * @return a future completed with the outcome once the payment is settled
+     */
+    public CompletableFuture<CardPaymentResult> pay(VendingMachine machine, String cardToken, double amount) {
+        long sessionId = machine.getSessionId();
+        return pay(machine, sessionId, new AuthorizationRequest(UUID.randomUUID().toString(), cardToken, amount));
+    }
+
+    /**
+     * Starts a card payment with a caller-chosen idempotency key (e.g., from a terminal that
+     * itself retries). Calling this twice with the same key charges the card and credits the
+     * balance at most once: the second call returns the future of the first.
+     *
+     * @param machine   the machine whose session is funded
+     * @param sessionId the session to credit
+     * @param request   the authorization request
+     * @return a future completed with the outcome once the payment is settled
+     */
+    public CompletableFuture<CardPaymentResult> pay(VendingMachine machine, long sessionId, AuthorizationRequest request) {
+        CompletableFuture<CardPaymentResult> result = new CompletableFuture<>();
+        synchronized (payments) {
+            CompletableFuture<CardPaymentResult> original = payments.putIfAbsent(request.getIdempotencyKey(), result);
+            if (original != null) return original;
+        }
+        attempt(machine, sessionId, request, 1, result);
+        return result;
+    }
+
+    private void attempt(VendingMachine machine, long sessionId, AuthorizationRequest request, int attempt,
+                         CompletableFuture<CardPaymentResult> result) {
+        CompletableFuture<AuthorizationResult> answer;
+        try {
+            answer = withTimeout(processor.authorize(request));
+        } catch (RuntimeException e) {
+            answer = new CompletableFuture<>();
+            answer.completeExceptionally(e);
+        }
+
+        answer.whenComplete((auth, error) -> {
+            if (error == null && auth.getStatus() == AuthorizationResult.Status.APPROVED) {
+                settleApproved(machine, sessionId, request, attempt, auth, result);
+            } else if (error == null && auth.getStatus() == AuthorizationResult.Status.DECLINED) {
+                result.complete(new CardPaymentResult(CardPaymentResult.Status.DECLINED,
+                        request.getIdempotencyKey(), null, attempt, auth.getMessage()));
+            } else if (attempt < maxAttempts) {
+                // Timeout or transient error: try again later with the same idempotency key
+                long backoff = initialBackoffMillis << Math.min(attempt - 1, 20);
+                scheduler.schedule(() -> attempt(machine, sessionId, request, attempt + 1, result),
+                        backoff, TimeUnit.MILLISECONDS);
+            } else {
+                String reason = error != null ? describe(error) : auth.getMessage();
+                reverse(request, attempt, reason, result);
+            }
+        });
+    }
+
+    /**
+     * Gives up on a payment. An attempt whose answer was lost may have charged the card, so the
+     * payment is reversed first, and only reported as failed once the processor confirms it.
+     */
+    private void reverse(AuthorizationRequest request, int attempt, String reason,
+                         CompletableFuture<CardPaymentResult> result) {
+        CompletableFuture<Boolean> reversal;
+        try {
+            reversal = withTimeout(processor.reverse(request.getIdempotencyKey()));
+        } catch (RuntimeException e) {
+            reversal = new CompletableFuture<>();
+            reversal.completeExceptionally(e);
+        }
+
+        reversal.whenComplete((reversed, error) -> {
+            if (error == null && Boolean.TRUE.equals(reversed)) {
+                result.complete(new CardPaymentResult(CardPaymentResult.Status.FAILED,
+                        request.getIdempotencyKey(), null, attempt, reason));
+            } else {
+                String why = error != null ? describe(error) : "not confirmed";
+                result.complete(new CardPaymentResult(CardPaymentResult.Status.UNKNOWN,
+                        request.getIdempotencyKey(), null, attempt, reason + "; reversal " + why));
+            }
+        });
+    }
+
+    private void settleApproved(VendingMachine machine, long sessionId, AuthorizationRequest request, int attempt,
+                                AuthorizationResult auth, CompletableFuture<CardPaymentResult> result) {
+        if (machine.creditCardPayment(sessionId, request.getAmount())) {
+            result.complete(new CardPaymentResult(CardPaymentResult.Status.APPROVED,
+                    request.getIdempotencyKey(), auth.getAuthorizationCode(), attempt, auth.getMessage()));
+        } else {
+            // The customer left before the money arrived; release the reservation on the card
+            processor.voidAuthorization(auth.getAuthorizationCode());
+            result.complete(new CardPaymentResult(CardPaymentResult.Status.SESSION_ENDED,
+                    request.getIdempotencyKey(), auth.getAuthorizationCode(), attempt, "Session ended before approval"));
+        }
+    }
+
+    /**
+     * Returns a future that fails with a {@link TimeoutException} if {@code future} has not
+     * completed within the attempt timeout.
+     */
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future) {
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        ScheduledFuture<?> timer = scheduler.schedule(
+                () -> bounded.completeExceptionally(new TimeoutException("No answer within " + attemptTimeoutMillis + " ms")),
+                attemptTimeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error != null) bounded.completeExceptionally(error);
+            else bounded.complete(value);
+        });
+        return bounded;
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package se.lexicon.payment;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous connection to a card payment processor.
+ * <p>
+ * Implementations must not block the calling thread, and must treat requests with the
+ * same idempotency key as the same payment: a repeated key returns the original result
+ * instead of charging the card again.
+ * </p>
+ */
+public interface PaymentProcessor {
+
+    /**
+     * Asks the processor to reserve money on a card.
+     *
+     * @param request the authorization request
+     * @return a future completed with the result; it may never complete if the processor hangs,
+     *         so callers should apply a timeout
+     */
+    CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request);
+
+    /**
+     * Releases a previously approved authorization (e.g., when the money could not be used).
+     *
+     * @param authorizationCode the code from an approved {@link AuthorizationResult}
+     * @return a future completed with true if the authorization was voided
+     */
+    CompletableFuture<Boolean> voidAuthorization(String authorizationCode);
+
+    /**
+     * Cancels a payment by its idempotency key, whatever happened to it: an approval whose response
+     * was lost is released, and the key is not approved by any later or still-running request.
+     *
+     * @param idempotencyKey the key shared by the payment's authorization requests
+     * @return a future completed with true once the processor confirms that nothing is charged for the key
+     */
+    CompletableFuture<Boolean> reverse(String idempotencyKey);
+}
@@ -0,0 +1,163 @@
+package se.lexicon.payment;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for a card payment processor, for tests and benchmarks.
+ * <p>
+ * Every authorization completes after a random delay around the configured latency.
+ * Outcomes are drawn at random:
+ * </p>
+ * <ul>
+ *   <li>{@code declineRate}: the issuer declines the card,</li>
+ *   <li>{@code transientErrorRate}: the processor reports a retryable error without charging,</li>
+ *   <li>{@code lostResponseRate}: the card is charged (or declined) but the response never arrives,
+ *   which is exactly the case idempotency keys exist for,</li>
+ *   <li>otherwise the card is approved.</li>
+ * </ul>
+ * <p>
+ * Final outcomes (approved or declined) are remembered per idempotency key, so a retry
+ * returns the original outcome and a card is never charged twice for one payment.
+ * </p>
+ */
+public class SimulatedPaymentProcessor implements PaymentProcessor, AutoCloseable {
+
+    private final long latencyMillis;
+    private final double declineRate;
+    private final double transientErrorRate;
+    private final double lostResponseRate;
+    private final Random random;
+    private final ScheduledExecutorService executor;
+
+    // Final outcome per idempotency key
+    private final Map<String, AuthorizationResult> outcomes = new ConcurrentHashMap<>();
+    private final Set<String> activeAuthorizations = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong authorizeCalls = new AtomicLong();
+    private final AtomicLong charges = new AtomicLong();
+    private final AtomicLong voids = new AtomicLong();
+    private final AtomicLong reversals = new AtomicLong();
+
+    /**
+     * Creates a simulated processor.
+     *
+     * @param latencyMillis      average time until an answer (actual delay is 50%–150% of this)
+     * @param declineRate        share of payments declined, 0–1
+     * @param transientErrorRate share of attempts failing with a retryable error, 0–1
+     * @param lostResponseRate   share of attempts whose response is lost, 0–1
+     * @param seed               random seed, for reproducible runs
+     */
+    public SimulatedPaymentProcessor(long latencyMillis, double declineRate, double transientErrorRate,
+                                     double lostResponseRate, long seed) {
+        if (latencyMillis < 0) throw new IllegalArgumentException("Latency can not be negative");
+        checkRate(declineRate);
+        checkRate(transientErrorRate);
+        checkRate(lostResponseRate);
+        this.latencyMillis = latencyMillis;
+        this.declineRate = declineRate;
+        this.transientErrorRate = transientErrorRate;
+        this.lostResponseRate = lostResponseRate;
+        this.random = new Random(seed);
+        this.executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "simulated-payment-processor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request) {
+        authorizeCalls.incrementAndGet();
+        CompletableFuture<AuthorizationResult> future = new CompletableFuture<>();
+        long delay = latencyMillis == 0 ? 0 : (long) (latencyMillis * (0.5 + random.nextDouble()));
+        executor.schedule(() -> process(request, future), delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> voidAuthorization(String authorizationCode) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        executor.schedule(() -> {
+            boolean voided = activeAuthorizations.remove(authorizationCode);
+            if (voided) voids.incrementAndGet();
+            future.complete(voided);
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reverse(String idempotencyKey) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        executor.schedule(() -> {
+            // Settle the key as declined, so a retry still on its way can not charge the card
+            AuthorizationResult previous = outcomes.putIfAbsent(idempotencyKey, AuthorizationResult.declined("Reversed"));
+            if (previous != null && previous.getStatus() == AuthorizationResult.Status.APPROVED
+                    && activeAuthorizations.remove(previous.getAuthorizationCode())) {
+                reversals.incrementAndGet();
+            }
+            future.complete(true);
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private void process(AuthorizationRequest request, CompletableFuture<AuthorizationResult> future) {
+        double roll = random.nextDouble();
+        if (roll < transientErrorRate) {
+            future.complete(AuthorizationResult.transientError("Processor busy, try again"));
+            return;
+        }
+
+        // The same key always gets the same final outcome, and only the first one charges the card
+        AuthorizationResult result = outcomes.computeIfAbsent(request.getIdempotencyKey(), key -> {
+            if (random.nextDouble() < declineRate) {
+                return AuthorizationResult.declined("Declined by issuer");
+            }
+            charges.incrementAndGet();
+            String code = "AUTH-" + key;
+            activeAuthorizations.add(code);
+            return AuthorizationResult.approved(code);
+        });
+
+        if (random.nextDouble() < lostResponseRate) {
+            return; // charged (or declined), but the answer never reaches the machine
+        }
+        future.complete(result);
+    }
+
+    /** Returns how many times {@link #authorize(AuthorizationRequest)} was called, retries included. */
+    public long getAuthorizeCalls() {
+        return authorizeCalls.get();
+    }
+
+    /** Returns how many cards were actually charged. */
+    public long getChargeCount() {
+        return charges.get();
+    }
+
+    /** Returns how many approved authorizations were voided. */
+    public long getVoidCount() {
+        return voids.get();
+    }
+
+    /** Returns how many approved authorizations were reversed by idempotency key. */
+    public long getReversalCount() {
+        return reversals.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void checkRate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+    }
+}
@@ -0,0 +1,270 @@
+package se.lexicon.pricing;
+
+import se.lexicon.model.Product;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time-slotted price lookup for a fixed catalog.
+ * <p>
+ * All prices for every slot are precomputed into one flat {@code double[]} laid out
+ * slot by slot ({@code prices[slot * productCount + catalogIndex]}). The table for the
+ * current slot is published through a single volatile reference, so a reader always sees
+ * one complete table: either the old one or the new one, never a mix.
+ * </p>
+ * <p>
+ * Slot changes are detected lazily on read by comparing the clock against the end of the
+ * active slot. Rule changes via {@link #reload(PricingRules)} rebuild every slot and swap
+ * them in at once.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * TimeSlots hourly = new TimeSlots(60, ZoneId.systemDefault());
+ * PricingRules rules = new PricingRules(hourly.getSlotCount());
+ * rules.setSlotFactor(8, 1.25); // morning rush
+ * DynamicPricing pricing = new DynamicPricing(products, rules, hourly, Clock.systemDefaultZone());
+ * vendingMachine.setPricing(pricing);
+ * }</pre>
+ */
+public class DynamicPricing {
+
+    /** The precomputed prices of one slot, plus the interval it is valid for. */
+    private static final class ActiveSlot {
+        final double[] prices;
+        final int offset;
+        final int slot;
+        final long validFrom;
+        final long validUntil;
+
+        ActiveSlot(double[] prices, int offset, int slot, long validFrom, long validUntil) {
+            this.prices = prices;
+            this.offset = offset;
+            this.slot = slot;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+
+    private final TimeSlots slots;
+    private final Clock clock;
+
+    // Catalog snapshot taken at construction: position -> ID / base price / attribute factor inputs
+    private final int[] productIds;
+    private final double[] basePrices;
+    private final Product[] products;
+
+    // The rules the tables were last built from
+    private volatile PricingRules rules;
+
+    // All slots, flattened. Replaced as a whole on reload.
+    private volatile double[] tables;
+    private volatile ActiveSlot active;
+
+    /**
+     * Precomputes the price tables for the given catalog.
+     * The catalog order defines the index used by {@link #priceAt(int)}.
+     *
+     * @param catalog the products, in the same order the vending machine holds them
+     * @param rules   the pricing rules (slot count must match {@code slots})
+     * @param slots   the slot layout
+     * @param clock   the clock used to find the current slot
+     */
+    public DynamicPricing(List<Product> catalog, PricingRules rules, TimeSlots slots, Clock clock) {
+        this(catalog, null, rules, slots, clock);
+    }
+
+    /**
+     * Precomputes the tables once, from the given base prices, or from the products' prices where
+     * {@code basePrices} is null.
+     */
+    private DynamicPricing(List<Product> catalog, double[] basePrices, PricingRules rules, TimeSlots slots, Clock clock) {
+        if (catalog == null) throw new IllegalArgumentException("catalog must not be null");
+        if (slots == null || clock == null) throw new IllegalArgumentException("slots and clock must not be null");
+        this.slots = slots;
+        this.clock = clock;
+
+        int n = catalog.size();
+        this.products = catalog.toArray(new Product[0]);
+        this.productIds = new int[n];
+        this.basePrices = basePrices != null ? basePrices : new double[n];
+        for (int i = 0; i < n; i++) {
+            productIds[i] = products[i].getId();
+            if (basePrices == null) this.basePrices[i] = products[i].getPrice();
+        }
+        reload(rules);
+    }
+
+    /**
+     * Rebuilds all slot tables from new rules and swaps them in atomically.
+     *
+     * @param rules the new pricing rules
+     */
+    public synchronized void reload(PricingRules rules) {
+        if (rules == null) throw new IllegalArgumentException("rules must not be null");
+        if (rules.getSlotCount() != slots.getSlotCount()) {
+            throw new IllegalArgumentException("Rules have " + rules.getSlotCount()
+                    + " slots but the schedule has " + slots.getSlotCount());
+        }
+        this.tables = precompute(rules);
+        this.active = activate(clock.millis());
+        this.rules = rules;
+    }
+
+    /**
+     * Recomputes all slot tables from the current rules, e.g. after a product's size, cooling
+     * level or spiciness changed, and swaps them in atomically. Base prices stay as captured.
+     */
+    public synchronized void refresh() {
+        reload(rules);
+    }
+
+    /**
+     * Builds tables for another catalog with the same rules, slots and clock, e.g. after products
+     * were added or removed. Products of this catalog keep the base price captured here, so the
+     * prices they are charged do not change; new products start from their current price.
+     *
+     * @param catalog the products, in the same order the vending machine holds them
+     * @return the new tables
+     */
+    public synchronized DynamicPricing forCatalog(List<Product> catalog) {
+        if (catalog == null) throw new IllegalArgumentException("catalog must not be null");
+        Map<Integer, Double> captured = new HashMap<>(productIds.length * 2);
+        for (int i = 0; i < productIds.length; i++) {
+            captured.put(productIds[i], basePrices[i]);
+        }
+        double[] prices = new double[catalog.size()];
+        for (int i = 0; i < prices.length; i++) {
+            Product p = catalog.get(i);
+            prices[i] = captured.getOrDefault(p.getId(), p.getPrice());
+        }
+        return new DynamicPricing(catalog, prices, rules, slots, clock);
+    }
+
+    /**
+     * Returns the rules the tables were last built from.
+     *
+     * @return the rules
+     */
+    public PricingRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the current price of the product at the given catalog position.
+     * This is a single array read unless a slot boundary has just been crossed.
+     *
+     * @param catalogIndex the product's position in the catalog passed to the constructor
+     * @return the price in SEK
+     */
+    public double priceAt(int catalogIndex) {
+        ActiveSlot a = current();
+        return a.prices[a.offset + catalogIndex];
+    }
+
+    /**
+     * Returns the precomputed price of a product in a specific slot.
+     *
+     * @param catalogIndex the product's position in the catalog
+     * @param slot         the slot index
+     * @return the price in SEK
+     */
+    public double priceAt(int catalogIndex, int slot) {
+        return tables[slot * productIds.length + catalogIndex];
+    }
+
+    /**
+     * Returns the slot that prices are currently read from.
+     *
+     * @return the current slot index
+     */
+    public int currentSlot() {
+        return current().slot;
+    }
+
+    /**
+     * Returns the number of products covered by the tables.
+     *
+     * @return the catalog size at construction time
+     */
+    public int size() {
+        return productIds.length;
+    }
+
+    /**
+     * Checks that the given catalog has the same products in the same order as the tables.
+     *
+     * @param catalog the catalog to compare against
+     * @return true if every position holds the same product ID
+     */
+    public boolean matches(List<Product> catalog) {
+        if (catalog.size() != productIds.length) return false;
+        for (int i = 0; i < productIds.length; i++) {
+            if (catalog.get(i).getId() != productIds[i]) return false;
+        }
+        return true;
+    }
+
+    private ActiveSlot current() {
+        ActiveSlot a = active;
+        long now = clock.millis();
+        if (now >= a.validUntil || now < a.validFrom) {
+            a = roll(now);
+        }
+        return a;
+    }
+
+    private synchronized ActiveSlot roll(long now) {
+        // Another thread may already have rolled over while we waited for the lock
+        ActiveSlot a = active;
+        if (now >= a.validUntil || now < a.validFrom) {
+            a = activate(now);
+            active = a;
+        }
+        return a;
+    }
+
+    private ActiveSlot activate(long now) {
+        int slot = slots.slotOf(now);
+        return new ActiveSlot(tables, slot * productIds.length, slot, slots.slotStart(now), slots.slotEnd(now));
+    }
+
+    private double[] precompute(PricingRules rules) {
+        int n = productIds.length;
+        int slotCount = rules.getSlotCount();
+        double[] flat = new double[slotCount * n];
+
+        for (int i = 0; i < n; i++) {
+            // The attribute part does not depend on the slot, so compute it once per product
+            double attributeFactor = 1.0;
+            double surcharge = 0.0;
+            Product p = products[i];
+            if (p instanceof Snickers && ((Snickers) p).getSize() != null) {
+                attributeFactor = rules.getSizeFactor(((Snickers) p).getSize());
+            } else if (p instanceof MintDrops && ((MintDrops) p).getCoolingLevel() != null) {
+                attributeFactor = rules.getCoolingFactor(((MintDrops) p).getCoolingLevel());
+            } else if (p instanceof Taco && ((Taco) p).isSpicy()) {
+                surcharge = rules.getSpicySurcharge();
+            }
+
+            for (int slot = 0; slot < slotCount; slot++) {
+                Double override = rules.getOverride(productIds[i], slot);
+                double price = override != null
+                        ? override
+                        : basePrices[i] * rules.getSlotFactor(slot) * attributeFactor + surcharge;
+                flat[slot * n + i] = roundToOre(price);
+            }
+        }
+        return flat;
+    }
+
+    private static double roundToOre(double price) {
+        return Math.round(price * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,141 @@
+package se.lexicon.pricing;
+
+import se.lexicon.products.CoolingLevel;
+import se.lexicon.products.Size;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Describes how a base price is adjusted per time slot and product attribute.
+ * <p>
+ * The final price of a product in a slot is:
+ * {@code base * slotFactor * attributeFactor + spicySurcharge}, rounded to whole öre,
+ * unless an explicit override exists for that product and slot.
+ * </p>
+ * <p>
+ * Rules are only read when {@link DynamicPricing} precomputes its tables;
+ * changing them afterwards has no effect until {@link DynamicPricing#reload(PricingRules)} is called.
+ * </p>
+ */
+public class PricingRules {
+
+    private final double[] slotFactors;
+    private final Map<Size, Double> sizeFactors = new EnumMap<>(Size.class);
+    private final Map<CoolingLevel, Double> coolingFactors = new EnumMap<>(CoolingLevel.class);
+    private double spicySurcharge;
+
+    // productId -> (slot -> price)
+    private final Map<Integer, Map<Integer, Double>> overrides = new HashMap<>();
+
+    /**
+     * Creates neutral rules (every factor 1.0, no surcharges) for the given number of slots.
+     *
+     * @param slotCount the number of slots per day, see {@link TimeSlots#getSlotCount()}
+     */
+    public PricingRules(int slotCount) {
+        if (slotCount <= 0) throw new IllegalArgumentException("slotCount must be positive");
+        this.slotFactors = new double[slotCount];
+        Arrays.fill(slotFactors, 1.0);
+    }
+
+    public int getSlotCount() {
+        return slotFactors.length;
+    }
+
+    /**
+     * Sets the multiplier applied to every product during a slot (e.g., 1.2 for rush hour).
+     *
+     * @param slot   the slot index
+     * @param factor the multiplier (must be positive)
+     */
+    public void setSlotFactor(int slot, double factor) {
+        checkSlot(slot);
+        checkFactor(factor);
+        slotFactors[slot] = factor;
+    }
+
+    public double getSlotFactor(int slot) {
+        checkSlot(slot);
+        return slotFactors[slot];
+    }
+
+    /**
+     * Sets the multiplier for products that have a {@link Size}.
+     *
+     * @param size   the size variant
+     * @param factor the multiplier (must be positive)
+     */
+    public void setSizeFactor(Size size, double factor) {
+        if (size == null) throw new IllegalArgumentException("size must not be null");
+        checkFactor(factor);
+        sizeFactors.put(size, factor);
+    }
+
+    public double getSizeFactor(Size size) {
+        return sizeFactors.getOrDefault(size, 1.0);
+    }
+
+    /**
+     * Sets the multiplier for products that have a {@link CoolingLevel}.
+     *
+     * @param level  the cooling level
+     * @param factor the multiplier (must be positive)
+     */
+    public void setCoolingFactor(CoolingLevel level, double factor) {
+        if (level == null) throw new IllegalArgumentException("level must not be null");
+        checkFactor(factor);
+        coolingFactors.put(level, factor);
+    }
+
+    public double getCoolingFactor(CoolingLevel level) {
+        return coolingFactors.getOrDefault(level, 1.0);
+    }
+
+    /**
+     * Sets a fixed amount (SEK) added to spicy products.
+     *
+     * @param surcharge the surcharge, zero or more
+     */
+    public void setSpicySurcharge(double surcharge) {
+        if (surcharge < 0) throw new IllegalArgumentException("Surcharge can not be negative");
+        this.spicySurcharge = surcharge;
+    }
+
+    public double getSpicySurcharge() {
+        return spicySurcharge;
+    }
+
+    /**
+     * Pins the price of one product during one slot, bypassing all factors.
+     *
+     * @param productId the product ID
+     * @param slot      the slot index
+     * @param price     the exact price in SEK (must be positive)
+     */
+    public void setOverride(int productId, int slot, double price) {
+        checkSlot(slot);
+        if (price <= 0) throw new IllegalArgumentException("Price can not be negative or 0");
+        overrides.computeIfAbsent(productId, k -> new HashMap<>()).put(slot, price);
+    }
+
+    /**
+     * Returns the pinned price for a product and slot, or {@code null} if none is set.
+     */
+    Double getOverride(int productId, int slot) {
+        Map<Integer, Double> bySlot = overrides.get(productId);
+        return bySlot == null ? null : bySlot.get(slot);
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= slotFactors.length) {
+            throw new IllegalArgumentException("Slot out of range: " + slot);
+        }
+    }
+
+    private static void checkFactor(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("Factor must be positive: " + factor);
+    }
+}
@@ -0,0 +1,89 @@
+package se.lexicon.pricing;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Divides a day into equally long pricing slots (e.g., 24 one-hour slots).
+ * <p>
+ * Slot 0 starts at local midnight in the configured time zone.
+ * The slot length must divide a day evenly so every day has the same number of slots.
+ * </p>
+ *
+ * <h2>Examples</h2>
+ * <pre>{@code
+ * TimeSlots hourly = new TimeSlots(60, ZoneId.of("Europe/Stockholm"));
+ * hourly.getSlotCount();            // 24
+ * hourly.slotOf(System.currentTimeMillis()); // 0..23
+ * }</pre>
+ */
+public final class TimeSlots {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final long slotMillis;
+    private final int slotCount;
+    private final ZoneId zone;
+
+    /**
+     * Creates a slot layout.
+     *
+     * @param slotMinutes length of one slot in minutes (must divide 1440 evenly)
+     * @param zone        time zone in which the day starts
+     */
+    public TimeSlots(int slotMinutes, ZoneId zone) {
+        if (slotMinutes <= 0 || (24 * 60) % slotMinutes != 0) {
+            throw new IllegalArgumentException("Slot length must be positive and divide a day evenly: " + slotMinutes);
+        }
+        if (zone == null) throw new IllegalArgumentException("zone must not be null");
+        this.slotMillis = TimeUnit.MINUTES.toMillis(slotMinutes);
+        this.slotCount = (24 * 60) / slotMinutes;
+        this.zone = zone;
+    }
+
+    /**
+     * Returns how many slots one day is divided into.
+     *
+     * @return the number of slots per day
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the slot index (0-based) that contains the given instant.
+     *
+     * @param epochMillis the instant in milliseconds since the epoch
+     * @return the slot index
+     */
+    public int slotOf(long epochMillis) {
+        return (int) (localMillisOfDay(epochMillis) / slotMillis);
+    }
+
+    /**
+     * Returns the first instant (epoch millis) of the slot containing the given instant.
+     *
+     * @param epochMillis an instant inside the slot
+     * @return the inclusive start of the slot containing {@code epochMillis}
+     */
+    public long slotStart(long epochMillis) {
+        return epochMillis - localMillisOfDay(epochMillis) % slotMillis;
+    }
+
+    /**
+     * Returns the first instant (epoch millis) that belongs to the next slot.
+     *
+     * @param epochMillis an instant inside the current slot
+     * @return the exclusive end of the slot containing {@code epochMillis}
+     */
+    public long slotEnd(long epochMillis) {
+        return slotStart(epochMillis) + slotMillis;
+    }
+
+    private long localMillisOfDay(long epochMillis) {
+        // The offset can change with daylight saving time, so it is looked up per instant.
+        int offsetSeconds = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds();
+        return Math.floorMod(epochMillis + offsetSeconds * 1000L, DAY_MILLIS);
+    }
+}
@@ -1,5 +1,6 @@
 package se.lexicon.products;
 
+import se.lexicon.model.AttributePool;
 import se.lexicon.model.Product;
 
 /**
@@ -11,6 +12,7 @@ public class CottonCandy extends Product {
     /**
      * Flavor of the cotton candy (e.g., Strawberry, Blueberry, Vanilla).
      */
+    // Interned in AttributePool.FLAVORS; catalogs repeat a few flavors many times
     private String flavor;
 
     /**
@@ -28,19 +30,28 @@ public class CottonCandy extends Product {
         setFlavor(flavor);
     }
 
+    /**
+     * Returns the flavor of the cotton candy.
+     *
+     * @return the flavor
+     */
+    public String getFlavor() {
+        return flavor;
+    }
+
     /**
      * Sets the flavor of the cotton candy.
      * Must be non-null and non-empty.
      *
      * @param flavor the flavor to set
+     * @throws IllegalArgumentException if the flavor is null or blank
      */
     public void setFlavor(String flavor) {
         // Check that the flavor is not null or just spaces
         if (flavor == null || flavor.trim().isEmpty()) {
-            System.out.println("Warning: Cotton candy flavor cannot be null or empty.");
-        } else {
-            this.flavor = flavor;
+            throw new IllegalArgumentException("Cotton candy flavor cannot be null or empty.");
         }
+        this.flavor = AttributePool.FLAVORS.intern(flavor);
     }
 
     /**
@@ -49,7 +60,12 @@ public class CottonCandy extends Product {
      */
     @Override
     public String examine() {
-        return getProductName() + " (" + flavor + " flavor) costs " + getPrice() + " SEK.";
+        return examine(getPrice() + " SEK");
+    }
+
+    @Override
+    public String examine(String priceLabel) {
+        return getProductName() + " (" + getFlavor() + " flavor) costs " + priceLabel + ".";
     }
 
     /**
@@ -58,16 +74,21 @@ public class CottonCandy extends Product {
      */
     @Override
     public String use() {
-        return "You enjoy the fluffy " + flavor + " cotton candy.";
+        return "You enjoy the fluffy " + getFlavor() + " cotton candy.";
     }
 
     @Override
     public String toString() {
+        return toString(getPrice() + " SEK");
+    }
+
+    @Override
+    public String toString(String priceLabel) {
         return "ID: " + getId() +
                 ", Product: CottonCandy" +
                 ", Name: \"" + getProductName() + "\"" +
-                ", Flavor: " + flavor +
-                ", Price: " + getPrice() + " SEK";
+                ", Flavor: " + getFlavor() +
+                ", Price: " + priceLabel;
     }
 
 }
\ No newline at end of file
@@ -42,18 +42,13 @@ public class MintDrops extends Product {
     /**
      * Sets the cooling intensity level using an integer.
      * Converts the integer to the corresponding enum value.
-     * If the input is outside the valid range (1–5), a warning is printed.
      *
      * @param level the cooling level (1–5)
+     * @throws IllegalArgumentException if the level is outside 1–5
      */
     public void setCoolingLevel(int level) {
-        try {
-            // Convert the integer to a descriptive enum value
-            this.coolingLevel = CoolingLevel.fromInt(level);
-        } catch (IllegalArgumentException e) {
-            // Print a warning if the level is invalid
-            System.out.println("Warning: " + e.getMessage());
-        }
+        // Convert the integer to a descriptive enum value; fromInt rejects levels outside 1–5
+        this.coolingLevel = CoolingLevel.fromInt(level);
     }
 
     /**
@@ -62,8 +57,13 @@ public class MintDrops extends Product {
      */
     @Override
     public String examine() {
+        return examine(getPrice() + " SEK");
+    }
+
+    @Override
+    public String examine(String priceLabel) {
         // Use the enum's label to describe the cooling effect
-        return getProductName() + " (Cooling: " + coolingLevel.getLabel() + ") costs " + getPrice() + " SEK.";
+        return getProductName() + " (Cooling: " + coolingLevel.getLabel() + ") costs " + priceLabel + ".";
     }
 
     /**
@@ -84,10 +84,15 @@ public class MintDrops extends Product {
      */
     @Override
     public String toString() {
+        return toString(getPrice() + " SEK");
+    }
+
+    @Override
+    public String toString(String priceLabel) {
         return "ID: " + getId() +
                 ", Product: MintDrops" +
                 ", Name: \"" + getProductName() + "\"" +
                 ", Cooling: " + coolingLevel.getLabel() +
-                ", Price: " + getPrice() + " SEK";
+                ", Price: " + priceLabel;
     }
 }
\ No newline at end of file
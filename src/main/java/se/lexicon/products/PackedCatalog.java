@@ -0,0 +1,302 @@
+package se.lexicon.products;
+
+import se.lexicon.model.AttributePool;
+import se.lexicon.model.Product;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The catalog stored as plain arrays, one array per attribute, for bulk jobs such as repricing,
+ * inventory valuation and listings.
+ * <p>
+ * Looping over {@link Product} objects costs a virtual call per product and a cache miss per
+ * object, because the four product classes are mixed and spread over the heap. Here every
+ * attribute sits in its own contiguous array and the product kind is a one-byte
+ * {@link ProductType} tag, so bulk operations are simple loops over arrays that the JIT can
+ * unroll and vectorize.
+ * </p>
+ * <p>
+ * A packed catalog is a copy: changes made here are written back to the products with
+ * {@link #applyTo(List)}. Filters take a type mask built with {@link ProductType#mask}.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * PackedCatalog packed = PackedCatalog.of(products);
+ * packed.repriceByPercent(ProductType.mask(ProductType.SNICKERS, ProductType.MINT_DROPS), 5);
+ * double value = packed.inventoryValue(ProductType.ALL);
+ * packed.applyTo(products);
+ * }</pre>
+ */
+public final class PackedCatalog {
+
+    // Cached, since values() copies the array on every call
+    private static final ProductType[] TYPES = ProductType.values();
+    private static final byte TACO = (byte) ProductType.TACO.ordinal();
+
+    private final int size;
+    private final int[] ids;
+    private final double[] prices;
+    private final int[] quantities;
+    private final byte[] types;
+
+    // The text of a listing line between the ID and the price, e.g.
+    // "Product: Snickers, Name: \"Snickers\", Size: large, Price: ". Few distinct values,
+    // so each is interned in AttributePool.LABELS and stored once.
+    private final String[] labels;
+
+    // Positions selected by the last filter; reused to avoid allocating per listing
+    private final int[] selection;
+
+    private PackedCatalog(int size) {
+        this.size = size;
+        this.ids = new int[size];
+        this.prices = new double[size];
+        this.quantities = new int[size];
+        this.types = new byte[size];
+        this.labels = new String[size];
+        this.selection = new int[size];
+    }
+
+    /**
+     * Packs a product list, counting one unit of each product.
+     *
+     * @param products the products
+     * @return the packed catalog
+     */
+    public static PackedCatalog of(List<Product> products) {
+        int[] ones = new int[products.size()];
+        Arrays.fill(ones, 1);
+        return of(products, ones);
+    }
+
+    /**
+     * Packs a product list together with the units in stock of each product.
+     *
+     * @param products   the products
+     * @param quantities units in stock, by position in {@code products}
+     * @return the packed catalog
+     * @throws IllegalArgumentException if the lengths differ or a product is of an unknown kind
+     */
+    public static PackedCatalog of(List<Product> products, int[] quantities) {
+        if (products.size() != quantities.length) {
+            throw new IllegalArgumentException("Expected " + products.size() + " quantities, got " + quantities.length);
+        }
+        int n = products.size();
+        PackedCatalog packed = new PackedCatalog(n);
+        for (int i = 0; i < n; i++) {
+            Product p = products.get(i);
+            packed.ids[i] = p.getId();
+            packed.prices[i] = p.getPrice();
+            packed.quantities[i] = quantities[i];
+            packed.types[i] = (byte) ProductType.of(p).ordinal();
+            packed.labels[i] = AttributePool.LABELS.intern(label(p));
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the middle part of a product's {@code toString()}, which does not change with the price.
+     */
+    private static String label(Product p) {
+        String name = ", Name: \"" + p.getProductName() + "\"";
+        switch (ProductType.of(p)) {
+            case SNICKERS:
+                return "Snickers" + name + ", Size: " + ((Snickers) p).getSize().getLabel() + ", Price: ";
+            case TACO:
+                return "Taco" + name + ", Spicy: " + ((Taco) p).isSpicy() + ", Price: ";
+            case COTTON_CANDY:
+                return "CottonCandy" + name + ", Flavor: " + ((CottonCandy) p).getFlavor() + ", Price: ";
+            default:
+                return "MintDrops" + name + ", Cooling: " + ((MintDrops) p).getCoolingLevel().getLabel() + ", Price: ";
+        }
+    }
+
+    /**
+     * Changes every price by a percentage, rounded to whole öre.
+     *
+     * @param percent the change, e.g. 10 for +10% or -25 for a quarter off
+     * @throws IllegalArgumentException if the change would make prices zero or negative
+     */
+    public void repriceByPercent(double percent) {
+        double factor = factor(percent);
+        double[] p = prices;
+        for (int i = 0; i < size; i++) {
+            p[i] = roundToOre(p[i] * factor);
+        }
+    }
+
+    /**
+     * Changes the prices of some product types by a percentage, rounded to whole öre.
+     *
+     * @param typeMask the types to reprice, see {@link ProductType#mask}
+     * @param percent  the change, e.g. 10 for +10% or -25 for a quarter off
+     * @throws IllegalArgumentException if the change would make prices zero or negative
+     */
+    public void repriceByPercent(int typeMask, double percent) {
+        double factor = factor(percent);
+        double[] p = prices;
+        byte[] t = types;
+        for (int i = 0; i < size; i++) {
+            // A select instead of a branch keeps the loop body straight-line
+            p[i] = roundToOre(p[i] * (((typeMask >>> t[i]) & 1) != 0 ? factor : 1.0));
+        }
+    }
+
+    /**
+     * Rounds a price to whole öre, like the price tables do, but never below one öre so a repriced
+     * product keeps a valid price.
+     */
+    private static double roundToOre(double price) {
+        return Math.max(Math.round(price * 100.0), 1) / 100.0;
+    }
+
+    private static double factor(double percent) {
+        double factor = 1 + percent / 100;
+        if (!(factor > 0)) throw new IllegalArgumentException("Price change must be above -100%: " + percent);
+        return factor;
+    }
+
+    /**
+     * Returns the value of the stock, price times units, summed over all products.
+     *
+     * @return the inventory value in SEK
+     */
+    public double inventoryValue() {
+        // Four independent sums so the additions do not wait for each other
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < size; i += 4) {
+            s0 += prices[i] * quantities[i];
+            s1 += prices[i + 1] * quantities[i + 1];
+            s2 += prices[i + 2] * quantities[i + 2];
+            s3 += prices[i + 3] * quantities[i + 3];
+        }
+        for (; i < size; i++) {
+            s0 += prices[i] * quantities[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the value of the stock of some product types.
+     *
+     * @param typeMask the types to include, see {@link ProductType#mask}
+     * @return the inventory value in SEK
+     */
+    public double inventoryValue(int typeMask) {
+        double s0 = 0, s1 = 0;
+        int i = 0;
+        for (; i + 1 < size; i += 2) {
+            s0 += ((typeMask >>> types[i]) & 1) != 0 ? prices[i] * quantities[i] : 0;
+            s1 += ((typeMask >>> types[i + 1]) & 1) != 0 ? prices[i + 1] * quantities[i + 1] : 0;
+        }
+        for (; i < size; i++) {
+            s0 += ((typeMask >>> types[i]) & 1) != 0 ? prices[i] * quantities[i] : 0;
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * Appends a listing line for every product of the given types that costs at most
+     * {@code maxPrice}, in catalog order. The lines read exactly like the products'
+     * {@code toString()}, one per line.
+     *
+     * @param typeMask the types to include, see {@link ProductType#mask}
+     * @param maxPrice the highest price to include
+     * @param out      where the lines are appended
+     * @return the number of products listed
+     */
+    public int render(int typeMask, double maxPrice, StringBuilder out) {
+        // First a tight pass over the tag and price arrays, then text only for the matches
+        int[] selected = selection;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            selected[count] = i;
+            count += (((typeMask >>> types[i]) & 1) != 0 & prices[i] <= maxPrice) ? 1 : 0;
+        }
+        for (int k = 0; k < count; k++) {
+            appendLine(selected[k], out);
+            out.append('\n');
+        }
+        return count;
+    }
+
+    private void appendLine(int i, StringBuilder out) {
+        out.append("ID: ").append(ids[i]).append(", Product: ").append(labels[i]);
+        // Taco prints its price with two decimals, the other products print the plain double
+        if (types[i] == TACO) {
+            appendTwoDecimals(out, prices[i]);
+        } else {
+            out.append(prices[i]);
+        }
+        out.append(" SEK");
+    }
+
+    /**
+     * Appends a price with exactly two decimals, like {@code String.format("%.2f")} but without
+     * parsing a format string. Rounds half up on the value in cents.
+     */
+    static void appendTwoDecimals(StringBuilder out, double value) {
+        long cents = Math.round(value * 100);
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        out.append(cents / 100).append('.');
+        if (fraction < 10) out.append('0');
+        out.append(fraction);
+    }
+
+    /**
+     * Writes the prices back to the products this catalog was packed from.
+     *
+     * @param products the same products, in the same order
+     * @throws IllegalArgumentException if the list does not match this catalog
+     */
+    public void applyTo(List<Product> products) {
+        if (products.size() != size) throw new IllegalArgumentException("Product list does not match the packed catalog");
+        for (int i = 0; i < size; i++) {
+            Product p = products.get(i);
+            if (p.getId() != ids[i]) {
+                throw new IllegalArgumentException("Product at position " + i + " has ID " + p.getId() + ", expected " + ids[i]);
+            }
+            if (p.getPrice() != prices[i]) {
+                p.setPrice(prices[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public double getPrice(int index) {
+        return prices[index];
+    }
+
+    public ProductType getType(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Sets the units in stock of the product at a position.
+     *
+     * @param index    the position
+     * @param quantity the units in stock
+     */
+    public void setQuantity(int index, int quantity) {
+        if (quantity < 0) throw new IllegalArgumentException("Quantity can not be negative");
+        quantities[index] = quantity;
+    }
+}
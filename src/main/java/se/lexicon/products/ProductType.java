@@ -0,0 +1,44 @@
+package se.lexicon.products;
+
+import se.lexicon.model.Product;
+
+/**
+ * The kinds of products the machine sells, as a compact tag.
+ * Used where products are stored as plain data instead of objects (see {@link PackedCatalog}).
+ */
+public enum ProductType {
+    SNICKERS,
+    TACO,
+    COTTON_CANDY,
+    MINT_DROPS;
+
+    /** Mask that matches every type, see {@link #mask(ProductType...)}. */
+    public static final int ALL = (1 << values().length) - 1;
+
+    /**
+     * Returns the type of a product.
+     *
+     * @param product the product
+     * @return its type
+     * @throws IllegalArgumentException if the product is not one of the known kinds
+     */
+    public static ProductType of(Product product) {
+        if (product instanceof Snickers) return SNICKERS;
+        if (product instanceof Taco) return TACO;
+        if (product instanceof CottonCandy) return COTTON_CANDY;
+        if (product instanceof MintDrops) return MINT_DROPS;
+        throw new IllegalArgumentException("Unknown product type: " + (product == null ? null : product.getClass().getName()));
+    }
+
+    /**
+     * Returns a bit mask with one bit per given type, for filters on packed data.
+     *
+     * @param types the types to include
+     * @return the mask
+     */
+    public static int mask(ProductType... types) {
+        int mask = 0;
+        for (ProductType t : types) mask |= 1 << t.ordinal();
+        return mask;
+    }
+}
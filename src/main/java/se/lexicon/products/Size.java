@@ -30,6 +30,8 @@ public enum Size {
     /** Extra large size variant. */
     XL("extra large");
 
+    private static final Size[] VALUES = values();
+
     /** Human-readable label for UI (e.g., "small", "extra large"). */
     private final String label;
 
@@ -82,16 +84,10 @@ public enum Size {
         }
         String normalized = value.trim();
 
-        // Try enum names first (SMALL / MEDIUM / LARGE / XL)
-        try {
-            return Size.valueOf(normalized.replace(' ', '_').toUpperCase());
-        } catch (IllegalArgumentException ignored) {
-            // fall through to label matching
-        }
-
-        // Try labels ("small", "extra large")
-        for (Size s : values()) {
-            if (s.label.equalsIgnoreCase(normalized)) {
+        // Match enum names (SMALL / MEDIUM / LARGE / XL) and labels ("small", "extra large")
+        // in one pass; a miss must not cost an exception per attempt
+        for (Size s : VALUES) {
+            if (s.name().equalsIgnoreCase(normalized) || s.label.equalsIgnoreCase(normalized)) {
                 return s;
             }
         }
@@ -67,8 +67,13 @@ public class Snickers extends Product {
      */
     @Override
     public String examine() {
+        return examine(getPrice() + " SEK");
+    }
+
+    @Override
+    public String examine(String priceLabel) {
         String sizeLabel = (size != null) ? size.toString() : "UNKNOWN";
-        return getProductName() + " (" + sizeLabel + "), costs " + getPrice() + " SEK.";
+        return getProductName() + " (" + sizeLabel + "), costs " + priceLabel + ".";
     }
 
     /**
@@ -99,12 +104,17 @@ public class Snickers extends Product {
      */
     @Override
     public String toString() {
+        return toString(getPrice() + " SEK");
+    }
+
+    @Override
+    public String toString(String priceLabel) {
         String sizeLabel = (size != null && size.getSize() != null) ? size.getSize() : (size != null ? size.name() : "UNKNOWN");
         return "ID: " + getId()
                 + ", Product: Snickers"
                 + ", Name: \"" + getProductName() + "\""
                 + ", Size: " + sizeLabel
-                + ", Price: " + getPrice() + " SEK";
+                + ", Price: " + priceLabel;
     }
 
 
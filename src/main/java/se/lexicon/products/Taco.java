@@ -77,9 +77,21 @@ public class Taco extends Product {
      */
     @Override
     public String examine() {
-        String priceStr = String.format(Locale.US, "%.2f", getPrice());
+        return examine(priceLabel(getPrice()));
+    }
+
+    @Override
+    public String examine(String priceLabel) {
         String spicyPart = isSpicy ? "is spicy and " : "is not spicy and ";
-        return getProductName() + " " + spicyPart + "costs " + priceStr + " SEK.";
+        return getProductName() + " " + spicyPart + "costs " + priceLabel + ".";
+    }
+
+    /**
+     * Shows prices with two decimals, e.g. "49.00 SEK".
+     */
+    @Override
+    protected String formatPrice(double price) {
+        return String.format(Locale.US, "%.2f", price) + " SEK";
     }
 
     /**
@@ -111,11 +123,15 @@ public class Taco extends Product {
      */
     @Override
     public String toString() {
-        String priceStr = String.format(Locale.US, "%.2f", getPrice());
+        return toString(priceLabel(getPrice()));
+    }
+
+    @Override
+    public String toString(String priceLabel) {
         return "ID: " + getId()
                 + ", Product: " + getClass().getSimpleName()
                 + ", Name: \"" + getProductName() + "\""
                 + ", Spicy: " + isSpicy
-                + ", Price: " + priceStr + " SEK";
+                + ", Price: " + priceLabel;
     }
 }
\ No newline at end of file
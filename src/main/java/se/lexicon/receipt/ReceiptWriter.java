@@ -0,0 +1,656 @@
+package se.lexicon.receipt;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.TransactionLog;
+import se.lexicon.model.VendingMachineListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes a receipt line for every sale, void, refund and ended session to rotating audit files,
+ * without making purchases wait for the disk.
+ * <p>
+ * The machine's thread only formats the line into a direct buffer from a small pool; it does not
+ * allocate and does not write. A background thread writes full buffers through a
+ * {@link FileChannel}, and at least every {@code flushIntervalMillis} it also hands over the
+ * partly filled buffer and forces the file to disk. A receipt is therefore durable at most one
+ * flush interval (plus the time of the write itself) after it was recorded; {@link #flush()}
+ * makes everything recorded so far durable right away.
+ * </p>
+ * <p>
+ * The writer is a listener, so it runs under the machine's lock. When all buffers are waiting
+ * for the disk, a purchase waits at most {@link #MAX_BUFFER_WAIT_MILLIS} for one; if none becomes
+ * free, or the writer has failed or its thread has stopped, the receipt is dropped instead, so a
+ * slow or broken disk never stops the machine. A dropped receipt still uses up its number, and as
+ * soon as a buffer is free again a {@code DROPPED} line lists the numbers that are missing.
+ * </p>
+ * <p>
+ * Files are named {@code receipts-yyyyMMdd-HHmmss-N.log} and a new one is started when the
+ * current one would grow beyond {@code maxFileBytes} or is older than {@code rotateMillis}.
+ * A buffer is never split over two files, so every file holds whole lines.
+ * </p>
+ *
+ * <h2>Format</h2>
+ * <p>One line per receipt, tab-separated, UTF-8:</p>
+ * <pre>
+ * number  time(ms)  SALE    session  productId  name  price
+ * number  time(ms)  VOID    session  productId        -price
+ * number  time(ms)  REFUND  session  productId        -price
+ * number  time(ms)  END     session                   change
+ * first..last  time(ms)  DROPPED
+ * </pre>
+ * <p>
+ * Every receipt has a number and numbers have no gaps, so a missing line shows up in an audit;
+ * receipts that could not be recorded are accounted for by a {@code DROPPED} line. Amounts have
+ * two decimals.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ReceiptWriter receipts = new ReceiptWriter(dir, 1_000, 64 << 20, 24 * 3600_000L, Clock.systemUTC());
+ * vm.addListener(receipts);
+ * ...
+ * receipts.close();
+ * }</pre>
+ */
+public class ReceiptWriter implements VendingMachineListener, AutoCloseable {
+
+    /** Size of each direct buffer in the pool. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Number of buffers in the pool. */
+    public static final int BUFFER_COUNT = 4;
+
+    /** The longest a purchase waits for a free buffer before its receipt is dropped. */
+    public static final long MAX_BUFFER_WAIT_MILLIS = 100;
+
+    // Waits for a buffer are split so a failed or stopped writer is noticed quickly
+    private static final long BUFFER_WAIT_SLICE_MILLIS = 10;
+
+    // Room kept for one line; longer product names are cut off
+    private static final int MAX_LINE = 512;
+    private static final int MAX_NAME_CHARS = 128;
+    // Room kept for a DROPPED line in front of the next receipt
+    private static final int MAX_MARKER = 80;
+
+    private static final byte[] SALE = "SALE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VOID = "VOID".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REFUND = "REFUND".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "END".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DROPPED = "DROPPED".getBytes(StandardCharsets.US_ASCII);
+
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    /**
+     * A pooled buffer and the number of the last receipt in it.
+     */
+    private static final class Batch {
+        final ByteBuffer buffer;
+        long lastNumber;
+
+        Batch(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    // Put on the queue by flush() and close() to wake the background thread
+    private static final Batch FLUSH = new Batch(ByteBuffer.allocate(0));
+
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final long maxFileBytes;
+    private final long rotateMillis;
+    private final Clock clock;
+
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    // Unbounded, so a hand-over never blocks; it holds at most the pool's buffers plus flush requests
+    private final BlockingQueue<Batch> filled = new LinkedBlockingQueue<>();
+
+    // Guards the buffer being filled and the receipt numbers
+    private final ReentrantLock lock = new ReentrantLock();
+    private Batch active;
+    private long nextNumber = 1;
+    // The last number put in a buffer, as a receipt or in a DROPPED line
+    private long lastRecorded;
+    // Numbers dropped since the last DROPPED line; 0 when there are none
+    private long droppedFirst;
+    private long droppedLast;
+    private long stalls;
+    private long dropped;
+
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // Number of the last receipt forced to disk; guarded by durableMonitor
+    private final Object durableMonitor = new Object();
+    private long durable;
+
+    // Current file; only used by the background thread
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileOpenedAt;
+    private int filesCreated;
+
+    /**
+     * Creates a writer and starts its background thread.
+     *
+     * @param directory           where the receipt files are written; created if missing
+     * @param flushIntervalMillis the longest time a receipt may wait before it is forced to disk
+     * @param maxFileBytes        the size at which a new file is started
+     * @param rotateMillis        the age at which a new file is started
+     * @param clock               the clock for receipt times and file rotation
+     * @throws IOException if the directory can not be created
+     */
+    public ReceiptWriter(Path directory, long flushIntervalMillis, long maxFileBytes, long rotateMillis, Clock clock)
+            throws IOException {
+        if (directory == null || clock == null) throw new IllegalArgumentException("directory and clock must not be null");
+        if (flushIntervalMillis <= 0) throw new IllegalArgumentException("Flush interval must be positive");
+        if (maxFileBytes < BUFFER_SIZE) throw new IllegalArgumentException("Files must hold at least one buffer: " + BUFFER_SIZE + " bytes");
+        if (rotateMillis <= 0) throw new IllegalArgumentException("Rotation interval must be positive");
+        this.directory = Files.createDirectories(directory);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxFileBytes = maxFileBytes;
+        this.rotateMillis = rotateMillis;
+        this.clock = clock;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(new Batch(ByteBuffer.allocateDirect(BUFFER_SIZE)));
+        }
+        this.thread = new Thread(this::run, "receipt-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void onPurchase(long sessionId, Product product, double price) {
+        lock.lock();
+        try {
+            ByteBuffer out = begin(SALE, sessionId);
+            if (out == null) return;
+            putLong(out, product.getId());
+            out.put((byte) '\t');
+            putName(out, product.getProductName());
+            out.put((byte) '\t');
+            putAmount(out, price);
+            out.put((byte) '\n');
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onPurchaseReversed(long sessionId, TransactionLog.Transaction transaction) {
+        lock.lock();
+        try {
+            boolean refunded = transaction.getStatus() == TransactionLog.Status.REFUNDED;
+            ByteBuffer out = begin(refunded ? REFUND : VOID, transaction.getSessionId());
+            if (out == null) return;
+            putLong(out, transaction.getProductId());
+            out.put((byte) '\t').put((byte) '\t');
+            putAmount(out, -transaction.getPrice());
+            out.put((byte) '\n');
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onSessionEnded(long sessionId, double change) {
+        lock.lock();
+        try {
+            ByteBuffer out = begin(END, sessionId);
+            if (out == null) return;
+            out.put((byte) '\t').put((byte) '\t');
+            putAmount(out, change);
+            out.put((byte) '\n');
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure there is room for a line and writes its first columns.
+     *
+     * @return the buffer to continue the line in, or null if the receipt can not be recorded
+     */
+    private ByteBuffer begin(byte[] type, long sessionId) {
+        // Numbered even if it is dropped, so the loss leaves a gap that the DROPPED line explains
+        long number = nextNumber++;
+        if (closed) {
+            System.out.println("Receipt writer is closed; receipt not recorded");
+            drop(number);
+            return null;
+        }
+        if (active != null && active.buffer.remaining() < MAX_LINE + MAX_MARKER) {
+            handOver();
+        }
+        if (failure != null) {
+            // Already reported by fail(); the lines could not reach the disk anyway
+            drop(number);
+            return null;
+        }
+        if (active == null) {
+            active = free.poll();
+            if (active == null) {
+                // The disk is behind: wait a little for a buffer, but never block the machine for long
+                stalls++;
+                active = awaitBuffer();
+                if (active == null) {
+                    drop(number);
+                    return null;
+                }
+            }
+        }
+        markDropped();
+        active.lastNumber = number;
+        lastRecorded = number;
+        ByteBuffer out = active.buffer;
+        putLong(out, number);
+        out.put((byte) '\t');
+        putLong(out, clock.millis());
+        out.put((byte) '\t');
+        out.put(type);
+        out.put((byte) '\t');
+        putLong(out, sessionId);
+        out.put((byte) '\t');
+        return out;
+    }
+
+    private void drop(long number) {
+        dropped++;
+        if (droppedFirst == 0) droppedFirst = number;
+        droppedLast = number;
+    }
+
+    /**
+     * Writes a DROPPED line for the receipts dropped since the last recorded one, if there are any.
+     * Called with the lock held and room in the active buffer.
+     */
+    private void markDropped() {
+        if (droppedFirst == 0) return;
+        ByteBuffer out = active.buffer;
+        putLong(out, droppedFirst);
+        out.put((byte) '.').put((byte) '.');
+        putLong(out, droppedLast);
+        out.put((byte) '\t');
+        putLong(out, clock.millis());
+        out.put((byte) '\t');
+        out.put(DROPPED);
+        out.put((byte) '\n');
+        active.lastNumber = droppedLast;
+        lastRecorded = droppedLast;
+        droppedFirst = 0;
+        droppedLast = 0;
+    }
+
+    /**
+     * Waits up to {@link #MAX_BUFFER_WAIT_MILLIS} for a free buffer. Called with the lock held.
+     *
+     * @return the buffer, or null if none became free or the background thread can not free one
+     */
+    private Batch awaitBuffer() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BUFFER_WAIT_MILLIS);
+        try {
+            while (failure == null && thread.isAlive()) {
+                long wait = Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(BUFFER_WAIT_SLICE_MILLIS));
+                if (wait <= 0) {
+                    System.out.println("Receipt writer is behind; receipt not recorded");
+                    return null;
+                }
+                Batch batch = free.poll(wait, TimeUnit.NANOSECONDS);
+                if (batch != null) return batch;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        System.out.println("Receipt writer has stopped; receipt not recorded");
+        return null;
+    }
+
+    /**
+     * Passes the buffer being filled to the background thread. Called with the lock held.
+     */
+    private void handOver() {
+        Batch batch = active;
+        active = null;
+        if (batch != null && batch.buffer.position() > 0) {
+            filled.add(batch);
+        } else if (batch != null) {
+            free.add(batch);
+        }
+    }
+
+    /**
+     * Writes and forces everything recorded so far, and waits until it is on disk.
+     *
+     * @throws IOException if the background thread failed to write
+     */
+    public void flush() throws IOException {
+        long target;
+        lock.lock();
+        try {
+            if (droppedFirst != 0 && failure == null && !closed) {
+                // No receipt has followed the dropped ones yet; write their DROPPED line now
+                if (active != null && active.buffer.remaining() < MAX_MARKER) handOver();
+                if (active == null) active = free.poll(MAX_BUFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (active != null) markDropped();
+            }
+            handOver();
+            target = lastRecorded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing receipts", e);
+        } finally {
+            lock.unlock();
+        }
+        filled.add(FLUSH);
+        synchronized (durableMonitor) {
+            while (durable < target && failure == null && thread.isAlive()) {
+                try {
+                    durableMonitor.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing receipts", e);
+                }
+            }
+        }
+        if (failure != null) throw failure;
+        if (getDurableNumber() < target) throw new IOException("Receipt writer thread has stopped");
+    }
+
+    /**
+     * Flushes, stops the background thread and closes the current file.
+     *
+     * @throws IOException if a receipt could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            flush();
+        } finally {
+            // Hand over what was recorded since the flush, under the lock so nothing follows it.
+            // closed is set after the hand-over, so the background thread sees the buffer before it stops.
+            lock.lock();
+            try {
+                handOver();
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            filled.add(FLUSH);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Returns the number of the last receipt that is known to be on disk.
+     *
+     * @return the receipt number, or 0 if none is durable yet
+     */
+    public long getDurableNumber() {
+        synchronized (durableMonitor) {
+            return durable;
+        }
+    }
+
+    /**
+     * Returns the number of receipts numbered so far, including dropped ones.
+     *
+     * @return the receipt count
+     */
+    public long getReceiptCount() {
+        lock.lock();
+        try {
+            return nextNumber - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how often a purchase had to wait because all buffers were waiting for the disk,
+     * whether or not a buffer became free in time.
+     * A growing count means the disk can not keep up with the sales rate.
+     *
+     * @return the number of waits
+     */
+    public long getStalls() {
+        lock.lock();
+        try {
+            return stalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of receipts that were not recorded: the writer was closed, had failed or
+     * had stopped, no buffer became free within {@link #MAX_BUFFER_WAIT_MILLIS}, or the waiting
+     * thread was interrupted.
+     *
+     * @return the number of lost receipts, each of them listed in a DROPPED line once a buffer is free
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of receipt files started by this writer.
+     *
+     * @return the file count
+     */
+    public int getFilesCreated() {
+        synchronized (durableMonitor) {
+            return filesCreated;
+        }
+    }
+
+    /**
+     * The background thread: writes full buffers as they arrive, and at every flush deadline
+     * also the partly filled one, then forces the file.
+     */
+    private void run() {
+        long lastWritten = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        try {
+            while (true) {
+                long wait = deadline - System.nanoTime();
+                Batch batch = wait > 0 ? filled.poll(wait, TimeUnit.NANOSECONDS) : null;
+                boolean force = batch == FLUSH || System.nanoTime() - deadline >= 0;
+                if (batch != null && batch != FLUSH) {
+                    lastWritten = Math.max(lastWritten, write(batch));
+                }
+                if (!force) continue;
+
+                // Take the partly filled buffer too; if a purchase holds the lock, it hands over soon
+                if (lock.tryLock(1, TimeUnit.MILLISECONDS)) {
+                    try {
+                        handOver();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                Batch next;
+                while ((next = filled.poll()) != null) {
+                    if (next != FLUSH) lastWritten = Math.max(lastWritten, write(next));
+                }
+                if (channel != null && failure == null) {
+                    try {
+                        channel.force(false);
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+                if (failure == null) {
+                    synchronized (durableMonitor) {
+                        durable = Math.max(durable, lastWritten);
+                        durableMonitor.notifyAll();
+                    }
+                }
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                if (closed && filled.isEmpty()) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannel();
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes one buffer to the current file and returns it to the pool.
+     *
+     * @return the number of the last receipt in the buffer
+     */
+    private long write(Batch batch) {
+        ByteBuffer buffer = batch.buffer;
+        buffer.flip();
+        try {
+            if (failure == null) {
+                rotateIfNeeded(buffer.remaining());
+                while (buffer.hasRemaining()) {
+                    fileBytes += channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        buffer.clear();
+        long last = batch.lastNumber;
+        free.add(batch);
+        return last;
+    }
+
+    private void rotateIfNeeded(int bytes) throws IOException {
+        long now = clock.millis();
+        if (channel != null && fileBytes > 0
+                && (fileBytes + bytes > maxFileBytes || now - fileOpenedAt >= rotateMillis)) {
+            // Finish the old file completely before the next one is started
+            channel.force(false);
+            closeChannel();
+        }
+        if (channel == null) {
+            int n;
+            synchronized (durableMonitor) {
+                n = ++filesCreated;
+            }
+            Path file = directory.resolve("receipts-" + FILE_TIME.format(Instant.ofEpochMilli(now)) + "-" + n + ".log");
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            fileBytes = channel.size();
+            fileOpenedAt = now;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Could not close receipt file: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            System.out.println("Receipts can not be written: " + e.getMessage());
+            failure = e;
+        }
+    }
+
+    /**
+     * Writes a whole number in decimal without creating a string.
+     */
+    static void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                out.put("9223372036854775808".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long limit = 10; digits < 19 && value >= limit; limit *= 10) digits++;
+        // Fill from the right; dividing by the constant 10 compiles to a multiplication
+        int start = out.position();
+        for (int i = start + digits - 1; i >= start; i--) {
+            out.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(start + digits);
+    }
+
+    /**
+     * Writes an amount with exactly two decimals, rounding half up on the value in öre.
+     */
+    static void putAmount(ByteBuffer out, double amount) {
+        long ore = Math.round(amount * 100);
+        if (ore < 0) {
+            out.put((byte) '-');
+            ore = -ore;
+        }
+        putLong(out, ore / 100);
+        out.put((byte) '.');
+        long fraction = ore % 100;
+        out.put((byte) ('0' + fraction / 10));
+        out.put((byte) ('0' + fraction % 10));
+    }
+
+    /**
+     * Writes a product name as UTF-8, with tabs and line breaks replaced so the line stays intact.
+     */
+    static void putName(ByteBuffer out, String name) {
+        int n = Math.min(name.length(), MAX_NAME_CHARS);
+        for (int i = 0; i < n; i++) {
+            char c = name.charAt(i);
+            if (c < 0x20) {
+                out.put((byte) ' ');
+            } else if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Pairs are rare in product names; write a replacement character instead
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package se.lexicon.replication;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary format of catalog deltas sent from a {@link CatalogPublisher} to its replicas.
+ *
+ * <h2>Message</h2>
+ * <pre>
+ * [int magic "VMCD"][byte version][byte flags]
+ * [varlong baseVersion][varlong version][int opCount][op]*
+ * </pre>
+ * <p>
+ * A delta turns catalog version {@code baseVersion} into {@code version}. With the {@link #FULL}
+ * flag it instead describes the whole catalog: a replica that has missed a delta applies it and
+ * removes every product it does not mention.
+ * </p>
+ *
+ * <h2>Operations</h2>
+ * <pre>
+ * PUT        [product, see ProductCodec]     add a product, or replace one whose kind changed
+ * REMOVE     [zigzag id]
+ * PRICE      [zigzag id][varlong öre]        prices with at most two decimals
+ * PRICE_RAW  [zigzag id][double price]       any other price
+ * NAME       [zigzag id][string]
+ * ATTRIBUTE  [zigzag id][byte value]         size or cooling level ordinal, or spicy flag
+ * FLAVOR     [zigzag id][string]
+ * </pre>
+ * <p>
+ * Strings are a varint byte count followed by UTF-8 bytes. A price change costs 4 to 6 bytes.
+ * </p>
+ */
+public final class CatalogDelta {
+
+    public static final int MAGIC = 0x564D4344; // "VMCD"
+    public static final byte VERSION = 1;
+
+    /** Flag: the message holds the whole catalog rather than changes. */
+    public static final byte FULL = 1;
+
+    static final byte OP_PUT = 1;
+    static final byte OP_REMOVE = 2;
+    static final byte OP_PRICE = 3;
+    static final byte OP_PRICE_RAW = 4;
+    static final byte OP_NAME = 5;
+    static final byte OP_ATTRIBUTE = 6;
+    static final byte OP_FLAVOR = 7;
+
+    private CatalogDelta() {
+    }
+
+    /**
+     * Reads the version a message brings a replica to, without decoding it.
+     *
+     * @param message the message, positioned at its start
+     * @return the catalog version after the message
+     * @throws IllegalArgumentException if the message is not a catalog delta
+     */
+    public static long versionOf(ByteBuffer message) {
+        ByteBuffer in = message.duplicate();
+        readHeader(in);
+        getVarLong(in);
+        return getVarLong(in);
+    }
+
+    /**
+     * Checks the magic number and format version and returns the flags.
+     */
+    static byte readHeader(ByteBuffer in) {
+        if (in.remaining() < 6 || in.getInt() != MAGIC) throw new IllegalArgumentException("Not a catalog delta");
+        byte version = in.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported catalog delta version: " + version);
+        return in.get();
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static void putId(ByteBuffer out, int id) {
+        // Zigzag, so small negative IDs stay short too
+        putVarLong(out, ((id << 1) ^ (id >> 31)) & 0xFFFFFFFFL);
+    }
+
+    static int getId(ByteBuffer in) {
+        int v = (int) getVarLong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static void putString(ByteBuffer out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarLong(out, bytes.length);
+        out.put(bytes);
+    }
+
+    static String getString(ByteBuffer in) {
+        long length = getVarLong(in);
+        if (length > in.remaining()) throw new IllegalArgumentException("Text longer than the message: " + length);
+        byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the price in öre if it has at most two decimals, otherwise -1.
+     */
+    static long exactOre(double price) {
+        long ore = Math.round(price * 100);
+        return ore >= 0 && ore / 100.0 == price ? ore : -1;
+    }
+
+    /**
+     * Returns an upper bound on the encoded size of a string.
+     */
+    static int maxStringSize(String s) {
+        return 5 + 3 * s.length();
+    }
+}
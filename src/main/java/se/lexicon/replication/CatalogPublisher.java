@@ -0,0 +1,288 @@
+package se.lexicon.replication;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.ProductType;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+import se.lexicon.snapshot.ProductCodec;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the catalog of a primary machine to the other machines of a station as versioned deltas.
+ * <p>
+ * The primary's catalog is changed as usual, e.g. with {@link VendingMachine#setPrice(int, double)},
+ * {@link VendingMachine#addProduct(Product, int)} or the products' own setters. {@link #publish()}
+ * then compares it with the catalog as last published and sends only the differences: prices,
+ * names, attributes, added and removed products. Each delta raises the version by one, so a
+ * replica can tell when it has missed one and ask for {@link #fullSync()} instead.
+ * </p>
+ * <p>
+ * Prices are the products' own prices; time-slotted price tables stay local to each machine.
+ * Stock is not replicated either.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * CatalogPublisher publisher = new CatalogPublisher(primary, transport);
+ * primary.setPrice(4, 55);
+ * publisher.publish();
+ * }</pre>
+ */
+public class CatalogPublisher {
+
+    /**
+     * A product as last published.
+     */
+    private static final class Published {
+        ProductType type;
+        double price;
+        String name;
+        int attribute;
+        String flavor;
+        boolean seen;
+    }
+
+    private final VendingMachine primary;
+    private final CatalogTransport transport;
+
+    // The catalog as last published, by product ID
+    private final Map<Integer, Published> published = new HashMap<>();
+
+    private long version;
+    private long bytesSent;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    /**
+     * Creates a publisher. Nothing is sent until {@link #publish()} is called; the first delta
+     * holds the whole catalog.
+     *
+     * @param primary   the machine whose catalog is replicated
+     * @param transport carries the deltas to the replicas
+     */
+    public CatalogPublisher(VendingMachine primary, CatalogTransport transport) {
+        if (primary == null || transport == null) throw new IllegalArgumentException("primary and transport must not be null");
+        this.primary = primary;
+        this.transport = transport;
+    }
+
+    /**
+     * Sends the changes made to the primary's catalog since the last call.
+     *
+     * @return the new catalog version, or the current one if nothing changed
+     */
+    public synchronized long publish() {
+        ByteBuffer out = begin(version, version + 1, (byte) 0);
+        int countAt = out.position();
+        out.putInt(0);
+        int ops = 0;
+
+        // Hold the machine's lock so the delta reflects one consistent catalog
+        synchronized (primary) {
+            List<Product> catalog = primary.getCatalog();
+            for (Product p : catalog) {
+                out = ensure(out, p);
+                Published last = published.get(p.getId());
+                if (last == null || last.type != ProductType.of(p)) {
+                    out.put(CatalogDelta.OP_PUT);
+                    ProductCodec.write(out, p);
+                    last = new Published();
+                    remember(last, p);
+                    published.put(p.getId(), last);
+                    ops++;
+                } else {
+                    ops += diff(out, last, p);
+                }
+                last.seen = true;
+            }
+        }
+        for (Iterator<Map.Entry<Integer, Published>> it = published.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Published> e = it.next();
+            if (e.getValue().seen) {
+                e.getValue().seen = false;
+            } else {
+                out = ensure(out, 6);
+                out.put(CatalogDelta.OP_REMOVE);
+                CatalogDelta.putId(out, e.getKey());
+                it.remove();
+                ops++;
+            }
+        }
+        if (ops == 0) return version;
+
+        out.putInt(countAt, ops);
+        version++;
+        send(out);
+        return version;
+    }
+
+    /**
+     * Encodes the whole catalog as last published, for a replica that has missed a delta.
+     * Changes not yet published are not included.
+     *
+     * @return the message, with the {@link CatalogDelta#FULL} flag
+     */
+    public synchronized ByteBuffer fullSync() {
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        out = begin(out, 0, version, CatalogDelta.FULL);
+        int countAt = out.position();
+        out.putInt(0);
+        for (Map.Entry<Integer, Published> e : published.entrySet()) {
+            Published p = e.getValue();
+            out = grow(out, 32 + CatalogDelta.maxStringSize(p.name)
+                    + (p.flavor == null ? 0 : CatalogDelta.maxStringSize(p.flavor)));
+            out.put(CatalogDelta.OP_PUT);
+            ProductCodec.write(out, toProduct(e.getKey(), p));
+        }
+        out.putInt(countAt, published.size());
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Returns the version of the last published delta.
+     *
+     * @return the version, 0 before the first delta
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of bytes passed to the transport so far.
+     *
+     * @return the byte count
+     */
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Appends the operations that turn a published product into its current state.
+     *
+     * @return the number of operations appended
+     */
+    private static int diff(ByteBuffer out, Published last, Product p) {
+        int ops = 0;
+        int id = p.getId();
+        if (p.getPrice() != last.price) {
+            long ore = CatalogDelta.exactOre(p.getPrice());
+            out.put(ore >= 0 ? CatalogDelta.OP_PRICE : CatalogDelta.OP_PRICE_RAW);
+            CatalogDelta.putId(out, id);
+            if (ore >= 0) CatalogDelta.putVarLong(out, ore);
+            else out.putDouble(p.getPrice());
+            last.price = p.getPrice();
+            ops++;
+        }
+        if (!p.getProductName().equals(last.name)) {
+            out.put(CatalogDelta.OP_NAME);
+            CatalogDelta.putId(out, id);
+            CatalogDelta.putString(out, p.getProductName());
+            last.name = p.getProductName();
+            ops++;
+        }
+        if (p instanceof CottonCandy) {
+            String flavor = ((CottonCandy) p).getFlavor();
+            if (!flavor.equals(last.flavor)) {
+                out.put(CatalogDelta.OP_FLAVOR);
+                CatalogDelta.putId(out, id);
+                CatalogDelta.putString(out, flavor);
+                last.flavor = flavor;
+                ops++;
+            }
+        } else {
+            int attribute = attributeOf(p);
+            if (attribute != last.attribute) {
+                out.put(CatalogDelta.OP_ATTRIBUTE);
+                CatalogDelta.putId(out, id);
+                out.put((byte) attribute);
+                last.attribute = attribute;
+                ops++;
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Returns the one-byte attribute of a product: size or cooling level ordinal, or the spicy flag.
+     */
+    static int attributeOf(Product p) {
+        if (p instanceof Snickers) return ((Snickers) p).getSize().ordinal();
+        if (p instanceof Taco) return ((Taco) p).isSpicy() ? 1 : 0;
+        if (p instanceof MintDrops) return ((MintDrops) p).getCoolingLevel().ordinal();
+        return 0;
+    }
+
+    private static void remember(Published last, Product p) {
+        last.type = ProductType.of(p);
+        last.price = p.getPrice();
+        last.name = p.getProductName();
+        last.attribute = attributeOf(p);
+        last.flavor = p instanceof CottonCandy ? ((CottonCandy) p).getFlavor() : null;
+    }
+
+    /**
+     * Rebuilds a product from its published state, for full syncs.
+     */
+    private static Product toProduct(int id, Published p) {
+        switch (p.type) {
+            case SNICKERS:
+                return new Snickers(id, p.price, p.name, Size.values()[p.attribute]);
+            case TACO:
+                return new Taco(id, p.price, p.name, p.attribute != 0);
+            case COTTON_CANDY:
+                return new CottonCandy(id, p.price, p.name, p.flavor);
+            default:
+                return new MintDrops(id, p.price, p.name, p.attribute + 1);
+        }
+    }
+
+    private ByteBuffer begin(long baseVersion, long newVersion, byte flags) {
+        buffer.clear();
+        buffer = begin(buffer, baseVersion, newVersion, flags);
+        return buffer;
+    }
+
+    private static ByteBuffer begin(ByteBuffer out, long baseVersion, long newVersion, byte flags) {
+        out.putInt(CatalogDelta.MAGIC).put(CatalogDelta.VERSION).put(flags);
+        CatalogDelta.putVarLong(out, baseVersion);
+        CatalogDelta.putVarLong(out, newVersion);
+        return out;
+    }
+
+    /**
+     * Makes room for every operation a product may need.
+     */
+    private ByteBuffer ensure(ByteBuffer out, Product p) {
+        int size = 32 + ProductCodec.encodedSize(p) + CatalogDelta.maxStringSize(p.getProductName());
+        if (p instanceof CottonCandy) size += CatalogDelta.maxStringSize(((CottonCandy) p).getFlavor());
+        return ensure(out, size);
+    }
+
+    private ByteBuffer ensure(ByteBuffer out, int bytes) {
+        buffer = grow(out, bytes);
+        return buffer;
+    }
+
+    private static ByteBuffer grow(ByteBuffer out, int bytes) {
+        if (out.remaining() >= bytes) return out;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+        out.flip();
+        bigger.put(out);
+        return bigger;
+    }
+
+    private void send(ByteBuffer out) {
+        out.flip();
+        bytesSent += out.remaining();
+        transport.send(out);
+    }
+}
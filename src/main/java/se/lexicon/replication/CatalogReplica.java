@@ -0,0 +1,236 @@
+package se.lexicon.replication;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.ProductType;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+import se.lexicon.snapshot.ProductCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a machine's catalog in step with a {@link CatalogPublisher} by applying its deltas.
+ * <p>
+ * Changes are applied in place through the machine: a new price goes through
+ * {@link VendingMachine#setPrice(int, double)}, a new name or attribute through
+ * {@link VendingMachine#setProductName(int, String)} and its siblings, and added products are loaded
+ * in one {@link VendingMachine#addProducts(List, int)} call, so listeners and change feeds on the
+ * replica see every change.
+ * The machine's lock is held for the whole delta, so a purchase never sees half of one.
+ * </p>
+ * <p>
+ * A delta whose base version is not the replica's version means one was lost. The replica then
+ * fetches a full catalog from {@code resync} and applies that instead.
+ * </p>
+ */
+public class CatalogReplica {
+
+    private static final Size[] SIZES = Size.values();
+
+    private final VendingMachine machine;
+    private final int initialStock;
+    private final Supplier<ByteBuffer> resync;
+
+    private volatile long version;
+    private volatile long applyNanos;
+    private volatile long resyncs;
+
+    /**
+     * Creates a replica.
+     *
+     * @param machine      the machine whose catalog is kept in step
+     * @param initialStock the units loaded for products added by the primary, or
+     *                     {@link VendingMachine#UNLIMITED_STOCK}
+     * @param resync       returns a full catalog when a delta was missed, e.g.
+     *                     {@link CatalogPublisher#fullSync()}
+     */
+    public CatalogReplica(VendingMachine machine, int initialStock, Supplier<ByteBuffer> resync) {
+        if (machine == null || resync == null) throw new IllegalArgumentException("machine and resync must not be null");
+        if (initialStock < 0) throw new IllegalArgumentException("Initial stock can not be negative");
+        this.machine = machine;
+        this.initialStock = initialStock;
+        this.resync = resync;
+    }
+
+    /**
+     * Applies a message from the publisher. Messages that are not newer than the replica's
+     * version are ignored, so duplicates are harmless.
+     *
+     * @param message the encoded delta
+     * @return the replica's version afterwards
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public synchronized long apply(ByteBuffer message) {
+        long start = System.nanoTime();
+        ByteBuffer in = message.duplicate();
+        byte flags = CatalogDelta.readHeader(in);
+        long base = CatalogDelta.getVarLong(in);
+        long next = CatalogDelta.getVarLong(in);
+        boolean full = (flags & CatalogDelta.FULL) != 0;
+        if (next <= version) return version;
+
+        if (!full && base != version) {
+            // A delta went missing; catch up with the whole catalog
+            resyncs++;
+            ByteBuffer catalog = resync.get();
+            if (CatalogDelta.versionOf(catalog) < next) {
+                // The full catalog can not be older than a delta we already received
+                throw new IllegalStateException("Full sync is older than the received delta " + next);
+            }
+            return apply(catalog);
+        }
+
+        synchronized (machine) {
+            applyOps(in, full);
+        }
+        version = next;
+        applyNanos += System.nanoTime() - start;
+        return next;
+    }
+
+    private void applyOps(ByteBuffer in, boolean full) {
+        int count = in.getInt();
+        Map<Integer, Product> added = new LinkedHashMap<>();
+        Set<Integer> mentioned = full ? new HashSet<>() : null;
+        for (int i = 0; i < count; i++) {
+            byte op = in.get();
+            if (op == CatalogDelta.OP_PUT) {
+                Product p = ProductCodec.read(in);
+                if (mentioned != null) mentioned.add(p.getId());
+                put(p, added);
+                continue;
+            }
+            int id = CatalogDelta.getId(in);
+            Product p = added.containsKey(id) ? added.get(id) : machine.getProduct(id);
+            switch (op) {
+                case CatalogDelta.OP_REMOVE:
+                    if (added.remove(id) == null) machine.removeProduct(id);
+                    break;
+                case CatalogDelta.OP_PRICE:
+                    setPrice(p, id, CatalogDelta.getVarLong(in) / 100.0, added);
+                    break;
+                case CatalogDelta.OP_PRICE_RAW:
+                    setPrice(p, id, in.getDouble(), added);
+                    break;
+                case CatalogDelta.OP_NAME:
+                    setName(p, CatalogDelta.getString(in), added);
+                    break;
+                case CatalogDelta.OP_ATTRIBUTE:
+                    setAttribute(p, in.get(), added);
+                    break;
+                case CatalogDelta.OP_FLAVOR:
+                    setFlavor(p, CatalogDelta.getString(in), added);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown catalog delta operation: " + op);
+            }
+        }
+        if (mentioned != null) {
+            // A full catalog: whatever it does not mention was removed on the primary
+            List<Integer> stale = new ArrayList<>();
+            for (Product p : machine.getCatalog()) {
+                if (!mentioned.contains(p.getId())) stale.add(p.getId());
+            }
+            for (int id : stale) machine.removeProduct(id);
+        }
+        if (!added.isEmpty()) machine.addProducts(new ArrayList<>(added.values()), initialStock);
+    }
+
+    /**
+     * Adds a product, or brings an existing one with the same ID up to date.
+     */
+    private void put(Product p, Map<Integer, Product> added) {
+        Product existing = machine.getProduct(p.getId());
+        if (existing == null) {
+            added.put(p.getId(), p);
+        } else if (ProductType.of(existing) != ProductType.of(p)) {
+            // A different kind of product under the same ID: swap it, keeping the stock
+            int stock = machine.getStock(p.getId());
+            machine.removeProduct(p.getId());
+            machine.addProduct(p, stock);
+        } else {
+            if (existing.getPrice() != p.getPrice()) machine.setPrice(p.getId(), p.getPrice());
+            setName(existing, p.getProductName(), added);
+            if (p instanceof CottonCandy) {
+                setFlavor(existing, ((CottonCandy) p).getFlavor(), added);
+            } else {
+                setAttribute(existing, (byte) CatalogPublisher.attributeOf(p), added);
+            }
+        }
+    }
+
+    private void setPrice(Product p, int id, double price, Map<Integer, Product> added) {
+        if (p == null) return;
+        if (added.containsKey(id)) p.setPrice(price);
+        else machine.setPrice(id, price);
+    }
+
+    // Products not yet loaded are changed directly; the machine reports them once they are added
+
+    private void setName(Product p, String name, Map<Integer, Product> added) {
+        if (p == null || p.getProductName().equals(name)) return;
+        if (added.containsKey(p.getId())) p.setProductName(name);
+        else machine.setProductName(p.getId(), name);
+    }
+
+    private void setFlavor(Product p, String flavor, Map<Integer, Product> added) {
+        if (!(p instanceof CottonCandy) || ((CottonCandy) p).getFlavor().equals(flavor)) return;
+        if (added.containsKey(p.getId())) ((CottonCandy) p).setFlavor(flavor);
+        else machine.setFlavor(p.getId(), flavor);
+    }
+
+    private void setAttribute(Product p, byte value, Map<Integer, Product> added) {
+        if (p == null || CatalogPublisher.attributeOf(p) == value) return;
+        boolean loaded = !added.containsKey(p.getId());
+        int id = p.getId();
+        if (p instanceof Snickers) {
+            if (loaded) machine.setSize(id, SIZES[value]);
+            else ((Snickers) p).setSize(SIZES[value]);
+        } else if (p instanceof Taco) {
+            if (loaded) machine.setSpicy(id, value != 0);
+            else ((Taco) p).setSpicy(value != 0);
+        } else if (p instanceof MintDrops) {
+            // Cooling levels count from 1
+            if (loaded) machine.setCoolingLevel(id, value + 1);
+            else ((MintDrops) p).setCoolingLevel(value + 1);
+        }
+    }
+
+    /**
+     * Returns the catalog version this replica has reached.
+     *
+     * @return the version, 0 before the first delta
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns how often a missed delta forced a full sync.
+     *
+     * @return the number of full syncs
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Returns the total time spent applying messages.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getApplyNanos() {
+        return applyNanos;
+    }
+}
@@ -0,0 +1,18 @@
+package se.lexicon.replication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Carries catalog deltas from a {@link CatalogPublisher} to its replicas, e.g. over the station's
+ * local network, or in memory with {@link LoopbackTransport}.
+ */
+public interface CatalogTransport {
+
+    /**
+     * Sends a message to every replica. The buffer is not modified and not used after the call
+     * returns, so implementations that deliver later must copy it.
+     *
+     * @param message the encoded delta, see {@link CatalogDelta}
+     */
+    void send(ByteBuffer message);
+}
@@ -0,0 +1,184 @@
+package se.lexicon.replication;
+
+import se.lexicon.sketch.QuantileSketch;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers catalog deltas to replicas in the same process, for tests and benchmarks.
+ * <p>
+ * Delivery is either synchronous, on the publishing thread, or asynchronous with one thread per
+ * replica, like separate machines on a network. Messages can be dropped on purpose to exercise the
+ * replicas' recovery from a missed delta.
+ * </p>
+ * <p>
+ * The transport measures <b>convergence time</b>: for every message, the time from
+ * {@link #send(ByteBuffer)} until the last replica has applied it. See {@link #getConvergence()}.
+ * </p>
+ */
+public class LoopbackTransport implements CatalogTransport, AutoCloseable {
+
+    /**
+     * One connected replica and its delivery thread.
+     */
+    private static final class Link {
+        final CatalogReplica replica;
+        final ExecutorService executor;
+        final AtomicInteger toDrop = new AtomicInteger();
+
+        Link(CatalogReplica replica, ExecutorService executor) {
+            this.replica = replica;
+            this.executor = executor;
+        }
+    }
+
+    private final boolean asynchronous;
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+
+    // Send time of every version that not all replicas have reached yet
+    private final ConcurrentNavigableMap<Long, Long> inFlight = new ConcurrentSkipListMap<>();
+
+    // Convergence times in nanoseconds; guarded by itself
+    private final QuantileSketch convergence = new QuantileSketch(0.01, 100, 60e9);
+
+    /**
+     * Creates a transport.
+     *
+     * @param asynchronous true to deliver on one thread per replica, false to deliver on the
+     *                     thread that sends
+     */
+    public LoopbackTransport(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Connects a replica; it receives every message sent from now on.
+     *
+     * @param replica the replica
+     */
+    public void connect(CatalogReplica replica) {
+        if (replica == null) throw new IllegalArgumentException("replica must not be null");
+        ExecutorService executor = null;
+        if (asynchronous) {
+            int n = links.size();
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "catalog-replica-" + n);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        links.add(new Link(replica, executor));
+    }
+
+    /**
+     * Makes the next messages to a replica get lost.
+     *
+     * @param replica the replica
+     * @param count   how many messages to drop
+     */
+    public void drop(CatalogReplica replica, int count) {
+        for (Link link : links) {
+            if (link.replica == replica) link.toDrop.addAndGet(count);
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer message) {
+        // Copy, since the publisher reuses its buffer
+        ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+        copy.put(message.duplicate()).flip();
+        ByteBuffer readOnly = copy.asReadOnlyBuffer();
+        long version = CatalogDelta.versionOf(readOnly);
+
+        inFlight.put(version, System.nanoTime());
+        for (Link link : links) {
+            if (link.executor == null) {
+                deliver(link, readOnly, version);
+            } else {
+                link.executor.execute(() -> deliver(link, readOnly, version));
+            }
+        }
+    }
+
+    private void deliver(Link link, ByteBuffer message, long version) {
+        boolean dropped = link.toDrop.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+        if (!dropped) {
+            try {
+                link.replica.apply(message);
+            } catch (RuntimeException e) {
+                System.out.println("Replica could not apply catalog version " + version + ": " + e.getMessage());
+            }
+        }
+        converged();
+    }
+
+    /**
+     * Records the convergence time of every version that all replicas have now reached.
+     */
+    private void converged() {
+        long reached = Long.MAX_VALUE;
+        for (Link link : links) {
+            reached = Math.min(reached, link.replica.getVersion());
+        }
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Long> e : inFlight.headMap(reached, true).entrySet()) {
+            // Only the thread that removes the entry records it
+            if (inFlight.remove(e.getKey(), e.getValue())) {
+                synchronized (convergence) {
+                    convergence.add(now - e.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the convergence times measured so far, in nanoseconds: from sending a
+     * message until every replica has reached its version, either by applying it or, if it was
+     * dropped, by catching up later.
+     *
+     * @return the convergence times
+     */
+    public QuantileSketch getConvergence() {
+        QuantileSketch copy = new QuantileSketch(0.01, 100, 60e9);
+        synchronized (convergence) {
+            copy.merge(convergence);
+        }
+        return copy;
+    }
+
+    /**
+     * Waits until every replica has reached the version of the last message sent.
+     * A replica that missed the last message only catches up with the next one.
+     *
+     * @param timeoutMillis the longest time to wait
+     * @return true if all replicas converged in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitConvergence(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!inFlight.isEmpty()) {
+            if (System.nanoTime() - deadline >= 0) return false;
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the delivery threads.
+     */
+    @Override
+    public void close() {
+        for (Link link : links) {
+            if (link.executor != null) link.executor.shutdownNow();
+        }
+    }
+}
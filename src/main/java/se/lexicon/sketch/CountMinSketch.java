@@ -0,0 +1,200 @@
+package se.lexicon.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Approximate frequency counter (Count-Min sketch) with heavy-hitter tracking.
+ * <p>
+ * Counts are kept in a fixed {@code depth x width} table, so memory does not grow with the
+ * number of distinct items. An estimate never undercounts; it may overcount by roughly
+ * {@code totalCount * e / width}. A small fixed-size candidate list remembers the items
+ * with the highest estimates so heavy hitters can be listed without knowing the keys.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * CountMinSketch products = new CountMinSketch();
+ * products.add(productId, 1);
+ * long approxSold = products.estimate(productId);
+ * List<long[]> top = products.heavyHitters(); // {item, estimate}, highest first
+ * }</pre>
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] table;
+    private long totalCount;
+
+    // Heavy-hitter candidates: parallel arrays, at most candidateCapacity entries
+    private final long[] candidateItems;
+    private final long[] candidateCounts;
+    private int candidates;
+
+    /**
+     * Creates a 4 x 2048 sketch (64 KB) that tracks 16 heavy-hitter candidates.
+     */
+    public CountMinSketch() {
+        this(4, 2048, 16);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param depth             number of hash rows (more rows lower the chance of a bad estimate)
+     * @param width             counters per row, must be a power of two
+     * @param candidateCapacity how many heavy-hitter candidates to remember
+     */
+    public CountMinSketch(int depth, int width, int candidateCapacity) {
+        if (depth <= 0 || depth > 16) throw new IllegalArgumentException("Depth must be between 1 and 16");
+        if (width <= 0 || Integer.bitCount(width) != 1) throw new IllegalArgumentException("Width must be a power of two");
+        if (candidateCapacity < 0) throw new IllegalArgumentException("Candidate capacity can not be negative");
+        this.depth = depth;
+        this.width = width;
+        this.table = new long[depth * width];
+        this.candidateItems = new long[candidateCapacity];
+        this.candidateCounts = new long[candidateCapacity];
+    }
+
+    /**
+     * Adds occurrences of an item.
+     *
+     * @param item  the item (e.g., a product ID)
+     * @param count how many occurrences to add, must be positive
+     */
+    public void add(long item, long count) {
+        if (count <= 0) throw new IllegalArgumentException("Count must be positive");
+        long hash = Hashing.mix64(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * width + index(hash, row);
+            table[cell] += count;
+            estimate = Math.min(estimate, table[cell]);
+        }
+        totalCount += count;
+        offerCandidate(item, estimate);
+    }
+
+    /**
+     * Returns the estimated number of occurrences of an item (never less than the true count).
+     *
+     * @param item the item
+     * @return the estimated count
+     */
+    public long estimate(long item) {
+        long hash = Hashing.mix64(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the tracked heavy hitters, highest estimate first.
+     *
+     * @return a list of {@code {item, estimatedCount}} pairs
+     */
+    public List<long[]> heavyHitters() {
+        List<long[]> result = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            result.add(new long[]{candidateItems[i], candidateCounts[i]});
+        }
+        result.sort((a, b) -> Long.compare(b[1], a[1]));
+        return result;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other a sketch with the same depth, width and candidate capacity
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width || other.candidateItems.length != candidateItems.length) {
+            throw new IllegalArgumentException("Can not merge sketches with different dimensions");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        totalCount += other.totalCount;
+
+        // Candidate estimates changed; re-estimate both candidate sets against the merged table
+        for (int i = 0; i < candidates; i++) {
+            candidateCounts[i] = estimate(candidateItems[i]);
+        }
+        for (int i = 0; i < other.candidates; i++) {
+            offerCandidate(other.candidateItems[i], estimate(other.candidateItems[i]));
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo(ByteBuffer)} produces.
+     */
+    public int serializedSize() {
+        return 4 * 4 + 8 + table.length * 8 + candidates * 16;
+    }
+
+    /**
+     * Writes this sketch to a buffer.
+     *
+     * @param buffer the target buffer with at least {@link #serializedSize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(depth).putInt(width).putInt(candidateItems.length).putLong(totalCount);
+        for (long c : table) buffer.putLong(c);
+        buffer.putInt(candidates);
+        for (int i = 0; i < candidates; i++) {
+            buffer.putLong(candidateItems[i]).putLong(candidateCounts[i]);
+        }
+    }
+
+    /**
+     * Reads a sketch previously written with {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the source buffer
+     * @return the restored sketch
+     */
+    public static CountMinSketch readFrom(ByteBuffer buffer) {
+        CountMinSketch sketch = new CountMinSketch(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        sketch.totalCount = buffer.getLong();
+        for (int i = 0; i < sketch.table.length; i++) sketch.table[i] = buffer.getLong();
+        sketch.candidates = buffer.getInt();
+        for (int i = 0; i < sketch.candidates; i++) {
+            sketch.candidateItems[i] = buffer.getLong();
+            sketch.candidateCounts[i] = buffer.getLong();
+        }
+        return sketch;
+    }
+
+    private int index(long hash, int row) {
+        // Double hashing: derive one index per row from the two halves of a single 64-bit hash
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return (h1 + row * h2) & (width - 1);
+    }
+
+    private void offerCandidate(long item, long estimate) {
+        int smallest = -1;
+        for (int i = 0; i < candidates; i++) {
+            if (candidateItems[i] == item) {
+                candidateCounts[i] = Math.max(candidateCounts[i], estimate);
+                return;
+            }
+            if (smallest < 0 || candidateCounts[i] < candidateCounts[smallest]) smallest = i;
+        }
+        if (candidates < candidateItems.length) {
+            candidateItems[candidates] = item;
+            candidateCounts[candidates] = estimate;
+            candidates++;
+        } else if (smallest >= 0 && estimate > candidateCounts[smallest]) {
+            candidateItems[smallest] = item;
+            candidateCounts[smallest] = estimate;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package se.lexicon.sketch;
+
+/**
+ * Hash helpers shared by the sketches.
+ * <p>
+ * The sketches only need well-mixed 64-bit hashes of primitive keys, so a cheap
+ * finalizer (the one from MurmurHash3 / SplitMix64) is enough and allocates nothing.
+ * </p>
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Scrambles all bits of a 64-bit key.
+     *
+     * @param key the key to hash
+     * @return a well-distributed 64-bit hash
+     */
+    static long mix64(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,133 @@
+package se.lexicon.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Approximate distinct counter (HyperLogLog).
+ * <p>
+ * Uses {@code 2^precision} one-byte registers, so memory is fixed no matter how many
+ * items are added. With the default precision of 12 (4 KB) the typical relative error
+ * is about 1.6%. Two sketches with the same precision can be merged by taking the
+ * register-wise maximum, which makes the sketch suitable for fleet-wide aggregation.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * HyperLogLog customers = new HyperLogLog();
+ * customers.add(customerKey);
+ * long approxDistinct = customers.estimate();
+ * }</pre>
+ */
+public class HyperLogLog {
+
+    /** Default number of index bits (4096 registers). */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision number of index bits, between 4 and 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds an item (e.g., a customer key).
+     *
+     * @param item the item to count
+     */
+    public void add(long item) {
+        long hash = Hashing.mix64(item);
+        int index = (int) (hash >>> (64 - precision));
+        // Position of the first 1-bit in the remaining bits; the sentinel bit caps the value
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct items added.
+     *
+     * @return the cardinality estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // Small range correction: linear counting is more accurate while many registers are empty
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Merges another sketch into this one. Afterwards this sketch estimates the union.
+     *
+     * @param other a sketch with the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can not merge sketches with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo(ByteBuffer)} produces.
+     */
+    public int serializedSize() {
+        return 1 + registers.length;
+    }
+
+    /**
+     * Writes this sketch to a buffer.
+     *
+     * @param buffer the target buffer with at least {@link #serializedSize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) precision);
+        buffer.put(registers);
+    }
+
+    /**
+     * Reads a sketch previously written with {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the source buffer
+     * @return the restored sketch
+     */
+    public static HyperLogLog readFrom(ByteBuffer buffer) {
+        HyperLogLog hll = new HyperLogLog(buffer.get());
+        buffer.get(hll.registers);
+        return hll;
+    }
+}
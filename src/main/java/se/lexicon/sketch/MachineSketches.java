@@ -0,0 +1,198 @@
+package se.lexicon.sketch;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachineListener;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The compact, mergeable traffic summary of one vending machine.
+ * <p>
+ * Register an instance as a listener on a machine; it then keeps:
+ * </p>
+ * <ul>
+ *   <li>{@link HyperLogLog} of customer keys (approximate distinct customers),</li>
+ *   <li>{@link QuantileSketch} of the price of each purchase,</li>
+ *   <li>{@link QuantileSketch} of the total spend per session (sessions with at least one purchase),</li>
+ *   <li>{@link CountMinSketch} of product IDs (approximate units sold and heavy hitters).</li>
+ * </ul>
+ * <p>
+ * All sketches have a fixed size (about 25 KB in total), so memory does not grow with traffic.
+ * Machines ship {@link #toBytes()} to a central service, which combines them with
+ * {@link #mergeAll(Collection)}.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * MachineSketches sketches = new MachineSketches(machineId);
+ * vm.addListener(sketches);
+ * ...
+ * byte[] image = sketches.toBytes();                 // on the machine
+ * MachineSketches fleet = MachineSketches.mergeAll(images); // centrally
+ * fleet.distinctCustomers();
+ * fleet.sessionSpendQuantile(0.9);
+ * }</pre>
+ */
+public class MachineSketches implements VendingMachineListener {
+
+    private static final int MAGIC = 0x564D534B; // "VMSK"
+    private static final byte VERSION = 1;
+
+    private final long machineId;
+    private final HyperLogLog customers;
+    private final QuantileSketch purchaseValues;
+    private final QuantileSketch sessionSpend;
+    private final CountMinSketch productCounts;
+
+    // Spend of the session that is currently open
+    private double currentSessionSpend;
+
+    /**
+     * Creates empty sketches for one machine.
+     *
+     * @param machineId the ID of the machine (0 for merged fleet-wide sketches)
+     */
+    public MachineSketches(long machineId) {
+        this(machineId, new HyperLogLog(11), new QuantileSketch(0.02, 0.5, 100_000),
+                new QuantileSketch(0.02, 0.5, 100_000), new CountMinSketch(4, 512, 16));
+    }
+
+    private MachineSketches(long machineId, HyperLogLog customers, QuantileSketch purchaseValues,
+                            QuantileSketch sessionSpend, CountMinSketch productCounts) {
+        this.machineId = machineId;
+        this.customers = customers;
+        this.purchaseValues = purchaseValues;
+        this.sessionSpend = sessionSpend;
+        this.productCounts = productCounts;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    @Override
+    public synchronized void onCustomerIdentified(long sessionId, long customerKey) {
+        customers.add(customerKey);
+    }
+
+    @Override
+    public synchronized void onPurchase(long sessionId, Product product, double price) {
+        purchaseValues.add(price);
+        productCounts.add(product.getId(), 1);
+        currentSessionSpend += price;
+    }
+
+    @Override
+    public synchronized void onSessionEnded(long sessionId, double change) {
+        if (currentSessionSpend > 0) {
+            sessionSpend.add(currentSessionSpend);
+        }
+        currentSessionSpend = 0;
+    }
+
+    /**
+     * Returns the approximate number of distinct identified customers.
+     */
+    public synchronized long distinctCustomers() {
+        return customers.estimate();
+    }
+
+    /**
+     * Returns the approximate price at the given quantile of all purchases.
+     *
+     * @param q the quantile, between 0 and 1
+     */
+    public synchronized double purchaseValueQuantile(double q) {
+        return purchaseValues.quantile(q);
+    }
+
+    /**
+     * Returns the approximate total spend per session at the given quantile.
+     *
+     * @param q the quantile, between 0 and 1
+     */
+    public synchronized double sessionSpendQuantile(double q) {
+        return sessionSpend.quantile(q);
+    }
+
+    /**
+     * Returns the approximate number of units sold of a product.
+     *
+     * @param productId the product ID
+     */
+    public synchronized long unitsSold(int productId) {
+        return productCounts.estimate(productId);
+    }
+
+    /**
+     * Returns the most sold product IDs, highest estimate first.
+     *
+     * @return a list of {@code {productId, estimatedUnits}} pairs
+     */
+    public synchronized List<long[]> topProducts() {
+        return productCounts.heavyHitters();
+    }
+
+    /**
+     * Merges another machine's sketches into this one.
+     *
+     * @param other the sketches to add
+     */
+    public synchronized void merge(MachineSketches other) {
+        // Do not merge two live instances into each other concurrently; that would lock in opposite order
+        synchronized (other) {
+            customers.merge(other.customers);
+            purchaseValues.merge(other.purchaseValues);
+            sessionSpend.merge(other.sessionSpend);
+            productCounts.merge(other.productCounts);
+        }
+    }
+
+    /**
+     * Serializes all sketches into a versioned binary image.
+     *
+     * @return the binary image
+     */
+    public synchronized byte[] toBytes() {
+        int size = 4 + 1 + 8 + customers.serializedSize() + purchaseValues.serializedSize()
+                + sessionSpend.serializedSize() + productCounts.serializedSize();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).put(VERSION).putLong(machineId);
+        customers.writeTo(buffer);
+        purchaseValues.writeTo(buffer);
+        sessionSpend.writeTo(buffer);
+        productCounts.writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Restores sketches from an image created by {@link #toBytes()}.
+     *
+     * @param image the binary image
+     * @return the restored sketches
+     * @throws IllegalArgumentException if the image is not a sketch image or has an unknown version
+     */
+    public static MachineSketches fromBytes(byte[] image) {
+        ByteBuffer buffer = ByteBuffer.wrap(image);
+        if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a machine sketch image");
+        byte version = buffer.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported sketch image version: " + version);
+        long machineId = buffer.getLong();
+        return new MachineSketches(machineId, HyperLogLog.readFrom(buffer), QuantileSketch.readFrom(buffer),
+                QuantileSketch.readFrom(buffer), CountMinSketch.readFrom(buffer));
+    }
+
+    /**
+     * Decodes and merges many machine images in parallel into one fleet-wide summary.
+     *
+     * @param images the images from {@link #toBytes()}
+     * @return the merged sketches, with machine ID 0
+     */
+    public static MachineSketches mergeAll(Collection<byte[]> images) {
+        return images.parallelStream()
+                .map(MachineSketches::fromBytes)
+                .collect(() -> new MachineSketches(0), MachineSketches::merge, MachineSketches::merge);
+    }
+}
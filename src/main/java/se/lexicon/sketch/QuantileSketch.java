@@ -0,0 +1,200 @@
+package se.lexicon.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Approximate quantiles of non-negative amounts (e.g., SEK per purchase or per session).
+ * <p>
+ * Values are counted in logarithmically sized buckets, so every answer is within a fixed
+ * <em>relative</em> error of the true value (1% by default). The bucket range is fixed at
+ * construction, which keeps memory constant: values below {@code minValue} fall into the
+ * first bucket and values above {@code maxValue} into the last. Sketches with the same
+ * configuration merge by adding their bucket counts.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * QuantileSketch spend = new QuantileSketch();
+ * spend.add(49.0);
+ * spend.add(120.0);
+ * double median = spend.quantile(0.5);
+ * double p95 = spend.quantile(0.95);
+ * }</pre>
+ */
+public class QuantileSketch {
+
+    private final double relativeAccuracy;
+    private final double minValue;
+    private final double maxValue;
+
+    private final double gamma;
+    private final double logGamma;
+    private final int keyOffset;
+    private final long[] counts;
+
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a sketch with 1% relative accuracy for amounts between 0.01 and 1 000 000.
+     */
+    public QuantileSketch() {
+        this(0.01, 0.01, 1_000_000);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param relativeAccuracy the relative error bound, between 0 and 1 (exclusive)
+     * @param minValue         the smallest positive value tracked precisely
+     * @param maxValue         the largest value tracked precisely
+     */
+    public QuantileSketch(double relativeAccuracy, double minValue, double maxValue) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        if (!(minValue > 0 && maxValue > minValue)) {
+            throw new IllegalArgumentException("Value range must satisfy 0 < minValue < maxValue");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.keyOffset = key(minValue);
+        this.counts = new long[key(maxValue) - keyOffset + 1];
+    }
+
+    /**
+     * Records one value. Zero and negative values are counted as zero.
+     *
+     * @param value the value to record
+     */
+    public void add(double value) {
+        if (value <= 0) {
+            zeroCount++;
+            value = 0;
+        } else {
+            int index = key(value) - keyOffset;
+            if (index < 0) index = 0;
+            if (index >= counts.length) index = counts.length - 1;
+            counts[index]++;
+        }
+        count++;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Returns the approximate value at the given quantile.
+     *
+     * @param q the quantile, between 0 and 1 (e.g., 0.5 for the median)
+     * @return the estimated value, or {@code Double.NaN} if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        if (count == 0) return Double.NaN;
+        // The extremes are tracked exactly
+        if (q == 0) return min;
+        if (q == 1) return max;
+
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) return 0;
+
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // Midpoint of the bucket in the relative sense, clamped to what was actually seen
+                double estimate = 2 * Math.pow(gamma, i + keyOffset) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other a sketch created with the same accuracy and value range
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.minValue != minValue || other.maxValue != maxValue) {
+            throw new IllegalArgumentException("Can not merge sketches with different configuration");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo(ByteBuffer)} produces for the current contents.
+     */
+    public int serializedSize() {
+        int nonEmpty = 0;
+        for (long c : counts) if (c != 0) nonEmpty++;
+        return 8 * 3 + 8 * 2 + 8 * 2 + 4 + nonEmpty * (4 + 8);
+    }
+
+    /**
+     * Writes this sketch to a buffer. Only non-empty buckets are written.
+     *
+     * @param buffer the target buffer with at least {@link #serializedSize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(relativeAccuracy).putDouble(minValue).putDouble(maxValue);
+        buffer.putLong(zeroCount).putLong(count);
+        buffer.putDouble(min).putDouble(max);
+
+        int nonEmpty = 0;
+        for (long c : counts) if (c != 0) nonEmpty++;
+        buffer.putInt(nonEmpty);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buffer.putInt(i).putLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch previously written with {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the source buffer
+     * @return the restored sketch
+     */
+    public static QuantileSketch readFrom(ByteBuffer buffer) {
+        QuantileSketch sketch = new QuantileSketch(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        sketch.zeroCount = buffer.getLong();
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getDouble();
+        sketch.max = buffer.getDouble();
+        int nonEmpty = buffer.getInt();
+        for (int i = 0; i < nonEmpty; i++) {
+            int index = buffer.getInt();
+            sketch.counts[index] = buffer.getLong();
+        }
+        return sketch;
+    }
+
+    private int key(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+}
@@ -0,0 +1,127 @@
+package se.lexicon.snapshot;
+
+import se.lexicon.model.Product;
+import se.lexicon.products.CoolingLevel;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.ProductType;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of products for snapshots.
+ * <pre>
+ * [byte type][int id][double price][string name][type attribute]
+ * </pre>
+ * <p>
+ * The type is the {@link ProductType} ordinal. The attribute is a byte (size or cooling level
+ * ordinal, spicy flag) or a string (cotton candy flavor). Strings are a short byte count
+ * followed by UTF-8 bytes.
+ * </p>
+ */
+public final class ProductCodec {
+
+    private static final ProductType[] TYPES = ProductType.values();
+    private static final Size[] SIZES = Size.values();
+    private static final CoolingLevel[] COOLING_LEVELS = CoolingLevel.values();
+
+    private ProductCodec() {
+    }
+
+    /**
+     * Returns how many bytes {@link #write(ByteBuffer, Product)} needs for a product.
+     *
+     * @param p the product
+     * @return the encoded size
+     */
+    public static int encodedSize(Product p) {
+        int size = 1 + 4 + 8 + stringSize(p.getProductName());
+        if (p instanceof CottonCandy) return size + stringSize(((CottonCandy) p).getFlavor());
+        return size + 1;
+    }
+
+    /**
+     * Writes a product.
+     *
+     * @param out the buffer to write to
+     * @param p   the product
+     * @throws IllegalArgumentException if the product is of an unknown kind
+     */
+    public static void write(ByteBuffer out, Product p) {
+        write(out, p, p.getPrice());
+    }
+
+    /**
+     * Writes a product with a given price instead of its current one (e.g., a captured price).
+     *
+     * @param out   the buffer to write to
+     * @param p     the product
+     * @param price the price to write
+     * @throws IllegalArgumentException if the product is of an unknown kind
+     */
+    public static void write(ByteBuffer out, Product p, double price) {
+        ProductType type = ProductType.of(p);
+        out.put((byte) type.ordinal()).putInt(p.getId()).putDouble(price);
+        putString(out, p.getProductName());
+        switch (type) {
+            case SNICKERS:
+                out.put((byte) ((Snickers) p).getSize().ordinal());
+                break;
+            case TACO:
+                out.put((byte) (((Taco) p).isSpicy() ? 1 : 0));
+                break;
+            case COTTON_CANDY:
+                putString(out, ((CottonCandy) p).getFlavor());
+                break;
+            case MINT_DROPS:
+                out.put((byte) ((MintDrops) p).getCoolingLevel().ordinal());
+                break;
+        }
+    }
+
+    /**
+     * Reads a product written by {@link #write(ByteBuffer, Product)}.
+     *
+     * @param in the buffer to read from
+     * @return the product
+     * @throws IllegalArgumentException if the data does not describe a valid product
+     */
+    public static Product read(ByteBuffer in) {
+        int tag = in.get();
+        if (tag < 0 || tag >= TYPES.length) throw new IllegalArgumentException("Unknown product type tag: " + tag);
+        int id = in.getInt();
+        double price = in.getDouble();
+        String name = getString(in);
+        switch (TYPES[tag]) {
+            case SNICKERS:
+                return new Snickers(id, price, name, SIZES[in.get()]);
+            case TACO:
+                return new Taco(id, price, name, in.get() != 0);
+            case COTTON_CANDY:
+                return new CottonCandy(id, price, name, getString(in));
+            default:
+                // CoolingLevel.fromInt counts from 1
+                return new MintDrops(id, price, name, COOLING_LEVELS[in.get()].ordinal() + 1);
+        }
+    }
+
+    private static int stringSize(String s) {
+        return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Text too long: " + bytes.length + " bytes");
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
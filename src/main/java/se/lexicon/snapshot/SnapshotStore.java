@@ -0,0 +1,452 @@
+package se.lexicon.snapshot;
+
+import se.lexicon.currency.CurrencyCode;
+import se.lexicon.model.MachineState;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Saves vending machine state to binary snapshot files and restores it, so a restart does not
+ * have to rebuild the machine from configuration.
+ *
+ * <h2>Full and incremental snapshots</h2>
+ * <p>
+ * A <b>full</b> snapshot holds the catalog (see {@link ProductCodec}), prices, stock, the current
+ * session with the currency it pays with, and the cash box with its SEK and foreign notes and
+ * coins. A <b>delta</b> holds only what changed since the last full snapshot: the session, the
+ * cash box, and the stock levels and prices that differ. Deltas are cumulative,
+ * so a restore reads one full snapshot and at most one delta. A full snapshot is written when
+ * there is none yet, when the catalog changed (a product added, removed, renamed or given another
+ * size, flavor, cooling level or spiciness), or after {@code maxDeltas} deltas. The previous full
+ * snapshot and its newest delta are kept as a fallback; anything older is then deleted.
+ * </p>
+ *
+ * <h2>File format</h2>
+ * <pre>
+ * [int magic "VMSN"][short version][byte kind][byte 0]
+ * [long sequence][long baseSequence][long catalogFingerprint]
+ * [int payloadLength][int crc32][payload]
+ * </pre>
+ * <p>
+ * The CRC covers the header and the payload. Files are written to a temporary name, forced to
+ * disk, and then renamed, so a crash never leaves a half-written snapshot under a valid name.
+ * A file with a bad checksum or an unknown version is skipped on restore in favour of an older one.
+ * Version 1 files, written before foreign currencies were kept, are still read; they restore a
+ * session without a foreign currency and an empty foreign cash box.
+ * </p>
+ */
+public class SnapshotStore {
+
+    static final int MAGIC = 0x564D534E; // "VMSN"
+    static final short VERSION = 2;
+    private static final short OLDEST_READABLE_VERSION = 1;
+    static final byte KIND_FULL = 0;
+    static final byte KIND_DELTA = 1;
+
+    // Header field offsets
+    private static final int VERSION_OFFSET = 4;
+    private static final int KIND_OFFSET = 6;
+    private static final int BASE_SEQUENCE_OFFSET = 16;
+    private static final int FINGERPRINT_OFFSET = 24;
+    private static final int LENGTH_OFFSET = 32;
+    private static final int CRC_OFFSET = 36;
+
+    /** Bytes before the payload. */
+    static final int HEADER_SIZE = 40;
+
+    private static final String FULL_SUFFIX = ".full";
+    private static final String DELTA_SUFFIX = ".delta";
+
+    private final Path directory;
+    private final int maxDeltas;
+
+    // The last full snapshot, which deltas are computed against
+    private MachineState base;
+    private long baseSequence;
+    private long baseFingerprint;
+    private int deltasSinceFull;
+    private long lastSequence;
+
+    /**
+     * Opens a snapshot directory, creating it if needed.
+     *
+     * @param directory where snapshot files are kept
+     * @param maxDeltas how many deltas to write before the next full snapshot
+     * @throws IOException if the directory can not be created or listed
+     */
+    public SnapshotStore(Path directory, int maxDeltas) throws IOException {
+        if (maxDeltas < 0) throw new IllegalArgumentException("maxDeltas can not be negative");
+        this.directory = directory;
+        this.maxDeltas = maxDeltas;
+        Files.createDirectories(directory);
+        for (SnapshotFile f : listFiles()) {
+            lastSequence = Math.max(lastSequence, f.sequence);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the machine: a delta if possible, otherwise a full snapshot.
+     *
+     * @param machine the machine
+     * @return the file written
+     * @throws IOException if writing fails
+     */
+    public synchronized Path snapshot(VendingMachine machine) throws IOException {
+        MachineState state = machine.captureState();
+        long fingerprint = fingerprint(state.getProducts());
+        long sequence = ++lastSequence;
+
+        if (base == null || fingerprint != baseFingerprint || deltasSinceFull >= maxDeltas) {
+            Path file = write(fileName(sequence, FULL_SUFFIX), KIND_FULL, sequence, sequence, fingerprint, encodeFull(state));
+            base = state;
+            baseSequence = sequence;
+            baseFingerprint = fingerprint;
+            deltasSinceFull = 0;
+            prune(sequence);
+            return file;
+        }
+        deltasSinceFull++;
+        return write(fileName(sequence, DELTA_SUFFIX), KIND_DELTA, sequence, baseSequence, fingerprint, encodeDelta(base, state));
+    }
+
+    /**
+     * Restores the newest state in the directory: the newest valid full snapshot plus its newest
+     * valid delta. Later snapshots from this store are deltas against the restored full snapshot.
+     *
+     * @return the restored state
+     * @throws IOException if there is no valid full snapshot
+     */
+    public synchronized MachineState restore() throws IOException {
+        List<SnapshotFile> files = listFiles();
+        files.sort((a, b) -> Long.compare(b.sequence, a.sequence));
+
+        for (SnapshotFile full : files) {
+            if (!full.full) continue;
+            ByteBuffer fullFile = readVerified(full.path, KIND_FULL);
+            if (fullFile == null) continue;
+            long fingerprint = fullFile.getLong(FINGERPRINT_OFFSET);
+            MachineState state = decodeFull(payloadOf(fullFile), fullFile.getShort(VERSION_OFFSET));
+
+            // Apply the newest readable delta taken against this full snapshot, if any
+            MachineState restored = state;
+            for (SnapshotFile delta : files) {
+                if (delta.full || delta.sequence <= full.sequence) continue;
+                ByteBuffer deltaFile = readVerified(delta.path, KIND_DELTA);
+                if (deltaFile != null
+                        && deltaFile.getLong(BASE_SEQUENCE_OFFSET) == full.sequence
+                        && deltaFile.getLong(FINGERPRINT_OFFSET) == fingerprint) {
+                    restored = applyDelta(state, payloadOf(deltaFile), deltaFile.getShort(VERSION_OFFSET));
+                    break;
+                }
+            }
+
+            base = state;
+            baseSequence = full.sequence;
+            baseFingerprint = fingerprint;
+            deltasSinceFull = 0;
+            return restored;
+        }
+        throw new IOException("No valid full snapshot in " + directory);
+    }
+
+    /**
+     * Restores the newest state and builds a machine from it.
+     *
+     * @return the restored machine
+     * @throws IOException if there is no valid full snapshot
+     */
+    public VendingMachine restoreMachine() throws IOException {
+        return new VendingMachine(restore());
+    }
+
+    // --- Encoding ---
+
+    private static ByteBuffer encodeFull(MachineState state) {
+        List<Product> products = state.getProducts();
+        int[] stock = state.getStock();
+        int size = 4 + 4 * stock.length + sessionSize(state);
+        for (Product p : products) size += ProductCodec.encodedSize(p);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(products.size());
+        double[] prices = state.getPrices();
+        for (int i = 0; i < products.size(); i++) {
+            // The captured price, which may differ from the product's current price
+            ProductCodec.write(out, products.get(i), prices[i]);
+        }
+        for (int s : stock) out.putInt(s);
+        putSession(out, state);
+        out.flip();
+        return out;
+    }
+
+    private static MachineState decodeFull(ByteBuffer in, short version) {
+        int n = in.getInt();
+        List<Product> products = new ArrayList<>(n);
+        double[] prices = new double[n];
+        for (int i = 0; i < n; i++) {
+            Product p = ProductCodec.read(in);
+            products.add(p);
+            prices[i] = p.getPrice();
+        }
+        int[] stock = new int[n];
+        for (int i = 0; i < n; i++) stock[i] = in.getInt();
+        return getSession(in, version, products, prices, stock);
+    }
+
+    private static ByteBuffer encodeDelta(MachineState base, MachineState state) {
+        int[] baseStock = base.getStock();
+        int[] stock = state.getStock();
+        double[] basePrices = base.getPrices();
+        double[] prices = state.getPrices();
+        int stockChanges = 0;
+        int priceChanges = 0;
+        for (int i = 0; i < stock.length; i++) {
+            if (stock[i] != baseStock[i]) stockChanges++;
+            if (Double.doubleToLongBits(prices[i]) != Double.doubleToLongBits(basePrices[i])) priceChanges++;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(sessionSize(state) + 4 + 8 * stockChanges + 4 + 12 * priceChanges);
+        putSession(out, state);
+        out.putInt(stockChanges);
+        for (int i = 0; i < stock.length; i++) {
+            if (stock[i] != baseStock[i]) out.putInt(i).putInt(stock[i]);
+        }
+        out.putInt(priceChanges);
+        for (int i = 0; i < prices.length; i++) {
+            if (Double.doubleToLongBits(prices[i]) != Double.doubleToLongBits(basePrices[i])) out.putInt(i).putDouble(prices[i]);
+        }
+        out.flip();
+        return out;
+    }
+
+    private static MachineState applyDelta(MachineState base, ByteBuffer in, short version) {
+        MachineState session = getSession(in, version, base.getProducts(), base.getPrices(), base.getStock());
+        int[] stock = session.getStock();
+        for (int k = in.getInt(); k > 0; k--) {
+            int position = in.getInt();
+            stock[position] = in.getInt();
+        }
+        double[] prices = session.getPrices();
+        for (int k = in.getInt(); k > 0; k--) {
+            int position = in.getInt();
+            prices[position] = in.getDouble();
+        }
+        return new MachineState(base.getProducts(), prices, stock, session.getBalance(), session.getSessionId(),
+                session.getCashCounts(), session.getSessionCurrency(), session.getForeignCashCounts());
+    }
+
+    /*
+     * Session layout:
+     * [double balance][long sessionId][int n][int cashCount x n]
+     * [byte sessionCurrency ordinal, -1 if none][int currencies]([int m][int cashCount x m]) x currencies
+     * The second line is missing in version 1. A currency without foreign cash has m = 0.
+     */
+
+    private static int sessionSize(MachineState state) {
+        int size = 8 + 8 + 4 + 4 * state.getCashCounts().length + 1 + 4;
+        for (int[] counts : state.getForeignCashCounts()) {
+            size += 4 + (counts == null ? 0 : 4 * counts.length);
+        }
+        return size;
+    }
+
+    private static void putSession(ByteBuffer out, MachineState state) {
+        out.putDouble(state.getBalance()).putLong(state.getSessionId());
+        putInts(out, state.getCashCounts());
+        CurrencyCode currency = state.getSessionCurrency();
+        out.put((byte) (currency == null ? -1 : currency.ordinal()));
+        int[][] foreign = state.getForeignCashCounts();
+        out.putInt(foreign.length);
+        for (int[] counts : foreign) putInts(out, counts == null ? new int[0] : counts);
+    }
+
+    private static MachineState getSession(ByteBuffer in, short version, List<Product> products, double[] prices, int[] stock) {
+        double balance = in.getDouble();
+        long sessionId = in.getLong();
+        int[] cash = getInts(in);
+        CurrencyCode[] currencies = CurrencyCode.values();
+        CurrencyCode currency = null;
+        int[][] foreign = new int[currencies.length][];
+        if (version >= 2) {
+            byte ordinal = in.get();
+            if (ordinal >= currencies.length) throw new IllegalArgumentException("Unknown currency " + ordinal);
+            currency = ordinal < 0 ? null : currencies[ordinal];
+            int n = in.getInt();
+            if (n != currencies.length) throw new IllegalArgumentException("Snapshot has cash for " + n + " currencies");
+            for (int c = 0; c < n; c++) {
+                int[] counts = getInts(in);
+                foreign[c] = counts.length == 0 ? null : counts;
+            }
+        }
+        return new MachineState(products, prices, stock, balance, sessionId, cash, currency, foreign);
+    }
+
+    private static void putInts(ByteBuffer out, int[] values) {
+        out.putInt(values.length);
+        for (int v : values) out.putInt(v);
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.getInt();
+        return values;
+    }
+
+    /**
+     * Identifies the catalog: every product as {@link ProductCodec} encodes it, except for the
+     * price. Deltas carry only stock and prices, so any other change must lead to a new full
+     * snapshot, and a delta is never applied to a different catalog.
+     */
+    static long fingerprint(List<Product> products) {
+        CRC32 crc = new CRC32();
+        ByteBuffer entry = ByteBuffer.allocate(64);
+        for (Product p : products) {
+            int size = ProductCodec.encodedSize(p);
+            if (size > entry.capacity()) entry = ByteBuffer.allocate(size);
+            entry.clear();
+            ProductCodec.write(entry, p, 0);
+            crc.update(entry.array(), 0, entry.position());
+        }
+        return ((long) products.size() << 32) | crc.getValue();
+    }
+
+    // --- Files ---
+
+    private Path write(String name, byte kind, long sequence, long baseSequence, long fingerprint, ByteBuffer payload)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).put(kind).put((byte) 0)
+                .putLong(sequence).putLong(baseSequence).putLong(fingerprint)
+                .putInt(payload.remaining());
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        crc.update(payload.duplicate());
+        header.putInt((int) crc.getValue());
+        header.flip();
+
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, payload};
+            while (header.hasRemaining() || payload.hasRemaining()) {
+                channel.write(parts);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Reads a snapshot file and checks magic, version, kind and checksum.
+     *
+     * @return the whole file positioned after the header, or {@code null} if it is not valid
+     */
+    private static ByteBuffer readVerified(Path file, byte expectedKind) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return invalid(file, "bad size " + size);
+            data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading
+            }
+        }
+        data.flip();
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) return invalid(file, "not a snapshot");
+        short version = data.getShort(VERSION_OFFSET);
+        if (version < OLDEST_READABLE_VERSION || version > VERSION) return invalid(file, "unsupported version " + version);
+        if (data.get(KIND_OFFSET) != expectedKind) return invalid(file, "unexpected kind");
+        int payloadLength = data.getInt(LENGTH_OFFSET);
+        if (payloadLength != data.remaining() - HEADER_SIZE) return invalid(file, "truncated");
+
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 0, CRC_OFFSET);
+        crc.update(data.array(), HEADER_SIZE, payloadLength);
+        if ((int) crc.getValue() != data.getInt(CRC_OFFSET)) return invalid(file, "checksum mismatch");
+        return data;
+    }
+
+    private static ByteBuffer payloadOf(ByteBuffer file) {
+        ByteBuffer payload = file.duplicate();
+        payload.position(HEADER_SIZE);
+        return payload;
+    }
+
+    private static ByteBuffer invalid(Path file, String reason) {
+        System.out.println("Warning: skipping snapshot " + file.getFileName() + ": " + reason);
+        return null;
+    }
+
+    /**
+     * Deletes what a restore no longer needs once a full snapshot has been written: everything but
+     * the new full snapshot, the previous one and the newest delta against the previous one, so a
+     * corrupt new full snapshot still leaves a state to restore.
+     */
+    private void prune(long fullSequence) throws IOException {
+        List<SnapshotFile> files = listFiles();
+        long previousFull = -1;
+        long previousDelta = -1;
+        for (SnapshotFile f : files) {
+            if (f.full && f.sequence < fullSequence) previousFull = Math.max(previousFull, f.sequence);
+        }
+        for (SnapshotFile f : files) {
+            if (!f.full && f.sequence > previousFull && f.sequence < fullSequence) {
+                previousDelta = Math.max(previousDelta, f.sequence);
+            }
+        }
+        for (SnapshotFile f : files) {
+            if (f.sequence < fullSequence && f.sequence != previousFull && f.sequence != previousDelta) {
+                Files.deleteIfExists(f.path);
+            }
+        }
+    }
+
+    private List<SnapshotFile> listFiles() throws IOException {
+        List<SnapshotFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "snapshot-*")) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                boolean full = name.endsWith(FULL_SUFFIX);
+                if (!full && !name.endsWith(DELTA_SUFFIX)) continue;
+                String hex = name.substring("snapshot-".length(), name.lastIndexOf('.'));
+                try {
+                    files.add(new SnapshotFile(p, Long.parseUnsignedLong(hex, 16), full));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String fileName(long sequence, String suffix) {
+        return String.format("snapshot-%016x%s", sequence, suffix);
+    }
+
+    private static final class SnapshotFile {
+        final Path path;
+        final long sequence;
+        final boolean full;
+
+        SnapshotFile(Path path, long sequence, boolean full) {
+            this.path = path;
+            this.sequence = sequence;
+            this.full = full;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package se.lexicon.trace;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of replaying a trace with {@link TraceReplayer}.
+ */
+public final class ReplayReport {
+
+    private final long operations;
+    private final long sessions;
+    private final long mismatches;
+    private final List<String> mismatchSamples;
+    private final long elapsedNanos;
+    private final long recordedNanos;
+    private final long maxLagNanos;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    ReplayReport(long operations, long sessions, long mismatches, List<String> mismatchSamples,
+                 long elapsedNanos, long recordedNanos, long maxLagNanos,
+                 double p50Micros, double p90Micros, double p99Micros, double p999Micros, double maxMicros) {
+        this.operations = operations;
+        this.sessions = sessions;
+        this.mismatches = mismatches;
+        this.mismatchSamples = Collections.unmodifiableList(mismatchSamples);
+        this.elapsedNanos = elapsedNanos;
+        this.recordedNanos = recordedNanos;
+        this.maxLagNanos = maxLagNanos;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Returns how many calls had a different outcome than when they were recorded.
+     *
+     * @return the number of mismatches
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Returns descriptions of the first mismatches, in trace order.
+     *
+     * @return up to {@link TraceReplayer#MAX_REPORTED_MISMATCHES} descriptions
+     */
+    public List<String> getMismatchSamples() {
+        return mismatchSamples;
+    }
+
+    /**
+     * Returns {@code true} if every call had the recorded outcome.
+     *
+     * @return whether the replay matched the recording
+     */
+    public boolean isIdentical() {
+        return mismatches == 0;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the time between the first and the last recorded call.
+     *
+     * @return the recorded duration in nanoseconds
+     */
+    public long getRecordedNanos() {
+        return recordedNanos;
+    }
+
+    /**
+     * Returns how far behind schedule the replay fell at worst. A large lag at recorded speed
+     * means the machine could not keep up with the original traffic.
+     *
+     * @return the largest delay in nanoseconds between when a call was due and when it started
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * Returns the replay throughput.
+     *
+     * @return calls per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d calls in %d sessions, %d mismatches, %.1f ms (recorded %.1f ms), %.0f calls/s, " +
+                        "latency p50 %.2f µs, p90 %.2f µs, p99 %.2f µs, p99.9 %.2f µs, max %.2f µs",
+                operations, sessions, mismatches, elapsedNanos / 1e6, recordedNanos / 1e6, getThroughput(),
+                p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
@@ -0,0 +1,88 @@
+package se.lexicon.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of traffic traces written by {@link TraceRecorder}.
+ *
+ * <h2>Header</h2>
+ * <pre>[int magic "VMTR"][short version][long recordingStartEpochMillis]</pre>
+ *
+ * <h2>Records</h2>
+ * <pre>[byte op][varlong nanosSincePreviousRecord][varlong sessionIdDelta][op arguments][op outcome]</pre>
+ * <table summary="Operations">
+ *   <tr><th>Op</th><th>Arguments</th><th>Outcome</th></tr>
+ *   <tr><td>{@link #OP_ADD_CURRENCY}</td><td>amount</td><td>balance in öre</td></tr>
+ *   <tr><td>{@link #OP_REQUEST}</td><td>productId</td><td>dispensed ID (-1 if none), balance in öre</td></tr>
+ *   <tr><td>{@link #OP_REQUEST_ONCE}</td><td>transactionId, productId</td><td>as {@link #OP_REQUEST}</td></tr>
+ *   <tr><td>{@link #OP_GET_DESCRIPTION}</td><td>productId</td><td>hash of the text</td></tr>
+ *   <tr><td>{@link #OP_END_SESSION}</td><td>-</td><td>change in öre</td></tr>
+ * </table>
+ * <p>
+ * Arguments and outcomes are zigzag-encoded variable-length integers: 7 bits per byte, low bits
+ * first, with small negative numbers kept short. A typical record takes 5–8 bytes. The first
+ * outcome is {@link #THREW} if the call threw an exception.
+ * </p>
+ */
+public final class TraceFormat {
+
+    public static final int MAGIC = 0x564D5452; // "VMTR"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 2 + 8;
+
+    public static final byte OP_ADD_CURRENCY = 1;
+    public static final byte OP_REQUEST = 2;
+    public static final byte OP_REQUEST_ONCE = 3;
+    public static final byte OP_GET_DESCRIPTION = 4;
+    public static final byte OP_END_SESSION = 5;
+
+    /** First outcome of a call that threw an exception. */
+    public static final long THREW = Long.MIN_VALUE;
+
+    /** Largest possible record, used to decide when the write buffer must be flushed. */
+    static final int MAX_RECORD_SIZE = 1 + 6 * 10;
+
+    private TraceFormat() {
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed variable-length number");
+    }
+
+    static void putZigZag(ByteBuffer out, long value) {
+        putVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long getZigZag(ByteBuffer in) {
+        long raw = getVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Converts an amount in SEK to whole öre, so outcomes compare exactly.
+     */
+    static long toOre(double sek) {
+        return Math.round(sek * 100);
+    }
+
+    /**
+     * Returns the outcome recorded for a description: its unsigned hash, or -1 for {@code null}.
+     */
+    static long hashOf(String text) {
+        return text == null ? -1 : text.hashCode() & 0xFFFFFFFFL;
+    }
+}
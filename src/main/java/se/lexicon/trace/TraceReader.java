@@ -0,0 +1,135 @@
+package se.lexicon.trace;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a trace file written by {@link TraceRecorder}, one record at a time.
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * try (TraceReader reader = new TraceReader(path)) {
+ *     TraceRecord record = new TraceRecord();
+ *     while (reader.next(record)) {
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ */
+public class TraceReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long recordingStartMillis;
+    private boolean endOfFile;
+    private long offsetNanos;
+    private long sessionId;
+
+    /**
+     * Opens a trace file and reads its header.
+     *
+     * @param file the trace file
+     * @throws IOException              if the file can not be read
+     * @throws IllegalArgumentException if the file is not a trace
+     */
+    public TraceReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.limit(0);
+        try {
+            fill();
+            if (buffer.remaining() < TraceFormat.HEADER_SIZE || buffer.getInt() != TraceFormat.MAGIC) {
+                throw new IllegalArgumentException("Not a trace file: " + file);
+            }
+            short version = buffer.getShort();
+            if (version != TraceFormat.VERSION) {
+                throw new IllegalArgumentException("Unsupported trace version " + version + ": " + file);
+            }
+            this.recordingStartMillis = buffer.getLong();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the wall-clock time the recording started.
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getRecordingStartMillis() {
+        return recordingStartMillis;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param record the record to fill
+     * @return {@code false} at the end of the trace
+     * @throws IOException              if the file can not be read
+     * @throws IllegalArgumentException if the trace is malformed
+     */
+    public boolean next(TraceRecord record) throws IOException {
+        if (buffer.remaining() < TraceFormat.MAX_RECORD_SIZE && !endOfFile) {
+            fill();
+        }
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        try {
+            record.op = buffer.get();
+            offsetNanos += TraceFormat.getVarLong(buffer);
+            sessionId += TraceFormat.getZigZag(buffer);
+            record.offsetNanos = offsetNanos;
+            record.sessionId = sessionId;
+            record.transactionId = 0;
+            record.balance = 0;
+            switch (record.op) {
+                case TraceFormat.OP_ADD_CURRENCY:
+                case TraceFormat.OP_GET_DESCRIPTION:
+                    record.argument = (int) TraceFormat.getZigZag(buffer);
+                    record.outcome = TraceFormat.getZigZag(buffer);
+                    break;
+                case TraceFormat.OP_REQUEST_ONCE:
+                case TraceFormat.OP_REQUEST:
+                    if (record.op == TraceFormat.OP_REQUEST_ONCE) {
+                        record.transactionId = TraceFormat.getZigZag(buffer);
+                    }
+                    record.argument = (int) TraceFormat.getZigZag(buffer);
+                    record.outcome = TraceFormat.getZigZag(buffer);
+                    record.balance = TraceFormat.getZigZag(buffer);
+                    break;
+                case TraceFormat.OP_END_SESSION:
+                    record.argument = 0;
+                    record.outcome = TraceFormat.getZigZag(buffer);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown trace operation " + record.op);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Trace ends in the middle of a record");
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,85 @@
+package se.lexicon.trace;
+
+/**
+ * One recorded call, as read by {@link TraceReader}.
+ * <p>
+ * A reader fills the same instance again for every record, so replaying a trace allocates
+ * nothing per call. Copy the fields if they are needed after the next read.
+ * </p>
+ */
+public final class TraceRecord {
+
+    byte op;
+    long offsetNanos;
+    long sessionId;
+    long transactionId;
+    int argument;
+    long outcome;
+    long balance;
+
+    /**
+     * Returns the operation, one of the {@code OP_} constants in {@link TraceFormat}.
+     *
+     * @return the operation
+     */
+    public byte getOp() {
+        return op;
+    }
+
+    /**
+     * Returns when the call was made, relative to the start of the recording.
+     *
+     * @return the offset in nanoseconds
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Returns the client's transaction ID; only set for {@link TraceFormat#OP_REQUEST_ONCE}.
+     *
+     * @return the transaction ID
+     */
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Returns the amount for deposits and the product ID for purchases and descriptions.
+     *
+     * @return the argument
+     */
+    public int getArgument() {
+        return argument;
+    }
+
+    /**
+     * Returns the recorded outcome: the balance in öre after a deposit, the dispensed product ID
+     * after a purchase, the description hash or the change in öre; {@link TraceFormat#THREW} if
+     * the call threw.
+     *
+     * @return the outcome
+     */
+    public long getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns the balance in öre after a purchase.
+     *
+     * @return the balance
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRecord{op=" + op + ", offsetNanos=" + offsetNanos + ", sessionId=" + sessionId +
+                ", argument=" + argument + ", outcome=" + outcome + ", balance=" + balance + '}';
+    }
+}
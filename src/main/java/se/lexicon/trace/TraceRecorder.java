@@ -0,0 +1,126 @@
+package se.lexicon.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongSupplier;
+
+/**
+ * Appends traffic records to a trace file in the {@link TraceFormat} layout.
+ * <p>
+ * Records are encoded into a buffer and written to the file only when the buffer is full, so
+ * recording a call costs a few bytes of encoding and no allocation. Calls from several threads
+ * are serialized on the recorder.
+ * </p>
+ */
+public class TraceRecorder implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final LongSupplier nanoClock;
+    private long lastNanos;
+    private long lastSessionId;
+    private long recordCount;
+
+    /**
+     * Creates a trace file, replacing an existing one.
+     *
+     * @param file the trace file
+     * @throws IOException if the file can not be created
+     */
+    public TraceRecorder(Path file) throws IOException {
+        this(file, System::nanoTime);
+    }
+
+    TraceRecorder(Path file, LongSupplier nanoClock) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.nanoClock = nanoClock;
+        buffer.putInt(TraceFormat.MAGIC).putShort(TraceFormat.VERSION).putLong(System.currentTimeMillis());
+        this.lastNanos = nanoClock.getAsLong();
+    }
+
+    synchronized void addCurrency(long sessionId, int amount, long balance) {
+        begin(TraceFormat.OP_ADD_CURRENCY, sessionId);
+        TraceFormat.putZigZag(buffer, amount);
+        TraceFormat.putZigZag(buffer, balance);
+    }
+
+    synchronized void request(long sessionId, int productId, long dispensedId, long balance) {
+        begin(TraceFormat.OP_REQUEST, sessionId);
+        TraceFormat.putZigZag(buffer, productId);
+        TraceFormat.putZigZag(buffer, dispensedId);
+        TraceFormat.putZigZag(buffer, balance);
+    }
+
+    synchronized void requestOnce(long sessionId, long transactionId, int productId, long dispensedId, long balance) {
+        begin(TraceFormat.OP_REQUEST_ONCE, sessionId);
+        TraceFormat.putZigZag(buffer, transactionId);
+        TraceFormat.putZigZag(buffer, productId);
+        TraceFormat.putZigZag(buffer, dispensedId);
+        TraceFormat.putZigZag(buffer, balance);
+    }
+
+    synchronized void getDescription(long sessionId, int productId, long descriptionHash) {
+        begin(TraceFormat.OP_GET_DESCRIPTION, sessionId);
+        TraceFormat.putZigZag(buffer, productId);
+        TraceFormat.putZigZag(buffer, descriptionHash);
+    }
+
+    synchronized void endSession(long sessionId, long change) {
+        begin(TraceFormat.OP_END_SESSION, sessionId);
+        TraceFormat.putZigZag(buffer, change);
+    }
+
+    private void begin(byte op, long sessionId) {
+        if (buffer.remaining() < TraceFormat.MAX_RECORD_SIZE) {
+            flushBuffer();
+        }
+        long now = nanoClock.getAsLong();
+        buffer.put(op);
+        TraceFormat.putVarLong(buffer, Math.max(0, now - lastNanos));
+        TraceFormat.putZigZag(buffer, sessionId - lastSessionId);
+        lastNanos = now;
+        lastSessionId = sessionId;
+        recordCount++;
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            // Recording must never break the machine it observes
+            System.out.println("Warning: trace recording failed: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns how many calls were recorded.
+     *
+     * @return the record count
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes buffered records to the file.
+     */
+    public synchronized void flush() {
+        flushBuffer();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushBuffer();
+        channel.close();
+    }
+}
@@ -0,0 +1,181 @@
+package se.lexicon.trace;
+
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded trace against a vending machine and checks that every call has the same
+ * outcome as when it was recorded.
+ * <p>
+ * Calls are replayed one at a time in recorded order. The speed factor decides the pacing:
+ * {@code 1.0} keeps the recorded gaps between calls, {@code 10.0} shrinks them tenfold and
+ * {@link #AS_FAST_AS_POSSIBLE} issues the next call as soon as the previous one returns. The
+ * latency of each call is collected in a {@link QuantileSketch}.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ReplayReport report = new TraceReplayer(candidate).replay(Paths.get("traffic.trace"), TraceReplayer.AS_FAST_AS_POSSIBLE);
+ * if (!report.isIdentical()) report.getMismatchSamples().forEach(System.out::println);
+ * System.out.println(report);
+ * }</pre>
+ */
+public class TraceReplayer {
+
+    /** Speed factor that ignores the recorded timing. */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    /** Speed factor that keeps the recorded timing. */
+    public static final double RECORDED_SPEED = 1.0;
+
+    /** How many mismatches are described in the report. */
+    public static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private final IVendingMachine machine;
+
+    /**
+     * Creates a replayer.
+     *
+     * @param machine the machine to replay against, in the state the recorded machine started in
+     */
+    public TraceReplayer(IVendingMachine machine) {
+        if (machine == null) throw new IllegalArgumentException("machine must not be null");
+        this.machine = machine;
+    }
+
+    /**
+     * Replays a trace.
+     *
+     * @param trace the trace file
+     * @param speed how much faster than recorded to replay; {@link #AS_FAST_AS_POSSIBLE} for no pacing
+     * @return the outcome comparison, throughput and latency
+     * @throws IOException              if the trace can not be read
+     * @throws IllegalArgumentException if the speed is not positive or the trace is malformed
+     */
+    public ReplayReport replay(Path trace, double speed) throws IOException {
+        if (!(speed > 0)) throw new IllegalArgumentException("Speed must be positive");
+        boolean paced = speed != AS_FAST_AS_POSSIBLE;
+        QuantileSketch latency = new QuantileSketch(0.01, 0.01, 60_000_000);
+        List<String> samples = new ArrayList<>();
+        long operations = 0;
+        long sessions = 0;
+        long mismatches = 0;
+        long maxLag = 0;
+        long firstOffset = -1;
+        long lastOffset = 0;
+        long lastSession = Long.MIN_VALUE;
+
+        TraceRecord record = new TraceRecord();
+        long replayStart = System.nanoTime();
+        try (TraceReader reader = new TraceReader(trace)) {
+            while (reader.next(record)) {
+                if (firstOffset < 0) firstOffset = record.offsetNanos;
+                lastOffset = record.offsetNanos;
+                if (record.sessionId != lastSession) {
+                    sessions++;
+                    lastSession = record.sessionId;
+                }
+                if (paced) {
+                    long due = replayStart + (long) ((record.offsetNanos - firstOffset) / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    maxLag = Math.max(maxLag, -wait);
+                }
+                long start = System.nanoTime();
+                long outcome;
+                long balance = 0;
+                switch (record.op) {
+                    case TraceFormat.OP_ADD_CURRENCY:
+                        try {
+                            machine.addCurrency(record.argument);
+                            latency.add((System.nanoTime() - start) / 1e3);
+                            outcome = TraceFormat.toOre(machine.getBalance());
+                        } catch (RuntimeException e) {
+                            latency.add((System.nanoTime() - start) / 1e3);
+                            outcome = TraceFormat.THREW;
+                        }
+                        break;
+                    case TraceFormat.OP_REQUEST:
+                    case TraceFormat.OP_REQUEST_ONCE:
+                        try {
+                            outcome = TracingMachine.idOf(record.op == TraceFormat.OP_REQUEST
+                                    ? machine.request(record.argument)
+                                    : machine.request(record.transactionId, record.argument));
+                        } catch (RuntimeException e) {
+                            outcome = TraceFormat.THREW;
+                        }
+                        latency.add((System.nanoTime() - start) / 1e3);
+                        balance = TraceFormat.toOre(machine.getBalance());
+                        break;
+                    case TraceFormat.OP_GET_DESCRIPTION:
+                        try {
+                            outcome = TraceFormat.hashOf(machine.getDescription(record.argument));
+                        } catch (RuntimeException e) {
+                            outcome = TraceFormat.THREW;
+                        }
+                        latency.add((System.nanoTime() - start) / 1e3);
+                        break;
+                    default:
+                        try {
+                            outcome = TraceFormat.toOre(machine.endSession());
+                        } catch (RuntimeException e) {
+                            outcome = TraceFormat.THREW;
+                        }
+                        latency.add((System.nanoTime() - start) / 1e3);
+                        break;
+                }
+                if (outcome != record.outcome || balance != record.balance) {
+                    mismatches++;
+                    if (samples.size() < MAX_REPORTED_MISMATCHES) {
+                        samples.add(describeMismatch(operations, record, outcome, balance));
+                    }
+                }
+                operations++;
+            }
+        }
+        long elapsed = System.nanoTime() - replayStart;
+        return new ReplayReport(operations, sessions, mismatches, samples, elapsed,
+                firstOffset < 0 ? 0 : lastOffset - firstOffset, maxLag,
+                latency.quantile(0.5), latency.quantile(0.9), latency.quantile(0.99), latency.quantile(0.999),
+                latency.getCount() == 0 ? Double.NaN : latency.getMax());
+    }
+
+    private static String describeMismatch(long index, TraceRecord record, long outcome, long balance) {
+        String call;
+        switch (record.op) {
+            case TraceFormat.OP_ADD_CURRENCY:
+                call = "addCurrency(" + record.argument + ")";
+                break;
+            case TraceFormat.OP_REQUEST:
+                call = "request(" + record.argument + ")";
+                break;
+            case TraceFormat.OP_REQUEST_ONCE:
+                call = "request(" + record.transactionId + ", " + record.argument + ")";
+                break;
+            case TraceFormat.OP_GET_DESCRIPTION:
+                call = "getDescription(" + record.argument + ")";
+                break;
+            default:
+                call = "endSession()";
+                break;
+        }
+        String text = "Call " + index + " in session " + record.sessionId + ": " + call +
+                " recorded " + describeOutcome(record.outcome) + ", replayed " + describeOutcome(outcome);
+        if (record.op == TraceFormat.OP_REQUEST || record.op == TraceFormat.OP_REQUEST_ONCE) {
+            text += " (balance recorded " + record.balance + " öre, replayed " + balance + " öre)";
+        }
+        return text;
+    }
+
+    private static String describeOutcome(long outcome) {
+        return outcome == TraceFormat.THREW ? "an exception" : Long.toString(outcome);
+    }
+}
@@ -0,0 +1,165 @@
+package se.lexicon.trace;
+
+import se.lexicon.model.CatalogPage;
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.ProductView;
+import se.lexicon.model.VendingMachine;
+
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A vending machine that records its traffic to a {@link TraceRecorder}.
+ * <p>
+ * Deposits, purchases, description lookups and ending a session are recorded together with
+ * their outcome, so {@link TraceReplayer} can check that another implementation behaves the
+ * same. Catalog listings and balance queries are passed through unrecorded. Session IDs are taken
+ * from the machine when it is a {@link VendingMachine}; otherwise the wrapper numbers sessions
+ * itself, starting at 1 and counting up at each {@link #endSession()}.
+ * </p>
+ * <p>
+ * Each recorded call holds the wrapped machine's monitor, the lock {@link VendingMachine} itself
+ * uses, while it reads the session ID, makes the call, reads the balance and writes the record.
+ * The recorded outcomes and their order therefore stay exact when several clients share the
+ * machine, e.g. behind a {@code VendingServer}, at the cost of encoding the record under that lock.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * try (TraceRecorder recorder = new TraceRecorder(Paths.get("traffic.trace"))) {
+ *     IVendingMachine traced = new TracingMachine(vm, recorder);
+ *     server = new VendingServer(traced, 9090);
+ *     ...
+ * }
+ * }</pre>
+ */
+public class TracingMachine implements IVendingMachine {
+
+    private final IVendingMachine machine;
+    private final TraceRecorder recorder;
+    private final VendingMachine sessionSource;
+    // Guarded by the monitor of machine
+    private long localSessionId = 1;
+
+    /**
+     * Wraps a machine.
+     *
+     * @param machine  the machine to record
+     * @param recorder where the traffic is written
+     */
+    public TracingMachine(IVendingMachine machine, TraceRecorder recorder) {
+        if (machine == null) throw new IllegalArgumentException("machine must not be null");
+        if (recorder == null) throw new IllegalArgumentException("recorder must not be null");
+        this.machine = machine;
+        this.recorder = recorder;
+        this.sessionSource = machine instanceof VendingMachine ? (VendingMachine) machine : null;
+    }
+
+    @Override
+    public void addCurrency(int amount) {
+        synchronized (machine) {
+            long session = sessionId();
+            try {
+                machine.addCurrency(amount);
+            } catch (RuntimeException e) {
+                recorder.addCurrency(session, amount, TraceFormat.THREW);
+                throw e;
+            }
+            recorder.addCurrency(session, amount, TraceFormat.toOre(machine.getBalance()));
+        }
+    }
+
+    @Override
+    public double getBalance() {
+        return machine.getBalance();
+    }
+
+    @Override
+    public Product request(int id) {
+        synchronized (machine) {
+            long session = sessionId();
+            Product product;
+            try {
+                product = machine.request(id);
+            } catch (RuntimeException e) {
+                recorder.request(session, id, TraceFormat.THREW, TraceFormat.toOre(machine.getBalance()));
+                throw e;
+            }
+            recorder.request(session, id, idOf(product), TraceFormat.toOre(machine.getBalance()));
+            return product;
+        }
+    }
+
+    @Override
+    public Product request(long transactionId, int id) {
+        synchronized (machine) {
+            long session = sessionId();
+            Product product;
+            try {
+                product = machine.request(transactionId, id);
+            } catch (RuntimeException e) {
+                recorder.requestOnce(session, transactionId, id, TraceFormat.THREW, TraceFormat.toOre(machine.getBalance()));
+                throw e;
+            }
+            recorder.requestOnce(session, transactionId, id, idOf(product), TraceFormat.toOre(machine.getBalance()));
+            return product;
+        }
+    }
+
+    @Override
+    public double endSession() {
+        synchronized (machine) {
+            long session = sessionId();
+            double change;
+            try {
+                change = machine.endSession();
+            } catch (RuntimeException e) {
+                recorder.endSession(session, TraceFormat.THREW);
+                throw e;
+            }
+            recorder.endSession(session, TraceFormat.toOre(change));
+            localSessionId++;
+            return change;
+        }
+    }
+
+    @Override
+    public String getDescription(int id) {
+        synchronized (machine) {
+            long session = sessionId();
+            String description;
+            try {
+                description = machine.getDescription(id);
+            } catch (RuntimeException e) {
+                recorder.getDescription(session, id, TraceFormat.THREW);
+                throw e;
+            }
+            recorder.getDescription(session, id, TraceFormat.hashOf(description));
+            return description;
+        }
+    }
+
+    @Override
+    public String[] getProducts() {
+        return machine.getProducts();
+    }
+
+    @Override
+    public CatalogPage browseProducts(String pageToken, int pageSize, Predicate<? super Product> filter) {
+        return machine.browseProducts(pageToken, pageSize, filter);
+    }
+
+    @Override
+    public Stream<ProductView> streamProducts(Predicate<? super Product> filter) {
+        return machine.streamProducts(filter);
+    }
+
+    private long sessionId() {
+        return sessionSource != null ? sessionSource.getSessionId() : localSessionId;
+    }
+
+    static long idOf(Product product) {
+        return product == null ? -1 : product.getId();
+    }
+}
@@ -0,0 +1,187 @@
+package se.lexicon.validation;
+
+import se.lexicon.model.Product;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Snickers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Checks a product list before it is loaded into a machine and reports every problem at once.
+ * <p>
+ * Two kinds of checks run:
+ * </p>
+ * <ul>
+ *   <li><b>Duplicate IDs</b>, with a bit per possible ID (a {@code long[]} bitmap over the range
+ *   of IDs) instead of a set of boxed integers. If the IDs are spread too widely for a bitmap,
+ *   a sorted copy of the IDs is scanned instead.</li>
+ *   <li><b>Per-product checks</b>: price, name and the attribute of each product kind. Large
+ *   catalogs are split into chunks that are checked in parallel.</li>
+ * </ul>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * ValidationReport report = CatalogValidator.validate(products);
+ * report.throwIfInvalid();
+ * }</pre>
+ */
+public final class CatalogValidator {
+
+    /** Catalogs with at least this many products are checked in parallel. */
+    public static final int PARALLEL_THRESHOLD = 50_000;
+
+    private static final int CHUNK_SIZE = 16_384;
+
+    /** Largest ID range covered with a bitmap (16 MB of bits); wider ranges fall back to sorting. */
+    private static final long MAX_BITMAP_RANGE = 1L << 27;
+
+    private CatalogValidator() {
+    }
+
+    /**
+     * Validates a catalog.
+     *
+     * @param products the products to check
+     * @return the report with every problem found
+     * @throws IllegalArgumentException if {@code products} is {@code null}
+     */
+    public static ValidationReport validate(List<? extends Product> products) {
+        if (products == null) throw new IllegalArgumentException("products must not be null");
+        long start = System.nanoTime();
+        Product[] items = products.toArray(new Product[0]);
+        int n = items.length;
+
+        List<ValidationError> errors;
+        if (n < PARALLEL_THRESHOLD) {
+            errors = checkRange(items, 0, n);
+        } else {
+            int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            errors = IntStream.range(0, chunks).parallel()
+                    .mapToObj(c -> checkRange(items, c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE)))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+        }
+
+        List<ValidationError> duplicates = findDuplicateIds(items);
+        if (!duplicates.isEmpty()) {
+            errors = new ArrayList<>(errors);
+            errors.addAll(duplicates);
+            errors.sort(Comparator.comparingInt(ValidationError::getPosition));
+        }
+        return new ValidationReport(n, errors, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs the per-product checks on {@code items[from..to)}.
+     */
+    private static List<ValidationError> checkRange(Product[] items, int from, int to) {
+        List<ValidationError> errors = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Product p = items[i];
+            if (p == null) {
+                errors.add(new ValidationError(i, 0, ValidationError.Code.NULL_PRODUCT, "Product is null"));
+                continue;
+            }
+            double price = p.getPrice();
+            if (!(price > 0) || Double.isInfinite(price)) {
+                errors.add(new ValidationError(i, p.getId(), ValidationError.Code.INVALID_PRICE,
+                        "Price must be a positive number: " + price));
+            }
+            String name = p.getProductName();
+            if (name == null || name.trim().isEmpty()) {
+                errors.add(new ValidationError(i, p.getId(), ValidationError.Code.BLANK_NAME, "Product name is blank"));
+            }
+            if (p instanceof Snickers && ((Snickers) p).getSize() == null) {
+                errors.add(new ValidationError(i, p.getId(), ValidationError.Code.MISSING_SIZE, "Snickers has no size"));
+            } else if (p instanceof CottonCandy) {
+                String flavor = ((CottonCandy) p).getFlavor();
+                if (flavor == null || flavor.trim().isEmpty()) {
+                    errors.add(new ValidationError(i, p.getId(), ValidationError.Code.BLANK_FLAVOR, "Cotton candy has no flavor"));
+                }
+            } else if (p instanceof MintDrops && ((MintDrops) p).getCoolingLevel() == null) {
+                errors.add(new ValidationError(i, p.getId(), ValidationError.Code.MISSING_COOLING_LEVEL,
+                        "Mint drops have no cooling level"));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Reports every product whose ID was already used by a product earlier in the list.
+     */
+    private static List<ValidationError> findDuplicateIds(Product[] items) {
+        int n = items.length;
+        int[] ids = new int[n];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int count = 0;
+        for (Product p : items) {
+            if (p == null) continue;
+            int id = p.getId();
+            ids[count++] = id;
+            if (id < min) min = id;
+            if (id > max) max = id;
+        }
+        if (count == 0) return new ArrayList<>();
+
+        // Use a bitmap unless the IDs are so sparse that it would be much larger than the list itself
+        long range = (long) max - min + 1;
+        return range <= Math.min(MAX_BITMAP_RANGE, Math.max(64L * count, 1 << 16))
+                ? duplicatesWithBitmap(items, min, range)
+                : duplicatesBySorting(items, Arrays.copyOf(ids, count));
+    }
+
+    private static List<ValidationError> duplicatesWithBitmap(Product[] items, int min, long range) {
+        long[] seen = new long[(int) ((range + 63) >>> 6)];
+        List<ValidationError> errors = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            Product p = items[i];
+            if (p == null) continue;
+            int offset = p.getId() - min;
+            int word = offset >>> 6;
+            long bit = 1L << offset; // the shift only uses the low 6 bits
+            if ((seen[word] & bit) != 0) {
+                errors.add(duplicate(i, p));
+            }
+            seen[word] |= bit;
+        }
+        return errors;
+    }
+
+    private static List<ValidationError> duplicatesBySorting(Product[] items, int[] ids) {
+        // Find the IDs that occur more than once, then walk the list to report their later occurrences
+        Arrays.sort(ids);
+        int[] repeatedIds = new int[ids.length / 2];
+        int duplicated = 0;
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] == ids[i - 1] && (duplicated == 0 || repeatedIds[duplicated - 1] != ids[i])) {
+                repeatedIds[duplicated++] = ids[i];
+            }
+        }
+        List<ValidationError> errors = new ArrayList<>();
+        if (duplicated == 0) return errors;
+
+        repeatedIds = Arrays.copyOf(repeatedIds, duplicated);
+        boolean[] firstSeen = new boolean[duplicated];
+        for (int i = 0; i < items.length; i++) {
+            Product p = items[i];
+            if (p == null) continue;
+            int k = Arrays.binarySearch(repeatedIds, p.getId());
+            if (k < 0) continue;
+            if (firstSeen[k]) errors.add(duplicate(i, p));
+            firstSeen[k] = true;
+        }
+        return errors;
+    }
+
+    private static ValidationError duplicate(int position, Product p) {
+        return new ValidationError(position, p.getId(), ValidationError.Code.DUPLICATE_ID,
+                "Duplicate ID " + p.getId() + " for product '" + p.getProductName() + "'");
+    }
+}
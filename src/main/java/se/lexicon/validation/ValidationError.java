@@ -0,0 +1,70 @@
+package se.lexicon.validation;
+
+/**
+ * One problem found in a catalog, tied to the position of the product in the list.
+ */
+public final class ValidationError {
+
+    /**
+     * The kind of problem.
+     */
+    public enum Code {
+        /** The list contains {@code null} instead of a product. */
+        NULL_PRODUCT,
+        /** Another product earlier in the list has the same ID. */
+        DUPLICATE_ID,
+        /** The price is zero, negative, infinite or not a number. */
+        INVALID_PRICE,
+        /** The product name is missing or blank. */
+        BLANK_NAME,
+        /** A Snickers bar without a size. */
+        MISSING_SIZE,
+        /** A cotton candy without a flavor. */
+        BLANK_FLAVOR,
+        /** Mint drops without a cooling level. */
+        MISSING_COOLING_LEVEL
+    }
+
+    private final int position;
+    private final int productId;
+    private final Code code;
+    private final String message;
+
+    public ValidationError(int position, int productId, Code code, String message) {
+        this.position = position;
+        this.productId = productId;
+        this.code = code;
+        this.message = message;
+    }
+
+    /**
+     * Returns the position of the product in the validated list.
+     *
+     * @return the position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the ID of the product, or 0 for a {@code null} entry.
+     *
+     * @return the product ID
+     */
+    public int getProductId() {
+        return productId;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Position: " + position + ", ID: " + productId + ", " + code + ": " + message;
+    }
+}
@@ -0,0 +1,71 @@
+package se.lexicon.validation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of validating a catalog: every problem found, ordered by position in the list.
+ */
+public final class ValidationReport {
+
+    /** How many errors {@link #throwIfInvalid()} spells out in the exception message. */
+    private static final int ERRORS_IN_MESSAGE = 10;
+
+    private final int productCount;
+    private final List<ValidationError> errors;
+    private final long elapsedNanos;
+
+    ValidationReport(int productCount, List<ValidationError> errors, long elapsedNanos) {
+        this.productCount = productCount;
+        this.errors = Collections.unmodifiableList(errors);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Returns all problems found, ordered by position.
+     *
+     * @return the errors; empty if the catalog is valid
+     */
+    public List<ValidationError> getErrors() {
+        return errors;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    /**
+     * Returns how long the validation took.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Throws if the catalog has problems. The message lists the first few of them.
+     *
+     * @throws IllegalArgumentException if any error was found
+     */
+    public void throwIfInvalid() {
+        if (isValid()) return;
+        StringBuilder message = new StringBuilder("Invalid catalog: ").append(errors.size()).append(" error(s)");
+        for (int i = 0; i < Math.min(errors.size(), ERRORS_IN_MESSAGE); i++) {
+            message.append("\n  ").append(errors.get(i));
+        }
+        if (errors.size() > ERRORS_IN_MESSAGE) {
+            message.append("\n  ... and ").append(errors.size() - ERRORS_IN_MESSAGE).append(" more");
+        }
+        throw new IllegalArgumentException(message.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "Products: " + productCount + ", Errors: " + errors.size() + ", Time: " + elapsedNanos / 1_000 + " us";
+    }
+}
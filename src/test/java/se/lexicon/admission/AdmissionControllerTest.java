@@ -0,0 +1,116 @@
+package se.lexicon.admission;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AdmissionController unit tests")
+class AdmissionControllerTest {
+
+    private static final long FAST = 100_000L;        // 0.1 ms
+    private static final long SLOW = 50_000_000L;     // 50 ms
+
+    @Test
+    @DisplayName("Callers beyond the limit are rejected at once when there is no queue")
+    void rejects_beyond_limit_without_queue() {
+        AdmissionController admission = new AdmissionController(2, 1, 10, 0, 100, 5);
+        admission.acquire();
+        admission.acquire();
+
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, admission::acquire);
+        assertTrue(e.getRetryAfterMillis() >= 1);
+        assertEquals(1, admission.getRejectedCount());
+
+        admission.release(FAST);
+        admission.acquire();
+        assertEquals(2, admission.getInFlight());
+    }
+
+    @Test
+    @DisplayName("A queued caller is admitted when capacity is freed")
+    void queued_caller_admitted_on_release() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 1, 1, 5_000, 5);
+        admission.acquire();
+
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(admission::acquire);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (admission.getWaiting() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, admission.getWaiting());
+        assertThrows(AdmissionRejectedException.class, admission::acquire, "queue is full");
+
+        admission.release(FAST);
+        waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(1, admission.getInFlight());
+        assertEquals(0, admission.getWaiting());
+    }
+
+    @Test
+    @DisplayName("A queued caller is rejected when the maximum wait runs out")
+    void queued_caller_times_out() {
+        AdmissionController admission = new AdmissionController(1, 1, 1, 4, 20, 5);
+        admission.acquire();
+        assertThrows(AdmissionRejectedException.class, admission::acquire);
+        assertEquals(0, admission.getWaiting());
+    }
+
+    @Test
+    @DisplayName("Slow requests shrink the limit, fast saturated windows grow it")
+    void limit_adapts_to_latency() {
+        AdmissionController admission = new AdmissionController(16, 2, 32, 0, 0, 5);
+
+        for (int i = 0; i < 200; i++) {
+            admission.acquire();
+            admission.release(SLOW);
+        }
+        assertEquals(2, admission.getLimit(), "repeated slow samples shrink the limit to the minimum");
+
+        for (int round = 0; round < 50; round++) {
+            int limit = admission.getLimit();
+            for (int i = 0; i < limit; i++) admission.acquire();
+            for (int i = 0; i < limit; i++) admission.release(FAST);
+        }
+        assertTrue(admission.getLimit() > 16, "fast samples at full concurrency grow the limit");
+        assertTrue(admission.getLimit() <= 32);
+    }
+
+    @Test
+    @DisplayName("A window that never reaches the limit does not grow it")
+    void limit_does_not_grow_when_unused() {
+        AdmissionController admission = new AdmissionController(4, 1, 32, 0, 0, 5);
+        for (int i = 0; i < 1000; i++) {
+            admission.acquire();
+            admission.release(FAST);
+        }
+        assertEquals(4, admission.getLimit());
+    }
+
+    @Test
+    @DisplayName("The wrapped machine admits changes, passes reads through and releases on failure")
+    void controlled_machine_guards_changes() {
+        VendingMachine vm = new VendingMachine(Arrays.asList(new Taco(4, 60, "Taco")));
+        AdmissionController admission = new AdmissionController(1, 1, 1, 0, 0, 5);
+        IVendingMachine guarded = new AdmissionControlledMachine(vm, admission);
+
+        guarded.addCurrency(100);
+        assertNotNull(guarded.request(4));
+        assertEquals(0, admission.getInFlight());
+
+        admission.acquire(); // someone else holds the only slot
+        assertThrows(AdmissionRejectedException.class, () -> guarded.request(4));
+        assertEquals(40, guarded.getBalance(), "reads are never rejected");
+        admission.release(-1);
+
+        assertEquals(40, guarded.endSession());
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(0, 0, 1, 0, 0, 5));
+    }
+}
@@ -0,0 +1,93 @@
+package se.lexicon.admission;
+
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+import se.lexicon.products.*;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flash-sale load test: many customers buy at once from one machine, with and without
+ * admission control, and the latency of successful purchases is compared.
+ * <p>
+ * Each purchase holds the machine for about 0.2 ms (the dispensing mechanism). Without admission
+ * control every customer queues on the machine and latency grows with the crowd; with it, the
+ * excess is turned away with a retry-after hint and admitted customers keep a flat latency.
+ * </p>
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.admission.AdmissionLoadBenchmark}
+ * Optional arguments: number of customers (default 200) and seconds per run (default 3).
+ * </p>
+ */
+public class AdmissionLoadBenchmark {
+
+    private static final long DISPENSE_NANOS = 200_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.println("Customers: " + customers + ", " + seconds + " s per run, cores: "
+                + Runtime.getRuntime().availableProcessors());
+
+        run("unlimited", newMachine(), customers, seconds);
+
+        AdmissionController admission = new AdmissionController(4, 1, 32, 8, 5, 3.0);
+        run("admission", new AdmissionControlledMachine(newMachine(), admission), customers, seconds);
+        System.out.println("final limit: " + admission.getLimit());
+    }
+
+    private static IVendingMachine newMachine() {
+        VendingMachine vm = new VendingMachine(Arrays.asList(new Taco(4, 1, "Taco")));
+        vm.addListener(new VendingMachineListener() {
+            @Override
+            public void onPurchase(long sessionId, Product product, double price) {
+                LockSupport.parkNanos(DISPENSE_NANOS); // the machine is busy while dispensing
+            }
+        });
+        vm.setBalance(1e12); // enough credit for every purchase in the run
+        return vm;
+    }
+
+    private static void run(String name, IVendingMachine machine, int customers, int seconds) throws InterruptedException {
+        QuantileSketch latency = new QuantileSketch(0.01, 0.001, 60_000);
+        AtomicLong served = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(customers);
+
+        for (int c = 0; c < customers; c++) {
+            Thread t = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        machine.request(4);
+                        double millis = (System.nanoTime() - start) / 1e6;
+                        synchronized (latency) {
+                            latency.add(millis);
+                        }
+                        served.incrementAndGet();
+                    } catch (AdmissionRejectedException e) {
+                        rejected.incrementAndGet();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(e.getRetryAfterMillis()));
+                    }
+                }
+                done.countDown();
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+
+        System.out.printf("%-10s served=%7d (%6.0f/s)  rejected=%7d  p50=%7.2f ms  p99=%7.2f ms  p99.9=%7.2f ms%n",
+                name, served.get(), served.get() / (double) seconds, rejected.get(),
+                latency.quantile(0.5), latency.quantile(0.99), latency.quantile(0.999));
+    }
+}
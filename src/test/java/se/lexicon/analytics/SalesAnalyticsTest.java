@@ -0,0 +1,103 @@
+package se.lexicon.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SalesAnalytics unit tests")
+class SalesAnalyticsTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private VendingMachine newMachine(SalesAnalytics analytics) {
+        VendingMachine vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new CottonCandy(2, 50, "Cotton Candy", "Strawberry"),
+                new MintDrops(3, 30, "Mint Drops", 4),
+                new Taco(4, 60, "Taco")
+        ));
+        vm.addListener(analytics);
+        return vm;
+    }
+
+    private static void buy(VendingMachine vm, int id, int times) {
+        for (int i = 0; i < times; i++) {
+            vm.addCurrency(100);
+            vm.request(id);
+            vm.endSession();
+        }
+    }
+
+    @Test
+    @DisplayName("Top sellers are ranked by units sold across machines")
+    void topSellers_ranked_across_machines() {
+        MutableClock clock = new MutableClock(0);
+        SalesAnalytics analytics = new SalesAnalytics(clock);
+        VendingMachine a = newMachine(analytics);
+        VendingMachine b = newMachine(analytics);
+
+        buy(a, 1, 3);
+        buy(b, 1, 2);
+        buy(a, 4, 4);
+        buy(b, 3, 1);
+
+        List<TopSeller> top = analytics.topSellers(2);
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getProductId());
+        assertEquals(5, top.get(0).getUnitsSold());
+        assertEquals(4, top.get(1).getProductId());
+        assertEquals("Taco", top.get(1).getProductName());
+    }
+
+    @Test
+    @DisplayName("Sales slide out of the window after 15 minutes")
+    void sales_expire_from_window() {
+        MutableClock clock = new MutableClock(0);
+        SalesAnalytics analytics = new SalesAnalytics(clock);
+        VendingMachine vm = newMachine(analytics);
+
+        buy(vm, 1, 5);
+        clock.advance(10 * MINUTE);
+        buy(vm, 2, 2);
+
+        assertEquals(1, analytics.topSellers(10).get(0).getProductId());
+
+        // The Snickers sales are now older than the window, the cotton candy ones are not
+        clock.advance(6 * MINUTE);
+        List<TopSeller> top = analytics.topSellers(10);
+        assertEquals(1, top.size());
+        assertEquals(2, top.get(0).getProductId());
+
+        clock.advance(60 * MINUTE);
+        assertTrue(analytics.topSellers(10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Revenue is grouped per product type and hour")
+    void revenue_per_type_per_hour() {
+        MutableClock clock = new MutableClock(0);
+        SalesAnalytics analytics = new SalesAnalytics(clock);
+        VendingMachine vm = newMachine(analytics);
+
+        buy(vm, 1, 2);
+        buy(vm, 4, 1);
+        clock.advance(60 * MINUTE);
+        buy(vm, 3, 1);
+
+        Map<String, Double> previous = analytics.revenueByType(1);
+        assertEquals(40.0, previous.get("Snickers"));
+        assertEquals(60.0, previous.get("Taco"));
+
+        Map<String, Double> current = analytics.revenueByType(0);
+        assertEquals(1, current.size());
+        assertEquals(30.0, current.get("MintDrops"));
+    }
+}
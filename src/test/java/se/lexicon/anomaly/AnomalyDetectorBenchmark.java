@@ -0,0 +1,41 @@
+package se.lexicon.anomaly;
+
+import se.lexicon.model.VendingMachine;
+
+import java.time.Clock;
+
+/**
+ * Measures what the anomaly detector adds to the coin path: the time per deposit, purchase and
+ * session end with and without a {@link CoinAnomalyDetector} registered.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.anomaly.AnomalyDetectorBenchmark}
+ * </p>
+ */
+public class AnomalyDetectorBenchmark {
+
+    private static final int SESSIONS = 2_000_000;
+
+    private static double nanosPerCall(VendingMachine vm) {
+        long start = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            vm.addCurrency(10);
+            vm.addCurrency(20);
+            vm.request(7);
+            vm.endSession();
+        }
+        return (System.nanoTime() - start) / (4.0 * SESSIONS);
+    }
+
+    public static void main(String[] args) {
+        VendingMachine plain = AttackGenerator.newMachine();
+        VendingMachine watched = AttackGenerator.newMachine();
+        long[] alerts = new long[1];
+        watched.addListener(new CoinAnomalyDetector(1, Clock.systemUTC(), alert -> alerts[0]++));
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("without detector %.1f ns/call  with detector %.1f ns/call  (%d alerts)%n",
+                    nanosPerCall(plain), nanosPerCall(watched), alerts[0]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package se.lexicon.anomaly;
+
+import se.lexicon.MutableClock;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Drives a vending machine with synthetic traffic: ordinary customers, and the attack patterns
+ * {@link CoinAnomalyDetector} should recognize. The clock is moved forward between calls, so a
+ * day of traffic runs in milliseconds.
+ */
+final class AttackGenerator {
+
+    /** Product IDs and prices of the machine from {@link #newMachine()}. */
+    static final int[] PRODUCT_IDS = {1, 7, 4};
+    static final int[] PRICES = {20, 30, 60};
+
+    // Denominations customers usually pay with, and how often (percent)
+    private static final int[] COMMON = {1, 2, 5, 10, 20, 50, 100};
+    private static final int[] COMMON_SHARE = {2, 2, 6, 30, 30, 15, 15};
+
+    private final VendingMachine vm;
+    private final MutableClock clock;
+    private final Random random;
+
+    AttackGenerator(VendingMachine vm, MutableClock clock, long seed) {
+        this.vm = vm;
+        this.clock = clock;
+        this.random = new Random(seed);
+    }
+
+    static VendingMachine newMachine() {
+        return new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new CottonCandy(7, 30, "Cotton Candy", "Vanilla"),
+                new Taco(4, 60, "Taco")));
+    }
+
+    /**
+     * Ordinary customers, a few minutes apart: most pay and buy one product, about 5% change
+     * their mind and take their coins back, and about 3% have a worn coin rejected.
+     */
+    void normalTraffic(int sessions) {
+        for (int s = 0; s < sessions; s++) {
+            pause(30_000 + (long) (-Math.log(1 - random.nextDouble()) * 240_000));
+            int product = random.nextInt(PRODUCT_IDS.length);
+            if (random.nextInt(100) < 3) {
+                vm.addCurrency(3);
+                pause(2_000);
+            }
+            if (random.nextInt(100) < 5) {
+                vm.addCurrency(commonDenomination());
+                pause(10_000 + random.nextInt(20_000));
+                vm.endSession();
+                continue;
+            }
+            int paid = 0;
+            while (paid < PRICES[product]) {
+                int coin = commonDenomination();
+                vm.addCurrency(coin);
+                paid += coin;
+                pause(1_000 + random.nextInt(3_000));
+            }
+            vm.request(PRODUCT_IDS[product]);
+            pause(1_000 + random.nextInt(2_000));
+            vm.endSession();
+        }
+    }
+
+    /**
+     * Fake coins inserted one after the other in a single session.
+     */
+    void counterfeitBurst(int fakes) {
+        pause(60_000);
+        for (int i = 0; i < fakes; i++) {
+            vm.addCurrency(7 + random.nextInt(2));
+            pause(800);
+        }
+        vm.endSession();
+    }
+
+    /**
+     * One fake coin per session, with the session ended in between, so no single session looks odd.
+     */
+    void counterfeitProbing(int sessions) {
+        for (int i = 0; i < sessions; i++) {
+            pause(5_000);
+            vm.addCurrency(15);
+            pause(1_000);
+            vm.endSession();
+        }
+    }
+
+    /**
+     * A coin on a string: inserted, credited, pulled back, and the deposit returned as change.
+     */
+    void coinFishing(int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            pause(4_000);
+            vm.addCurrency(20);
+            pause(2_000);
+            vm.endSession();
+        }
+    }
+
+    /**
+     * Large notes that this machine rarely sees, e.g., a batch of counterfeit notes good enough to
+     * pass the validator, spent on a cheap product for the change.
+     */
+    void unusualNotes(int notes) {
+        pause(60_000);
+        for (int i = 0; i < notes; i++) {
+            vm.addCurrency(1000);
+            pause(1_500);
+        }
+        vm.request(PRODUCT_IDS[0]);
+        vm.endSession();
+    }
+
+    private int commonDenomination() {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < COMMON.length; i++) {
+            roll -= COMMON_SHARE[i];
+            if (roll < 0) return COMMON[i];
+        }
+        return COMMON[COMMON.length - 1];
+    }
+
+    private void pause(long millis) {
+        clock.advance(millis);
+    }
+}
@@ -0,0 +1,121 @@
+package se.lexicon.anomaly;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.model.VendingMachine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CoinAnomalyDetector unit tests")
+class CoinAnomalyDetectorTest {
+
+    private MutableClock clock;
+    private VendingMachine vm;
+    private List<AnomalyAlert> alerts;
+    private CoinAnomalyDetector detector;
+    private AttackGenerator traffic;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(1_700_000_000_000L);
+        vm = AttackGenerator.newMachine();
+        alerts = new ArrayList<>();
+        detector = new CoinAnomalyDetector(42, clock, alerts::add);
+        vm.addListener(detector);
+        traffic = new AttackGenerator(vm, clock, 7);
+    }
+
+    @Test
+    @DisplayName("A day of ordinary customers raises no alert")
+    void normal_traffic_raises_no_alerts() {
+        traffic.normalTraffic(500);
+
+        assertEquals(0, alerts.size(), () -> alerts.toString());
+        assertEquals(0, detector.getAlertCount());
+    }
+
+    @Test
+    @DisplayName("A burst of rejected coins is reported while the session is still open")
+    void rejected_burst_is_detected() {
+        traffic.normalTraffic(100);
+
+        vm.addCurrency(7);
+        vm.addCurrency(7);
+        assertEquals(0, alerts.size());
+        vm.addCurrency(7);
+
+        assertEquals(1, alerts.size(), "Alert raised before the third insert returned");
+        AnomalyAlert alert = alerts.get(0);
+        assertEquals(AnomalyAlert.Reason.REJECTED_BURST, alert.getReason());
+        assertEquals(42, alert.getMachineId());
+        assertEquals(vm.getSessionId(), alert.getSessionId());
+        assertTrue(alert.getDetail().contains("most tried amount 7"), alert.getDetail());
+        assertTrue(detector.getSessionScore() >= 1);
+        assertTrue(detector.estimateRejected(7) >= 3);
+    }
+
+    @Test
+    @DisplayName("One fake coin per session is caught across sessions")
+    void counterfeit_probing_across_sessions_is_detected() {
+        traffic.normalTraffic(100);
+        traffic.counterfeitProbing(4);
+
+        assertTrue(alerts.stream().anyMatch(a -> a.getReason() == AnomalyAlert.Reason.REJECTED_BURST));
+    }
+
+    @Test
+    @DisplayName("Repeated insert-and-return cycles are reported as cash cycling")
+    void coin_fishing_is_detected() {
+        traffic.normalTraffic(100);
+        traffic.coinFishing(5);
+
+        assertFalse(alerts.isEmpty());
+        assertTrue(alerts.stream().allMatch(a -> a.getReason() == AnomalyAlert.Reason.CASH_CYCLING), () -> alerts.toString());
+    }
+
+    @Test
+    @DisplayName("A session paying with notes the machine rarely sees is reported")
+    void unusual_note_mix_is_detected() {
+        traffic.normalTraffic(100);
+        traffic.unusualNotes(3);
+
+        assertEquals(1, alerts.size(), () -> alerts.toString());
+        assertEquals(AnomalyAlert.Reason.UNUSUAL_NOTE_MIX, alerts.get(0).getReason());
+    }
+
+    @Test
+    @DisplayName("The note mix is not scored before a baseline has been learned")
+    void note_mix_needs_a_baseline() {
+        traffic.unusualNotes(3);
+
+        assertEquals(0, alerts.size());
+    }
+
+    @Test
+    @DisplayName("Attacks are found in the middle of ordinary traffic, one alert per reason and session")
+    void attacks_mixed_into_traffic() {
+        traffic.normalTraffic(200);
+        traffic.counterfeitBurst(5);
+        traffic.normalTraffic(50);
+        traffic.unusualNotes(4);
+        traffic.normalTraffic(50);
+
+        assertEquals(2, alerts.size(), () -> alerts.toString());
+        assertEquals(AnomalyAlert.Reason.REJECTED_BURST, alerts.get(0).getReason());
+        assertEquals(AnomalyAlert.Reason.UNUSUAL_NOTE_MIX, alerts.get(1).getReason());
+    }
+
+    @Test
+    @DisplayName("Invalid thresholds are rejected")
+    void invalid_thresholds_throw() {
+        assertThrows(IllegalArgumentException.class, () -> detector.setRejectedBurst(0));
+        assertThrows(IllegalArgumentException.class, () -> detector.setCyclingThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> detector.setMixSurprise(-1));
+        assertThrows(IllegalArgumentException.class, () -> new CoinAnomalyDetector(1, null, a -> { }));
+    }
+}
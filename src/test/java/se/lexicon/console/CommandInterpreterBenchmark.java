@@ -0,0 +1,154 @@
+package se.lexicon.console;
+
+import se.lexicon.model.CatalogPage;
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.ProductView;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Runs a generated batch file of console commands through {@link CommandInterpreter} and, for
+ * comparison, through a straightforward parser built on {@code String.split}, {@code Integer.parseInt}
+ * and {@link Size#from(String)}. Both dispatch to a machine that only counts calls, so the numbers
+ * show the cost of reading and parsing; a last run uses a real {@link VendingMachine}.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.console.CommandInterpreterBenchmark}
+ * Optional argument: number of commands (default 5 000 000).
+ * </p>
+ */
+public class CommandInterpreterBenchmark {
+
+    // A multiple of 3, so every group of three IDs holds one product of each kind
+    private static final int PRODUCTS = 999;
+
+    /**
+     * Accepts every command and does nothing else.
+     */
+    static final class CountingMachine implements IVendingMachine {
+        long calls;
+
+        @Override public void addCurrency(int amount) { calls++; }
+        @Override public double getBalance() { return 0; }
+        @Override public Product request(int id) { calls++; return null; }
+        @Override public Product request(long transactionId, int id) { calls++; return null; }
+        @Override public double endSession() { calls++; return 0; }
+        @Override public String getDescription(int id) { return null; }
+        @Override public String[] getProducts() { return new String[0]; }
+        @Override public CatalogPage browseProducts(String pageToken, int pageSize, Predicate<? super Product> filter) { return null; }
+        @Override public Stream<ProductView> streamProducts(Predicate<? super Product> filter) { return Stream.empty(); }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            switch (i % 3) {
+                case 0: products.add(new Snickers(i, 20, "Snickers", Size.MEDIUM)); break;
+                case 1: products.add(new MintDrops(i, 15, "Mint Drops", 2)); break;
+                default: products.add(new Taco(i, 60, "Taco")); break;
+            }
+        }
+        Path file = Files.createTempFile("console", ".txt");
+        write(file, count);
+        System.out.printf("batch file: %d commands, %d MB%n", count, Files.size(file) >> 20);
+
+        for (int round = 0; round < 3; round++) {
+            CountingMachine machine = new CountingMachine();
+            CommandInterpreter console = new CommandInterpreter(machine, products::get);
+            long bytes = allocatedBytes();
+            long t0 = System.nanoTime();
+            console.runBatch(file);
+            long t1 = System.nanoTime();
+            report("interpreter", count, t1 - t0, allocatedBytes() - bytes);
+
+            machine = new CountingMachine();
+            bytes = allocatedBytes();
+            t0 = System.nanoTime();
+            runWithStrings(file, machine, products);
+            t1 = System.nanoTime();
+            report("split+parse", count, t1 - t0, allocatedBytes() - bytes);
+        }
+
+        VendingMachine vm = new VendingMachine(products);
+        CommandInterpreter console = new CommandInterpreter(vm);
+        long t0 = System.nanoTime();
+        console.runBatch(file);
+        long t1 = System.nanoTime();
+        System.out.printf("real machine: %.0f ns/command, %d executed, %d failed%n",
+                (t1 - t0) / (double) count, console.getExecuted(), console.getFailed());
+        Files.delete(file);
+    }
+
+    /**
+     * Writes sessions of deposits, purchases and attribute changes.
+     */
+    private static void write(Path file, int count) throws Exception {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < count; i++) {
+                int id = (i * 7) % PRODUCTS;
+                switch (i % 6) {
+                    case 0: out.write("ADD 100"); break;
+                    case 1: out.write("BUY " + id); break;
+                    case 2: out.write("SET " + (id - id % 3) + " SIZE " + (i % 12 == 2 ? "extra large" : "small")); break;
+                    case 3: out.write("SET " + (id - id % 3 + 1) + " COOLING " + (1 + i % 5)); break;
+                    case 4: out.write("SET " + (id - id % 3 + 2) + " SPICY yes"); break;
+                    default: out.write("END"); break;
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * The parser the interpreter replaces: a String per line, split into words.
+     */
+    private static void runWithStrings(Path file, IVendingMachine machine, List<Product> products) throws Exception {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split(" ", 4);
+                switch (words[0].toUpperCase()) {
+                    case "ADD": machine.addCurrency(Integer.parseInt(words[1])); break;
+                    case "BUY": machine.request(Integer.parseInt(words[1])); break;
+                    case "END": machine.endSession(); break;
+                    case "SET":
+                        Product p = products.get(Integer.parseInt(words[1]));
+                        switch (words[2].toUpperCase()) {
+                            case "SIZE": ((Snickers) p).setSize(Size.from(words[3])); break;
+                            case "COOLING": ((MintDrops) p).setCoolingLevel(Integer.parseInt(words[3])); break;
+                            case "SPICY": ((Taco) p).setSpicy(words[3].equalsIgnoreCase("yes")); break;
+                            default: break;
+                        }
+                        break;
+                    default: break;
+                }
+            }
+        }
+    }
+
+    private static void report(String name, int count, long nanos, long bytes) {
+        System.out.printf("%-12s %6.1f ns/command  %5.1f M commands/s  %6.1f bytes allocated/command%n",
+                name, nanos / (double) count, count * 1e3 / nanos, bytes / (double) count);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,182 @@
+package se.lexicon.console;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+import se.lexicon.products.CoolingLevel;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CommandInterpreter unit tests")
+class CommandInterpreterTest {
+
+    private VendingMachine vm;
+    private CommandInterpreter console;
+
+    @BeforeEach
+    void setUp() {
+        vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new MintDrops(3, 30, "Mint Drops", 1),
+                new Taco(4, 60, "Taco")), 1);
+        console = new CommandInterpreter(vm);
+    }
+
+    @Test
+    @DisplayName("ADD, BUY and END are passed to the machine")
+    void session_commands_reach_machine() {
+        assertEquals(CommandResult.OK, run("ADD 50"));
+        assertEquals(CommandResult.OK, run("add 20\n"));
+        assertEquals(70, vm.getBalance());
+        assertEquals(CommandResult.OK, run("  BUY   1  "));
+        assertEquals(50, vm.getBalance());
+        assertEquals(CommandResult.REJECTED, run("BUY 1"), "sold out");
+        assertEquals(CommandResult.OK, run("End"));
+        assertEquals(0, vm.getBalance());
+        assertEquals(4, console.getExecuted());
+    }
+
+    @ParameterizedTest(name = "SET 1 SIZE {0}")
+    @CsvSource({"small,SMALL", "LARGE,LARGE", "xl,XL", "extra large,XL", "Extra Large,XL", "medium,MEDIUM"})
+    void size_by_name_or_label(String value, String name) {
+        Size expected = Size.valueOf(name);
+        ((Snickers) vm.getProduct(1)).setSize(Size.SMALL.equals(expected) ? Size.LARGE : Size.SMALL);
+
+        assertEquals(CommandResult.OK, run("SET 1 SIZE " + value));
+        assertEquals(expected, ((Snickers) vm.getProduct(1)).getSize());
+    }
+
+    @Test
+    @DisplayName("Cooling levels are set by number or label; other values leave the product unchanged")
+    void cooling_level_by_number_or_label() {
+        MintDrops mints = (MintDrops) vm.getProduct(3);
+
+        assertEquals(CommandResult.OK, run("SET 3 COOLING 5"));
+        assertEquals(CoolingLevel.EXTREME, mints.getCoolingLevel());
+        assertEquals(CommandResult.OK, run("set 3 cooling strong\r\n"));
+        assertEquals(CoolingLevel.STRONG, mints.getCoolingLevel());
+
+        assertEquals(CommandResult.INVALID_VALUE, run("SET 3 COOLING 6"));
+        assertEquals(CommandResult.INVALID_VALUE, run("SET 3 COOLING 0"));
+        assertEquals(CommandResult.INVALID_VALUE, run("SET 3 COOLING icy"));
+        assertEquals(CoolingLevel.STRONG, mints.getCoolingLevel());
+    }
+
+    @Test
+    @DisplayName("SET goes through the machine, so listeners hear of every change")
+    void set_is_reported_to_listeners() {
+        List<String> changes = new ArrayList<>();
+        vm.addListener(new VendingMachineListener() {
+            @Override
+            public void onProductChanged(Product product, double price) {
+                changes.add(product.examine());
+            }
+        });
+
+        assertEquals(CommandResult.OK, run("SET 1 SIZE large"));
+        assertEquals(CommandResult.OK, run("SET 3 COOLING 5"));
+        assertEquals(CommandResult.OK, run("SET 4 SPICY yes"));
+        assertEquals(CommandResult.INVALID_VALUE, run("SET 3 COOLING 6"));
+
+        assertEquals(Arrays.asList(vm.getProduct(1).examine(), vm.getProduct(3).examine(), vm.getProduct(4).examine()),
+                changes);
+        assertEquals(Size.LARGE, ((Snickers) vm.getProduct(1)).getSize());
+    }
+
+    @Test
+    @DisplayName("Bad commands are reported and counted without reaching the machine")
+    void bad_commands_are_reported() {
+        assertEquals(CommandResult.UNKNOWN_COMMAND, run("DANCE"));
+        assertEquals(CommandResult.MALFORMED, run("ADD"));
+        assertEquals(CommandResult.MALFORMED, run("ADD twenty"));
+        assertEquals(CommandResult.MALFORMED, run("ADD 20 20"));
+        assertEquals(CommandResult.MALFORMED, run("ADD 99999999999"));
+        assertEquals(CommandResult.INVALID_AMOUNT, run("ADD 3"));
+        assertEquals(CommandResult.INVALID_AMOUNT, run("ADD -5"));
+        assertEquals(CommandResult.UNKNOWN_PRODUCT, run("BUY 99"));
+        assertEquals(CommandResult.UNKNOWN_PRODUCT, run("SET 99 SIZE small"));
+        assertEquals(CommandResult.NOT_APPLICABLE, run("SET 4 SIZE small"));
+        assertEquals(CommandResult.NOT_APPLICABLE, run("SET 1 COLOR red"));
+        assertEquals(CommandResult.MALFORMED, run("SET 1 SIZE"));
+        assertEquals(CommandResult.INVALID_VALUE, run("SET 1 SIZE huge"));
+        assertEquals(CommandResult.MALFORMED, run("END now"));
+
+        assertEquals(14, console.getFailed());
+        assertEquals(0, console.getExecuted());
+        assertEquals(CommandResult.MALFORMED, console.getLastFailure());
+        assertEquals(14, console.getLastFailureLine());
+        assertEquals(0, vm.getBalance());
+        assertEquals(1, vm.getStock(1));
+    }
+
+    @Test
+    @DisplayName("Complete lines are run; an incomplete last line waits for more input")
+    void execute_all_keeps_partial_line() {
+        ByteBuffer in = ascii("# refill\nADD 20\n\nSET 4 SPICY yes\nBUY");
+
+        assertEquals(4, console.executeAll(in));
+        assertEquals("BUY", StandardCharsets.US_ASCII.decode(in.duplicate()).toString());
+        assertEquals(20, vm.getBalance());
+        assertTrue(((Taco) vm.getProduct(4)).isSpicy());
+        assertEquals(2, console.getExecuted());
+        assertEquals(0, console.getFailed());
+    }
+
+    @Test
+    @DisplayName("A batch file is run to the end; overlong lines are skipped")
+    void batch_file(@TempDir Path dir) throws IOException {
+        StringBuilder batch = new StringBuilder("ADD 100\nBUY 1\n");
+        batch.append("SET 1 SIZE ");
+        for (int i = 0; i < 70_000; i++) batch.append('x');
+        batch.append("\nSET 3 COOLING intense\nBUY 4");
+        Path file = dir.resolve("service.txt");
+        Files.write(file, batch.toString().getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(5, console.runBatch(file));
+
+        assertEquals(4, console.getExecuted());
+        assertEquals(CommandResult.LINE_TOO_LONG, console.getLastFailure());
+        assertEquals(3, console.getLastFailureLine());
+        assertEquals(Size.MEDIUM, ((Snickers) vm.getProduct(1)).getSize());
+        assertEquals(CoolingLevel.INTENSE, ((MintDrops) vm.getProduct(3)).getCoolingLevel());
+        assertEquals(0, vm.getStock(1));
+        assertEquals(0, vm.getStock(4), "the last line has no newline but is run");
+    }
+
+    @Test
+    @DisplayName("Size.from still accepts names and labels and rejects anything else")
+    void size_from_names_and_labels() {
+        assertEquals(Size.XL, Size.from("XL"));
+        assertEquals(Size.XL, Size.from(" extra large "));
+        assertEquals(Size.SMALL, Size.from("small"));
+        assertThrows(IllegalArgumentException.class, () -> Size.from("huge"));
+        assertThrows(IllegalArgumentException.class, () -> Size.from(""));
+    }
+
+    private CommandResult run(String command) {
+        return console.execute(ascii(command));
+    }
+
+    private static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,168 @@
+package se.lexicon.currency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Multi-currency exchange unit tests")
+class CurrencyExchangeTest {
+
+    private static List<Product> catalog() {
+        return Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        );
+    }
+
+    private static ExchangeRates rates(double eur) {
+        ExchangeRates rates = new ExchangeRates();
+        rates.setRate(CurrencyCode.EUR, eur);
+        return rates;
+    }
+
+    private static VendingMachine machine(ExchangeRates rates) {
+        List<Product> products = catalog();
+        VendingMachine vm = new VendingMachine(products);
+        vm.setCurrencyExchange(new CurrencyExchange(products, rates));
+        return vm;
+    }
+
+    @Test
+    @DisplayName("Foreign coins are credited in SEK at the table rate, rounded down")
+    void foreign_deposit_is_converted() {
+        VendingMachine vm = machine(rates(11.48));
+
+        vm.addCurrency(CurrencyCode.EUR, 200);
+        vm.addCurrency(CurrencyCode.EUR, 10);
+
+        assertEquals(22.96 + 1.14, vm.getBalance(), 1e-9);
+        assertEquals(CurrencyCode.EUR, vm.getSessionCurrency());
+        assertEquals(1, vm.getCashCount(CurrencyCode.EUR, 200));
+        assertEquals(0, vm.getCashCount(CurrencyCode.EUR, 500));
+        assertEquals(-1, vm.getCashCount(CurrencyCode.EUR, 300));
+    }
+
+    @Test
+    @DisplayName("Descriptions and listings show prices in the session currency")
+    void prices_are_rendered_in_session_currency() {
+        VendingMachine vm = machine(rates(11.48));
+        assertEquals("Snickers (large), costs 20.0 SEK.", vm.getDescription(1));
+
+        vm.addCurrency(CurrencyCode.EUR, 100);
+
+        assertEquals("Snickers (large), costs 1.75 EUR.", vm.getDescription(1));
+        assertEquals("Taco is not spicy and costs 5.23 EUR.", vm.getDescription(4));
+        assertTrue(vm.getProducts()[0].endsWith("Price: 1.75 EUR"), vm.getProducts()[0]);
+
+        vm.endSession();
+        assertEquals(CurrencyCode.SEK, vm.getSessionCurrency());
+        assertEquals("Snickers (large), costs 20.0 SEK.", vm.getDescription(1));
+    }
+
+    @Test
+    @DisplayName("Inserting the shown price is always enough to buy the product")
+    void shown_price_covers_the_sek_price() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            double rate = 0.5 + random.nextDouble() * 15;
+            double price = (1 + random.nextInt(20_000)) / 100.0;
+            ExchangeTable table = new CurrencyExchange(catalog(), rates(rate)).current();
+
+            long shown = table.priceIn(CurrencyCode.EUR, price);
+            long ore = Math.round(price * 100);
+            long rateUnits = Math.round(rate * ExchangeTable.RATE_SCALE);
+            assertTrue(shown * rateUnits / ExchangeTable.RATE_SCALE >= ore, "Shown price must cover the price");
+            assertTrue((shown - 1) * rateUnits / ExchangeTable.RATE_SCALE < ore, "Shown price must be the smallest such amount");
+        }
+    }
+
+    @Test
+    @DisplayName("A customer paying with euros can buy at the shown price")
+    void purchase_with_foreign_currency() {
+        VendingMachine vm = machine(rates(11.48));
+
+        vm.addCurrency(CurrencyCode.EUR, 100);
+        vm.addCurrency(CurrencyCode.EUR, 50);
+        vm.addCurrency(CurrencyCode.EUR, 20);
+        assertNull(vm.request(1), "1.70 EUR is less than the shown 1.75 EUR");
+        vm.addCurrency(CurrencyCode.EUR, 10);
+
+        assertNotNull(vm.request(1));
+    }
+
+    @Test
+    @DisplayName("Unknown currencies, denominations and mixed foreign currencies are rejected")
+    void invalid_deposits_are_rejected() {
+        ExchangeRates rates = rates(11.48);
+        VendingMachine vm = machine(rates);
+
+        vm.addCurrency(CurrencyCode.NOK, 1_000);
+        vm.addCurrency(CurrencyCode.EUR, 5);
+        assertEquals(0, vm.getBalance());
+
+        vm.addCurrency(CurrencyCode.EUR, 100);
+        vm.addCurrency(CurrencyCode.SEK, 1_000);
+        assertEquals(11.48 + 10, vm.getBalance(), 1e-9);
+
+        assertThrows(IllegalArgumentException.class, () -> rates.setRate(CurrencyCode.SEK, 2));
+        assertThrows(IllegalArgumentException.class, () -> rates.setRate(CurrencyCode.EUR, 0));
+        assertThrows(IllegalArgumentException.class, () -> rates.removeRate(CurrencyCode.SEK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new VendingMachine(catalog()).setCurrencyExchange(new CurrencyExchange(
+                        Arrays.asList(new Snickers(9, 20, "Snickers", Size.LARGE)), rates)));
+    }
+
+    @Test
+    @DisplayName("A rate update swaps in new tables for deposits and labels")
+    void rate_update_swaps_tables() {
+        List<Product> products = catalog();
+        VendingMachine vm = new VendingMachine(products);
+        CurrencyExchange exchange = new CurrencyExchange(products, rates(11.48));
+        vm.setCurrencyExchange(exchange);
+        ExchangeTable before = exchange.current();
+
+        exchange.updateRates(rates(10.00));
+        vm.addCurrency(CurrencyCode.EUR, 100);
+
+        assertEquals(10.00, vm.getBalance(), 1e-9);
+        assertEquals("Snickers (large), costs 2.00 EUR.", vm.getDescription(1));
+        assertEquals("1.75 EUR", before.priceLabel(CurrencyCode.EUR, 0, 20), "Old tables are unchanged");
+    }
+
+    @Test
+    @DisplayName("Readers always see one consistent set of rates while rates are updated")
+    void readers_see_consistent_tables() throws InterruptedException {
+        CurrencyExchange exchange = new CurrencyExchange(catalog(), rates(10.00));
+        Thread updater = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                exchange.updateRates(rates(i % 2 == 0 ? 20.00 : 10.00));
+            }
+        });
+        updater.start();
+        while (updater.isAlive()) {
+            ExchangeTable table = exchange.current();
+            long credit = table.creditOre(CurrencyCode.EUR, 100);
+            String label = table.priceLabel(CurrencyCode.EUR, 0, 20);
+            assertEquals(credit == 1000 ? "2.00 EUR" : "1.00 EUR", label);
+        }
+        updater.join();
+    }
+
+    @Test
+    @DisplayName("Time-slotted prices that differ from the table price are formatted on the spot")
+    void label_for_other_price() {
+        ExchangeTable table = new CurrencyExchange(catalog(), rates(10.00)).current();
+
+        assertEquals("2.50 EUR", table.priceLabel(CurrencyCode.EUR, 0, 25));
+        assertEquals("0.05 EUR", ExchangeTable.format(5, CurrencyCode.EUR));
+        assertEquals(250, table.fromSek(CurrencyCode.EUR, 25.09));
+    }
+}
@@ -0,0 +1,320 @@
+package se.lexicon.feed;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ChangeFeed unit tests")
+class ChangeFeedTest {
+
+    /**
+     * Records what it receives; requests nothing until told to.
+     */
+    static class Display implements Flow.Subscriber<ChangeEvent> {
+        final List<ChangeEvent> events = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+        double balance;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ChangeEvent event) {
+            events.add(event);
+            if (event.getKind() == ChangeEvent.Kind.BALANCE) balance = event.getValue();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private VendingMachine vm;
+    private ChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new CottonCandy(7, 30, "Cotton Candy", "Vanilla"),
+                new Taco(4, 60, "Taco")), 1);
+        // Deliver on the calling thread, so every change has arrived when the call returns
+        feed = new ChangeFeed(Runnable::run);
+        vm.addListener(feed);
+    }
+
+    @Test
+    @DisplayName("Deposits, purchases, price changes and restocking arrive as deltas")
+    void machine_changes_are_pushed() {
+        Display display = new Display();
+        feed.subscribe(display);
+        display.subscription.request(Long.MAX_VALUE);
+
+        vm.addCurrency(50);
+        vm.request(1);
+        vm.setPrice(4, 55);
+        vm.restock(1, 5);
+        vm.endSession();
+
+        assertEquals(Arrays.asList(
+                "#1 BALANCE 50.0",
+                "#2 BALANCE 30.0",
+                "#3 SOLD_OUT 1",
+                "#4 PRICE 4 55.0",
+                "#5 RESTOCK 1 5",
+                "#6 BALANCE 0.0"), lines(display.events));
+        assertEquals(55, vm.getCurrentPrice(4));
+    }
+
+    @Test
+    @DisplayName("Nothing is delivered beyond the requested amount")
+    void delivery_follows_demand() {
+        Display display = new Display();
+        feed.subscribe(display);
+
+        vm.setPrice(1, 21);
+        vm.setPrice(7, 31);
+        vm.setPrice(4, 61);
+        assertTrue(display.events.isEmpty());
+
+        display.subscription.request(2);
+        assertEquals(Arrays.asList("#1 PRICE 1 21.0", "#2 PRICE 7 31.0"), lines(display.events));
+
+        vm.setPrice(1, 22);
+        assertEquals(2, display.events.size());
+
+        display.subscription.request(5);
+        assertEquals(Arrays.asList("#1 PRICE 1 21.0", "#2 PRICE 7 31.0", "#3 PRICE 4 61.0", "#4 PRICE 1 22.0"),
+                lines(display.events));
+    }
+
+    @Test
+    @DisplayName("A slow subscriber receives only the latest value of each key")
+    void bursts_are_coalesced() {
+        Display slow = new Display();
+        feed.subscribe(slow);
+
+        for (int i = 0; i < 10; i++) vm.addCurrency(10);
+        vm.setPrice(1, 25);
+        vm.setPrice(1, 26);
+        vm.request(1);
+        vm.restock(1, 3);
+
+        slow.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList("#12 PRICE 1 26.0", "#13 BALANCE 74.0", "#15 RESTOCK 1 3"), lines(slow.events));
+    }
+
+    @Test
+    @DisplayName("A subscriber that fell out of the backlog catches up with each key once")
+    void subscriber_behind_the_backlog_catches_up() {
+        feed = new ChangeFeed(Runnable::run, 4);
+        vm.addListener(feed);
+        Display slow = new Display();
+        feed.subscribe(slow);
+
+        for (int i = 1; i <= 20; i++) {
+            vm.setPrice(1, 20 + i);
+            vm.setPrice(7, 30 + i);
+        }
+        vm.setPrice(4, 99);
+
+        slow.subscription.request(Long.MAX_VALUE);
+        List<String> received = lines(slow.events);
+        received.sort(null);
+        assertEquals(Arrays.asList("#39 PRICE 1 40.0", "#40 PRICE 7 50.0", "#41 PRICE 4 99.0"), received);
+
+        // Back in the ring: new changes are delivered one by one again
+        vm.setPrice(4, 98);
+        assertEquals("#42 PRICE 4 98.0", slow.events.get(3).toString());
+    }
+
+    @Test
+    @DisplayName("Added, changed and removed products arrive as menu entries; a removal replaces the product's older events")
+    void catalog_changes_are_pushed() {
+        Display slow = new Display();
+        feed.subscribe(slow);
+
+        vm.addProduct(new Taco(12, 45, "Fish Taco"), 2);
+        vm.setProductName(7, "Candy Floss");
+        vm.setSpicy(12, true);
+        vm.setPrice(4, 55);
+        vm.removeProduct(4);
+
+        slow.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList(
+                "#2 PRODUCT 7 " + vm.getDescription(7),
+                "#3 PRODUCT 12 " + vm.getDescription(12),
+                "#5 REMOVED 4"), lines(slow.events));
+        assertEquals(45, slow.events.get(1).getValue());
+    }
+
+    @Test
+    @DisplayName("Setting the same price again or attaching no tables publishes nothing")
+    void unchanged_values_are_not_published() {
+        vm.setPrice(1, 20);
+        vm.setPricing(null);
+        vm.endSession();
+        assertEquals(0, feed.getSequence());
+    }
+
+    @Test
+    @DisplayName("Requesting a non-positive amount fails the subscription")
+    void invalid_request_signals_error() {
+        Display display = new Display();
+        feed.subscribe(display);
+
+        display.subscription.request(0);
+        vm.addCurrency(10);
+
+        assertTrue(display.error instanceof IllegalArgumentException);
+        assertTrue(display.events.isEmpty());
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("Closing delivers what is left and completes; cancelling stops delivery")
+    void close_and_cancel() {
+        Display open = new Display();
+        Display cancelled = new Display();
+        feed.subscribe(open);
+        feed.subscribe(cancelled);
+        cancelled.subscription.request(Long.MAX_VALUE);
+        cancelled.subscription.cancel();
+        assertEquals(1, feed.getSubscriberCount());
+
+        vm.addCurrency(20);
+        feed.close();
+        assertFalse(open.completed, "Completes only after the pending event was requested");
+        open.subscription.request(1);
+
+        assertEquals(Arrays.asList("#1 BALANCE 20.0"), lines(open.events));
+        assertTrue(open.completed);
+        assertTrue(cancelled.events.isEmpty());
+        assertEquals(0, feed.getSubscriberCount());
+
+        Display late = new Display();
+        feed.subscribe(late);
+        assertTrue(late.completed);
+    }
+
+    @Test
+    @DisplayName("Events requested inside onSubscribe are delivered only after it has returned")
+    void on_subscribe_does_not_overlap_delivery() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            feed = new ChangeFeed(pool);
+            vm.addListener(feed);
+            CountDownLatch delivered = new CountDownLatch(1);
+            AtomicBoolean overlapped = new AtomicBoolean();
+            feed.subscribe(new Display() {
+                private volatile boolean returned;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    subscription.request(Long.MAX_VALUE);
+                    vm.addCurrency(10);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    returned = true;
+                }
+
+                @Override
+                public void onNext(ChangeEvent event) {
+                    if (!returned) overlapped.set(true);
+                    delivered.countDown();
+                }
+            });
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertFalse(overlapped.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A thousand displays on a thread pool all reach the final balance")
+    void many_subscribers_converge() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            feed = new ChangeFeed(pool, 16);
+            vm.addListener(feed);
+            int displays = 1_000;
+            CountDownLatch converged = new CountDownLatch(displays);
+            for (int d = 0; d < displays; d++) {
+                feed.subscribe(new Flow.Subscriber<ChangeEvent>() {
+                    private Flow.Subscription subscription;
+                    private boolean done;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        this.subscription = subscription;
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onNext(ChangeEvent event) {
+                        if (!done && event.getKind() == ChangeEvent.Kind.BALANCE && event.getValue() == 500) {
+                            done = true;
+                            converged.countDown();
+                        }
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+            }
+
+            for (int i = 0; i < 50; i++) vm.addCurrency(10);
+
+            assertTrue(converged.await(10, TimeUnit.SECONDS), converged.getCount() + " displays did not converge");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<String> lines(List<ChangeEvent> events) {
+        List<String> lines = new ArrayList<>();
+        for (ChangeEvent event : events) lines.add(event.toString());
+        return lines;
+    }
+}
@@ -0,0 +1,85 @@
+package se.lexicon.fleet;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how restock planning scales with the number of cores.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.fleet.FleetPlannerBenchmark}
+ * or straight from the IDE. Optional argument: number of machines (default 50 000).
+ * </p>
+ */
+public class FleetPlannerBenchmark {
+
+    private static final String[] ROUTES = {"North", "South", "East", "West", "Central", "Airport", "Harbour", "Campus"};
+
+    public static void main(String[] args) {
+        int machineCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        FleetService fleet = buildFleet(machineCount);
+
+        int maxCores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Machines: " + machineCount + ", cores available: " + maxCores);
+
+        double baseline = 0;
+        for (int cores = 1; cores <= maxCores; cores *= 2) {
+            double millis = measure(fleet, cores);
+            if (cores == 1) baseline = millis;
+            System.out.printf("cores=%2d  plan=%8.1f ms  speedup=%.2fx%n", cores, millis, baseline / millis);
+        }
+        if (Integer.bitCount(maxCores) != 1) {
+            double millis = measure(fleet, maxCores);
+            System.out.printf("cores=%2d  plan=%8.1f ms  speedup=%.2fx%n", maxCores, millis, baseline / millis);
+        }
+    }
+
+    private static FleetService buildFleet(int machineCount) {
+        FleetService fleet = new FleetService(Clock.systemUTC(), 6);
+        Random random = new Random(42);
+        for (int m = 0; m < machineCount; m++) {
+            List<Product> products = new ArrayList<>();
+            for (int slot = 0; slot < 6; slot++) {
+                products.add(new Snickers(slot * 4 + 1, 20, "Snickers", Size.values()[slot % 4]));
+                products.add(new Taco(slot * 4 + 2, 60, "Taco", slot % 2 == 0));
+                products.add(new MintDrops(slot * 4 + 3, 30, "Mint Drops", slot % 5 + 1));
+                products.add(new CottonCandy(slot * 4 + 4, 50, "Cotton Candy", "Strawberry"));
+            }
+            VendingMachine vm = new VendingMachine(products, 5 + random.nextInt(10));
+            SalesRateTracker rates = fleet.register(m, ROUTES[m % ROUTES.length], vm, 15);
+            for (Product p : products) {
+                int sold = random.nextInt(4);
+                if (sold > 0) rates.recordSale(p.getId(), sold);
+            }
+        }
+        return fleet;
+    }
+
+    private static double measure(FleetService fleet, int cores) {
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        try {
+            // Warm up so the JIT has compiled the hot paths before timing
+            for (int i = 0; i < 3; i++) fleet.planRestock(24, pool);
+
+            int runs = 5;
+            long start = System.nanoTime();
+            int lines = 0;
+            for (int i = 0; i < runs; i++) {
+                Map<String, PickList> plan = fleet.planRestock(24, pool);
+                for (PickList p : plan.values()) lines += p.getLines().size();
+            }
+            if (lines < 0) System.out.println(lines); // keep the result alive
+            return (System.nanoTime() - start) / 1e6 / runs;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
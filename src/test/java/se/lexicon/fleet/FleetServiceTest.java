@@ -0,0 +1,98 @@
+package se.lexicon.fleet;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FleetService unit tests")
+class FleetServiceTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private static VendingMachine newMachine(int stock) {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        );
+        return new VendingMachine(products, stock);
+    }
+
+    private static void sell(VendingMachine vm, int id, int times) {
+        for (int i = 0; i < times; i++) {
+            vm.addCurrency(100);
+            vm.request(id);
+            vm.endSession();
+        }
+    }
+
+    @Test
+    @DisplayName("Stock is decremented per sale and a sold-out product is not dispensed")
+    void machine_stock_decrements_and_sells_out() {
+        VendingMachine vm = newMachine(2);
+        sell(vm, 1, 2);
+        assertEquals(0, vm.getStock(1));
+
+        vm.addCurrency(100);
+        assertNull(vm.request(1));
+        assertEquals(100, vm.getBalance());
+
+        vm.restock(1, 5);
+        assertEquals(5, vm.getStock(1));
+        assertEquals(VendingMachine.UNLIMITED_STOCK, new VendingMachine(Arrays.asList(new Taco(4, 60, "Taco"))).getStock(4));
+    }
+
+    @Test
+    @DisplayName("Sales rate decays with time")
+    void sales_rate_decays() {
+        MutableClock clock = new MutableClock(0);
+        SalesRateTracker rates = new SalesRateTracker(clock, 1);
+        rates.recordSale(1, 10);
+        assertEquals(10.0, rates.unitsPerHour(1), 1e-9);
+
+        clock.advance(HOUR);
+        assertEquals(10.0 / Math.E, rates.unitsPerHour(1), 1e-9);
+        assertEquals(0.0, rates.unitsPerHour(2));
+    }
+
+    @Test
+    @DisplayName("Restock plan groups fast movers per route")
+    void plan_groups_by_route() {
+        MutableClock clock = new MutableClock(0);
+        FleetService fleet = new FleetService(clock, 6);
+
+        VendingMachine north1 = newMachine(10);
+        VendingMachine north2 = newMachine(10);
+        VendingMachine south = newMachine(10);
+        fleet.register(1, "North", north1, 10);
+        fleet.register(2, "North", north2, 10);
+        fleet.register(3, "South", south, 10);
+        assertThrows(IllegalArgumentException.class, () -> fleet.register(3, "South", south, 10));
+
+        sell(north1, 1, 6);
+        sell(north2, 4, 3);
+
+        Map<String, PickList> plan = fleet.planRestock(24, new ForkJoinPool(2));
+        assertEquals(1, plan.size(), "South sold nothing and needs no visit");
+
+        PickList north = plan.get("North");
+        assertEquals(2, north.getLines().size());
+        assertEquals(1, north.getLines().get(0).getMachineId());
+        assertEquals(10, north.getTotalsByProduct().get(1));
+        assertEquals(10, north.getTotalsByProduct().get(4));
+
+        List<DepletionForecast> forecasts = fleet.forecast(1, 24);
+        assertEquals(4, forecasts.get(0).getStock());
+        assertTrue(forecasts.get(0).getHoursUntilEmpty() < 24);
+        assertEquals(Double.POSITIVE_INFINITY, forecasts.get(1).getHoursUntilEmpty());
+    }
+}
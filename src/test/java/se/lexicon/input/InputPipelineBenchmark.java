@@ -0,0 +1,78 @@
+package se.lexicon.input;
+
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Simulated coin acceptor, note reader and keypad publishing into one pipeline as fast as they can.
+ * Reports the event rate and how many bytes the consumer thread allocated per event, which
+ * should be close to zero.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.input.InputPipelineBenchmark}
+ * Optional argument: events per device (default 2 000 000).
+ * </p>
+ */
+public class InputPipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int perDevice = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        VendingMachine vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        ));
+
+        try (InputPipeline pipeline = new InputPipeline(vm, 64)) {
+            InputRing coins = pipeline.register("coin-acceptor", 1024);
+            InputRing notes = pipeline.register("note-reader", 1024);
+            InputRing keypad = pipeline.register("keypad", 1024);
+            pipeline.start();
+
+            // Warm up, then measure
+            run(pipeline, coins, notes, keypad, perDevice / 10);
+            long consumerId = findThread("input-pipeline");
+            long allocatedBefore = allocatedBytes(consumerId);
+            long start = System.nanoTime();
+            long events = run(pipeline, coins, notes, keypad, perDevice);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long allocated = allocatedBytes(consumerId) - allocatedBefore;
+
+            System.out.printf("events=%d  rate=%.0f/s  consumer allocation=%.3f bytes/event%n",
+                    events, events / seconds, allocated / (double) events);
+        }
+    }
+
+    private static long run(InputPipeline pipeline, InputRing coins, InputRing notes, InputRing keypad,
+                            int perDevice) throws InterruptedException {
+        long target = pipeline.getAppliedCount() + 3L * perDevice;
+        Thread[] devices = {
+                new Thread(() -> { for (int i = 0; i < perDevice; i++) coins.publish(InputEvent.Type.CURRENCY, 10); }),
+                new Thread(() -> { for (int i = 0; i < perDevice; i++) notes.publish(InputEvent.Type.CURRENCY, 50); }),
+                new Thread(() -> { for (int i = 0; i < perDevice; i++) keypad.publish(InputEvent.Type.SELECT, 1); })
+        };
+        for (Thread t : devices) t.start();
+        for (Thread t : devices) t.join();
+        while (pipeline.getAppliedCount() < target) {
+            Thread.sleep(1);
+        }
+        return 3L * perDevice;
+    }
+
+    private static long findThread(String name) {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals(name)) return t.getId();
+        }
+        throw new IllegalStateException("No thread named " + name);
+    }
+
+    private static long allocatedBytes(long threadId) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(threadId);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,126 @@
+package se.lexicon.input;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+import se.lexicon.products.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InputPipeline unit tests")
+class InputPipelineTest {
+
+    private static VendingMachine newMachine() {
+        return new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        ));
+    }
+
+    private static void awaitApplied(InputPipeline pipeline, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pipeline.getAppliedCount() + pipeline.getFailedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, pipeline.getAppliedCount() + pipeline.getFailedCount());
+    }
+
+    @Test
+    @DisplayName("Coins from several device threads all reach the machine")
+    void concurrent_devices_do_not_lose_events() throws Exception {
+        VendingMachine vm = newMachine();
+        int devices = 4;
+        int coinsPerDevice = 20_000;
+        try (InputPipeline pipeline = new InputPipeline(vm, 32)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int d = 0; d < devices; d++) {
+                InputRing ring = pipeline.register("coin-" + d, 64);
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < coinsPerDevice; i++) ring.publish(InputEvent.Type.CURRENCY, 1);
+                }));
+            }
+            pipeline.start();
+            for (Thread t : threads) t.start();
+            for (Thread t : threads) t.join();
+
+            awaitApplied(pipeline, (long) devices * coinsPerDevice);
+            assertEquals(devices * coinsPerDevice, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Events from one device are applied in the order they were published")
+    void device_order_is_kept() throws Exception {
+        VendingMachine vm = newMachine();
+        List<Integer> purchased = new ArrayList<>();
+        vm.addListener(new VendingMachineListener() {
+            @Override
+            public void onPurchase(long sessionId, Product product, double price) {
+                purchased.add(product.getId());
+            }
+        });
+
+        try (InputPipeline pipeline = new InputPipeline(vm, 4)) {
+            InputRing panel = pipeline.register("panel", 16);
+            pipeline.start();
+            for (int i = 0; i < 50; i++) {
+                panel.publish(InputEvent.Type.CURRENCY, 50);
+                panel.publish(InputEvent.Type.CURRENCY, 10);
+                panel.publish(InputEvent.Type.SELECT, 4);
+                panel.publish(InputEvent.Type.RETURN_CHANGE, 0);
+            }
+            awaitApplied(pipeline, 200);
+        }
+        assertEquals(50, purchased.size(), "coins always arrive before the selection that needs them");
+        assertEquals(0, vm.getBalance());
+    }
+
+    @Test
+    @DisplayName("A full ring refuses new events until the consumer catches up")
+    void full_ring_refuses_events() {
+        VendingMachine vm = newMachine();
+        InputPipeline pipeline = new InputPipeline(vm, 3);
+        InputRing ring = pipeline.register("coin", 4);
+
+        for (int i = 0; i < 4; i++) assertTrue(ring.tryPublish(InputEvent.Type.CURRENCY, 10));
+        assertFalse(ring.tryPublish(InputEvent.Type.CURRENCY, 10));
+        assertEquals(4, ring.getBacklog());
+
+        assertEquals(3, pipeline.drainAll(), "one batch per ring per pass");
+        assertTrue(ring.tryPublish(InputEvent.Type.CURRENCY, 10));
+        assertEquals(2, pipeline.drainAll());
+        assertEquals(50, vm.getBalance());
+        assertThrows(IllegalArgumentException.class, () -> pipeline.register("bad", 6));
+    }
+
+    @Test
+    @DisplayName("A failing event is counted and does not stop the pipeline")
+    void failing_event_does_not_stop_pipeline() throws Exception {
+        VendingMachine vm = newMachine();
+        AtomicInteger purchases = new AtomicInteger();
+        vm.addListener(new VendingMachineListener() {
+            @Override
+            public void onPurchase(long sessionId, Product product, double price) {
+                if (purchases.incrementAndGet() == 1) throw new IllegalStateException("Dispenser jammed");
+            }
+        });
+
+        try (InputPipeline pipeline = new InputPipeline(vm, 8)) {
+            InputRing panel = pipeline.register("panel", 8);
+            pipeline.start();
+            panel.publish(InputEvent.Type.CURRENCY, 100);
+            panel.publish(InputEvent.Type.SELECT, 1);
+            panel.publish(InputEvent.Type.SELECT, 1);
+            awaitApplied(pipeline, 3);
+            assertEquals(1, pipeline.getFailedCount());
+        }
+        assertEquals(2, purchases.get());
+    }
+}
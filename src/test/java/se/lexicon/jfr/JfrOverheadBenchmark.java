@@ -0,0 +1,57 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Recording;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cost of the vending flight recorder events on the deposit and purchase path,
+ * with no recording running and with the bundled settings enabled.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.jfr.JfrOverheadBenchmark}
+ * </p>
+ */
+public class JfrOverheadBenchmark {
+
+    private static final int SESSIONS = 2_000_000;
+
+    private static double nanosPerCall(VendingMachine vm) {
+        long start = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            vm.addCurrency(50);
+            vm.request(7);
+            vm.endSession();
+        }
+        return (System.nanoTime() - start) / (3.0 * SESSIONS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new CottonCandy(7, 30, "Cotton Candy", "Vanilla")
+        );
+        VendingMachine vm = new VendingMachine(products);
+
+        for (int round = 0; round < 5; round++) {
+            double off = nanosPerCall(vm);
+            double on;
+            Path file = Files.createTempFile("vending", ".jfr");
+            try (Recording recording = new Recording(VendingRecordingSettings.load())) {
+                recording.start();
+                on = nanosPerCall(vm);
+                recording.stop();
+                recording.dump(file);
+            }
+            System.out.printf("recording off %.1f ns/call  recording on %.1f ns/call%n", off, on);
+            if (round == 4) System.out.println(RecordingSummary.read(file));
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package se.lexicon.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.lexicon.currency.CurrencyCode;
+import se.lexicon.currency.CurrencyExchange;
+import se.lexicon.currency.ExchangeRates;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Flight recorder events and RecordingSummary unit tests")
+class RecordingSummaryTest {
+
+    @TempDir
+    Path dir;
+
+    private static VendingMachine newMachine() {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        );
+        return new VendingMachine(products, 1);
+    }
+
+    private Path record(Runnable traffic) throws IOException {
+        Path file = dir.resolve("vending.jfr");
+        try (Recording recording = new Recording(VendingRecordingSettings.load())) {
+            recording.start();
+            traffic.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return file;
+    }
+
+    @Test
+    @DisplayName("Machine operations are recorded with product, amount, outcome and duration")
+    void operations_are_recorded_as_events() throws IOException {
+        Path file = record(() -> {
+            VendingMachine vm = newMachine();
+            vm.addCurrency(50);
+            vm.addCurrency(3);
+            vm.request(1);
+            vm.request(1);
+            vm.request(4);
+            vm.request(99);
+            vm.restock(1, 5);
+            vm.endSession();
+        });
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent purchase = events.stream()
+                .filter(e -> e.getEventType().getName().equals(PurchaseEvent.NAME))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals(1, purchase.getInt("productId"));
+        assertEquals(20, purchase.getDouble("price"));
+        assertEquals(PurchaseEvent.DISPENSED, purchase.getString("outcome"));
+        assertEquals(30, purchase.getDouble("balance"));
+        assertFalse(purchase.getDuration().isNegative());
+
+        RecordingSummary summary = RecordingSummary.read(file);
+        assertEquals(1, summary.getCurrencyAccepted());
+        assertEquals(1, summary.getCurrencyRejected());
+        assertEquals(1, summary.getPurchases(PurchaseEvent.DISPENSED));
+        assertEquals(1, summary.getPurchases(PurchaseEvent.SOLD_OUT));
+        assertEquals(1, summary.getPurchases(PurchaseEvent.INSUFFICIENT_FUNDS));
+        assertEquals(1, summary.getPurchases(PurchaseEvent.NOT_FOUND));
+        assertEquals(20, summary.getRevenue());
+        assertEquals(1, summary.getSessions());
+        assertEquals(1, summary.getCatalogChanges());
+        assertTrue(summary.toString().contains("Purchases:"));
+    }
+
+    @Test
+    @DisplayName("Foreign deposits are recorded with their currency and SEK credit")
+    void foreign_deposits_are_recorded() throws IOException {
+        Path file = record(() -> {
+            VendingMachine vm = newMachine();
+            ExchangeRates rates = new ExchangeRates();
+            rates.setRate(CurrencyCode.EUR, 11.48);
+            vm.setCurrencyExchange(new CurrencyExchange(vm.getCatalog(), rates));
+            vm.addCurrency(CurrencyCode.EUR, 200);
+            vm.addCurrency(CurrencyCode.NOK, 100);
+            vm.addCurrency(10);
+        });
+
+        List<RecordedEvent> deposits = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals(CurrencyEvent.NAME))
+                .collect(Collectors.toList());
+        assertEquals(3, deposits.size());
+        RecordedEvent euro = deposits.get(0);
+        assertEquals("EUR", euro.getString("currency"));
+        assertEquals(200, euro.getInt("amount"));
+        assertEquals(22.96, euro.getDouble("credit"), 1e-9);
+        assertTrue(euro.getBoolean("accepted"));
+        assertFalse(deposits.get(1).getBoolean("accepted"), "no NOK table is attached");
+
+        RecordingSummary summary = RecordingSummary.read(file);
+        assertEquals(2, summary.getCurrencyAccepted());
+        assertEquals(1, summary.getCurrencyRejected());
+        assertTrue(summary.toString().contains("32.96 SEK"));
+    }
+
+    @Test
+    @DisplayName("Waiting for a busy machine shows up as lock contention")
+    void lock_contention_is_summarized() throws Exception {
+        VendingMachine vm = newMachine();
+        Path file = record(() -> {
+            CountDownLatch locked = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                synchronized (vm) {
+                    locked.countDown();
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            holder.start();
+            try {
+                locked.await();
+                vm.addCurrency(10);
+                holder.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertEquals(1, RecordingSummary.read(file).getMachineLockContentions());
+    }
+
+    @Test
+    @DisplayName("Operations are matched against GC pauses they overlap")
+    void overlap_with_pauses() {
+        long[] starts = {100, 300, 500};
+        long[] ends = {150, 320, 600};
+
+        assertTrue(RecordingSummary.overlaps(starts, ends, 3, 140, 200));
+        assertTrue(RecordingSummary.overlaps(starts, ends, 3, 290, 310));
+        assertTrue(RecordingSummary.overlaps(starts, ends, 3, 510, 520));
+        assertFalse(RecordingSummary.overlaps(starts, ends, 3, 160, 290));
+        assertFalse(RecordingSummary.overlaps(starts, ends, 3, 10, 99));
+        assertFalse(RecordingSummary.overlaps(starts, ends, 0, 10, 99));
+    }
+}
@@ -0,0 +1,87 @@
+package se.lexicon.model;
+
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap taken by a 1M-product catalog whose names and flavors repeat, as they do when
+ * read from a file or database: every product is created from its own fresh {@code String}.
+ * <p>
+ * Products keep only the interned copies, so the fresh strings become garbage. For comparison the
+ * benchmark then keeps the fresh strings alive, as the name and flavor fields did before
+ * interning, and measures again.
+ * </p>
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -Xmx2g -cp target/classes:target/test-classes se.lexicon.model.AttributeHeapBenchmark}
+ * Optional argument: number of products (default 1 000 000).
+ * </p>
+ */
+public class AttributeHeapBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] names = new String[300];
+        String[] flavors = new String[200];
+        for (int i = 0; i < names.length; i++) names[i] = "Product line " + i;
+        for (int i = 0; i < flavors.length; i++) flavors[i] = "Flavor number " + i;
+
+        long empty = usedHeap();
+        List<Product> products = build(count, names, flavors, null, null);
+        long interned = usedHeap() - empty;
+        products = null;
+
+        // Emulate the old layout: every product also keeps its own decoded name and flavor alive
+        long base = usedHeap();
+        String[] keptNames = new String[count];
+        String[] keptFlavors = new String[count];
+        products = build(count, names, flavors, keptNames, keptFlavors);
+        // The two arrays only hold the copies; the old product fields did that for free
+        long perProductCopies = usedHeap() - base - 2 * (16 + 4L * count);
+
+        System.out.printf("products=%d  pool sizes: names=%d flavors=%d%n",
+                products.size(), AttributePool.NAMES.size(), AttributePool.FLAVORS.size());
+        System.out.printf("with interning:          %6.1f MB%n", interned / 1e6);
+        System.out.printf("with per-product copies: %6.1f MB%n", perProductCopies / 1e6);
+        System.out.printf("saved:                   %6.1f MB (%.0f%%)%n",
+                (perProductCopies - interned) / 1e6, 100.0 * (perProductCopies - interned) / perProductCopies);
+        if (keptNames.length + keptFlavors.length == 0) System.out.println();
+    }
+
+    private static List<Product> build(int count, String[] names, String[] flavors,
+                                       String[] keptNames, String[] keptFlavors) {
+        Random random = new Random(1);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // new String(char[]) stands in for text decoded from a file: one copy per product
+            String name = new String(names[random.nextInt(names.length)].toCharArray());
+            if (keptNames != null) keptNames[i] = name;
+            if (i % 2 == 0) {
+                String flavor = new String(flavors[random.nextInt(flavors.length)].toCharArray());
+                if (keptFlavors != null) keptFlavors[i] = flavor;
+                products.add(new CottonCandy(i, 30, name, flavor));
+            } else {
+                products.add(new Snickers(i, 20, name, Size.MEDIUM));
+            }
+        }
+        return products;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,112 @@
+package se.lexicon.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AttributePool unit tests")
+class AttributePoolTest {
+
+    @Test
+    @DisplayName("Equal texts share one canonical copy")
+    void equal_texts_share_one_copy() {
+        AttributePool pool = new AttributePool();
+        String first = new String("Vanilla");
+        String second = new String("Vanilla");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertSame(first, pool.intern(second));
+        String strawberry = pool.intern("Strawberry");
+        assertEquals(2, pool.size());
+        assertTrue(pool.contains("Vanilla"));
+        assertFalse(pool.contains("Mango"));
+        assertNotNull(strawberry);
+    }
+
+    @Test
+    @DisplayName("null is not stored")
+    void null_is_not_stored() {
+        AttributePool pool = new AttributePool();
+        assertNull(pool.intern(null));
+        assertFalse(pool.contains(null));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    @DisplayName("Texts no product refers to any more are dropped from the pool")
+    void unused_texts_are_dropped() throws InterruptedException {
+        AttributePool pool = new AttributePool();
+        String kept = pool.intern(new String("Vanilla"));
+        for (int i = 0; i < 1_000; i++) {
+            pool.intern("renamed-" + i);
+        }
+
+        for (int attempt = 0; attempt < 50 && pool.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.size());
+        assertSame(kept, pool.intern("Vanilla"));
+    }
+
+    @Test
+    @DisplayName("Products with equal names and flavors share the canonical strings")
+    void products_share_interned_attributes() {
+        CottonCandy a = new CottonCandy(1, 30, new String("Cotton Candy"), new String("Blueberry"));
+        CottonCandy b = new CottonCandy(2, 30, new String("Cotton Candy"), new String("Blueberry"));
+        Snickers c = new Snickers(3, 20, new String("Cotton Candy"), Size.SMALL);
+
+        assertSame(a.getProductName(), b.getProductName());
+        assertSame(a.getProductName(), c.getProductName());
+        assertSame(a.getFlavor(), b.getFlavor());
+        assertEquals("Blueberry", a.getFlavor());
+
+        b.setFlavor("Lemon");
+        b.setProductName("Candy Floss");
+        assertEquals("Lemon", b.getFlavor());
+        assertEquals("Candy Floss", b.getProductName());
+        assertEquals("Blueberry", a.getFlavor());
+        assertEquals("Cotton Candy", a.getProductName());
+    }
+
+    @Test
+    @DisplayName("Concurrent interning hands out one copy per text")
+    void concurrent_interning_is_consistent() throws Exception {
+        AttributePool pool = new AttributePool();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    String[] interned = new String[1_000];
+                    for (int i = 0; i < interned.length; i++) {
+                        interned[i] = pool.intern("flavor-" + i);
+                    }
+                    return interned;
+                }));
+            }
+            String[] expected = results.get(0).get();
+            for (Future<String[]> result : results) {
+                String[] actual = result.get();
+                for (int i = 0; i < expected.length; i++) {
+                    assertSame(expected[i], actual[i]);
+                }
+            }
+            assertEquals(1_000, pool.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package se.lexicon.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Size;
+import se.lexicon.products.Taco;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Catalog paging unit tests")
+class CatalogPagingTest {
+
+    /** 100 products added in descending ID order; even IDs are tacos, odd IDs are Snickers. */
+    private static VendingMachine newMachine() {
+        List<Product> products = new ArrayList<>();
+        for (int id = 100; id >= 1; id--) {
+            products.add(id % 2 == 0 ? new Taco(id, 40, "Taco " + id) : new Snickers(id, 20, "Snickers " + id, Size.SMALL));
+        }
+        return new VendingMachine(products);
+    }
+
+    @Test
+    @DisplayName("Pages are ordered by ID and tokens continue where the last page ended")
+    void pages_follow_id_order() {
+        VendingMachine vm = newMachine();
+        List<Integer> seen = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            CatalogPage page = vm.browseProducts(token, 30, null);
+            page.getItems().forEach(v -> seen.add(v.getId()));
+            token = page.getNextPageToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(4, pages);
+        assertEquals(100, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Filters are applied before the page is filled")
+    void filter_fills_pages() {
+        VendingMachine vm = newMachine();
+        CatalogPage first = vm.browseProducts(null, 10, p -> p instanceof Taco);
+        assertEquals(10, first.getItems().size());
+        assertEquals(2, first.getItems().get(0).getId());
+        assertEquals("Taco", first.getItems().get(0).getType());
+        assertEquals(40.0, first.getItems().get(0).getPrice());
+        assertEquals("Taco 2 is not spicy and costs 40.00 SEK.", first.getItems().get(0).getDescription());
+        assertEquals(vm.getProducts()[98], first.getItems().get(0).toString());
+
+        CatalogPage second = vm.browseProducts(first.getNextPageToken(), 10, p -> p instanceof Taco);
+        assertEquals(22, second.getItems().get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Last page has no token and bad tokens are rejected")
+    void last_page_and_bad_tokens() {
+        VendingMachine vm = newMachine();
+        CatalogPage all = vm.browseProducts(null, 100, null);
+        assertFalse(all.hasNextPage());
+
+        assertThrows(IllegalArgumentException.class, () -> vm.browseProducts("garbage!", 10, null));
+        assertThrows(IllegalArgumentException.class, () -> vm.browseProducts(null, 0, null));
+    }
+
+    @Test
+    @DisplayName("Stream is lazy, ordered and filtered")
+    void stream_products() {
+        VendingMachine vm = newMachine();
+        List<Integer> ids = vm.streamProducts(p -> p.getId() > 95)
+                .map(ProductView::getId)
+                .collect(Collectors.toList());
+        assertEquals(5, ids.size());
+        assertEquals(96, ids.get(0));
+        assertEquals("Taco 100", vm.streamProducts(null).skip(99).findFirst().get().getName());
+    }
+
+    @Test
+    @DisplayName("ID lookups still find products after indexing")
+    void lookups_use_index() {
+        VendingMachine vm = newMachine();
+        assertTrue(vm.getDescription(57).contains("Snickers 57"));
+        assertEquals("Product not found.", vm.getDescription(1000));
+        vm.addCurrency(50);
+        assertEquals(58, vm.request(58).getId());
+    }
+}
@@ -0,0 +1,140 @@
+package se.lexicon.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.products.*;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Transaction deduplication unit tests")
+class RecentTransactionsTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private static VendingMachine newMachine(MutableClock clock) {
+        VendingMachine vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        ), 5);
+        vm.setRecentTransactions(new RecentTransactions(64, 10 * MINUTE, clock));
+        return vm;
+    }
+
+    @Test
+    @DisplayName("A retried transaction returns the original product without charging again")
+    void retry_does_not_charge_twice() {
+        VendingMachine vm = newMachine(new MutableClock(0));
+        vm.addCurrency(100);
+
+        Product first = vm.request(42L, 4);
+        Product retry = vm.request(42L, 4);
+
+        assertNotNull(first);
+        assertSame(first, retry);
+        assertEquals(40, vm.getBalance());
+        assertEquals(4, vm.getStock(4));
+    }
+
+    @Test
+    @DisplayName("A failed transaction stays failed when retried")
+    void failed_outcome_is_remembered() {
+        VendingMachine vm = newMachine(new MutableClock(0));
+        vm.addCurrency(50);
+        assertNull(vm.request(7L, 4));
+
+        vm.addCurrency(50);
+        assertNull(vm.request(7L, 4), "same ID returns the original failure");
+        assertNotNull(vm.request(8L, 4), "a new ID is a new attempt");
+    }
+
+    @Test
+    @DisplayName("Outcomes expire after the time-to-live")
+    void outcomes_expire() {
+        MutableClock clock = new MutableClock(0);
+        VendingMachine vm = newMachine(clock);
+        vm.addCurrency(200);
+        vm.request(1L, 4);
+
+        clock.advance(10 * MINUTE);
+        vm.request(1L, 4);
+        assertEquals(80, vm.getBalance());
+    }
+
+    @Test
+    @DisplayName("A reused transaction ID does not return the product of its first purchase")
+    void reused_id_for_other_product_is_refused() {
+        VendingMachine vm = newMachine(new MutableClock(0));
+        vm.addCurrency(100);
+        assertNotNull(vm.request(42L, 4));
+
+        assertNull(vm.request(42L, 1));
+        assertEquals(40, vm.getBalance());
+        assertEquals(5, vm.getStock(1));
+    }
+
+    @Test
+    @DisplayName("Memory is fixed: live entries are never evicted, new transactions are refused instead")
+    void full_cache_refuses_new_transactions() {
+        MutableClock clock = new MutableClock(0);
+        RecentTransactions cache = new RecentTransactions(3, MINUTE, clock);
+        assertEquals(4, cache.getCapacity());
+
+        for (long tx = 0; tx < 100; tx++) {
+            cache.record(tx, 4, null);
+        }
+        assertEquals(96, cache.getRejections());
+        int kept = 0;
+        for (long tx = 0; tx < 100; tx++) {
+            if (cache.find(tx) != null) kept++;
+        }
+        assertEquals(4, kept);
+        assertNotNull(cache.find(0), "the first transactions are still remembered");
+        assertNull(cache.find(99));
+
+        clock.advance(MINUTE);
+        assertNotNull(cache.record(99, 4, null), "expired slots are reused");
+        assertNotNull(cache.find(99));
+    }
+
+    @Test
+    @DisplayName("Colliding transactions share a neighbourhood instead of replacing each other")
+    void colliding_transactions_are_all_found() {
+        RecentTransactions cache = new RecentTransactions(64, MINUTE, new MutableClock(0));
+        for (long tx = 0; tx < 48; tx++) {
+            cache.record(tx, (int) tx, null);
+        }
+        assertEquals(0, cache.getRejections());
+        for (long tx = 0; tx < 48; tx++) {
+            assertEquals(tx, cache.find(tx).getProductId());
+        }
+    }
+
+    @Test
+    @DisplayName("A machine whose transaction cache is full refuses the purchase without charging")
+    void full_cache_refuses_purchase() {
+        VendingMachine vm = newMachine(new MutableClock(0));
+        vm.setRecentTransactions(new RecentTransactions(1, MINUTE, new MutableClock(0)));
+        vm.addCurrency(100);
+        assertNotNull(vm.request(1L, 4));
+
+        assertNull(vm.request(2L, 4));
+        assertEquals(40, vm.getBalance());
+        assertEquals(4, vm.getStock(4));
+    }
+
+    @Test
+    @DisplayName("Recording an already recorded transaction keeps the first outcome")
+    void record_keeps_first_outcome() {
+        RecentTransactions cache = new RecentTransactions(16, MINUTE, new MutableClock(0));
+        Product taco = new Taco(4, 60, "Taco");
+        RecentTransactions.Entry first = cache.record(5, 4, taco);
+        RecentTransactions.Entry second = cache.record(5, 4, null);
+
+        assertSame(first, second);
+        assertSame(taco, cache.find(5).getProduct());
+        assertThrows(IllegalArgumentException.class, () -> new RecentTransactions(0, MINUTE, new MutableClock(0)));
+    }
+}
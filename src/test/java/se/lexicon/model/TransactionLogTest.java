@@ -0,0 +1,167 @@
+package se.lexicon.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.products.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Void and refund unit tests")
+class TransactionLogTest {
+
+    private MutableClock clock;
+    private VendingMachine vm;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(1_000);
+        vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        ), 1);
+        vm.setTransactionLog(new TransactionLog(8, clock));
+    }
+
+    @Test
+    @DisplayName("Voiding a purchase of the current session restores balance and stock")
+    void void_restores_balance_and_stock() {
+        vm.addCurrency(100);
+        assertNotNull(vm.request(4));
+        long number = vm.getLastTransactionNumber();
+        assertEquals(40, vm.getBalance());
+        assertEquals(0, vm.getStock(4));
+
+        assertTrue(vm.voidPurchase(number));
+
+        assertEquals(100, vm.getBalance());
+        assertEquals(1, vm.getStock(4));
+        assertEquals(TransactionLog.Status.VOIDED, vm.getTransaction(number).getStatus());
+        assertFalse(vm.voidPurchase(number), "A purchase can only be voided once");
+        assertEquals(0, vm.refund(number));
+        assertEquals(100, vm.getBalance());
+    }
+
+    @Test
+    @DisplayName("A purchase returns its own transaction, even after later purchases")
+    void purchase_returns_its_transaction() {
+        vm.addCurrency(100);
+        TransactionLog.Transaction taco = vm.purchase(4);
+        assertNotNull(taco);
+        assertNotNull(vm.purchase(1));
+        assertNull(vm.purchase(4), "Sold out");
+
+        assertEquals(4, taco.getProductId());
+        assertEquals(60, taco.getPrice());
+        assertTrue(vm.voidPurchase(taco.getNumber()));
+        assertEquals(80, vm.getBalance());
+        assertEquals(1, vm.getStock(4));
+    }
+
+    @Test
+    @DisplayName("A purchase of an ended session is refunded in cash, not voided")
+    void refund_after_session_ended() {
+        vm.addCurrency(20);
+        vm.request(1);
+        long number = vm.getLastTransactionNumber();
+        vm.endSession();
+        vm.addCurrency(5);
+
+        assertFalse(vm.voidPurchase(number));
+        assertEquals(20, vm.refund(number));
+
+        assertEquals(5, vm.getBalance(), "The next customer's balance is not touched");
+        assertEquals(1, vm.getStock(1));
+        assertEquals(TransactionLog.Status.REFUNDED, vm.getTransaction(number).getStatus());
+        assertEquals(0, vm.refund(number), "A purchase can only be refunded once");
+    }
+
+    @Test
+    @DisplayName("Listeners hear about the reversal and the unit coming back")
+    void listeners_are_notified() {
+        List<String> calls = new ArrayList<>();
+        vm.addListener(new VendingMachineListener() {
+            @Override
+            public void onRestocked(int productId, int stock) {
+                calls.add("restocked " + productId + " " + stock);
+            }
+
+            @Override
+            public void onPurchaseReversed(long sessionId, TransactionLog.Transaction transaction) {
+                calls.add(transaction.toString());
+            }
+        });
+        vm.addCurrency(20);
+        vm.request(1);
+
+        vm.voidPurchase(vm.getLastTransactionNumber());
+
+        assertEquals(Arrays.asList("restocked 1 1", "#1 session 1, product 1, 20.0 SEK, VOIDED"), calls);
+    }
+
+    @Test
+    @DisplayName("The log keeps a fixed number of purchases and forgets older ones")
+    void log_has_fixed_size() {
+        vm.restock(1, 100);
+        for (int i = 0; i < 20; i++) {
+            vm.addCurrency(20);
+            vm.request(1);
+            clock.advance(1_000);
+        }
+
+        assertEquals(20, vm.getLastTransactionNumber());
+        assertNull(vm.getTransaction(12), "Overwritten by newer purchases");
+        assertEquals(0, vm.refund(12));
+        assertEquals(20, vm.refund(13));
+
+        List<TransactionLog.Transaction> recent = vm.getRecentTransactions(100);
+        assertEquals(8, recent.size());
+        assertEquals(20, recent.get(0).getNumber());
+        assertEquals(13, recent.get(7).getNumber());
+        assertEquals(20_000, recent.get(0).getTimeMillis());
+        assertEquals(2, vm.getRecentTransactions(2).size());
+    }
+
+    @Test
+    @DisplayName("Transactions of one session are found among other sessions")
+    void query_by_session() {
+        vm.restock(1, 10);
+        vm.restock(4, 10);
+        vm.addCurrency(20);
+        vm.request(1);
+        vm.endSession();
+        vm.addCurrency(100);
+        vm.request(1);
+        vm.request(4);
+        long session = vm.getSessionId();
+        vm.endSession();
+        vm.addCurrency(20);
+        vm.request(1);
+
+        List<TransactionLog.Transaction> found = vm.getSessionTransactions(session);
+
+        assertEquals(2, found.size());
+        assertEquals(2, found.get(0).getNumber());
+        assertEquals(4, found.get(1).getProductId());
+        assertEquals(60, found.get(1).getPrice());
+        assertTrue(vm.getSessionTransactions(99).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Failed purchases are not logged")
+    void failed_purchases_are_not_logged() {
+        vm.request(4);
+        vm.addCurrency(100);
+        vm.request(99);
+
+        assertEquals(0, vm.getLastTransactionNumber());
+        assertTrue(vm.getRecentTransactions(10).isEmpty());
+        assertFalse(vm.voidPurchase(1));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionLog(0, clock));
+    }
+}
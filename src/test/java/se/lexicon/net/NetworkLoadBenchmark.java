@@ -0,0 +1,97 @@
+package se.lexicon.net;
+
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback load test for {@link VendingServer}: throughput and per-request latency.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.net.NetworkLoadBenchmark [clients] [pipelineDepth] [seconds]}
+ * </p>
+ * <p>
+ * Every client repeatedly sends a batch of {@code pipelineDepth} requests (a typical purchase:
+ * add currency, describe, buy, end session) and then waits for all responses. Latency is measured
+ * from the batch flush to the arrival of each response.
+ * </p>
+ */
+public class NetworkLoadBenchmark {
+
+    private static final byte[] SCRIPT = {
+            VendingProtocol.OP_ADD_CURRENCY,
+            VendingProtocol.OP_GET_DESCRIPTION,
+            VendingProtocol.OP_REQUEST,
+            VendingProtocol.OP_END_SESSION
+    };
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        VendingMachine vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new CottonCandy(2, 50, "Cotton Candy", "Strawberry"),
+                new MintDrops(3, 30, "Mint Drops", 4),
+                new Taco(4, 60, "Taco")
+        ));
+
+        try (VendingServer server = new VendingServer(vm, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> threads = new ArrayList<>();
+            List<QuantileSketch> latencies = new ArrayList<>();
+            long[] counts = new long[clients];
+            for (int c = 0; c < clients; c++) {
+                QuantileSketch sketch = new QuantileSketch(0.01, 0.1, 10_000_000);
+                latencies.add(sketch);
+                int index = c;
+                Thread t = new Thread(() -> counts[index] = runClient(address, depth, deadline, sketch));
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) t.join();
+
+            QuantileSketch all = latencies.get(0);
+            for (int c = 1; c < clients; c++) all.merge(latencies.get(c));
+            long total = Arrays.stream(counts).sum();
+
+            System.out.printf("clients=%d depth=%d duration=%ds%n", clients, depth, seconds);
+            System.out.printf("throughput: %.0f requests/s%n", total / (double) seconds);
+            System.out.printf("latency us: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    all.quantile(0.5), all.quantile(0.9), all.quantile(0.99), all.quantile(0.999), all.getMax());
+        }
+    }
+
+    private static long runClient(InetSocketAddress address, int depth, long deadline, QuantileSketch latencyMicros) {
+        long requests = 0;
+        try (VendingClient client = new VendingClient(address)) {
+            while (System.nanoTime() < deadline) {
+                for (int i = 0; i < depth; i++) {
+                    byte op = SCRIPT[i % SCRIPT.length];
+                    client.send(op, op == VendingProtocol.OP_ADD_CURRENCY ? 20 : 1);
+                }
+                long sent = System.nanoTime();
+                client.flush();
+                for (int i = 0; i < depth; i++) {
+                    client.receive();
+                    latencyMicros.add((System.nanoTime() - sent) / 1_000.0);
+                }
+                requests += depth;
+            }
+        } catch (Exception e) {
+            System.out.println("Client failed: " + e);
+        }
+        return requests;
+    }
+}
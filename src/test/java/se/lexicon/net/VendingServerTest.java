@@ -0,0 +1,95 @@
+package se.lexicon.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("VendingServer loopback tests")
+class VendingServerTest {
+
+    private VendingServer server;
+    private VendingClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        VendingMachine vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new CottonCandy(2, 50, "Cotton Candy", "Strawberry"),
+                new MintDrops(3, 30, "Mint Drops", 4),
+                new Taco(4, 60, "Taco")
+        ));
+        server = new VendingServer(vm, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = new VendingClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Every operation round-trips over the network")
+    void operations_round_trip() throws IOException {
+        assertEquals(100.0, client.addCurrency(100));
+        assertEquals(4, client.request(4));
+        assertEquals(40.0, client.getBalance());
+        assertEquals(-1, client.request(2), "insufficient funds dispenses nothing");
+        assertTrue(client.getDescription(3).contains("Mint Drops"));
+        assertEquals(4, client.getProducts().length);
+        assertEquals(40.0, client.endSession());
+        assertEquals(0.0, client.getBalance());
+    }
+
+    @Test
+    @DisplayName("A retried purchase with the same transaction ID dispenses once")
+    void request_once_deduplicates() throws IOException {
+        client.addCurrency(100);
+        assertEquals(4, client.request(9001L, 4));
+        assertEquals(4, client.request(9001L, 4));
+        assertEquals(40.0, client.getBalance());
+    }
+
+    @Test
+    @DisplayName("Pipelined requests are answered in order")
+    void pipelined_requests() throws IOException {
+        int first = client.send(VendingProtocol.OP_ADD_CURRENCY, 50);
+        for (int i = 0; i < 998; i++) {
+            client.send(VendingProtocol.OP_GET_BALANCE, 0);
+        }
+        int last = client.send(VendingProtocol.OP_END_SESSION, 0);
+        client.flush();
+
+        VendingClient.Response response = client.receive();
+        assertEquals(first, response.getRequestId());
+        assertEquals(50.0, response.getPayload().getDouble());
+        for (int i = 0; i < 998; i++) {
+            assertEquals(50.0, client.receive().getPayload().getDouble());
+        }
+        response = client.receive();
+        assertEquals(last, response.getRequestId());
+        assertEquals(50.0, response.getPayload().getDouble());
+    }
+
+    @Test
+    @DisplayName("Unknown opcodes get an error response and the connection stays usable")
+    void unknown_opcode_is_error() throws IOException {
+        client.send((byte) 99, 0);
+        client.flush();
+        VendingClient.Response response = client.receive();
+        assertFalse(response.isOk());
+        assertTrue(response.getErrorMessage().contains("Unknown opcode"));
+        assertEquals(0.0, client.getBalance());
+    }
+}
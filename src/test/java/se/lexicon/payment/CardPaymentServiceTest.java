@@ -0,0 +1,253 @@
+package se.lexicon.payment;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CardPaymentService unit tests")
+class CardPaymentServiceTest {
+
+    private static VendingMachine newMachine() {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 60, "Taco")
+        );
+        return new VendingMachine(products);
+    }
+
+    /**
+     * Processor whose answers are handed out by the test, one future per authorize call.
+     */
+    private static class ScriptedProcessor implements PaymentProcessor {
+        final List<AuthorizationRequest> requests = new ArrayList<>();
+        final List<CompletableFuture<AuthorizationResult>> answers = new ArrayList<>();
+        final List<String> voided = new ArrayList<>();
+        final List<String> reversed = new ArrayList<>();
+        volatile boolean reversalConfirmed = true;
+
+        @Override
+        public synchronized CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request) {
+            requests.add(request);
+            CompletableFuture<AuthorizationResult> answer = new CompletableFuture<>();
+            answers.add(answer);
+            return answer;
+        }
+
+        @Override
+        public synchronized CompletableFuture<Boolean> voidAuthorization(String authorizationCode) {
+            voided.add(authorizationCode);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        @Override
+        public synchronized CompletableFuture<Boolean> reverse(String idempotencyKey) {
+            reversed.add(idempotencyKey);
+            return CompletableFuture.completedFuture(reversalConfirmed);
+        }
+
+        synchronized CompletableFuture<AuthorizationResult> answer(int attempt) {
+            return answers.get(attempt);
+        }
+
+        synchronized int attempts() {
+            return answers.size();
+        }
+    }
+
+    private static void awaitAttempts(ScriptedProcessor processor, int attempts) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (processor.attempts() < attempts && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(attempts, processor.attempts());
+    }
+
+    @Test
+    @DisplayName("Approved payment credits the session balance")
+    void approved_payment_credits_balance() throws Exception {
+        VendingMachine vm = newMachine();
+        try (SimulatedPaymentProcessor processor = new SimulatedPaymentProcessor(1, 0, 0, 0, 1);
+             CardPaymentService cards = new CardPaymentService(processor, 1_000, 3, 1)) {
+
+            CardPaymentResult result = cards.pay(vm, "tok_visa", 60).get(5, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.APPROVED, result.getStatus());
+            assertEquals(1, result.getAttempts());
+            assertEquals(60, vm.getBalance());
+            assertNotNull(vm.request(4));
+            assertEquals(1, processor.getChargeCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Declined payment is not retried and credits nothing")
+    void declined_payment_credits_nothing() throws Exception {
+        VendingMachine vm = newMachine();
+        try (SimulatedPaymentProcessor processor = new SimulatedPaymentProcessor(1, 1, 0, 0, 1);
+             CardPaymentService cards = new CardPaymentService(processor, 1_000, 3, 1)) {
+
+            CardPaymentResult result = cards.pay(vm, "tok_blocked", 60).get(5, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.DECLINED, result.getStatus());
+            assertEquals(1, processor.getAuthorizeCalls());
+            assertEquals(0, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Transient errors are retried with the same idempotency key")
+    void transient_error_is_retried_with_same_key() throws Exception {
+        VendingMachine vm = newMachine();
+        ScriptedProcessor processor = new ScriptedProcessor();
+        try (CardPaymentService cards = new CardPaymentService(processor, 1_000, 3, 1)) {
+            CompletableFuture<CardPaymentResult> pending = cards.pay(vm, "tok_visa", 20);
+
+            awaitAttempts(processor, 1);
+            processor.answer(0).complete(AuthorizationResult.transientError("busy"));
+            awaitAttempts(processor, 2);
+            processor.answer(1).complete(AuthorizationResult.approved("A1"));
+
+            CardPaymentResult result = pending.get(5, TimeUnit.SECONDS);
+            assertEquals(CardPaymentResult.Status.APPROVED, result.getStatus());
+            assertEquals(2, result.getAttempts());
+            assertEquals(processor.requests.get(0).getIdempotencyKey(), processor.requests.get(1).getIdempotencyKey());
+            assertEquals(20, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("A lost response is retried after the timeout without charging the card twice")
+    void lost_response_does_not_double_charge() throws Exception {
+        VendingMachine vm = newMachine();
+        // Half of the responses are lost; retries reuse the key and get the stored outcome
+        try (SimulatedPaymentProcessor processor = new SimulatedPaymentProcessor(0, 0, 0, 0.5, 7);
+             CardPaymentService cards = new CardPaymentService(processor, 50, 20, 1)) {
+
+            CardPaymentResult result = cards.pay(vm, "tok_visa", 20).get(10, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.APPROVED, result.getStatus());
+            assertEquals(1, processor.getChargeCount());
+            assertEquals(20, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Paying again with the same idempotency key returns the original outcome and credits once")
+    void repeated_key_credits_once() throws Exception {
+        VendingMachine vm = newMachine();
+        try (SimulatedPaymentProcessor processor = new SimulatedPaymentProcessor(1, 0, 0, 0, 1);
+             CardPaymentService cards = new CardPaymentService(processor, 1_000, 3, 1)) {
+            AuthorizationRequest request = new AuthorizationRequest("terminal-7-0042", "tok_visa", 50);
+
+            CompletableFuture<CardPaymentResult> first = cards.pay(vm, vm.getSessionId(), request);
+            CompletableFuture<CardPaymentResult> second = cards.pay(vm, vm.getSessionId(), request);
+            first.get(5, TimeUnit.SECONDS);
+            CardPaymentResult late = cards.pay(vm, vm.getSessionId(), request).get(5, TimeUnit.SECONDS);
+
+            assertSame(first, second);
+            assertEquals(CardPaymentResult.Status.APPROVED, late.getStatus());
+            assertEquals(1, processor.getChargeCount());
+            assertEquals(50, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Payment fails after the last timed-out attempt, once it has been reversed")
+    void payment_fails_after_all_attempts_time_out() throws Exception {
+        VendingMachine vm = newMachine();
+        ScriptedProcessor processor = new ScriptedProcessor();
+        try (CardPaymentService cards = new CardPaymentService(processor, 20, 3, 1)) {
+            CardPaymentResult result = cards.pay(vm, "tok_visa", 20).get(5, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.FAILED, result.getStatus());
+            assertEquals(3, result.getAttempts());
+            assertEquals(3, processor.attempts());
+            assertEquals(Arrays.asList(result.getIdempotencyKey()), processor.reversed);
+            assertEquals(0, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Payment is reported as unknown when the reversal is not confirmed")
+    void unconfirmed_reversal_is_unknown() throws Exception {
+        VendingMachine vm = newMachine();
+        ScriptedProcessor processor = new ScriptedProcessor();
+        processor.reversalConfirmed = false;
+        try (CardPaymentService cards = new CardPaymentService(processor, 20, 2, 1)) {
+            CardPaymentResult result = cards.pay(vm, "tok_visa", 20).get(5, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.UNKNOWN, result.getStatus());
+            assertEquals(0, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("A charge whose every response was lost is reversed, not kept")
+    void charge_with_lost_responses_is_reversed() throws Exception {
+        VendingMachine vm = newMachine();
+        try (SimulatedPaymentProcessor processor = new SimulatedPaymentProcessor(0, 0, 0, 1, 3);
+             CardPaymentService cards = new CardPaymentService(processor, 20, 3, 1)) {
+
+            CardPaymentResult result = cards.pay(vm, "tok_visa", 20).get(5, TimeUnit.SECONDS);
+
+            assertEquals(CardPaymentResult.Status.FAILED, result.getStatus());
+            assertEquals(1, processor.getChargeCount());
+            assertEquals(1, processor.getReversalCount());
+            assertEquals(0, vm.getBalance());
+        }
+    }
+
+    @Test
+    @DisplayName("Approval arriving after the session ended is voided, not credited to the next customer")
+    void late_approval_is_voided() throws Exception {
+        VendingMachine vm = newMachine();
+        ScriptedProcessor processor = new ScriptedProcessor();
+        try (CardPaymentService cards = new CardPaymentService(processor, 1_000, 1, 1)) {
+            CompletableFuture<CardPaymentResult> pending = cards.pay(vm, "tok_visa", 60);
+            awaitAttempts(processor, 1);
+
+            vm.endSession();
+            processor.answer(0).complete(AuthorizationResult.approved("A1"));
+
+            CardPaymentResult result = pending.get(5, TimeUnit.SECONDS);
+            assertEquals(CardPaymentResult.Status.SESSION_ENDED, result.getStatus());
+            assertEquals(0, vm.getBalance());
+            assertEquals(Arrays.asList("A1"), processor.voided);
+        }
+    }
+
+    @Test
+    @DisplayName("Coins are accepted while a card authorization is pending")
+    void pending_authorization_does_not_block_machine() throws Exception {
+        VendingMachine vm = newMachine();
+        ScriptedProcessor processor = new ScriptedProcessor();
+        try (CardPaymentService cards = new CardPaymentService(processor, 5_000, 1, 1)) {
+            CompletableFuture<CardPaymentResult> pending = cards.pay(vm, "tok_visa", 50);
+
+            vm.addCurrency(20);
+            assertNotNull(vm.request(1));
+            assertFalse(pending.isDone());
+
+            processor.answer(0).complete(AuthorizationResult.approved("A1"));
+            assertEquals(CardPaymentResult.Status.APPROVED, pending.get(5, TimeUnit.SECONDS).getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Non-positive card amounts are rejected")
+    void invalid_amount_throws() {
+        VendingMachine vm = newMachine();
+        assertThrows(IllegalArgumentException.class, () -> vm.creditCardPayment(vm.getSessionId(), 0));
+        assertFalse(vm.creditCardPayment(vm.getSessionId() + 1, 10));
+    }
+}
@@ -0,0 +1,133 @@
+package se.lexicon.pricing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DynamicPricing unit tests")
+class DynamicPricingTest {
+
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long HOUR = 3_600_000L;
+
+    private final List<Product> catalog = Arrays.asList(
+            new Snickers(1, 20, "Snickers", Size.LARGE),
+            new MintDrops(2, 30, "Mint Drops", 5),
+            new Taco(3, 60, "Taco", true),
+            new CottonCandy(4, 50, "Cotton Candy", "Strawberry")
+    );
+
+    @Test
+    @DisplayName("TimeSlots maps instants to slots and boundaries")
+    void timeSlots_boundaries() {
+        TimeSlots hourly = new TimeSlots(60, UTC);
+        assertEquals(24, hourly.getSlotCount());
+        assertEquals(8, hourly.slotOf(8 * HOUR + 123));
+        assertEquals(8 * HOUR, hourly.slotStart(8 * HOUR + 123));
+        assertEquals(9 * HOUR, hourly.slotEnd(8 * HOUR + 123));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSlots(7, UTC));
+    }
+
+    @Test
+    @DisplayName("Attribute factors, surcharges and overrides are applied per slot")
+    void precomputed_prices_apply_rules() {
+        TimeSlots hourly = new TimeSlots(60, UTC);
+        PricingRules rules = new PricingRules(hourly.getSlotCount());
+        rules.setSlotFactor(8, 1.5);
+        rules.setSizeFactor(Size.LARGE, 1.1);
+        rules.setCoolingFactor(CoolingLevel.EXTREME, 2.0);
+        rules.setSpicySurcharge(5);
+        rules.setOverride(4, 8, 9.99);
+
+        DynamicPricing pricing = new DynamicPricing(catalog, rules, hourly, new MutableClock(0));
+
+        assertEquals(22.0, pricing.priceAt(0, 0));
+        assertEquals(33.0, pricing.priceAt(0, 8));
+        assertEquals(60.0, pricing.priceAt(1, 0));
+        assertEquals(65.0, pricing.priceAt(2, 0));
+        assertEquals(95.0, pricing.priceAt(2, 8));
+        assertEquals(50.0, pricing.priceAt(3, 0));
+        assertEquals(9.99, pricing.priceAt(3, 8));
+    }
+
+    @Test
+    @DisplayName("Crossing a slot boundary switches the active table")
+    void slot_boundary_switches_table() {
+        TimeSlots hourly = new TimeSlots(60, UTC);
+        PricingRules rules = new PricingRules(hourly.getSlotCount());
+        rules.setSlotFactor(9, 2.0);
+        MutableClock clock = new MutableClock(9 * HOUR - 1);
+        DynamicPricing pricing = new DynamicPricing(catalog, rules, hourly, clock);
+
+        assertEquals(8, pricing.currentSlot());
+        assertEquals(50.0, pricing.priceAt(3));
+
+        clock.set(9 * HOUR);
+        assertEquals(9, pricing.currentSlot());
+        assertEquals(100.0, pricing.priceAt(3));
+    }
+
+    @Test
+    @DisplayName("reload swaps in new rules without touching the products")
+    void reload_swaps_rules() {
+        TimeSlots hourly = new TimeSlots(60, UTC);
+        DynamicPricing pricing = new DynamicPricing(catalog, new PricingRules(24), hourly, new MutableClock(0));
+
+        PricingRules discount = new PricingRules(24);
+        discount.setSlotFactor(0, 0.5);
+        pricing.reload(discount);
+
+        assertEquals(25.0, pricing.priceAt(3));
+        assertEquals(50.0, catalog.get(3).getPrice(), "product objects must not be mutated");
+        assertThrows(IllegalArgumentException.class, () -> pricing.reload(new PricingRules(12)));
+    }
+
+    @Test
+    @DisplayName("VendingMachine charges the table price when pricing is attached")
+    void vendingMachine_uses_table_price() {
+        VendingMachine vm = new VendingMachine(catalog);
+        PricingRules rules = new PricingRules(24);
+        rules.setSlotFactor(0, 0.5);
+        vm.setPricing(new DynamicPricing(catalog, rules, new TimeSlots(60, UTC), new MutableClock(0)));
+
+        assertEquals(25.0, vm.getCurrentPrice(4));
+        vm.addCurrency(50);
+        assertNotNull(vm.request(4));
+        assertEquals(25.0, vm.getBalance());
+
+        List<Product> other = Arrays.asList(catalog.get(0));
+        assertThrows(IllegalArgumentException.class, () ->
+                vm.setPricing(new DynamicPricing(other, new PricingRules(24), new TimeSlots(60, UTC), new MutableClock(0))));
+    }
+
+    @Test
+    @DisplayName("Descriptions, listings and catalog views show the table price that is charged")
+    void vendingMachine_shows_table_price() {
+        VendingMachine vm = new VendingMachine(catalog);
+        PricingRules rules = new PricingRules(24);
+        rules.setSlotFactor(0, 0.5);
+        vm.setPricing(new DynamicPricing(catalog, rules, new TimeSlots(60, UTC), new MutableClock(0)));
+
+        assertTrue(vm.getDescription(4).contains("25.0 SEK"), vm.getDescription(4));
+        assertTrue(vm.getProducts()[3].contains("25.0 SEK"), vm.getProducts()[3]);
+        assertTrue(vm.browseProducts(null, 10, null).getItems().get(3).toString().contains("25.0 SEK"));
+        assertFalse(vm.getDescription(4).contains("50.0"));
+
+        // Each product keeps its own price format, e.g. two decimals for a taco
+        String taco = String.format(Locale.US, "%.2f SEK", vm.getCurrentPrice(3));
+        assertTrue(vm.getDescription(3).contains(taco), vm.getDescription(3));
+        assertTrue(vm.getProducts()[2].contains(taco), vm.getProducts()[2]);
+        assertEquals("Taco is spicy and costs 60.00 SEK.", new VendingMachine(catalog).getDescription(3));
+    }
+}
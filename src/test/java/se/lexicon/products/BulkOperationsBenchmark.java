@@ -0,0 +1,101 @@
+package se.lexicon.products;
+
+import se.lexicon.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares bulk jobs on {@link Product} objects with the same jobs on a {@link PackedCatalog}:
+ * reprice all products by a percentage, sum the inventory value, and list the cheap snacks.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.products.BulkOperationsBenchmark}
+ * Optional argument: number of products (default 1 000 000).
+ * </p>
+ */
+public class BulkOperationsBenchmark {
+
+    private static final int ROUNDS = 15;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Product> products = mixedCatalog(count);
+        int[] quantities = new int[count];
+        Random random = new Random(3);
+        for (int i = 0; i < count; i++) quantities[i] = random.nextInt(20);
+        PackedCatalog packed = PackedCatalog.of(products, quantities);
+        int cheapSnacks = ProductType.mask(ProductType.SNICKERS, ProductType.MINT_DROPS);
+
+        System.out.println("Products: " + count + " (mixed types, shuffled)");
+        double sink = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean report = round == ROUNDS;
+
+            long t0 = System.nanoTime();
+            for (Product p : products) p.setPrice(p.getPrice() * 1.01);
+            long t1 = System.nanoTime();
+            packed.repriceByPercent(1);
+            long t2 = System.nanoTime();
+
+            double objectValue = 0;
+            for (int i = 0; i < count; i++) objectValue += products.get(i).getPrice() * quantities[i];
+            long t3 = System.nanoTime();
+            double packedValue = packed.inventoryValue();
+            long t4 = System.nanoTime();
+
+            StringBuilder objectOut = new StringBuilder();
+            for (Product p : products) {
+                if ((p instanceof Snickers || p instanceof MintDrops) && p.getPrice() <= 25) {
+                    objectOut.append(p).append('\n');
+                }
+            }
+            long t5 = System.nanoTime();
+            StringBuilder packedOut = new StringBuilder();
+            packed.render(cheapSnacks, 25, packedOut);
+            long t6 = System.nanoTime();
+
+            sink += objectValue + packedValue + objectOut.length() + packedOut.length();
+            if (report) {
+                print("reprice", t1 - t0, t2 - t1);
+                print("inventory value", t3 - t2, t4 - t3);
+                print("filtered listing", t5 - t4, t6 - t5);
+                System.out.println("listings identical: " + objectOut.toString().equals(packedOut.toString()));
+            }
+        }
+        System.out.println("(checksum " + (long) sink + ")");
+    }
+
+    private static void print(String job, long objectNanos, long packedNanos) {
+        System.out.printf("%-17s objects=%8.2f ms  packed=%8.2f ms  speedup=%5.1fx%n",
+                job, objectNanos / 1e6, packedNanos / 1e6, objectNanos / (double) packedNanos);
+    }
+
+    private static List<Product> mixedCatalog(int count) {
+        Random random = new Random(42);
+        String[] flavors = {"Strawberry", "Blueberry", "Vanilla"};
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double price = 10 + random.nextInt(50);
+            switch (i % 4) {
+                case 0:
+                    products.add(new Snickers(i, price, "Snickers", Size.values()[random.nextInt(4)]));
+                    break;
+                case 1:
+                    products.add(new Taco(i, price, "Taco", random.nextBoolean()));
+                    break;
+                case 2:
+                    products.add(new CottonCandy(i, price, "Cotton Candy", flavors[random.nextInt(3)]));
+                    break;
+                default:
+                    products.add(new MintDrops(i, price, "Mint Drops", 1 + random.nextInt(5)));
+                    break;
+            }
+        }
+        // Scatter the objects' order so neighbours in the list are not neighbours on the heap
+        Collections.shuffle(products, random);
+        return products;
+    }
+}
@@ -0,0 +1,106 @@
+package se.lexicon.products;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.Product;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PackedCatalog unit tests")
+class PackedCatalogTest {
+
+    private static List<Product> products() {
+        return Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(2, 60, "Taco", true),
+                new CottonCandy(3, 30, "Cotton Candy", "Strawberry"),
+                new MintDrops(4, 15, "Mint Drops", 3),
+                new Taco(5, 55.5, "Veggie Taco"),
+                new Snickers(6, 12.5, "Snickers", Size.SMALL)
+        );
+    }
+
+    @Test
+    @DisplayName("Rendered lines are identical to the products' toString()")
+    void render_matches_toString() {
+        List<Product> products = products();
+        PackedCatalog packed = PackedCatalog.of(products);
+
+        StringBuilder out = new StringBuilder();
+        assertEquals(products.size(), packed.render(ProductType.ALL, Double.MAX_VALUE, out));
+
+        StringBuilder expected = new StringBuilder();
+        for (Product p : products) expected.append(p).append('\n');
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    @DisplayName("Rendering filters by type and maximum price")
+    void render_filters() {
+        List<Product> products = products();
+        PackedCatalog packed = PackedCatalog.of(products);
+
+        StringBuilder out = new StringBuilder();
+        int count = packed.render(ProductType.mask(ProductType.SNICKERS, ProductType.TACO), 56, out);
+
+        assertEquals(3, count);
+        assertEquals(products.get(0) + "\n" + products.get(4) + "\n" + products.get(5) + "\n", out.toString());
+    }
+
+    @Test
+    @DisplayName("Repricing by type changes only those types and can be written back")
+    void reprice_by_type_and_apply() {
+        List<Product> products = products();
+        PackedCatalog packed = PackedCatalog.of(products);
+
+        packed.repriceByPercent(ProductType.mask(ProductType.TACO), 10);
+        packed.repriceByPercent(-50);
+        packed.applyTo(products);
+
+        assertEquals(33, products.get(1).getPrice(), 1e-9);
+        assertEquals(10, products.get(0).getPrice(), 1e-9);
+        assertEquals(15, products.get(2).getPrice(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> packed.repriceByPercent(-100));
+        assertThrows(IllegalArgumentException.class, () -> packed.applyTo(products.subList(0, 2)));
+    }
+
+    @Test
+    @DisplayName("Repriced prices are rounded to whole öre")
+    void reprice_rounds_to_ore() {
+        List<Product> products = Arrays.asList(new Snickers(1, 12, "Snickers", Size.SMALL), new Taco(2, 0.01, "Taco"));
+        PackedCatalog packed = PackedCatalog.of(products);
+
+        packed.repriceByPercent(5);
+        packed.repriceByPercent(ProductType.mask(ProductType.TACO), -90);
+        packed.applyTo(products);
+
+        assertEquals(12.6, products.get(0).getPrice());
+        assertEquals("ID: 1, Product: Snickers, Name: \"Snickers\", Size: small, Price: 12.6 SEK", products.get(0).toString());
+        assertEquals(0.01, products.get(1).getPrice(), "never below one öre");
+    }
+
+    @Test
+    @DisplayName("Inventory value sums price times quantity, optionally per type")
+    void inventory_value() {
+        List<Product> products = products();
+        PackedCatalog packed = PackedCatalog.of(products, new int[]{10, 2, 0, 4, 1, 3});
+
+        double expected = 20 * 10 + 60 * 2 + 15 * 4 + 55.5 + 12.5 * 3;
+        assertEquals(expected, packed.inventoryValue(), 1e-9);
+        assertEquals(60 * 2 + 55.5, packed.inventoryValue(ProductType.mask(ProductType.TACO)), 1e-9);
+        assertEquals(ProductType.TACO, packed.getType(1));
+    }
+
+    @Test
+    @DisplayName("Two-decimal formatting matches String.format")
+    void two_decimals() {
+        for (double v : new double[]{0, 0.5, 1.25, 12.5, 60, 99.999, 1234.56}) {
+            StringBuilder out = new StringBuilder();
+            PackedCatalog.appendTwoDecimals(out, v);
+            assertEquals(String.format(java.util.Locale.US, "%.2f", v), out.toString());
+        }
+    }
+}
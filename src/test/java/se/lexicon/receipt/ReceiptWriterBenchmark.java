@@ -0,0 +1,120 @@
+package se.lexicon.receipt;
+
+import se.lexicon.model.Product;
+import se.lexicon.products.Taco;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Measures the receipt writer: the cost of a receipt on the purchasing thread at a steady
+ * 100 000 receipts per second, the highest rate it sustains, and, for comparison, writing
+ * every receipt synchronously.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.receipt.ReceiptWriterBenchmark}
+ * Optional arguments: target rate per second (default 100 000) and seconds (default 3).
+ * </p>
+ */
+public class ReceiptWriterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Product taco = new Taco(4, 62.5, "Taco");
+        Path dir = Files.createTempDirectory("receipts");
+        try {
+            // Warm up the formatting and write paths
+            try (ReceiptWriter warmup = new ReceiptWriter(dir.resolve("warmup"), 100, 64 << 20, 3600_000L, Clock.systemUTC())) {
+                for (int i = 0; i < 500_000; i++) warmup.onPurchase(i, taco, 62.5);
+            }
+
+            paced(dir.resolve("paced"), taco, rate, seconds);
+            flatOut(dir.resolve("max"), taco, 2_000_000);
+            synchronous(dir.resolve("sync"), taco, 200_000, false);
+            synchronous(dir.resolve("sync-force"), taco, 500, true);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Receipts at a fixed rate, as a busy fleet gateway would produce them. */
+    private static void paced(Path dir, Product product, int rate, int seconds) throws IOException {
+        QuantileSketch latency = new QuantileSketch(0.01, 1, 1e9);
+        long total = (long) rate * seconds;
+        long interval = 1_000_000_000L / rate;
+        long maxLag = 0;
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 100, 64 << 20, 3600_000L, Clock.systemUTC())) {
+            long start = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                long due = start + i * interval;
+                while (System.nanoTime() < due) {
+                    if (due - System.nanoTime() > 100_000) LockSupport.parkNanos(50_000);
+                }
+                long t0 = System.nanoTime();
+                receipts.onPurchase(i, product, 62.5);
+                latency.add(System.nanoTime() - t0);
+                if ((i & 0xFFFF) == 0) maxLag = Math.max(maxLag, i + 1 - receipts.getDurableNumber());
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("paced   %,d receipts in %.2f s (%,.0f/s), stalls=%d%n",
+                    total, elapsed, total / elapsed, receipts.getStalls());
+            System.out.printf("        per receipt: p50=%.0f ns p99=%.0f ns p99.9=%.0f ns max=%.0f ns%n",
+                    latency.quantile(0.5), latency.quantile(0.99), latency.quantile(0.999), latency.getMax());
+            System.out.printf("        receipts not yet durable, worst sample: %,d (flush interval 100 ms)%n", maxLag);
+        }
+    }
+
+    /** As many receipts as one thread can produce. */
+    private static void flatOut(Path dir, Product product, int count) throws IOException {
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 100, 64 << 20, 3600_000L, Clock.systemUTC())) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                receipts.onPurchase(i, product, 62.5);
+            }
+            receipts.flush();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("max     %,d receipts durable in %.2f s (%,.0f/s), stalls=%d%n",
+                    count, elapsed, count / elapsed, receipts.getStalls());
+        }
+    }
+
+    /** One write call, and optionally one force, per receipt on the purchasing thread. */
+    private static void synchronous(Path dir, Product product, int count, boolean force) throws IOException {
+        Files.createDirectories(dir);
+        ByteBuffer line = ByteBuffer.allocateDirect(512);
+        try (FileChannel channel = FileChannel.open(dir.resolve("receipts.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                line.clear();
+                ReceiptWriter.putLong(line, i);
+                line.put((byte) '\t');
+                ReceiptWriter.putName(line, product.getProductName());
+                line.put((byte) '\t');
+                ReceiptWriter.putAmount(line, 62.5);
+                line.put((byte) '\n');
+                line.flip();
+                channel.write(line);
+                if (force) channel.force(false);
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-7s %,d receipts in %.2f s (%,.0f/s), %.1f us per receipt%n",
+                    force ? "fsync" : "write", count, elapsed, count / elapsed, elapsed * 1e6 / count);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package se.lexicon.receipt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.lexicon.MutableClock;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ReceiptWriter unit tests")
+class ReceiptWriterTest {
+
+    private static final long HOUR = 3600_000L;
+
+    @TempDir
+    Path dir;
+
+    private MutableClock clock;
+    private VendingMachine vm;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(1_700_000_000_000L);
+        vm = new VendingMachine(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, 62.5, "Taco")
+        ), 10);
+    }
+
+    @Test
+    @DisplayName("Sales, voids, refunds and ended sessions each get a receipt line")
+    void every_event_gets_a_line() throws IOException {
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 10_000, 1 << 20, HOUR, clock)) {
+            vm.addListener(receipts);
+            vm.addCurrency(100);
+            vm.request(4);
+            vm.request(1);
+            vm.voidPurchase(vm.getLastTransactionNumber());
+            clock.advance(5);
+            vm.endSession();
+            vm.refund(1);
+            receipts.flush();
+
+            assertEquals(5, receipts.getDurableNumber());
+            assertEquals(Arrays.asList(
+                    "1\t1700000000000\tSALE\t1\t4\tTaco\t62.50",
+                    "2\t1700000000000\tSALE\t1\t1\tSnickers\t20.00",
+                    "3\t1700000000000\tVOID\t1\t1\t\t-20.00",
+                    "4\t1700000000005\tEND\t1\t\t\t37.50",
+                    "5\t1700000000005\tREFUND\t1\t4\t\t-62.50"), readAll());
+        }
+    }
+
+    @Test
+    @DisplayName("Receipts become durable within the flush interval without an explicit flush")
+    void flush_interval_makes_receipts_durable() throws Exception {
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 20, 1 << 20, HOUR, clock)) {
+            vm.addListener(receipts);
+            vm.addCurrency(20);
+            vm.request(1);
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (receipts.getDurableNumber() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, receipts.getDurableNumber());
+            assertEquals(1, readAll().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Files rotate by size and keep whole lines with gap-free numbers")
+    void files_rotate_by_size() throws IOException {
+        vm.restock(1, 100_000);
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 10_000, ReceiptWriter.BUFFER_SIZE, HOUR, clock)) {
+            vm.addListener(receipts);
+            for (int i = 0; i < 10_000; i++) {
+                vm.addCurrency(20);
+                vm.request(1);
+            }
+            receipts.flush();
+            assertEquals(0, receipts.getDroppedCount());
+            assertTrue(receipts.getFilesCreated() > 1, "Expected several files, got " + receipts.getFilesCreated());
+        }
+
+        List<String> lines = readAll();
+        assertEquals(10_000, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String[] columns = lines.get(i).split("\t");
+            assertEquals(7, columns.length, lines.get(i));
+            assertEquals(i + 1, Long.parseLong(columns[0]));
+        }
+        for (Path file : files()) {
+            assertTrue(Files.size(file) <= ReceiptWriter.BUFFER_SIZE, file + " is too large");
+        }
+    }
+
+    @Test
+    @DisplayName("A new file is started once the current one is older than the rotation interval")
+    void files_rotate_by_time() throws IOException {
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 10_000, 1 << 20, HOUR, clock)) {
+            vm.addListener(receipts);
+            vm.endSession();
+            receipts.flush();
+            clock.advance(HOUR - 1);
+            vm.endSession();
+            receipts.flush();
+            assertEquals(1, files().size());
+
+            clock.advance(1);
+            vm.endSession();
+            receipts.flush();
+
+            assertEquals(2, files().size());
+            assertEquals(3, readAll().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Names and amounts are formatted without losing the column layout")
+    void formatting() {
+        ByteBuffer out = ByteBuffer.allocate(64);
+        ReceiptWriter.putName(out, "Kål\tsoppa\n");
+        out.put((byte) '|');
+        ReceiptWriter.putAmount(out, 1234.005);
+        out.put((byte) '|');
+        ReceiptWriter.putAmount(out, -0.5);
+        out.put((byte) '|');
+        ReceiptWriter.putLong(out, Long.MAX_VALUE);
+
+        assertEquals("Kål soppa |1234.01|-0.50|9223372036854775807",
+                new String(out.array(), 0, out.position(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Receipts after close are counted as dropped")
+    void closed_writer_drops_receipts() throws IOException {
+        ReceiptWriter receipts = new ReceiptWriter(dir, 10_000, 1 << 20, HOUR, clock);
+        vm.addListener(receipts);
+        vm.endSession();
+        receipts.close();
+
+        vm.endSession();
+
+        assertEquals(1, receipts.getDroppedCount());
+        assertEquals(1, readAll().size());
+        assertThrows(IllegalArgumentException.class, () -> new ReceiptWriter(dir, 0, 1 << 20, HOUR, clock));
+    }
+
+    @Test
+    @DisplayName("A writer that can not write drops receipts instead of blocking purchases")
+    void failed_writer_does_not_block_the_machine() throws IOException {
+        Path target = dir.resolve("receipts");
+        ReceiptWriter receipts = new ReceiptWriter(target, 10_000, 1 << 20, HOUR, clock);
+        vm.addListener(receipts);
+        // Replace the directory with a file, so no receipt file can be opened
+        Files.delete(target);
+        Files.createFile(target);
+        vm.endSession();
+        assertThrows(IOException.class, receipts::flush);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            vm.endSession();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(10_000, receipts.getDroppedCount());
+        assertEquals(10_001, receipts.getReceiptCount(), "dropped receipts are numbered too");
+        assertTrue(millis < 5_000, "took " + millis + " ms");
+        assertThrows(IOException.class, receipts::close);
+    }
+
+    @Test
+    @DisplayName("Receipts dropped while the disk is behind keep their numbers and are listed in a DROPPED line")
+    void dropped_receipts_are_listed() throws Exception {
+        CountDownLatch disk = new CountDownLatch(1);
+        // The background thread reads the clock before every write; holding it there stalls the disk
+        Clock stalling = new Clock() {
+            @Override
+            public long millis() {
+                if (Thread.currentThread().getName().equals("receipt-writer")) {
+                    try {
+                        disk.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return clock.millis();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis());
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        try (ReceiptWriter receipts = new ReceiptWriter(dir, 10_000, 1 << 20, HOUR, stalling)) {
+            vm.addListener(receipts);
+            while (receipts.getDroppedCount() < 2) {
+                vm.endSession();
+            }
+            long lastDropped = receipts.getReceiptCount();
+            disk.countDown();
+            receipts.flush();
+            vm.endSession();
+            receipts.flush();
+
+            List<String> lines = readAll();
+            int n = lines.size();
+            assertEquals(lastDropped, n, "every receipt before the drop, the DROPPED line and the one after");
+            assertTrue(lines.get(n - 3).startsWith(lastDropped - 2 + "\t"));
+            assertEquals(lastDropped - 1 + ".." + lastDropped + "\t" + clock.millis() + "\tDROPPED", lines.get(n - 2));
+            assertTrue(lines.get(n - 1).startsWith(lastDropped + 1 + "\t"));
+            assertEquals(lastDropped + 1, receipts.getDurableNumber());
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<String> readAll() throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<Path> files = files();
+        // Same-second file names differ in their counter; order by it
+        files.sort((a, b) -> Integer.compare(counter(a), counter(b)));
+        for (Path file : files) {
+            lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static int counter(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - ".log".length()));
+    }
+}
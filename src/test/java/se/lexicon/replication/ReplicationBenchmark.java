@@ -0,0 +1,83 @@
+package se.lexicon.replication;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+import se.lexicon.sketch.QuantileSketch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long a station's replicas take to converge on catalog changes made on the primary,
+ * and how large the deltas are compared with a full catalog.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.replication.ReplicationBenchmark}
+ * Optional arguments: number of replicas (default 8), number of products (default 2 000),
+ * changes per delta (default 5).
+ * </p>
+ */
+public class ReplicationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int replicas = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int changes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0: products.add(new Snickers(i, 20, "Snickers", Size.MEDIUM)); break;
+                case 1: products.add(new Taco(i, 60, "Taco", i % 3 == 0)); break;
+                case 2: products.add(new CottonCandy(i, 30, "Cotton Candy", "Vanilla")); break;
+                default: products.add(new MintDrops(i, 15, "Mint Drops", 2)); break;
+            }
+        }
+        VendingMachine primary = new VendingMachine(products, 10);
+        Random random = new Random(42);
+
+        for (int round = 0; round < 5; round++) {
+            try (LoopbackTransport transport = new LoopbackTransport(true)) {
+                CatalogPublisher publisher = new CatalogPublisher(primary, transport);
+                List<CatalogReplica> connected = new ArrayList<>();
+                for (int r = 0; r < replicas; r++) {
+                    CatalogReplica replica = new CatalogReplica(new VendingMachine(new ArrayList<>()), 10, publisher::fullSync);
+                    transport.connect(replica);
+                    connected.add(replica);
+                }
+                // Initial sync, then deltas at a steady pace; one replica misses a delta now and then
+                publisher.publish();
+                transport.awaitConvergence(10_000);
+                long initialBytes = publisher.getBytesSent();
+                int fullSize = publisher.fullSync().remaining();
+
+                int deltas = 2_000;
+                for (int d = 0; d < deltas; d++) {
+                    for (int c = 0; c < changes; c++) {
+                        primary.setPrice(random.nextInt(count), 10 + random.nextInt(9000) / 100.0);
+                    }
+                    if (d % 500 == 250) transport.drop(connected.get(d % replicas), 1);
+                    publisher.publish();
+                    Thread.sleep(0, 200_000);
+                }
+                transport.awaitConvergence(10_000);
+
+                QuantileSketch convergence = transport.getConvergence();
+                long resyncs = 0;
+                long applyNanos = 0;
+                for (CatalogReplica replica : connected) {
+                    resyncs += replica.getResyncs();
+                    applyNanos += replica.getApplyNanos();
+                }
+                double deltaBytes = (publisher.getBytesSent() - initialBytes) / (double) deltas;
+                System.out.printf("replicas=%d  products=%d  full=%d bytes  delta=%.1f bytes (%d changes)  "
+                                + "converge p50=%.0f us p99=%.0f us max=%.0f us  apply=%.1f us/msg  resyncs=%d%n",
+                        replicas, count, fullSize, deltaBytes, changes,
+                        convergence.quantile(0.50) / 1e3, convergence.quantile(0.99) / 1e3, convergence.getMax() / 1e3,
+                        applyNanos / 1e3 / replicas / (deltas + 1), resyncs);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package se.lexicon.replication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.MutableClock;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.model.VendingMachineListener;
+import se.lexicon.pricing.DynamicPricing;
+import se.lexicon.pricing.PricingRules;
+import se.lexicon.pricing.TimeSlots;
+import se.lexicon.products.CoolingLevel;
+import se.lexicon.products.CottonCandy;
+import se.lexicon.products.MintDrops;
+import se.lexicon.products.Size;
+import se.lexicon.products.Snickers;
+import se.lexicon.products.Taco;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Catalog replication unit tests")
+class ReplicationTest {
+
+    private VendingMachine primary;
+    private VendingMachine secondary;
+    private LoopbackTransport transport;
+    private CatalogPublisher publisher;
+    private CatalogReplica replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new VendingMachine(new ArrayList<>(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new Taco(4, 60, "Taco", true),
+                new CottonCandy(7, 30, "Cotton Candy", "Vanilla"),
+                new MintDrops(9, 15, "Mint Drops", 2))));
+        secondary = new VendingMachine(new ArrayList<>(), 3);
+        // Deliver on the calling thread, so every delta has been applied when publish returns
+        transport = new LoopbackTransport(false);
+        publisher = new CatalogPublisher(primary, transport);
+        replica = new CatalogReplica(secondary, 3, publisher::fullSync);
+        transport.connect(replica);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+    }
+
+    @Test
+    @DisplayName("The first delta copies the whole catalog to an empty machine")
+    void first_publish_copies_catalog() {
+        assertEquals(1, publisher.publish());
+
+        assertEquals(1, replica.getVersion());
+        assertCatalogsEqual();
+        assertEquals(3, secondary.getStock(4));
+        assertEquals(CoolingLevel.SMOOTH, ((MintDrops) secondary.getProduct(9)).getCoolingLevel());
+    }
+
+    @Test
+    @DisplayName("Price, name, attribute and flavor changes are applied to the existing products")
+    void field_changes_are_applied_in_place() {
+        publisher.publish();
+        Product replicated = secondary.getProduct(1);
+
+        primary.setPrice(1, 22.5);
+        primary.setPrice(4, 59.99);
+        primary.getProduct(7).setProductName("Candy Floss");
+        ((CottonCandy) primary.getProduct(7)).setFlavor("Strawberry");
+        ((Snickers) primary.getProduct(1)).setSize(Size.LARGE);
+        ((Taco) primary.getProduct(4)).setSpicy(false);
+        ((MintDrops) primary.getProduct(9)).setCoolingLevel(5);
+        assertEquals(2, publisher.publish());
+
+        assertCatalogsEqual();
+        assertSame(replicated, secondary.getProduct(1), "products must be updated, not reloaded");
+        assertEquals(22.5, secondary.getCurrentPrice(1));
+        assertEquals(Size.LARGE, ((Snickers) secondary.getProduct(1)).getSize());
+        assertEquals("Strawberry", ((CottonCandy) secondary.getProduct(7)).getFlavor());
+        assertEquals(CoolingLevel.EXTREME, ((MintDrops) secondary.getProduct(9)).getCoolingLevel());
+    }
+
+    @Test
+    @DisplayName("Added and removed products follow the primary; stock on the replica is kept")
+    void additions_and_removals() {
+        publisher.publish();
+        secondary.restock(1, 10);
+
+        primary.addProduct(new Taco(12, 45, "Fish Taco"), 5);
+        primary.removeProduct(7);
+        assertEquals(2, publisher.publish());
+
+        assertCatalogsEqual();
+        assertNull(secondary.getProduct(7));
+        assertEquals(3, secondary.getStock(12), "new products get the replica's initial stock");
+        assertEquals(13, secondary.getStock(1));
+    }
+
+    @Test
+    @DisplayName("A different kind of product under the same ID replaces the old one")
+    void type_change_replaces_product() {
+        publisher.publish();
+
+        primary.removeProduct(4);
+        primary.addProduct(new MintDrops(4, 12, "Extra Strong", 5), 1);
+        publisher.publish();
+
+        assertCatalogsEqual();
+        assertTrue(secondary.getProduct(4) instanceof MintDrops);
+        assertEquals(3, secondary.getStock(4));
+    }
+
+    @Test
+    @DisplayName("Publishing without changes sends nothing; a price delta takes a few bytes")
+    void deltas_are_compact() {
+        publisher.publish();
+        long afterFirst = publisher.getBytesSent();
+
+        assertEquals(1, publisher.publish());
+        assertEquals(afterFirst, publisher.getBytesSent());
+
+        primary.setPrice(1, 21);
+        publisher.publish();
+        long delta = publisher.getBytesSent() - afterFirst;
+        assertTrue(delta <= 20, "price delta was " + delta + " bytes");
+        assertTrue(delta < publisher.fullSync().remaining() / 4);
+    }
+
+    @Test
+    @DisplayName("A replica that missed a delta catches up with a full sync")
+    void missed_delta_triggers_resync() {
+        publisher.publish();
+
+        transport.drop(replica, 1);
+        primary.setPrice(1, 25);
+        primary.removeProduct(9);
+        publisher.publish();
+        assertEquals(1, replica.getVersion());
+
+        primary.setPrice(4, 70);
+        publisher.publish();
+
+        assertEquals(1, replica.getResyncs());
+        assertEquals(3, replica.getVersion());
+        assertCatalogsEqual();
+    }
+
+    @Test
+    @DisplayName("Duplicate and old messages are ignored")
+    void duplicates_are_ignored() {
+        publisher.publish();
+        primary.setPrice(1, 25);
+        publisher.publish();
+
+        assertEquals(2, replica.apply(publisher.fullSync()));
+        secondary.setPrice(1, 99);
+        assertEquals(2, replica.apply(publisher.fullSync()));
+        assertEquals(99, secondary.getCurrentPrice(1), "an old message must not be applied again");
+        assertEquals(0, replica.getResyncs());
+    }
+
+    @Test
+    @DisplayName("Replicas on their own threads converge and the time is measured")
+    void asynchronous_replicas_converge() throws InterruptedException {
+        try (LoopbackTransport async = new LoopbackTransport(true)) {
+            CatalogPublisher asyncPublisher = new CatalogPublisher(primary, async);
+            List<VendingMachine> machines = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                VendingMachine machine = new VendingMachine(new ArrayList<>());
+                machines.add(machine);
+                async.connect(new CatalogReplica(machine, 1, asyncPublisher::fullSync));
+            }
+
+            for (int i = 1; i <= 20; i++) {
+                primary.setPrice(1, 20 + i);
+                asyncPublisher.publish();
+            }
+            assertTrue(async.awaitConvergence(5000));
+
+            for (VendingMachine machine : machines) {
+                assertEquals(40, machine.getCurrentPrice(1));
+                assertEquals(4, machine.getCatalog().size());
+            }
+            assertEquals(20, async.getConvergence().getCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Changing the catalog rebuilds price tables and rejects duplicate IDs")
+    void catalog_changes_rebuild_tables() {
+        TimeSlots hourly = new TimeSlots(60, ZoneOffset.UTC);
+        PricingRules rules = new PricingRules(24);
+        rules.setSlotFactor(0, 2.0);
+        primary.setPricing(new DynamicPricing(primary.getCatalog(), rules, hourly, new MutableClock(0)));
+
+        assertThrows(IllegalArgumentException.class, () -> primary.addProduct(new Taco(4, 10, "Other Taco"), 1));
+        assertEquals(4, primary.getCatalog().size());
+
+        primary.addProduct(new Taco(12, 45, "Fish Taco"), 2);
+        assertEquals(90, primary.getCurrentPrice(12));
+        assertEquals(40, primary.getCurrentPrice(1), "existing products keep their table price");
+        assertEquals(2, primary.getStock(12));
+        assertTrue(primary.getPricing().matches(primary.getCatalog()));
+        assertNull(primary.removeProduct(99));
+        assertEquals("Taco", primary.removeProduct(4).getProductName());
+        assertEquals(-1, primary.getCurrentPrice(4));
+        assertEquals(30, primary.getCurrentPrice(9));
+        assertEquals(90, primary.getCurrentPrice(12));
+        assertSame(rules, primary.getPricing().getRules());
+    }
+
+    @Test
+    @DisplayName("Replicated additions, removals, renames and attribute changes reach the replica's listeners")
+    void replicated_changes_are_reported() {
+        publisher.publish();
+        List<String> changes = new ArrayList<>();
+        secondary.addListener(new VendingMachineListener() {
+            @Override
+            public void onProductAdded(Product product, double price, int stock) {
+                changes.add("added " + product.getId() + " " + price + " " + stock);
+            }
+
+            @Override
+            public void onProductChanged(Product product, double price) {
+                changes.add("changed " + product.getId() + " " + product.getProductName());
+            }
+
+            @Override
+            public void onProductRemoved(int productId) {
+                changes.add("removed " + productId);
+            }
+        });
+
+        primary.getProduct(7).setProductName("Candy Floss");
+        ((Taco) primary.getProduct(4)).setSpicy(false);
+        primary.addProduct(new Snickers(12, 25, "Snickers XL", Size.XL), 1);
+        primary.removeProduct(9);
+        publisher.publish();
+
+        assertEquals(Arrays.asList("changed 4 Taco", "changed 7 Candy Floss", "removed 9", "added 12 25.0 3"), changes);
+        assertFalse(((Taco) secondary.getProduct(4)).isSpicy());
+        assertCatalogsEqual();
+    }
+
+    private void assertCatalogsEqual() {
+        assertEquals(primary.getCatalog().size(), secondary.getCatalog().size());
+        for (Product p : primary.getCatalog()) {
+            Product copy = secondary.getProduct(p.getId());
+            assertNotNull(copy, "missing product " + p.getId());
+            assertEquals(p.getClass(), copy.getClass());
+            assertEquals(p.toString(), copy.toString());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package se.lexicon.sketch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Sketch unit tests")
+class MachineSketchesTest {
+
+    @Test
+    @DisplayName("HyperLogLog estimates distinct items within a few percent and merges as a union")
+    void hyperLogLog_estimate_and_merge() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (long i = 0; i < 60_000; i++) a.add(i);
+        for (long i = 40_000; i < 100_000; i++) b.add(i);
+
+        assertEquals(60_000, a.estimate(), 60_000 * 0.05);
+        a.merge(b);
+        assertEquals(100_000, a.estimate(), 100_000 * 0.05);
+
+        // Small cardinalities are exact enough to be useful
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 10; i++) small.add(42);
+        assertEquals(1, small.estimate());
+    }
+
+    @Test
+    @DisplayName("QuantileSketch stays within its relative accuracy")
+    void quantileSketch_relative_accuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 10_000; i++) sketch.add(i);
+
+        assertEquals(5_000, sketch.quantile(0.5), 5_000 * 0.02);
+        assertEquals(9_900, sketch.quantile(0.99), 9_900 * 0.02);
+        assertEquals(1, sketch.quantile(0.0));
+        assertEquals(10_000, sketch.quantile(1.0));
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+    }
+
+    @Test
+    @DisplayName("CountMinSketch never undercounts and finds heavy hitters")
+    void countMin_heavy_hitters() {
+        CountMinSketch cms = new CountMinSketch();
+        for (int id = 0; id < 1_000; id++) cms.add(id, 1);
+        cms.add(7, 500);
+        cms.add(9, 300);
+
+        assertTrue(cms.estimate(7) >= 501);
+        assertTrue(cms.estimate(123) >= 1);
+        List<long[]> top = cms.heavyHitters();
+        assertEquals(7, top.get(0)[0]);
+        assertEquals(9, top.get(1)[0]);
+    }
+
+    @Test
+    @DisplayName("Sketches survive a serialization round trip")
+    void serialization_round_trip() {
+        QuantileSketch q = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) q.add(i * 1.5);
+        ByteBuffer buffer = ByteBuffer.allocate(q.serializedSize());
+        q.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        assertEquals(q.quantile(0.75), QuantileSketch.readFrom(buffer).quantile(0.75));
+
+        CountMinSketch cms = new CountMinSketch(2, 64, 4);
+        cms.add(5, 10);
+        buffer = ByteBuffer.allocate(cms.serializedSize());
+        cms.writeTo(buffer);
+        buffer.flip();
+        CountMinSketch restored = CountMinSketch.readFrom(buffer);
+        assertEquals(10, restored.estimate(5));
+        assertEquals(5, restored.heavyHitters().get(0)[0]);
+    }
+
+    @Test
+    @DisplayName("Machine sketches follow purchases and merge across a fleet")
+    void machine_sketches_merge_across_fleet() {
+        List<byte[]> images = new ArrayList<>();
+        for (int m = 0; m < 8; m++) {
+            VendingMachine vm = new VendingMachine(Arrays.asList(
+                    new Snickers(1, 20, "Snickers", Size.LARGE),
+                    new Taco(4, 60, "Taco")
+            ));
+            MachineSketches sketches = new MachineSketches(m);
+            vm.addListener(sketches);
+
+            for (int customer = 0; customer < 50; customer++) {
+                vm.identifyCustomer(m * 1_000L + customer);
+                vm.addCurrency(100);
+                vm.request(1);
+                vm.request(4);
+                vm.endSession();
+            }
+            images.add(sketches.toBytes());
+        }
+
+        MachineSketches fleet = MachineSketches.mergeAll(images);
+        assertEquals(400, fleet.distinctCustomers(), 400 * 0.05);
+        assertEquals(80, fleet.sessionSpendQuantile(0.5), 80 * 0.04);
+        assertEquals(400, fleet.unitsSold(4));
+        assertEquals(2, fleet.topProducts().size());
+        assertThrows(IllegalArgumentException.class, () -> MachineSketches.fromBytes(new byte[16]));
+    }
+}
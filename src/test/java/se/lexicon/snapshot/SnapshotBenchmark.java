@@ -0,0 +1,60 @@
+package se.lexicon.snapshot;
+
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures snapshot size and the time to write a full snapshot, write a delta and restore,
+ * for a large catalog.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.snapshot.SnapshotBenchmark}
+ * Optional argument: number of products (default 100 000).
+ * </p>
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0: products.add(new Snickers(i, 20, "Snickers", Size.MEDIUM)); break;
+                case 1: products.add(new Taco(i, 60, "Taco", i % 3 == 0)); break;
+                case 2: products.add(new CottonCandy(i, 30, "Cotton Candy", "Vanilla")); break;
+                default: products.add(new MintDrops(i, 15, "Mint Drops", 2)); break;
+            }
+        }
+        VendingMachine vm = new VendingMachine(products, 10);
+        Path dir = Files.createTempDirectory("vm-snapshots");
+
+        for (int round = 0; round < 5; round++) {
+            SnapshotStore store = new SnapshotStore(dir, 1000);
+            long t0 = System.nanoTime();
+            Path full = store.snapshot(vm);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                vm.addCurrency(100);
+                vm.request(i * 7 % count);
+                vm.endSession();
+            }
+            long t2 = System.nanoTime();
+            Path delta = store.snapshot(vm);
+            long t3 = System.nanoTime();
+            VendingMachine restored = new SnapshotStore(dir, 1000).restoreMachine();
+            long t4 = System.nanoTime();
+
+            System.out.printf("products=%d  full=%d KB in %.1f ms  delta=%d bytes in %.2f ms  restore=%.1f ms  (session %d)%n",
+                    count, Files.size(full) / 1024, (t1 - t0) / 1e6, Files.size(delta), (t3 - t2) / 1e6,
+                    (t4 - t3) / 1e6, restored.getSessionId());
+            for (Path p : Files.newDirectoryStream(dir)) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,220 @@
+package se.lexicon.snapshot;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.lexicon.currency.CurrencyCode;
+import se.lexicon.currency.CurrencyExchange;
+import se.lexicon.currency.ExchangeRates;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SnapshotStore unit tests")
+class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static VendingMachine newMachine() {
+        List<Product> products = new ArrayList<>(Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(2, 60, "Taco", true),
+                new CottonCandy(3, 30, "Cotton Candy", "Blåbär"),
+                new MintDrops(4, 15, "Mint Drops", 4)
+        ));
+        return new VendingMachine(products, 10);
+    }
+
+    private static void assertSameMachine(VendingMachine expected, VendingMachine actual) {
+        assertEquals(expected.getBalance(), actual.getBalance());
+        assertEquals(expected.getSessionId(), actual.getSessionId());
+        for (int denomination : VendingMachine.DENOMINATIONS) {
+            assertEquals(expected.getCashCount(denomination), actual.getCashCount(denomination));
+        }
+        assertArrayEquals(expected.getProducts(), actual.getProducts());
+        for (Product p : expected.getCatalog()) {
+            assertEquals(expected.getStock(p.getId()), actual.getStock(p.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("A full snapshot restores catalog, prices, stock, session and cash")
+    void full_snapshot_round_trip() throws IOException {
+        VendingMachine vm = newMachine();
+        vm.addCurrency(100);
+        vm.request(2);
+        vm.endSession();
+        vm.addCurrency(20);
+        vm.getCatalog().get(0).setPrice(22.5);
+
+        Path file = new SnapshotStore(dir, 4).snapshot(vm);
+        assertTrue(file.getFileName().toString().endsWith(".full"));
+
+        VendingMachine restored = new SnapshotStore(dir, 4).restoreMachine();
+        assertSameMachine(vm, restored);
+        assertEquals(20, restored.getBalance());
+        assertEquals(2, restored.getSessionId());
+        assertEquals(9, restored.getStock(2));
+        assertEquals(22.5, restored.getCurrentPrice(1));
+        assertEquals(1, restored.getCashCount(100));
+    }
+
+    @Test
+    @DisplayName("Later snapshots are small deltas and restore to the newest state")
+    void deltas_restore_latest_state() throws IOException {
+        VendingMachine vm = newMachine();
+        SnapshotStore store = new SnapshotStore(dir, 4);
+        long fullSize = Files.size(store.snapshot(vm));
+
+        vm.addCurrency(50);
+        vm.request(4);
+        Path delta = store.snapshot(vm);
+        vm.getCatalog().get(1).setPrice(65);
+        vm.restock(1, 5);
+        Path delta2 = store.snapshot(vm);
+
+        assertTrue(delta.getFileName().toString().endsWith(".delta"));
+        assertTrue(Files.size(delta2) < fullSize);
+        assertSameMachine(vm, new SnapshotStore(dir, 4).restoreMachine());
+    }
+
+    @Test
+    @DisplayName("A full snapshot follows after the maximum number of deltas; only the previous generation is kept")
+    void full_snapshot_after_max_deltas() throws IOException {
+        VendingMachine vm = newMachine();
+        SnapshotStore store = new SnapshotStore(dir, 2);
+        for (int i = 0; i < 6; i++) store.snapshot(vm);
+        Path full = store.snapshot(vm);
+
+        assertTrue(full.getFileName().toString().endsWith(".full"));
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            // The new full snapshot (7), the previous one (4) and its newest delta (6)
+            assertEquals(Arrays.asList("snapshot-0000000000000004.full", "snapshot-0000000000000006.delta",
+                    "snapshot-0000000000000007.full"),
+                    files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("A corrupt newest full snapshot falls back to the previous one and its newest delta")
+    void corrupt_full_snapshot_falls_back() throws IOException {
+        VendingMachine vm = newMachine();
+        SnapshotStore store = new SnapshotStore(dir, 1);
+        store.snapshot(vm);
+        vm.addCurrency(10);
+        store.snapshot(vm);
+        vm.addCurrency(20);
+        Path full = store.snapshot(vm);
+
+        flipByte(full, SnapshotStore.HEADER_SIZE + 3);
+
+        assertEquals(10, new SnapshotStore(dir, 1).restoreMachine().getBalance());
+    }
+
+    @Test
+    @DisplayName("A corrupt delta is skipped and an older valid state is restored")
+    void corrupt_delta_is_skipped() throws IOException {
+        VendingMachine vm = newMachine();
+        SnapshotStore store = new SnapshotStore(dir, 4);
+        store.snapshot(vm);
+        vm.addCurrency(10);
+        store.snapshot(vm);
+        vm.addCurrency(20);
+        Path latest = store.snapshot(vm);
+
+        flipByte(latest, (int) Files.size(latest) - 1);
+
+        VendingMachine restored = new SnapshotStore(dir, 4).restoreMachine();
+        assertEquals(10, restored.getBalance());
+    }
+
+    @Test
+    @DisplayName("Restoring without a valid full snapshot fails")
+    void corrupt_full_snapshot_fails() throws IOException {
+        Path full = new SnapshotStore(dir, 4).snapshot(newMachine());
+        flipByte(full, SnapshotStore.HEADER_SIZE + 3);
+        assertThrows(IOException.class, () -> new SnapshotStore(dir, 4).restore());
+    }
+
+    @Test
+    @DisplayName("A changed catalog gets a new full snapshot")
+    void catalog_change_forces_full() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, 4);
+        store.snapshot(newMachine());
+        VendingMachine other = new VendingMachine(Arrays.asList(new Taco(9, 40, "Taco")));
+        Path file = store.snapshot(other);
+
+        assertTrue(file.getFileName().toString().endsWith(".full"));
+        assertSameMachine(other, new SnapshotStore(dir, 4).restoreMachine());
+    }
+
+    @Test
+    @DisplayName("Renames and attribute changes get a new full snapshot and survive a restore")
+    void renamed_product_forces_full() throws IOException {
+        VendingMachine vm = newMachine();
+        SnapshotStore store = new SnapshotStore(dir, 4);
+        store.snapshot(vm);
+        vm.getCatalog().get(0).setProductName("Snickers Duo");
+        ((Taco) vm.getCatalog().get(1)).setSpicy(false);
+        ((CottonCandy) vm.getCatalog().get(2)).setFlavor("Jordgubb");
+        ((MintDrops) vm.getCatalog().get(3)).setCoolingLevel(1);
+
+        Path file = store.snapshot(vm);
+
+        assertTrue(file.getFileName().toString().endsWith(".full"));
+        assertSameMachine(vm, new SnapshotStore(dir, 4).restoreMachine());
+        assertTrue(store.snapshot(vm).getFileName().toString().endsWith(".delta"));
+    }
+
+    @Test
+    @DisplayName("The session currency and foreign notes and coins survive full snapshots and deltas")
+    void foreign_cash_round_trip() throws IOException {
+        VendingMachine vm = newMachine();
+        ExchangeRates rates = new ExchangeRates();
+        rates.setRate(CurrencyCode.EUR, 11.48);
+        vm.setCurrencyExchange(new CurrencyExchange(vm.getCatalog(), rates));
+        SnapshotStore store = new SnapshotStore(dir, 4);
+        vm.addCurrency(CurrencyCode.EUR, 200);
+        store.snapshot(vm);
+
+        VendingMachine restored = new SnapshotStore(dir, 4).restoreMachine();
+        assertEquals(CurrencyCode.EUR, restored.getSessionCurrency());
+        assertEquals(1, restored.getCashCount(CurrencyCode.EUR, 200));
+
+        vm.addCurrency(CurrencyCode.EUR, 200);
+        vm.addCurrency(CurrencyCode.EUR, 50);
+        vm.endSession();
+        assertTrue(store.snapshot(vm).getFileName().toString().endsWith(".delta"));
+
+        restored = new SnapshotStore(dir, 4).restoreMachine();
+        assertSameMachine(vm, restored);
+        assertEquals(CurrencyCode.SEK, restored.getSessionCurrency());
+        assertEquals(2, restored.getCashCount(CurrencyCode.EUR, 200));
+        assertEquals(1, restored.getCashCount(CurrencyCode.EUR, 50));
+        assertEquals(0, restored.getCashCount(CurrencyCode.NOK, 100));
+    }
+
+    private static void flipByte(Path file, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x5A));
+            b.rewind();
+            channel.write(b, position);
+        }
+    }
+}
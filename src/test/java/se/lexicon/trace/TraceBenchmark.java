@@ -0,0 +1,64 @@
+package se.lexicon.trace;
+
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cost of recording traffic and the throughput of replaying it.
+ * <p>
+ * Not a unit test; run it manually after {@code mvn test-compile}, e.g.:
+ * {@code java -cp target/classes:target/test-classes se.lexicon.trace.TraceBenchmark}
+ * Optional argument: number of customer sessions per round (default 500 000).
+ * </p>
+ */
+public class TraceBenchmark {
+
+    private static VendingMachine newMachine() {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.MEDIUM),
+                new Taco(4, 60, "Taco"),
+                new CottonCandy(7, 30, "Cotton Candy", "Vanilla"),
+                new MintDrops(9, 15, "Mint Drops", 2)
+        );
+        return new VendingMachine(products);
+    }
+
+    /** Four calls per session, all of which succeed. */
+    private static void sessions(IVendingMachine vm, int count) {
+        for (int i = 0; i < count; i++) {
+            vm.addCurrency(50);
+            vm.getDescription(7);
+            vm.request(7);
+            vm.endSession();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Path trace = Files.createTempFile("vm-traffic", ".trace");
+
+        for (int round = 0; round < 5; round++) {
+            long t0 = System.nanoTime();
+            sessions(newMachine(), count);
+            long t1 = System.nanoTime();
+            try (TraceRecorder recorder = new TraceRecorder(trace)) {
+                sessions(new TracingMachine(newMachine(), recorder), count);
+            }
+            long t2 = System.nanoTime();
+            ReplayReport report = new TraceReplayer(newMachine()).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE);
+
+            long calls = 4L * count;
+            System.out.printf("plain %.0f ns/call  recorded %.0f ns/call  trace %.1f bytes/call%n  replay: %s%n",
+                    (t1 - t0) / (double) calls, (t2 - t1) / (double) calls,
+                    (Files.size(trace) - TraceFormat.HEADER_SIZE) / (double) calls, report);
+        }
+        Files.delete(trace);
+    }
+}
@@ -0,0 +1,174 @@
+package se.lexicon.trace;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.lexicon.model.IVendingMachine;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Trace record and replay unit tests")
+class TraceReplayerTest {
+
+    @TempDir
+    Path dir;
+
+    private static VendingMachine newMachine(double tacoPrice) {
+        List<Product> products = Arrays.asList(
+                new Snickers(1, 20, "Snickers", Size.LARGE),
+                new Taco(4, tacoPrice, "Taco")
+        );
+        return new VendingMachine(products);
+    }
+
+    private static void customerTraffic(IVendingMachine vm) {
+        vm.addCurrency(50);
+        vm.addCurrency(10);
+        vm.getDescription(4);
+        vm.request(4);
+        vm.endSession();
+        vm.addCurrency(20);
+        vm.request(4);
+        vm.request(1);
+        vm.request(7L, 1);
+        vm.endSession();
+    }
+
+    private Path record(IVendingMachine vm) throws IOException {
+        Path trace = dir.resolve("traffic.trace");
+        try (TraceRecorder recorder = new TraceRecorder(trace)) {
+            customerTraffic(new TracingMachine(vm, recorder));
+            assertEquals(10, recorder.getRecordCount());
+        }
+        return trace;
+    }
+
+    @Test
+    @DisplayName("Replaying against an identical machine reproduces every outcome")
+    void replay_against_identical_machine_matches() throws IOException {
+        Path trace = record(newMachine(60));
+
+        ReplayReport report = new TraceReplayer(newMachine(60)).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE);
+
+        assertTrue(report.isIdentical(), () -> report.getMismatchSamples().toString());
+        assertEquals(10, report.getOperations());
+        assertEquals(2, report.getSessions());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getP99Micros() >= report.getP50Micros());
+    }
+
+    @Test
+    @DisplayName("Reader returns the recorded calls with session IDs and outcomes")
+    void reader_returns_recorded_calls() throws IOException {
+        Path trace = record(newMachine(60));
+
+        try (TraceReader reader = new TraceReader(trace)) {
+            TraceRecord record = new TraceRecord();
+            assertTrue(reader.next(record));
+            assertEquals(TraceFormat.OP_ADD_CURRENCY, record.getOp());
+            assertEquals(50, record.getArgument());
+            assertEquals(5000, record.getOutcome());
+            assertEquals(1, record.getSessionId());
+
+            int count = 1;
+            while (reader.next(record)) {
+                count++;
+                if (count == 9) {
+                    assertEquals(TraceFormat.OP_REQUEST_ONCE, record.getOp());
+                    assertEquals(7, record.getTransactionId());
+                    assertEquals(-1, record.getOutcome(), "Balance was spent on the Snickers");
+                    assertEquals(2, record.getSessionId());
+                }
+            }
+            assertEquals(10, count);
+        }
+    }
+
+    @Test
+    @DisplayName("A changed price shows up as mismatching purchases")
+    void replay_against_different_machine_reports_mismatches() throws IOException {
+        Path trace = record(newMachine(60));
+
+        ReplayReport report = new TraceReplayer(newMachine(70)).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE);
+
+        assertFalse(report.isIdentical());
+        assertTrue(report.getMismatches() >= 2, "Description and purchase differ");
+        assertTrue(report.getMismatchSamples().stream().anyMatch(s -> s.contains("request(4) recorded 4, replayed -1")),
+                () -> report.getMismatchSamples().toString());
+    }
+
+    @Test
+    @DisplayName("Calls that threw are recorded and must throw again on replay")
+    void exceptions_are_part_of_the_outcome() throws IOException {
+        VendingMachine failing = new VendingMachine(Arrays.asList(new Snickers(1, 20, "Snickers", Size.LARGE))) {
+            @Override
+            public String getDescription(int id) {
+                throw new IllegalArgumentException("No product " + id);
+            }
+        };
+        Path trace = dir.resolve("failing.trace");
+        try (TraceRecorder recorder = new TraceRecorder(trace)) {
+            IVendingMachine traced = new TracingMachine(failing, recorder);
+            assertThrows(IllegalArgumentException.class, () -> traced.getDescription(9));
+        }
+
+        assertTrue(new TraceReplayer(failing).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE).isIdentical());
+        assertEquals(1, new TraceReplayer(newMachine(60)).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE).getMismatches());
+    }
+
+    @Test
+    @DisplayName("Replay keeps the recorded timing scaled by the speed factor")
+    void replay_is_paced_by_speed_factor() throws IOException {
+        AtomicLong now = new AtomicLong();
+        Path trace = dir.resolve("paced.trace");
+        try (TraceRecorder recorder = new TraceRecorder(trace, now::get)) {
+            IVendingMachine traced = new TracingMachine(newMachine(60), recorder);
+            for (int i = 0; i < 5; i++) {
+                traced.addCurrency(10);
+                now.addAndGet(100_000_000);
+            }
+        }
+
+        ReplayReport fast = new TraceReplayer(newMachine(60)).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE);
+        ReplayReport paced = new TraceReplayer(newMachine(60)).replay(trace, 10);
+
+        assertEquals(400_000_000, fast.getRecordedNanos());
+        assertTrue(fast.getElapsedNanos() < 40_000_000);
+        assertTrue(paced.getElapsedNanos() >= 40_000_000, "400 ms recorded at 10x takes at least 40 ms");
+        assertTrue(paced.isIdentical());
+    }
+
+    @Test
+    @DisplayName("Traces take only a few bytes per call")
+    void trace_format_is_compact() throws IOException {
+        Path trace = dir.resolve("large.trace");
+        try (TraceRecorder recorder = new TraceRecorder(trace)) {
+            IVendingMachine traced = new TracingMachine(newMachine(60), recorder);
+            for (int i = 0; i < 1_000; i++) {
+                customerTraffic(traced);
+            }
+        }
+
+        long bytesPerCall = (Files.size(trace) - TraceFormat.HEADER_SIZE) / 10_000;
+        assertTrue(bytesPerCall <= 10, "Was " + bytesPerCall + " bytes per call");
+        assertTrue(new TraceReplayer(newMachine(60)).replay(trace, TraceReplayer.AS_FAST_AS_POSSIBLE).isIdentical());
+    }
+
+    @Test
+    @DisplayName("Files that are not traces are rejected")
+    void non_trace_file_is_rejected() throws IOException {
+        Path file = Files.write(dir.resolve("other.bin"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14});
+        assertThrows(IllegalArgumentException.class, () -> new TraceReader(file));
+        assertThrows(IllegalArgumentException.class, () -> new TraceReplayer(newMachine(60)).replay(file, 0));
+    }
+}
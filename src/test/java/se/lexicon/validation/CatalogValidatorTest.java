@@ -0,0 +1,97 @@
+package se.lexicon.validation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.lexicon.model.Product;
+import se.lexicon.model.VendingMachine;
+import se.lexicon.products.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CatalogValidator unit tests")
+class CatalogValidatorTest {
+
+    private static List<Product> largeCatalog(int count, int idStep) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new Taco(i * idStep, 10 + i % 50, "Taco"));
+        }
+        return products;
+    }
+
+    @Test
+    @DisplayName("Every problem is reported, in list order")
+    void reports_all_errors() {
+        Snickers noSize = new Snickers(5, 20, "Snickers", Size.SMALL);
+        noSize.setSize(null);
+        List<Product> products = Arrays.asList(
+                new Taco(1, 60, "Taco"),
+                new Taco(1, 0, "Taco"),
+                null,
+                new CottonCandy(3, 30, " ", "Vanilla"),
+                noSize,
+                new MintDrops(1, 15, "Mint Drops", 2)
+        );
+
+        ValidationReport report = CatalogValidator.validate(products);
+
+        assertFalse(report.isValid());
+        assertEquals(Arrays.asList(
+                ValidationError.Code.INVALID_PRICE,
+                ValidationError.Code.DUPLICATE_ID,
+                ValidationError.Code.NULL_PRODUCT,
+                ValidationError.Code.BLANK_NAME,
+                ValidationError.Code.MISSING_SIZE,
+                ValidationError.Code.DUPLICATE_ID
+        ), report.getErrors().stream().map(ValidationError::getCode).collect(Collectors.toList()));
+        assertEquals(5, report.getErrors().get(5).getPosition());
+    }
+
+    @Test
+    @DisplayName("The machine refuses an invalid catalog instead of warning")
+    void machine_fails_fast() {
+        List<Product> products = Arrays.asList(new Taco(1, 60, "Taco"), new Taco(1, 55, "Other Taco"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new VendingMachine(products));
+        assertTrue(e.getMessage().contains("DUPLICATE_ID"));
+    }
+
+    @Test
+    @DisplayName("Products reject invalid attributes when created")
+    void products_reject_invalid_attributes() {
+        assertThrows(IllegalArgumentException.class, () -> new CottonCandy(1, 30, "Cotton Candy", " "));
+        assertThrows(IllegalArgumentException.class, () -> new MintDrops(1, 15, "Mint Drops", 6));
+    }
+
+    @Test
+    @DisplayName("Sparse IDs are checked by sorting and give the same result")
+    void sparse_ids_use_sorting() {
+        List<Product> products = new ArrayList<>(largeCatalog(1000, 1_000_003));
+        products.add(new Taco(7 * 1_000_003, 20, "Taco"));
+        products.add(new Taco(7 * 1_000_003, 20, "Taco"));
+
+        ValidationReport report = CatalogValidator.validate(products);
+        assertEquals(2, report.getErrors().size());
+        assertEquals(1000, report.getErrors().get(0).getPosition());
+        assertEquals(1001, report.getErrors().get(1).getPosition());
+    }
+
+    @Test
+    @DisplayName("A million products are validated in parallel chunks within a fraction of a second")
+    void large_catalog_is_fast() {
+        List<Product> products = largeCatalog(1_000_000, 1);
+        products.set(999_999, new Taco(42, 10, "Taco"));
+        products.get(500_000).setProductName("Tortilla");
+
+        CatalogValidator.validate(products); // warm up
+        ValidationReport report = CatalogValidator.validate(products);
+
+        assertEquals(1, report.getErrors().size());
+        assertEquals(999_999, report.getErrors().get(0).getPosition());
+        assertTrue(report.getElapsedNanos() < 2_000_000_000L, report.toString());
+    }
+}